@@ -7,6 +7,7 @@ import java.io.File;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.sql.DataSource;
@@ -14,6 +15,8 @@ import org.apache.ignite.Ignite;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.lang.IgniteRunnable;
 import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.ComputeModePlanner;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.MapReducerIgniteAdaptive;
 import org.heigit.ohsome.oshdb.api.mapreducer.backend.MapReducerIgniteAffinityCall;
 import org.heigit.ohsome.oshdb.api.mapreducer.backend.MapReducerIgniteLocalPeek;
 import org.heigit.ohsome.oshdb.api.mapreducer.backend.MapReducerIgniteScanQuery;
@@ -37,12 +40,14 @@ public class OSHDBIgnite extends OSHDBDatabase implements AutoCloseable {
    *   <li>{@link #LOCAL_PEEK} (default) is good for small to medium sized areas
    *   <li>{@link #SCAN_QUERY} works best for large to global queries
    *   <li>{@link #AFFINITY_CALL} is useful for streaming queries
+   *   <li>{@link #AUTO} chooses one of the above for each query and OSM type
    * </ul>
    */
   public enum ComputeMode {
     LOCAL_PEEK,
     SCAN_QUERY,
-    AFFINITY_CALL
+    AFFINITY_CALL,
+    AUTO
   }
 
   private final Ignite ignite;
@@ -52,6 +57,7 @@ public class OSHDBIgnite extends OSHDBDatabase implements AutoCloseable {
   private ComputeMode computeMode = ComputeMode.LOCAL_PEEK;
 
   private IgniteRunnable onCloseCallback = null;
+  private Consumer<ComputeModePlanner.Decision> computeModeDecisionSink = null;
 
   /**
    * Create a new OSHDBDatabase based on default ("ignite-config.xml") configuration.
@@ -148,6 +154,9 @@ public class OSHDBIgnite extends OSHDBDatabase implements AutoCloseable {
       case AFFINITY_CALL:
         mapReducer = new MapReducerIgniteAffinityCall<>(this, forClass);
         break;
+      case AUTO:
+        mapReducer = new MapReducerIgniteAdaptive<>(this, forClass);
+        break;
       default:
         throw new UnsupportedOperationException("Backend not implemented for this compute mode.");
     }
@@ -231,4 +240,27 @@ public class OSHDBIgnite extends OSHDBDatabase implements AutoCloseable {
     return Optional.ofNullable(this.onCloseCallback);
   }
 
+  /**
+   * Sets a sink receiving the compute modes chosen by the {@link ComputeMode#AUTO} compute mode.
+   *
+   * <p>The sink is called on the client once per query and OSM type, with the chosen compute
+   * mode and the estimated costs and cell statistics it was based on.</p>
+   *
+   * @param sink the consumer of the compute mode decisions
+   * @return the current oshdb database object
+   */
+  public OSHDBIgnite onComputeModeDecision(Consumer<ComputeModePlanner.Decision> sink) {
+    this.computeModeDecisionSink = sink;
+    return this;
+  }
+
+  /**
+   * Gets the sink of the compute mode decisions.
+   *
+   * @return the currently set compute mode decision sink
+   */
+  public Optional<Consumer<ComputeModePlanner.Decision>> onComputeModeDecision() {
+    return Optional.ofNullable(this.computeModeDecisionSink);
+  }
+
 }
@@ -2,7 +2,6 @@ package org.heigit.ohsome.oshdb.api.ignite.util;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -18,9 +17,9 @@ import org.apache.ignite.cluster.ClusterState;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.configuration.IgniteConfiguration;
 import org.apache.ignite.internal.IgnitionEx;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
 import org.heigit.ohsome.oshdb.grid.GridOSHNodes;
-import org.heigit.ohsome.oshdb.grid.GridOSHRelations;
-import org.heigit.ohsome.oshdb.grid.GridOSHWays;
 import org.heigit.ohsome.oshdb.util.CellId;
 import org.heigit.ohsome.oshdb.util.TableNames;
 import org.slf4j.Logger;
@@ -53,9 +52,9 @@ public class OSHDBToIgnite {
 
       try (Statement stmt = oshdb.createStatement()) {
 
-        OSHDBToIgnite.<GridOSHNodes>doGridImport(ignite, stmt, TableNames.T_NODES, prefix);
-        OSHDBToIgnite.<GridOSHWays>doGridImport(ignite, stmt, TableNames.T_WAYS, prefix);
-        OSHDBToIgnite.<GridOSHRelations>doGridImport(ignite, stmt, TableNames.T_RELATIONS, prefix);
+        doGridImport(ignite, stmt, TableNames.T_NODES, prefix);
+        doGridImport(ignite, stmt, TableNames.T_WAYS, prefix);
+        doGridImport(ignite, stmt, TableNames.T_RELATIONS, prefix);
 
       } catch (SQLException ex) {
         LOG.error("", ex);
@@ -63,24 +62,31 @@ public class OSHDBToIgnite {
     }
   }
 
-  private static <T> void doGridImport(Ignite ignite, Statement stmt, TableNames cacheName,
+  /**
+   * Imports the cells of a grid table into an ignite cache.
+   *
+   * <p>The cells are stored in their {@link GridOSHEntityCodec encoded} binary form, which the
+   * Ignite backends decode directly instead of deserializing them through Ignite's binary
+   * marshaller. Caches holding cell objects (as imported by older versions) can still be read.</p>
+   */
+  private static void doGridImport(Ignite ignite, Statement stmt, TableNames cacheName,
       String prefix) {
     final String cacheWithPrefix = cacheName.toString(prefix);
 
     ignite.destroyCache(cacheWithPrefix);
 
-    CacheConfiguration<Long, T> cacheCfg = new CacheConfiguration<>(cacheWithPrefix);
+    CacheConfiguration<Long, byte[]> cacheCfg = new CacheConfiguration<>(cacheWithPrefix);
     cacheCfg.setBackups(0);
     cacheCfg.setCacheMode(CacheMode.PARTITIONED);
 
-    IgniteCache<Long, T> cache = ignite.getOrCreateCache(cacheCfg);
+    IgniteCache<Long, byte[]> cache = ignite.getOrCreateCache(cacheCfg);
     boolean pers = false;
     if (ignite.cluster().isWalEnabled(cacheWithPrefix)) {
       ignite.cluster().disableWal(cacheWithPrefix);
       pers = true;
     }
 
-    try (IgniteDataStreamer<Long, T> streamer = ignite.dataStreamer(cache.getName())) {
+    try (IgniteDataStreamer<Long, byte[]> streamer = ignite.dataStreamer(cache.getName())) {
       streamer.allowOverwrite(true);
       final String sql;
       switch (cacheName) {
@@ -105,17 +111,23 @@ public class OSHDBToIgnite {
           final long id = rst.getLong(2);
           final long levelId = CellId.getLevelId(level, id);
 
-          final ObjectInputStream ois = new ObjectInputStream(rst.getBinaryStream(3));
-          @SuppressWarnings("unchecked")
-          final T grid = (T) ois.readObject();
-          streamer.addData(levelId, grid);
+          GridOSHEntity cell = GridOSHEntityCodec.decode(rst.getBytes(3));
+          if (cell.getSpatialIndex() == null && !(cell instanceof GridOSHNodes)) {
+            // index the entities of way and relation cells to speed up small area queries
+            cell = cell.withSpatialIndex();
+          }
+          if (cell.getSummary() == null) {
+            // summarize the tags and timestamps of the cell, which allows queries to skip it
+            cell = cell.withSummary();
+          }
+          streamer.addData(levelId, GridOSHEntityCodec.encode(cell));
           if (++cnt % 10 == 0) {
             streamer.flush();
           }
         }
         System.out.println(LocalDateTime.now() + " FINISHED loading into "
             + cache.getName() + " on Ignite");
-      } catch (IOException | ClassNotFoundException | SQLException e) {
+      } catch (IOException | SQLException e) {
         LOG.error("Could not import Grid!", e);
       }
     } finally {
@@ -0,0 +1,114 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import org.heigit.ohsome.oshdb.api.db.OSHDBIgnite.ComputeMode;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+
+/**
+ * Chooses the Ignite compute mode of a query from the estimated costs of the compute modes.
+ *
+ * <p>The costs are measured in units of the effort of checking a single cell key. The effort of
+ * processing the cells which actually hold requested data is the same for all compute modes and
+ * therefore not part of the estimate. The remaining effort is estimated as follows:</p>
+ * <ul>
+ *   <li>{@link ComputeMode#LOCAL_PEEK} broadcasts a task to all server nodes, each of which checks
+ *   all requested cell keys and peeks the ones stored locally.</li>
+ *   <li>{@link ComputeMode#SCAN_QUERY} broadcasts a task to all server nodes, which together scan
+ *   all cached cells.</li>
+ *   <li>{@link ComputeMode#AFFINITY_CALL} groups the requested cell keys on the client and sends
+ *   a separate job to each partition holding any of them.</li>
+ * </ul>
+ *
+ * <p>Small queries are therefore run as affinity calls, medium sized ones by local peeks and
+ * queries requesting more cell keys than there are cached cells by scan queries.</p>
+ */
+public class ComputeModePlanner {
+  /** Cost of checking (and possibly looking up) a requested cell key. */
+  static final double KEY_COST = 1;
+  /** Cost of reading and checking a cached cell during a scan query. */
+  static final double SCAN_COST = 20;
+  /** Cost of sending a single affinity job to a node and receiving its result. */
+  static final double JOB_COST = 5_000;
+  /** Cost of broadcasting a compute task to a server node. */
+  static final double TASK_COST = 20_000;
+
+  private ComputeModePlanner() {
+    throw new IllegalStateException("utility class");
+  }
+
+  /**
+   * The compute mode chosen for the cells of one OSM type, and the statistics it was based on.
+   *
+   * @param osmType the OSM type of the queried cells
+   * @param requestedCells the number of cell keys requested by the query
+   * @param cachedCells the number of cells stored in the cache of the OSM type
+   * @param costs the estimated costs of the compute modes
+   * @param computeMode the chosen compute mode
+   */
+  public record Decision(
+      OSMType osmType,
+      long requestedCells,
+      long cachedCells,
+      Map<ComputeMode, Double> costs,
+      ComputeMode computeMode
+  ) implements Serializable {}
+
+  /**
+   * Chooses the compute mode with the lowest estimated cost.
+   *
+   * @param osmType the OSM type of the queried cells
+   * @param requestedCells the number of cell keys requested by the query
+   * @param cachedCells the number of cells stored in the cache of the OSM type
+   * @param partitions the number of partitions of the cache
+   * @param serverNodes the number of server nodes storing the cache
+   * @return the chosen compute mode and its estimated cost
+   */
+  public static Decision plan(OSMType osmType, long requestedCells, long cachedCells,
+      int partitions, int serverNodes) {
+    return plan(osmType, requestedCells, cachedCells, partitions, serverNodes,
+        EnumSet.of(ComputeMode.LOCAL_PEEK, ComputeMode.SCAN_QUERY, ComputeMode.AFFINITY_CALL));
+  }
+
+  /**
+   * Chooses the compute mode with the lowest estimated cost out of the given compute modes.
+   *
+   * @param osmType the OSM type of the queried cells
+   * @param requestedCells the number of cell keys requested by the query
+   * @param cachedCells the number of cells stored in the cache of the OSM type
+   * @param partitions the number of partitions of the cache
+   * @param serverNodes the number of server nodes storing the cache
+   * @param candidates the compute modes which can run the query
+   * @return the chosen compute mode and its estimated cost
+   */
+  public static Decision plan(OSMType osmType, long requestedCells, long cachedCells,
+      int partitions, int serverNodes, Set<ComputeMode> candidates) {
+    final int nodes = Math.max(1, serverNodes);
+    Map<ComputeMode, Double> costs = new EnumMap<>(ComputeMode.class);
+    for (ComputeMode computeMode : candidates) {
+      switch (computeMode) {
+        case LOCAL_PEEK -> costs.put(computeMode,
+            TASK_COST * nodes + KEY_COST * requestedCells);
+        case SCAN_QUERY -> costs.put(computeMode,
+            TASK_COST * nodes + SCAN_COST * cachedCells / nodes);
+        case AFFINITY_CALL -> costs.put(computeMode,
+            KEY_COST * requestedCells + JOB_COST * Math.min(requestedCells, partitions) / nodes);
+        default -> throw new IllegalArgumentException("Cannot plan compute mode " + computeMode);
+      }
+    }
+
+    ComputeMode best = null;
+    for (var cost : costs.entrySet()) {
+      if (best == null || cost.getValue() < costs.get(best)) {
+        best = cost.getKey();
+      }
+    }
+    if (best == null) {
+      throw new IllegalArgumentException("No compute mode to choose from");
+    }
+    return new Decision(osmType, requestedCells, cachedCells, costs, best);
+  }
+}
@@ -0,0 +1,179 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import com.google.common.collect.Streams;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteCompute;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.lang.IgniteFuture;
+import org.apache.ignite.lang.IgniteRunnable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.Kernels.CellProcessor;
+import org.heigit.ohsome.oshdb.index.XYGridTree.CellIdRange;
+import org.heigit.ohsome.oshdb.util.celliterator.CellIterator;
+import org.heigit.ohsome.oshdb.util.celliterator.OSHEntitySource;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTimeoutException;
+
+/**
+ * Streams the results of the requested cells of an ignite cache to the client in chunks.
+ *
+ * <p>The requested cells are grouped lazily by their cache partition into chunks of at most
+ * {@link #CELLS_PER_CHUNK} cells (see {@link PartitionedCellIds}), as the stream is consumed.
+ * Each chunk is processed by a single affinity job on the node owning its partition, which
+ * returns the results of all its cells. At most
+ * {@link #CHUNKS_IN_FLIGHT_PER_NODE} chunks per server node are requested at the same time: further
+ * chunks are only requested when the client consumes the results of the previous ones. Closing the
+ * stream cancels the chunks which are still running.</p>
+ */
+class IgniteCellStream<X> implements Iterator<List<X>> {
+  static final int CELLS_PER_CHUNK = 64;
+  static final int CHUNKS_IN_FLIGHT_PER_NODE = 2;
+
+  private final IgniteCompute compute;
+  private final String cacheName;
+  private final PartitionedCellIds chunks;
+  private final int maxChunksInFlight;
+  private final Queue<IgniteFuture<List<X>>> chunksInFlight = new ArrayDeque<>();
+  private final CellProcessor<Stream<X>> cellProcessor;
+  private final CellIterator cellIterator;
+  private final IgniteRunnable onClose;
+  private final Long timeout;
+  private final long deadline;
+
+  private IgniteCellStream(Ignite ignite, String cacheName, Iterable<CellIdRange> cellIdRanges,
+      CellProcessor<Stream<X>> cellProcessor, CellIterator cellIterator, IgniteRunnable onClose,
+      long executionStartTimeMillis, Long timeout) {
+    this.compute = ignite.compute();
+    this.cacheName = cacheName;
+    this.cellProcessor = cellProcessor;
+    this.cellIterator = cellIterator;
+    this.onClose = onClose;
+    this.timeout = timeout;
+    this.deadline = timeout == null || timeout > Long.MAX_VALUE - executionStartTimeMillis
+        ? Long.MAX_VALUE
+        : executionStartTimeMillis + timeout;
+    this.maxChunksInFlight = CHUNKS_IN_FLIGHT_PER_NODE
+        * Math.max(1, ignite.cluster().forServers().nodes().size());
+
+    this.chunks = new PartitionedCellIds(ignite.affinity(cacheName), cellIdRanges,
+        CELLS_PER_CHUNK);
+  }
+
+  /**
+   * Returns a stream of the results of the requested cells of an ignite cache.
+   *
+   * @param ignite the ignite client
+   * @param cacheName the name of the cache to read the cells from
+   * @param cellIdRanges the requested cells
+   * @param cellProcessor computes the results of a single cell
+   * @param cellIterator the cell iterator passed to the cell processor
+   * @param onClose called on the worker nodes after each chunk
+   * @param executionStartTimeMillis the start time of the query
+   * @param timeout the timeout of the query in milliseconds, or null
+   * @param <X> the type of the results
+   * @return a sequential stream of the results, which must be closed when not fully consumed
+   * @throws OSHDBTimeoutException (when consuming the stream) if the query took too long
+   */
+  static <X> Stream<X> stream(Ignite ignite, String cacheName,
+      Iterable<CellIdRange> cellIdRanges, CellProcessor<Stream<X>> cellProcessor,
+      CellIterator cellIterator, IgniteRunnable onClose, long executionStartTimeMillis,
+      Long timeout) {
+    var cellStream = new IgniteCellStream<>(ignite, cacheName, cellIdRanges, cellProcessor,
+        cellIterator, onClose, executionStartTimeMillis, timeout);
+    return Streams.stream(cellStream)
+        .onClose(cellStream::cancel)
+        .flatMap(List::stream);
+  }
+
+  private void requestChunks() {
+    while (chunksInFlight.size() < maxChunksInFlight && chunks.hasNext()) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new OSHDBTimeoutException();
+      }
+      PartitionedCellIds.Batch chunk = chunks.next();
+      chunksInFlight.add(compute.affinityCallAsync(List.of(cacheName), chunk.partition(),
+          new ChunkJob<>(cacheName, chunk.cellIds(), cellProcessor, cellIterator, onClose,
+              deadline)));
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    requestChunks();
+    return !chunksInFlight.isEmpty();
+  }
+
+  @Override
+  public List<X> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    IgniteFuture<List<X>> chunk = chunksInFlight.remove();
+    try {
+      return MapReducerIgniteAffinityCall.asyncGetHandleTimeouts(chunk, timeout);
+    } catch (RuntimeException e) {
+      cancel();
+      throw e;
+    }
+  }
+
+  private void cancel() {
+    chunksInFlight.forEach(IgniteFuture::cancel);
+    chunksInFlight.clear();
+  }
+
+  /**
+   * Computes the results of a chunk of cells on the node storing them.
+   */
+  private static class ChunkJob<X> implements IgniteCallable<List<X>> {
+    @IgniteInstanceResource
+    private transient Ignite ignite;
+
+    private final String cacheName;
+    private final long[] cellIds;
+    private final CellProcessor<Stream<X>> cellProcessor;
+    private final CellIterator cellIterator;
+    private final IgniteRunnable onClose;
+    private final long deadline;
+
+    ChunkJob(String cacheName, long[] cellIds, CellProcessor<Stream<X>> cellProcessor,
+        CellIterator cellIterator, IgniteRunnable onClose, long deadline) {
+      this.cacheName = cacheName;
+      this.cellIds = cellIds;
+      this.cellProcessor = cellProcessor;
+      this.cellIterator = cellIterator;
+      this.onClose = onClose;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public List<X> call() {
+      IgniteCache<Long, Object> cache = ignite.cache(cacheName).withKeepBinary();
+      try {
+        return LongStream.of(cellIds)
+            .parallel()
+            .mapToObj(cellId -> {
+              if (System.currentTimeMillis() > deadline) {
+                throw new OSHDBTimeoutException();
+              }
+              return IgniteCells.decode(cache.localPeek(cellId));
+            })
+            // filter out cache misses === empty oshdb cells
+            .filter(Objects::nonNull)
+            .flatMap(cell ->
+                cellProcessor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator))
+            .toList();
+      } finally {
+        onClose.run();
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import java.io.IOException;
+import org.apache.ignite.binary.BinaryObject;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBException;
+
+/**
+ * Reads grid cells from the values of Ignite caches.
+ *
+ * <p>Cells can be stored either as {@link GridOSHEntityCodec encoded} byte arrays or as
+ * {@link GridOSHEntity} objects. The backends read the caches with
+ * {@link org.apache.ignite.IgniteCache#withKeepBinary() keepBinary} enabled, so that encoded
+ * cells are returned as plain byte arrays and decoded directly, without building the object graph
+ * of Ignite's binary marshaller.</p>
+ */
+final class IgniteCells {
+  private IgniteCells() {
+    throw new IllegalStateException("utility class");
+  }
+
+  /**
+   * Returns the grid cell stored in a cache value.
+   *
+   * @param value an encoded cell, a binary object of a cell, a cell object or null
+   * @return the grid cell, or null if the value is null
+   * @throws OSHDBException if the value is not a valid cell
+   */
+  static GridOSHEntity decode(Object value) {
+    if (value == null) {
+      return null;
+    } else if (value instanceof byte[] bytes) {
+      try {
+        return GridOSHEntityCodec.decode(bytes);
+      } catch (IOException e) {
+        throw new OSHDBException(e);
+      }
+    } else if (value instanceof BinaryObject binaryObject) {
+      return binaryObject.deserialize();
+    } else {
+      return (GridOSHEntity) value;
+    }
+  }
+}
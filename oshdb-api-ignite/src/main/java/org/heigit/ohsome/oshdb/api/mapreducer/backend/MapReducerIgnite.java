@@ -0,0 +1,82 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
+import org.heigit.ohsome.oshdb.util.function.SerializableBinaryOperator;
+import org.heigit.ohsome.oshdb.util.function.SerializableFunction;
+import org.heigit.ohsome.oshdb.util.function.SerializableSupplier;
+import org.heigit.ohsome.oshdb.util.mappable.OSHDBMapReducible;
+import org.heigit.ohsome.oshdb.util.mappable.OSMContribution;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+
+/**
+ * Common base of the Ignite backends, which allows the {@link MapReducerIgniteAdaptive adaptive}
+ * backend to run (parts of) a query on the backend of the compute mode it has chosen.
+ */
+abstract class MapReducerIgnite<X> extends MapReducer<X> {
+  MapReducerIgnite(OSHDBDatabase oshdb, Class<? extends OSHDBMapReducible> forClass) {
+    super(oshdb, forClass);
+  }
+
+  // copy constructor
+  MapReducerIgnite(MapReducer<?> obj) {
+    super(obj);
+  }
+
+  // runs the query of another mapReducer, restricted to the given OSM types
+  MapReducerIgnite(MapReducer<?> obj, EnumSet<OSMType> osmTypes, Long timeout) {
+    super(obj);
+    this.typeFilter = EnumSet.copyOf(osmTypes);
+    this.timeout = timeout;
+  }
+
+  @Override
+  protected abstract Stream<X> mapStreamCellsOSMContribution(
+      SerializableFunction<OSMContribution, Optional<X>> mapper) throws Exception;
+
+  @Override
+  protected abstract Stream<X> flatMapStreamCellsOSMContributionGroupedById(
+      SerializableFunction<List<OSMContribution>, Iterable<X>> mapper) throws Exception;
+
+  @Override
+  protected abstract Stream<X> mapStreamCellsOSMEntitySnapshot(
+      SerializableFunction<OSMEntitySnapshot, Optional<X>> mapper) throws Exception;
+
+  @Override
+  protected abstract Stream<X> flatMapStreamCellsOSMEntitySnapshotGroupedById(
+      SerializableFunction<List<OSMEntitySnapshot>, Iterable<X>> mapper) throws Exception;
+
+  @Override
+  protected abstract <R, S> S mapReduceCellsOSMContribution(
+      SerializableFunction<OSMContribution, Optional<R>> mapper,
+      SerializableSupplier<S> identitySupplier,
+      SerializableBiFunction<S, R, S> accumulator,
+      SerializableBinaryOperator<S> combiner) throws Exception;
+
+  @Override
+  protected abstract <R, S> S flatMapReduceCellsOSMContributionGroupedById(
+      SerializableFunction<List<OSMContribution>, Iterable<R>> mapper,
+      SerializableSupplier<S> identitySupplier,
+      SerializableBiFunction<S, R, S> accumulator,
+      SerializableBinaryOperator<S> combiner) throws Exception;
+
+  @Override
+  protected abstract <R, S> S mapReduceCellsOSMEntitySnapshot(
+      SerializableFunction<OSMEntitySnapshot, Optional<R>> mapper,
+      SerializableSupplier<S> identitySupplier,
+      SerializableBiFunction<S, R, S> accumulator,
+      SerializableBinaryOperator<S> combiner) throws Exception;
+
+  @Override
+  protected abstract <R, S> S flatMapReduceCellsOSMEntitySnapshotGroupedById(
+      SerializableFunction<List<OSMEntitySnapshot>, Iterable<R>> mapper,
+      SerializableSupplier<S> identitySupplier,
+      SerializableBiFunction<S, R, S> accumulator,
+      SerializableBinaryOperator<S> combiner) throws Exception;
+}
@@ -0,0 +1,235 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.cache.CachePeekMode;
+import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.db.OSHDBIgnite;
+import org.heigit.ohsome.oshdb.api.db.OSHDBIgnite.ComputeMode;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
+import org.heigit.ohsome.oshdb.index.XYGridTree.CellIdRange;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.util.TableNames;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTimeoutException;
+import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
+import org.heigit.ohsome.oshdb.util.function.SerializableBinaryOperator;
+import org.heigit.ohsome.oshdb.util.function.SerializableFunction;
+import org.heigit.ohsome.oshdb.util.function.SerializableSupplier;
+import org.heigit.ohsome.oshdb.util.mappable.OSHDBMapReducible;
+import org.heigit.ohsome.oshdb.util.mappable.OSMContribution;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@inheritDoc}
+ *
+ * <p>
+ * The "Adaptive" implementation chooses one of the other Ignite implementations for each query
+ * and OSM type, depending on the number of requested cells and the number of cells stored in the
+ * cache of the OSM type (see {@link ComputeModePlanner}). The decisions are logged and passed to
+ * the {@link OSHDBIgnite#onComputeModeDecision(java.util.function.Consumer) decision sink} of the
+ * database, if one is set. The chosen backends run one after the other and share the timeout of
+ * the query.
+ * </p>
+ */
+public class MapReducerIgniteAdaptive<X> extends MapReducerIgnite<X> {
+  private static final Logger LOG = LoggerFactory.getLogger(MapReducerIgniteAdaptive.class);
+  private static final Set<ComputeMode> ALL_COMPUTE_MODES =
+      EnumSet.of(ComputeMode.LOCAL_PEEK, ComputeMode.SCAN_QUERY, ComputeMode.AFFINITY_CALL);
+
+  public MapReducerIgniteAdaptive(OSHDBDatabase oshdb,
+      Class<? extends OSHDBMapReducible> forClass) {
+    super(oshdb, forClass);
+  }
+
+  // copy constructor
+  private MapReducerIgniteAdaptive(MapReducerIgniteAdaptive obj) {
+    super(obj);
+  }
+
+  @NotNull
+  @Override
+  protected MapReducer<X> copy() {
+    return new MapReducerIgniteAdaptive<>(this);
+  }
+
+  @Override
+  public boolean isCancelable() {
+    return true;
+  }
+
+  /**
+   * Chooses the compute mode for each of the requested OSM types.
+   *
+   * @param candidates the compute modes which can run the query
+   * @return the OSM types to be processed by each chosen compute mode
+   */
+  private Map<ComputeMode, EnumSet<OSMType>> plan(Set<ComputeMode> candidates) {
+    OSHDBIgnite oshdb = (OSHDBIgnite) this.oshdb;
+    Ignite ignite = oshdb.getIgnite();
+    long requestedCells = 0;
+    for (CellIdRange cellIdRange : this.getCellIdRanges()) {
+      requestedCells += cellIdRange.getEnd().getId() - cellIdRange.getStart().getId() + 1;
+    }
+    int serverNodes = ignite.cluster().forServers().nodes().size();
+
+    Map<ComputeMode, EnumSet<OSMType>> plan = new EnumMap<>(ComputeMode.class);
+    for (OSMType osmType : typeFilter) {
+      assert TableNames.forOSMType(osmType).isPresent();
+      String cacheName = TableNames.forOSMType(osmType).get().toString(oshdb.prefix());
+      var decision = ComputeModePlanner.plan(osmType, requestedCells,
+          ignite.cache(cacheName).sizeLong(CachePeekMode.PRIMARY),
+          ignite.affinity(cacheName).partitions(), serverNodes, candidates);
+      LOG.debug("compute mode decision: {}", decision);
+      oshdb.onComputeModeDecision().ifPresent(sink -> sink.accept(decision));
+      plan.computeIfAbsent(decision.computeMode(), ignored -> EnumSet.noneOf(OSMType.class))
+          .add(osmType);
+    }
+    return plan;
+  }
+
+  /**
+   * Returns the backend running this query for the given OSM types with the given compute mode.
+   */
+  private MapReducerIgnite<X> backend(ComputeMode computeMode, EnumSet<OSMType> osmTypes,
+      Long timeout) {
+    return switch (computeMode) {
+      case LOCAL_PEEK -> new MapReducerIgniteLocalPeek<>(this, osmTypes, timeout);
+      case SCAN_QUERY -> new MapReducerIgniteScanQuery<>(this, osmTypes, timeout);
+      case AFFINITY_CALL -> new MapReducerIgniteAffinityCall<>(this, osmTypes, timeout);
+      default -> throw new IllegalStateException("Unexpected compute mode: " + computeMode);
+    };
+  }
+
+  /**
+   * Returns the part of the query timeout which is left for the next backend, given that the
+   * query started at the given time.
+   *
+   * @throws OSHDBTimeoutException if the timeout is used up
+   */
+  private Long remainingTimeout(long executionStartTimeMillis) {
+    if (this.timeout == null) {
+      return null;
+    }
+    long remaining = this.timeout - (System.currentTimeMillis() - executionStartTimeMillis);
+    if (remaining <= 0) {
+      throw new OSHDBTimeoutException();
+    }
+    return remaining;
+  }
+
+  @FunctionalInterface
+  private interface Operation<X, T> {
+    T apply(MapReducerIgnite<X> backend) throws Exception;
+  }
+
+  private <S> S reduce(SerializableSupplier<S> identitySupplier,
+      SerializableBinaryOperator<S> combiner, Operation<X, S> operation) throws Exception {
+    // the backends run one after the other and share the timeout of the query
+    final long executionStartTimeMillis = System.currentTimeMillis();
+    S result = identitySupplier.get();
+    for (var entry : this.plan(ALL_COMPUTE_MODES).entrySet()) {
+      var backend = this.backend(entry.getKey(), entry.getValue(),
+          this.remainingTimeout(executionStartTimeMillis));
+      result = combiner.apply(result, operation.apply(backend));
+    }
+    return result;
+  }
+
+  private Stream<X> stream(Operation<X, Stream<X>> operation) throws Exception {
+    final long executionStartTimeMillis = System.currentTimeMillis();
+    // scan queries don't support timeouts when streaming
+    Set<ComputeMode> candidates = this.timeout == null
+        ? ALL_COMPUTE_MODES
+        : EnumSet.of(ComputeMode.LOCAL_PEEK, ComputeMode.AFFINITY_CALL);
+    Stream<X> result = Stream.empty();
+    for (var entry : this.plan(candidates).entrySet()) {
+      var backend = this.backend(entry.getKey(), entry.getValue(),
+          this.remainingTimeout(executionStartTimeMillis));
+      result = Stream.concat(result, operation.apply(backend));
+    }
+    return result;
+  }
+
+  // === map-reduce operations ===
+
+  @Override
+  protected <R, S> S mapReduceCellsOSMContribution(
+      SerializableFunction<OSMContribution, Optional<R>> mapper,
+      SerializableSupplier<S> identitySupplier,
+      SerializableBiFunction<S, R, S> accumulator,
+      SerializableBinaryOperator<S> combiner
+  ) throws Exception {
+    return reduce(identitySupplier, combiner, backend -> backend.mapReduceCellsOSMContribution(
+        mapper, identitySupplier, accumulator, combiner));
+  }
+
+  @Override
+  protected <R, S> S flatMapReduceCellsOSMContributionGroupedById(
+      SerializableFunction<List<OSMContribution>, Iterable<R>> mapper,
+      SerializableSupplier<S> identitySupplier,
+      SerializableBiFunction<S, R, S> accumulator,
+      SerializableBinaryOperator<S> combiner
+  ) throws Exception {
+    return reduce(identitySupplier, combiner,
+        backend -> backend.flatMapReduceCellsOSMContributionGroupedById(
+            mapper, identitySupplier, accumulator, combiner));
+  }
+
+  @Override
+  protected <R, S> S mapReduceCellsOSMEntitySnapshot(
+      SerializableFunction<OSMEntitySnapshot, Optional<R>> mapper,
+      SerializableSupplier<S> identitySupplier,
+      SerializableBiFunction<S, R, S> accumulator,
+      SerializableBinaryOperator<S> combiner
+  ) throws Exception {
+    return reduce(identitySupplier, combiner, backend -> backend.mapReduceCellsOSMEntitySnapshot(
+        mapper, identitySupplier, accumulator, combiner));
+  }
+
+  @Override
+  protected <R, S> S flatMapReduceCellsOSMEntitySnapshotGroupedById(
+      SerializableFunction<List<OSMEntitySnapshot>, Iterable<R>> mapper,
+      SerializableSupplier<S> identitySupplier,
+      SerializableBiFunction<S, R, S> accumulator,
+      SerializableBinaryOperator<S> combiner
+  ) throws Exception {
+    return reduce(identitySupplier, combiner,
+        backend -> backend.flatMapReduceCellsOSMEntitySnapshotGroupedById(
+            mapper, identitySupplier, accumulator, combiner));
+  }
+
+  // === stream operations ===
+
+  @Override
+  protected Stream<X> mapStreamCellsOSMContribution(
+      SerializableFunction<OSMContribution, Optional<X>> mapper) throws Exception {
+    return stream(backend -> backend.mapStreamCellsOSMContribution(mapper));
+  }
+
+  @Override
+  protected Stream<X> flatMapStreamCellsOSMContributionGroupedById(
+      SerializableFunction<List<OSMContribution>, Iterable<X>> mapper) throws Exception {
+    return stream(backend -> backend.flatMapStreamCellsOSMContributionGroupedById(mapper));
+  }
+
+  @Override
+  protected Stream<X> mapStreamCellsOSMEntitySnapshot(
+      SerializableFunction<OSMEntitySnapshot, Optional<X>> mapper) throws Exception {
+    return stream(backend -> backend.mapStreamCellsOSMEntitySnapshot(mapper));
+  }
+
+  @Override
+  protected Stream<X> flatMapStreamCellsOSMEntitySnapshotGroupedById(
+      SerializableFunction<List<OSMEntitySnapshot>, Iterable<X>> mapper) throws Exception {
+    return stream(backend -> backend.flatMapStreamCellsOSMEntitySnapshotGroupedById(mapper));
+  }
+}
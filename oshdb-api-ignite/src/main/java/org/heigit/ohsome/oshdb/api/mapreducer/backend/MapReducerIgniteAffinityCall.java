@@ -1,30 +1,20 @@
 package org.heigit.ohsome.oshdb.api.mapreducer.backend;
 
-import com.google.common.collect.Streams;
-import com.google.common.primitives.Ints;
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.TreeMap;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Queue;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
-import javax.annotation.Nonnull;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.IgniteCompute;
 import org.apache.ignite.IgniteException;
-import org.apache.ignite.binary.BinaryObject;
-import org.apache.ignite.cache.query.QueryCursor;
-import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.cache.affinity.Affinity;
 import org.apache.ignite.lang.IgniteCallable;
 import org.apache.ignite.lang.IgniteFuture;
 import org.apache.ignite.lang.IgniteFutureTimeoutException;
@@ -35,10 +25,8 @@ import org.heigit.ohsome.oshdb.api.db.OSHDBIgnite;
 import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
 import org.heigit.ohsome.oshdb.api.mapreducer.backend.Kernels.CancelableProcessStatus;
 import org.heigit.ohsome.oshdb.api.mapreducer.backend.Kernels.CellProcessor;
-import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
 import org.heigit.ohsome.oshdb.index.XYGridTree.CellIdRange;
 import org.heigit.ohsome.oshdb.osm.OSMType;
-import org.heigit.ohsome.oshdb.util.CellId;
 import org.heigit.ohsome.oshdb.util.TableNames;
 import org.heigit.ohsome.oshdb.util.celliterator.CellIterator;
 import org.heigit.ohsome.oshdb.util.celliterator.OSHEntitySource;
@@ -58,8 +46,9 @@ import org.json.simple.parser.ParseException;
  *
  * <p>
  * The "AffinityCall" implementation is a very simple, but less efficient implementation of the
- * oshdb mapreducer: It's just sending separate affinityCalls() to the cluster for each data cell
- * and reduces all results locally on the client.
+ * oshdb mapreducer: It's sending separate affinityCalls() to the cluster for each partition of
+ * the requested data cells (split into batches of at most {@link #CELLS_PER_JOB} cells) and
+ * reduces all partial results locally on the client.
  * </p>
  *
  * <p>
@@ -69,8 +58,10 @@ import org.json.simple.parser.ParseException;
  * the (~linear) inefficiency with this implementation.
  * </p>
  */
-public class MapReducerIgniteAffinityCall<X> extends MapReducer<X>
+public class MapReducerIgniteAffinityCall<X> extends MapReducerIgnite<X>
     implements CancelableProcessStatus {
+  /** The maximum number of cells reduced by a single job. */
+  static final int CELLS_PER_JOB = 1024;
 
   /**
    * Stores the start time of reduce/stream operation as returned by
@@ -88,6 +79,11 @@ public class MapReducerIgniteAffinityCall<X> extends MapReducer<X>
     super(obj);
   }
 
+  // runs the query of another mapReducer, restricted to the given OSM types
+  MapReducerIgniteAffinityCall(MapReducer<?> obj, EnumSet<OSMType> osmTypes, Long timeout) {
+    super(obj, osmTypes, timeout);
+  }
+
   @NotNull
   @Override
   protected MapReducer<X> copy() {
@@ -107,16 +103,6 @@ public class MapReducerIgniteAffinityCall<X> extends MapReducer<X>
     return true;
   }
 
-  @Nonnull
-  private static SerializableFunction<CellIdRange, LongStream> cellIdRangeToCellIds() {
-    return cellIdRange -> {
-      int level = cellIdRange.getStart().getZoomLevel();
-      long from = CellId.getLevelId(level, cellIdRange.getStart().getId());
-      long to = CellId.getLevelId(level, cellIdRange.getEnd().getId());
-      return LongStream.rangeClosed(from, to);
-    };
-  }
-
   /**
    * Converts remote OSHDB and native ignite future timeouts.
    *
@@ -127,7 +113,7 @@ public class MapReducerIgniteAffinityCall<X> extends MapReducer<X>
    * @throws OSHDBTimeoutException if the request took to long or a OSHDBTimeoutException was
    *         thrown remotely
    */
-  private static <T> T asyncGetHandleTimeouts(IgniteFuture<T> async, Long timeout)
+  static <T> T asyncGetHandleTimeouts(IgniteFuture<T> async, Long timeout)
       throws OSHDBTimeoutException {
     try {
       if (timeout == null) {
@@ -174,7 +160,7 @@ public class MapReducerIgniteAffinityCall<X> extends MapReducer<X>
         this.tstamps.get(),
         this.bboxFilter, this.getPolyFilter(),
         this.getTagInterpreter(), this.getPreFilter(), this.getFilter(), false
-    );
+    ).withCellFilter(this.getCellFilter());
 
     final Iterable<CellIdRange> cellIdRanges = this.getCellIdRanges();
 
@@ -183,33 +169,88 @@ public class MapReducerIgniteAffinityCall<X> extends MapReducer<X>
     IgniteCompute compute = ignite.compute();
     IgniteRunnable onClose = oshdb.onClose().orElse(() -> { });
 
-    return this.typeFilter.stream().map((SerializableFunction<OSMType, S>) osmType -> {
+    S result = identitySupplier.get();
+    for (OSMType osmType : typeFilter) {
       assert TableNames.forOSMType(osmType).isPresent();
       String cacheName = TableNames.forOSMType(osmType).get().toString(this.oshdb.prefix());
-      IgniteCache<Long, GridOSHEntity> cache = ignite.cache(cacheName);
-
-      return Streams.stream(cellIdRanges)
-          .flatMapToLong(cellIdRangeToCellIds())
-          .parallel()
-          .filter(ignored -> this.isActive())
-          .mapToObj(cellLongId -> asyncGetHandleTimeouts(
-              compute.affinityCallAsync(cacheName, cellLongId, () -> {
-                @SuppressWarnings("SerializableStoresNonSerializable")
-                GridOSHEntity cell = cache.localPeek(cellLongId);
-                S ret;
-                if (cell == null) {
-                  ret = identitySupplier.get();
-
-                } else {
-                  ret = cellProcessor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator);
-                }
-                onClose.run();
-                return ret;
-              }),
-              this.timeout
-          ))
-          .reduce(identitySupplier.get(), combiner);
-    }).reduce(identitySupplier.get(), combiner);
+      Affinity<Long> affinity = ignite.affinity(cacheName);
+      var batches = new PartitionedCellIds(affinity, cellIdRanges, CELLS_PER_JOB);
+
+      // send one job per batch of requested cells of a partition, with at most as many jobs
+      // in flight as there are partitions
+      Queue<IgniteFuture<S>> futures = new ArrayDeque<>();
+      try {
+        while (batches.hasNext() && this.isActive()) {
+          PartitionedCellIds.Batch batch = batches.next();
+          futures.add(compute.affinityCallAsync(List.of(cacheName), batch.partition(),
+              new PartitionReduceJob<>(cacheName, batch.cellIds(), cellProcessor,
+                  cellIterator, identitySupplier, combiner, onClose, this)));
+          if (futures.size() >= affinity.partitions()) {
+            result = combiner.apply(result, asyncGetHandleTimeouts(futures.remove(), this.timeout));
+          }
+        }
+        while (!futures.isEmpty()) {
+          result = combiner.apply(result, asyncGetHandleTimeouts(futures.remove(), this.timeout));
+        }
+      } finally {
+        // stops the remaining jobs if a job failed or timed out
+        futures.forEach(future -> {
+          if (!future.isDone()) {
+            future.cancel();
+          }
+        });
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reduces all requested cells of a single partition on the node storing this partition.
+   */
+  static class PartitionReduceJob<S> implements IgniteCallable<S> {
+    @IgniteInstanceResource
+    private transient Ignite ignite;
+
+    private final String cacheName;
+    private final long[] cellIds;
+    private final CellProcessor<S> cellProcessor;
+    private final CellIterator cellIterator;
+    private final SerializableSupplier<S> identitySupplier;
+    private final SerializableBinaryOperator<S> combiner;
+    private final IgniteRunnable onClose;
+    private final CancelableProcessStatus process;
+
+    PartitionReduceJob(String cacheName, long[] cellIds, CellProcessor<S> cellProcessor,
+        CellIterator cellIterator, SerializableSupplier<S> identitySupplier,
+        SerializableBinaryOperator<S> combiner, IgniteRunnable onClose,
+        CancelableProcessStatus process) {
+      this.cacheName = cacheName;
+      this.cellIds = cellIds;
+      this.cellProcessor = cellProcessor;
+      this.cellIterator = cellIterator;
+      this.identitySupplier = identitySupplier;
+      this.combiner = combiner;
+      this.onClose = onClose;
+      this.process = process;
+    }
+
+    @Override
+    public S call() {
+      IgniteCache<Long, Object> cache = ignite.cache(cacheName).withKeepBinary();
+      try {
+        return LongStream.of(cellIds)
+            .parallel()
+            .filter(ignored -> process.isActive())
+            .mapToObj(cellId -> IgniteCells.decode(cache.localPeek(cellId)))
+            // filter out cache misses === empty oshdb cells
+            .filter(Objects::nonNull)
+            .map(cell ->
+                cellProcessor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator))
+            .reduce(identitySupplier.get(), combiner);
+      } finally {
+        onClose.run();
+      }
+    }
   }
 
   /**
@@ -226,65 +267,20 @@ public class MapReducerIgniteAffinityCall<X> extends MapReducer<X>
         this.tstamps.get(),
         this.bboxFilter, this.getPolyFilter(),
         this.getTagInterpreter(), this.getPreFilter(), this.getFilter(), false
-    );
+    ).withCellFilter(this.getCellFilter());
 
     final Iterable<CellIdRange> cellIdRanges = this.getCellIdRanges();
 
     OSHDBIgnite oshdb = (OSHDBIgnite) this.oshdb;
     Ignite ignite = oshdb.getIgnite();
-    IgniteCompute compute = ignite.compute();
     IgniteRunnable onClose = oshdb.onClose().orElse(() -> { });
 
     Stream<X> result = Stream.empty();
     for (OSMType osmType : typeFilter) {
       assert TableNames.forOSMType(osmType).isPresent();
       String cacheName = TableNames.forOSMType(osmType).orElseThrow().toString(this.oshdb.prefix());
-      IgniteCache<Long, GridOSHEntity> cache = ignite.cache(cacheName);
-
-      GetMatchingKeysPreflight preflight;
-      int maxNumCells = 0;
-      for (CellIdRange cellIdRange : cellIdRanges) {
-        maxNumCells += cellIdRange.getEnd().getId() - cellIdRange.getStart().getId();
-      }
-      // if number of "maximum to be requested cells" is larger than the total avaiable cells
-      // -> use scanquery based preflight, otherwise use localpeek implementation.
-      // this works as long as the assumption that calling "localPeek" is about the same effort
-      // than checking wether a cell is in the requested area.
-      // todo: benchmark if this assumption is really the case
-      if (maxNumCells > cache.size()) {
-        preflight = new GetMatchingKeysPreflightScanQuery(
-            cacheName, cellIdRangeToCellIds(), cellIdRanges, cellProcessor, cellIterator
-        );
-      } else {
-        preflight = new GetMatchingKeysPreflightLocalPeek(
-            cacheName, cellIdRangeToCellIds(), cellIdRanges, cellProcessor, cellIterator
-        );
-      }
-      var cellsWithData = asyncGetHandleTimeouts(
-          compute.broadcastAsync(preflight),
-          this.timeout
-      ).stream()
-          .flatMap(Collection::stream)
-          .collect(Collectors.toCollection(ArrayList::new));
-      Collections.shuffle(cellsWithData);
-      Stream<X> resultForType = cellsWithData.parallelStream()
-          .filter(ignored -> this.isActive())
-          .map(cellLongId -> asyncGetHandleTimeouts(
-              compute.affinityCallAsync(cacheName, cellLongId, () -> {
-                GridOSHEntity cell = cache.localPeek(cellLongId);
-                Collection<X> ret;
-                if (cell == null) {
-                  ret = Collections.<X>emptyList();
-                } else {
-                  ret = cellProcessor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator)
-                      .toList();
-                }
-                onClose.run();
-                return ret;
-              }),
-              this.timeout
-          ))
-          .flatMap(Collection::stream);
+      Stream<X> resultForType = IgniteCellStream.stream(ignite, cacheName, cellIdRanges,
+          cellProcessor, cellIterator, onClose, this.executionStartTimeMillis, this.timeout);
       result = Stream.concat(result, resultForType);
     }
     return result;
@@ -394,127 +390,4 @@ public class MapReducerIgniteAffinityCall<X> extends MapReducer<X>
       SerializableFunction<List<OSMEntitySnapshot>, Iterable<X>> mapper) throws Exception {
     return stream(Kernels.getOSMEntitySnapshotGroupingCellStreamer(mapper, this));
   }
-
-  abstract static class GetMatchingKeysPreflight implements IgniteCallable<Collection<Long>> {
-
-    @IgniteInstanceResource
-    Ignite ignite;
-
-    final String cacheName;
-    final Function<CellIdRange, LongStream> cellIdRangeToCellIds;
-    final Iterable<CellIdRange> cellIdRanges;
-    final CellProcessor<? extends Stream<?>> cellProcessor;
-    final CellIterator cellIterator;
-
-    private GetMatchingKeysPreflight() {
-      throw new IllegalStateException("utility class");
-    }
-
-    GetMatchingKeysPreflight(
-        String cacheName,
-        Function<CellIdRange, LongStream> cellIdRangeToCellIds,
-        Iterable<CellIdRange> cellIdRanges,
-        CellProcessor<? extends Stream<?>> cellProcessor,
-        CellIterator cellIterator
-    ) {
-      this.cacheName = cacheName;
-      this.cellIdRangeToCellIds = cellIdRangeToCellIds;
-      this.cellIdRanges = cellIdRanges;
-      this.cellProcessor = cellProcessor;
-      this.cellIterator = cellIterator;
-    }
-  }
-
-  static class GetMatchingKeysPreflightLocalPeek extends GetMatchingKeysPreflight {
-    GetMatchingKeysPreflightLocalPeek(
-        String cacheName,
-        Function<CellIdRange, LongStream> cellIdRangeToCellIds,
-        Iterable<CellIdRange> cellIdRanges,
-        CellProcessor<? extends Stream<?>> cellProcessor,
-        CellIterator cellIterator
-    ) {
-      super(cacheName, cellIdRangeToCellIds, cellIdRanges, cellProcessor, cellIterator);
-    }
-
-    @Override
-    public Collection<Long> call() {
-      IgniteCache<Long, GridOSHEntity> localCache = ignite.cache(cacheName);
-      return Streams.stream(cellIdRanges)
-          .flatMapToLong(cellIdRangeToCellIds)
-          .parallel()
-          .filter(cellLongId -> {
-            // test if cell exists and contains any relevant data
-            GridOSHEntity cell = localCache.localPeek(cellLongId);
-            return cell != null
-                && cellProcessor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator)
-                    .anyMatch(ignored -> true);
-          })
-          .boxed()
-          .toList();
-    }
-  }
-
-  static class GetMatchingKeysPreflightScanQuery extends GetMatchingKeysPreflight {
-    private final Map<Integer, TreeMap<Long, CellIdRange>> cellIdRangesByLevel;
-
-    GetMatchingKeysPreflightScanQuery(
-        String cacheName,
-        Function<CellIdRange, LongStream> cellIdRangeToCellIds,
-        Iterable<CellIdRange> cellIdRanges,
-        CellProcessor<? extends Stream<?>> cellProcessor,
-        CellIterator cellIterator
-    ) {
-      super(cacheName, cellIdRangeToCellIds, cellIdRanges, cellProcessor, cellIterator);
-
-      this.cellIdRangesByLevel = new HashMap<>();
-      for (CellIdRange cellIdRange : cellIdRanges) {
-        int level = cellIdRange.getStart().getZoomLevel();
-        this.cellIdRangesByLevel
-            .computeIfAbsent(level, ignored -> new TreeMap<>())
-            .put(cellIdRange.getStart().getId(), cellIdRange);
-      }
-    }
-
-    @Override
-    public Collection<Long> call() {
-      IgniteCache<Long, BinaryObject> localCache = ignite.cache(cacheName).withKeepBinary();
-      // Getting a list of the partitions owned by this node.
-      List<Integer> myPartitions = Ints.asList(
-          ignite.affinity(cacheName).primaryPartitions(ignite.cluster().localNode())
-      );
-      Collections.shuffle(myPartitions);
-
-      return myPartitions.parallelStream()
-          .map(part -> {
-            try (QueryCursor<Optional<Long>> cursor = localCache.query(
-                new ScanQuery<Long, Object>((key, cell) ->
-                    MapReducerIgniteScanQuery.cellKeyInRange(key, cellIdRangesByLevel)
-                ).setPartition(part), cacheEntry -> {
-                  Object data = cacheEntry.getValue();
-                  GridOSHEntity cell;
-                  if (data instanceof BinaryObject binaryData) {
-                    cell = binaryData.deserialize();
-                  } else {
-                    cell = (GridOSHEntity) data;
-                  }
-                  Stream<?> cellStream = cellProcessor.apply(
-                      OSHEntitySource.fromGridOSHEntity(cell), this.cellIterator);
-                  if (cellStream.anyMatch(ignored -> true)) {
-                    return Optional.of(cacheEntry.getKey());
-                  } else {
-                    return Optional.empty();
-                  }
-                }
-            )) {
-              List<Long> acc = new LinkedList<>();
-              for (Optional<Long> entry : cursor) {
-                entry.ifPresent(acc::add);
-              }
-              return acc;
-            }
-          })
-          .flatMap(Collection::stream)
-          .toList();
-    }
-  }
 }
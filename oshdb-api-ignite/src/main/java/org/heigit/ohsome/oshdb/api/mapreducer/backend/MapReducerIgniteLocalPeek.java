@@ -1,25 +1,25 @@
 package org.heigit.ohsome.oshdb.api.mapreducer.backend;
 
-import com.google.common.collect.Streams;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 import java.util.SortedSet;
 import java.util.concurrent.ForkJoinPool;
-import java.util.stream.Collectors;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.IgniteCompute;
+import org.apache.ignite.cache.CachePeekMode;
+import org.apache.ignite.cache.affinity.Affinity;
 import org.apache.ignite.compute.ComputeTaskFuture;
 import org.apache.ignite.compute.ComputeTaskTimeoutException;
 import org.apache.ignite.lang.IgniteFutureTimeoutException;
+import org.apache.ignite.lang.IgniteRunnable;
 import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
 import org.heigit.ohsome.oshdb.OSHDBTimestamp;
 import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
@@ -27,14 +27,14 @@ import org.heigit.ohsome.oshdb.api.db.OSHDBIgnite;
 import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
 import org.heigit.ohsome.oshdb.api.mapreducer.backend.Kernels.CellProcessor;
 import org.heigit.ohsome.oshdb.api.mapreducer.backend.OSHDBIgniteMapReduceComputeTask.CancelableIgniteMapReduceJob;
-import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
 import org.heigit.ohsome.oshdb.index.XYGridTree.CellIdRange;
+import org.heigit.ohsome.oshdb.osm.OSMType;
 import org.heigit.ohsome.oshdb.util.CellId;
 import org.heigit.ohsome.oshdb.util.TableNames;
 import org.heigit.ohsome.oshdb.util.celliterator.CellIterator;
 import org.heigit.ohsome.oshdb.util.celliterator.OSHEntitySource;
-import org.heigit.ohsome.oshdb.util.exceptions.OSHDBNotImplementedException;
 import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTimeoutException;
+import org.heigit.ohsome.oshdb.util.function.CellSummaryFilter;
 import org.heigit.ohsome.oshdb.util.function.OSHEntityFilter;
 import org.heigit.ohsome.oshdb.util.function.OSMEntityFilter;
 import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
@@ -60,7 +60,7 @@ import org.slf4j.LoggerFactory;
  * situations when running oshdb- analyses on ignite.
  * </p>
  */
-public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
+public class MapReducerIgniteLocalPeek<X> extends MapReducerIgnite<X> {
   public MapReducerIgniteLocalPeek(OSHDBDatabase oshdb,
       Class<? extends OSHDBMapReducible> forClass) {
     super(oshdb, forClass);
@@ -71,6 +71,11 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
     super(obj);
   }
 
+  // runs the query of another mapReducer, restricted to the given OSM types
+  MapReducerIgniteLocalPeek(MapReducer<?> obj, EnumSet<OSMType> osmTypes, Long timeout) {
+    super(obj, osmTypes, timeout);
+  }
+
   @NotNull
   @Override
   protected MapReducer<X> copy() {
@@ -81,28 +86,55 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
   protected Stream<X> mapStreamCellsOSMContribution(
       SerializableFunction<OSMContribution, Optional<X>> mapper
   ) throws Exception {
-    throw new OSHDBNotImplementedException("Stream function not yet implemented");
+    return stream(Kernels.getOSMContributionCellStreamer(mapper));
   }
 
   @Override
   protected Stream<X> flatMapStreamCellsOSMContributionGroupedById(
       SerializableFunction<List<OSMContribution>, Iterable<X>> mapper
   ) throws Exception {
-    throw new OSHDBNotImplementedException("Stream function not yet implemented");
+    return stream(Kernels.getOSMContributionGroupingCellStreamer(mapper));
   }
 
   @Override
   protected Stream<X> mapStreamCellsOSMEntitySnapshot(
       SerializableFunction<OSMEntitySnapshot, Optional<X>> mapper
   ) throws Exception {
-    throw new OSHDBNotImplementedException("Stream function not yet implemented");
+    return stream(Kernels.getOSMEntitySnapshotCellStreamer(mapper));
   }
 
   @Override
   protected Stream<X> flatMapStreamCellsOSMEntitySnapshotGroupedById(
       SerializableFunction<List<OSMEntitySnapshot>, Iterable<X>> mapper
   ) throws Exception {
-    throw new OSHDBNotImplementedException("Stream function not yet implemented");
+    return stream(Kernels.getOSMEntitySnapshotGroupingCellStreamer(mapper));
+  }
+
+  /**
+   * Streams the results of the requested cells in chunks, which are computed on the nodes storing
+   * them (see {@link IgniteCellStream}).
+   *
+   * @throws OSHDBTimeoutException (when consuming the stream) if a timeout was set and the
+   *         computations took too long.
+   */
+  private Stream<X> stream(CellProcessor<Stream<X>> cellProcessor) throws Exception {
+    long executionStartTimeMillis = System.currentTimeMillis();
+    OSHDBIgnite oshdb = (OSHDBIgnite) this.oshdb;
+    CellIterator cellIterator = new CellIterator(
+        this.tstamps.get(),
+        this.bboxFilter, this.getPolyFilter(),
+        this.getTagInterpreter(), this.getPreFilter(), this.getFilter(), false
+    ).withCellFilter(this.getCellFilter());
+    Iterable<CellIdRange> cellIdRanges = this.getCellIdRanges();
+    IgniteRunnable onClose = oshdb.onClose().orElse(() -> { });
+
+    Stream<X> result = Stream.empty();
+    for (String cacheName : this.cacheNames(oshdb.prefix())) {
+      result = Stream.concat(result, IgniteCellStream.stream(oshdb.getIgnite(), cacheName,
+          cellIdRanges, cellProcessor, cellIterator, onClose, executionStartTimeMillis,
+          this.timeout));
+    }
+    return result;
   }
 
   private List<String> cacheNames(String prefix) {
@@ -120,11 +152,13 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
       SerializableFunction<OSMContribution, Optional<R>> mapper,
       SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
       SerializableBinaryOperator<S> combiner) throws Exception {
-    return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, identitySupplier, combiner,
+    return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, this.timeout,
+        identitySupplier, combiner,
         new MapReduceCellsOSMContributionOnIgniteCacheComputeJob<>(
             this.getTagInterpreter(), this.cacheNames(this.oshdb.prefix()), this.getCellIdRanges(),
             this.tstamps.get(), this.bboxFilter, this.getPolyFilter(), this.getPreFilter(),
-            this.getFilter(), mapper, identitySupplier, accumulator, combiner));
+            this.getFilter(), this.getCellFilter(), mapper, identitySupplier, accumulator,
+            combiner));
   }
 
   @Override
@@ -132,11 +166,13 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
       SerializableFunction<List<OSMContribution>, Iterable<R>> mapper,
       SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
       SerializableBinaryOperator<S> combiner) throws Exception {
-    return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, identitySupplier, combiner,
+    return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, this.timeout,
+        identitySupplier, combiner,
         new FlatMapReduceCellsOSMContributionOnIgniteCacheComputeJob<>(
             this.getTagInterpreter(), this.cacheNames(this.oshdb.prefix()), this.getCellIdRanges(),
             this.tstamps.get(), this.bboxFilter, this.getPolyFilter(), this.getPreFilter(),
-            this.getFilter(), mapper, identitySupplier, accumulator, combiner));
+            this.getFilter(), this.getCellFilter(), mapper, identitySupplier, accumulator,
+            combiner));
   }
 
 
@@ -146,11 +182,13 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
       SerializableSupplier<S> identitySupplier,
       SerializableBiFunction<S, R, S> accumulator, SerializableBinaryOperator<S> combiner)
       throws Exception {
-    return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, identitySupplier, combiner,
+    return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, this.timeout,
+        identitySupplier, combiner,
         new MapReduceCellsOSMEntitySnapshotOnIgniteCacheComputeJob<>(
             this.getTagInterpreter(), this.cacheNames(this.oshdb.prefix()), this.getCellIdRanges(),
             this.tstamps.get(), this.bboxFilter, this.getPolyFilter(), this.getPreFilter(),
-            this.getFilter(), mapper, identitySupplier, accumulator, combiner));
+            this.getFilter(), this.getCellFilter(), mapper, identitySupplier, accumulator,
+            combiner));
   }
 
   @Override
@@ -158,15 +196,18 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
       SerializableFunction<List<OSMEntitySnapshot>, Iterable<R>> mapper,
       SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
       SerializableBinaryOperator<S> combiner) throws Exception {
-    return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, identitySupplier, combiner,
+    return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, this.timeout,
+        identitySupplier, combiner,
         new FlatMapReduceCellsOSMEntitySnapshotOnIgniteCacheComputeJob<>(
             this.getTagInterpreter(), this.cacheNames(this.oshdb.prefix()), this.getCellIdRanges(),
             this.tstamps.get(), this.bboxFilter, this.getPolyFilter(), this.getPreFilter(),
-            this.getFilter(), mapper, identitySupplier, accumulator, combiner));
+            this.getFilter(), this.getCellFilter(), mapper, identitySupplier, accumulator,
+            combiner));
   }
 
   /**
-   * Compute closure that iterates over every partition owned by a node located in a partition.
+   * Compute closure that iterates over the requested cells stored in the primary partitions of the
+   * node it runs on.
    */
   private abstract static class MapReduceCellsOnIgniteCacheComputeJob
       <V, R, M, S, P extends Geometry & Polygonal>
@@ -188,7 +229,7 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
     MapReduceCellsOnIgniteCacheComputeJob(TagInterpreter tagInterpreter, List<String> cacheNames,
         Iterable<CellIdRange> cellIdRanges,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<V, M> mapper,
         SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
         SerializableBinaryOperator<S> combiner) {
@@ -197,7 +238,7 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
       this.bbox = bbox;
       this.cellIterator = new CellIterator(
           tstamps, bbox, poly, tagInterpreter, preFilter, filter, false
-      );
+      ).withCellFilter(cellFilter);
       this.mapper = mapper;
       this.identitySupplier = identitySupplier;
       this.accumulator = accumulator;
@@ -215,79 +256,85 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
       return this.notCanceled;
     }
 
-    private class CellKeysIterator implements Iterator<Long> {
-      private final Iterator<Long> cellIds;
-      ArrayList<Long> buffer;
-
-      // a buffer of about ~1M interleaved cellIds
-      final int bufferSize = 102400 * ForkJoinPool.commonPool().getParallelism();
-
-      CellKeysIterator(Iterable<CellIdRange> cellIdRanges) {
-        this.cellIds = Streams.stream(cellIdRanges)
-        .filter(ignored -> isActive())
-        .flatMap(cellIdRange -> {
-          int level = cellIdRange.getStart().getZoomLevel();
-          long fromId = cellIdRange.getStart().getId();
-          long toId = cellIdRange.getEnd().getId();
-          return LongStream.rangeClosed(fromId, toId)
-              .map(id -> CellId.getLevelId(level, id))
-              .boxed();
-        }).iterator();
-        buffer = new ArrayList<>(bufferSize);
-      }
-
-      private void fillBuffer() {
-        buffer.clear();
-        while (buffer.size() < bufferSize) {
-          if (!cellIds.hasNext()) {
-            break;
-          }
-          buffer.add(cellIds.next());
+    /**
+     * Enumerates the keys of the requested cells which belong into the local primary partitions
+     * of a cache, in chunks of primitive longs.
+     */
+    private class LocalCellKeys {
+      // about ~1M cell keys are checked per chunk
+      private final int chunkSize = 102400 * ForkJoinPool.commonPool().getParallelism();
+      private final Affinity<Long> affinity;
+      private final BitSet localPartitions;
+      private final Iterator<CellIdRange> ranges;
+      private int level;
+      private long nextId = 0;
+      private long toId = -1;
+      private boolean exhausted = false;
+
+      LocalCellKeys(Ignite node, String cacheName) {
+        this.affinity = node.affinity(cacheName);
+        this.localPartitions = new BitSet(affinity.partitions());
+        for (int partition : affinity.primaryPartitions(node.cluster().localNode())) {
+          localPartitions.set(partition);
         }
-        Collections.shuffle(buffer);
+        this.ranges = cellIdRanges.iterator();
       }
 
-      @Override
-      public boolean hasNext() {
-        if (buffer.size() > 0) {
-          return true;
-        }
-        if (isActive() && cellIds.hasNext()) {
-          fillBuffer();
-          return true;
+      /**
+       * Returns the next chunk of local cell keys, or null if all ranges have been enumerated.
+       */
+      long[] nextChunk() {
+        if (exhausted || !isActive()) {
+          return null;
         }
-        return false;
-      }
-
-      @Override
-      public Long next() {
-        if (buffer.isEmpty()) {
-          throw new NoSuchElementException();
+        long[] chunk = new long[1024];
+        int size = 0;
+        for (int checked = 0; checked < chunkSize; checked++) {
+          if (nextId > toId) {
+            if (!ranges.hasNext()) {
+              exhausted = true;
+              break;
+            }
+            CellIdRange range = ranges.next();
+            level = range.getStart().getZoomLevel();
+            nextId = range.getStart().getId();
+            toId = range.getEnd().getId();
+          }
+          long key = CellId.getLevelId(level, nextId++);
+          if (localPartitions.get(affinity.partition(key))) {
+            if (size == chunk.length) {
+              chunk = Arrays.copyOf(chunk, size * 2);
+            }
+            chunk[size++] = key;
+          }
         }
-        return buffer.remove(buffer.size() - 1);
+        return Arrays.copyOf(chunk, size);
       }
     }
 
     S execute(Ignite node, CellProcessor<S> cellProcessor) {
-      Set<IgniteCache<Long, GridOSHEntity>> caches = this.cacheNames.stream()
-          .map(node::<Long, GridOSHEntity>cache)
-          .collect(Collectors.toSet());
-
-      return Streams.stream(new CellKeysIterator(cellIdRanges))
-          .parallel()
-          .filter(ignored -> this.isActive())
-          .flatMap(cellKey ->
-              // get local data from all requested caches
-              caches.stream()
-                  .filter(ignored -> this.isActive())
-                  .map(cache -> cache.localPeek(cellKey))
-          )
-          // filter out cache misses === empty oshdb cells or not "local" data
-          .filter(Objects::nonNull)
-          .filter(ignored -> this.isActive())
-          .map(cell ->
-              cellProcessor.apply(OSHEntitySource.fromGridOSHEntity(cell), this.cellIterator))
-          .reduce(identitySupplier.get(), combiner);
+      S result = identitySupplier.get();
+      for (String cacheName : this.cacheNames) {
+        IgniteCache<Long, Object> cache = node.cache(cacheName).withKeepBinary();
+        // only look up the cells of the requested ranges which are stored on this node
+        LocalCellKeys cellKeys = new LocalCellKeys(node, cacheName);
+        long[] chunk;
+        while (this.isActive() && (chunk = cellKeys.nextChunk()) != null) {
+          S chunkResult = LongStream.of(chunk)
+              .parallel()
+              .filter(ignored -> this.isActive())
+              .mapToObj(cellKey ->
+                  IgniteCells.decode(cache.localPeek(cellKey, CachePeekMode.PRIMARY)))
+              // filter out cache misses === empty oshdb cells
+              .filter(Objects::nonNull)
+              .filter(ignored -> this.isActive())
+              .map(cell ->
+                  cellProcessor.apply(OSHEntitySource.fromGridOSHEntity(cell), this.cellIterator))
+              .reduce(identitySupplier.get(), combiner);
+          result = combiner.apply(result, chunkResult);
+        }
+      }
+      return result;
     }
   }
 
@@ -297,12 +344,12 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
     MapReduceCellsOSMContributionOnIgniteCacheComputeJob(TagInterpreter tagInterpreter,
         List<String> cacheNames, Iterable<CellIdRange> cellIdRanges,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<OSMContribution, Optional<R>> mapper,
         SerializableSupplier<S> identitySupplier,
         SerializableBiFunction<S, R, S> accumulator, SerializableBinaryOperator<S> combiner) {
       super(tagInterpreter, cacheNames, cellIdRanges, tstamps, bbox, poly, preFilter, filter,
-          mapper, identitySupplier, accumulator, combiner);
+          cellFilter, mapper, identitySupplier, accumulator, combiner);
     }
 
     @Override
@@ -322,12 +369,12 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
     FlatMapReduceCellsOSMContributionOnIgniteCacheComputeJob(TagInterpreter tagInterpreter,
         List<String> cacheNames, Iterable<CellIdRange> cellIdRanges,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<List<OSMContribution>, Iterable<R>> mapper,
         SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
         SerializableBinaryOperator<S> combiner) {
       super(tagInterpreter, cacheNames, cellIdRanges, tstamps, bbox, poly, preFilter, filter,
-          mapper, identitySupplier, accumulator, combiner);
+          cellFilter, mapper, identitySupplier, accumulator, combiner);
     }
 
     @Override
@@ -347,12 +394,12 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
     MapReduceCellsOSMEntitySnapshotOnIgniteCacheComputeJob(TagInterpreter tagInterpreter,
         List<String> cacheNames, Iterable<CellIdRange> cellIdRanges,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<OSMEntitySnapshot, Optional<R>> mapper,
         SerializableSupplier<S> identitySupplier,
         SerializableBiFunction<S, R, S> accumulator, SerializableBinaryOperator<S> combiner) {
       super(tagInterpreter, cacheNames, cellIdRanges, tstamps, bbox, poly, preFilter, filter,
-          mapper, identitySupplier, accumulator, combiner);
+          cellFilter, mapper, identitySupplier, accumulator, combiner);
     }
 
     @Override
@@ -372,12 +419,12 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
     FlatMapReduceCellsOSMEntitySnapshotOnIgniteCacheComputeJob(TagInterpreter tagInterpreter,
         List<String> cacheNames, Iterable<CellIdRange> cellIdRanges,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<List<OSMEntitySnapshot>, Iterable<R>> mapper,
         SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
         SerializableBinaryOperator<S> combiner) {
       super(tagInterpreter, cacheNames, cellIdRanges, tstamps, bbox, poly, preFilter, filter,
-          mapper, identitySupplier, accumulator, combiner);
+          cellFilter, mapper, identitySupplier, accumulator, combiner);
     }
 
     @Override
@@ -397,7 +444,7 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
    * @throws OSHDBTimeoutException if a timeout was set and the computations took too long.
    */
   private static <V, R, M, S, P extends Geometry & Polygonal> S mapReduceOnIgniteCache(
-      OSHDBIgnite oshdb, SerializableSupplier<S> identitySupplier,
+      OSHDBIgnite oshdb, Long timeout, SerializableSupplier<S> identitySupplier,
       SerializableBinaryOperator<S> combiner,
       MapReduceCellsOnIgniteCacheComputeJob<V, R, M, S, P> computeJob) {
     Ignite ignite = oshdb.getIgnite();
@@ -413,11 +460,11 @@ public class MapReducerIgniteLocalPeek<X> extends MapReducer<X> {
         null
     );
 
-    if (oshdb.timeoutInMilliseconds().isEmpty()) {
+    if (timeout == null) {
       return asyncResult.get();
     } else {
       try {
-        return asyncResult.get(oshdb.timeoutInMilliseconds().getAsLong());
+        return asyncResult.get(timeout);
       } catch (ComputeTaskTimeoutException | IgniteFutureTimeoutException e) {
         asyncResult.cancel();
         throw new OSHDBTimeoutException();
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,7 +19,6 @@ import java.util.stream.Stream;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.IgniteCompute;
-import org.apache.ignite.binary.BinaryObject;
 import org.apache.ignite.cache.affinity.Affinity;
 import org.apache.ignite.cache.query.QueryCursor;
 import org.apache.ignite.cache.query.ScanQuery;
@@ -41,6 +41,7 @@ import org.heigit.ohsome.oshdb.util.TableNames;
 import org.heigit.ohsome.oshdb.util.celliterator.CellIterator;
 import org.heigit.ohsome.oshdb.util.celliterator.OSHEntitySource;
 import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTimeoutException;
+import org.heigit.ohsome.oshdb.util.function.CellSummaryFilter;
 import org.heigit.ohsome.oshdb.util.function.OSHEntityFilter;
 import org.heigit.ohsome.oshdb.util.function.OSMEntityFilter;
 import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
@@ -66,7 +67,7 @@ import org.slf4j.LoggerFactory;
  * global (or almost global) queries. In other situations it should not be used.
  * </p>
  */
-public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
+public class MapReducerIgniteScanQuery<X> extends MapReducerIgnite<X> {
   private static final int SCAN_QUERY_PAGE_SIZE = 16;
 
   public MapReducerIgniteScanQuery(OSHDBDatabase oshdb,
@@ -79,6 +80,11 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
     super(obj);
   }
 
+  // runs the query of another mapReducer, restricted to the given OSM types
+  MapReducerIgniteScanQuery(MapReducer<?> obj, EnumSet<OSMType> osmTypes, Long timeout) {
+    super(obj, osmTypes, timeout);
+  }
+
   static boolean cellKeyInRange(
       Long cellKey, Map<Integer, TreeMap<Long, CellIdRange>> cellIdRangesByLevel
   ) {
@@ -120,11 +126,12 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
 
     return this.typeFilter.stream().map((Function<OSMType, S> & Serializable) osmType -> {
       String cacheName = TableNames.forOSMType(osmType).get().toString(this.oshdb.prefix());
-      return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, cacheName, identitySupplier, combiner,
+      return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, this.timeout,
+          cacheName, identitySupplier, combiner,
           new MapReduceCellsOSMContributionOnIgniteCacheComputeJob<>(
               tagInterpreter, cacheName, this.getCellIdRangesByLevel(), this.tstamps.get(),
               this.bboxFilter, this.getPolyFilter(), this.getPreFilter(), this.getFilter(),
-              mapper, identitySupplier, accumulator, combiner));
+              this.getCellFilter(), mapper, identitySupplier, accumulator, combiner));
     }).reduce(identitySupplier.get(), combiner);
   }
 
@@ -138,11 +145,12 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
 
     return this.typeFilter.stream().map((Function<OSMType, S> & Serializable) osmType -> {
       String cacheName = TableNames.forOSMType(osmType).get().toString(this.oshdb.prefix());
-      return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, cacheName, identitySupplier, combiner,
+      return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, this.timeout,
+          cacheName, identitySupplier, combiner,
           new FlatMapReduceCellsOSMContributionOnIgniteCacheComputeJob<>(
               tagInterpreter, cacheName, this.getCellIdRangesByLevel(), this.tstamps.get(),
               this.bboxFilter, this.getPolyFilter(), this.getPreFilter(), this.getFilter(),
-              mapper, identitySupplier, accumulator, combiner));
+              this.getCellFilter(), mapper, identitySupplier, accumulator, combiner));
     }).reduce(identitySupplier.get(), combiner);
   }
 
@@ -158,11 +166,12 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
 
     return this.typeFilter.stream().map((Function<OSMType, S> & Serializable) osmType -> {
       String cacheName = TableNames.forOSMType(osmType).get().toString(this.oshdb.prefix());
-      return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, cacheName, identitySupplier, combiner,
+      return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, this.timeout,
+          cacheName, identitySupplier, combiner,
           new MapReduceCellsOSMEntitySnapshotOnIgniteCacheComputeJob<>(
               tagInterpreter, cacheName, this.getCellIdRangesByLevel(), this.tstamps.get(),
               this.bboxFilter, this.getPolyFilter(), this.getPreFilter(), this.getFilter(),
-              mapper, identitySupplier, accumulator, combiner));
+              this.getCellFilter(), mapper, identitySupplier, accumulator, combiner));
     }).reduce(identitySupplier.get(), combiner);
   }
 
@@ -176,11 +185,12 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
 
     return this.typeFilter.stream().map((Function<OSMType, S> & Serializable) osmType -> {
       String cacheName = TableNames.forOSMType(osmType).get().toString(this.oshdb.prefix());
-      return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, cacheName, identitySupplier, combiner,
+      return mapReduceOnIgniteCache((OSHDBIgnite) this.oshdb, this.timeout,
+          cacheName, identitySupplier, combiner,
           new FlatMapReduceCellsOSMEntitySnapshotOnIgniteCacheComputeJob<>(
               tagInterpreter, cacheName, this.getCellIdRangesByLevel(), this.tstamps.get(),
               this.bboxFilter, this.getPolyFilter(), this.getPreFilter(), this.getFilter(),
-              mapper, identitySupplier, accumulator, combiner));
+              this.getCellFilter(), mapper, identitySupplier, accumulator, combiner));
     }).reduce(identitySupplier.get(), combiner);
   }
 
@@ -198,7 +208,8 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
             TableNames.forOSMType(osmType).get().toString(this.oshdb.prefix()),
             this.getCellIdRangesByLevel(),
             new CellIterator(this.tstamps.get(), this.bboxFilter, this.getPolyFilter(),
-                tagInterpreter, this.getPreFilter(), this.getFilter(), false),
+                tagInterpreter, this.getPreFilter(), this.getFilter(), false)
+                .withCellFilter(this.getCellFilter()),
             Kernels.getOSMContributionCellStreamer(mapper)
     )).flatMap(x -> x);
   }
@@ -215,7 +226,8 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
             TableNames.forOSMType(osmType).get().toString(this.oshdb.prefix()),
             this.getCellIdRangesByLevel(),
             new CellIterator(this.tstamps.get(), this.bboxFilter, this.getPolyFilter(),
-                tagInterpreter, this.getPreFilter(), this.getFilter(), false),
+                tagInterpreter, this.getPreFilter(), this.getFilter(), false)
+                .withCellFilter(this.getCellFilter()),
             Kernels.getOSMContributionGroupingCellStreamer(mapper)
     )).flatMap(x -> x);
   }
@@ -232,7 +244,8 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
             TableNames.forOSMType(osmType).get().toString(this.oshdb.prefix()),
             this.getCellIdRangesByLevel(),
             new CellIterator(this.tstamps.get(), this.bboxFilter, this.getPolyFilter(),
-                tagInterpreter, this.getPreFilter(), this.getFilter(), false),
+                tagInterpreter, this.getPreFilter(), this.getFilter(), false)
+                .withCellFilter(this.getCellFilter()),
             Kernels.getOSMEntitySnapshotCellStreamer(mapper)
     )).flatMap(x -> x);
   }
@@ -249,7 +262,8 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
             TableNames.forOSMType(osmType).get().toString(this.oshdb.prefix()),
             this.getCellIdRangesByLevel(),
             new CellIterator(this.tstamps.get(), this.bboxFilter, this.getPolyFilter(),
-                tagInterpreter, this.getPreFilter(), this.getFilter(), false),
+                tagInterpreter, this.getPreFilter(), this.getFilter(), false)
+                .withCellFilter(this.getCellFilter()),
             Kernels.getOSMEntitySnapshotGroupingCellStreamer(mapper)
     )).flatMap(x -> x);
   }
@@ -304,14 +318,14 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
     MapReduceCellsOnIgniteCacheComputeJob(TagInterpreter tagInterpreter, String cacheName,
         Map<Integer, TreeMap<Long, CellIdRange>> cellIdRangesByLevel,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<V, M> mapper, SerializableSupplier<S> identitySupplier,
         SerializableBiFunction<S, R, S> accumulator, SerializableBinaryOperator<S> combiner) {
       this.cacheName = cacheName;
       this.cellIdRangesByLevel = cellIdRangesByLevel;
       this.cellIterator = new CellIterator(
           tstamps, bbox, poly, tagInterpreter, preFilter, filter, false
-      );
+      ).withCellFilter(cellFilter);
       this.mapper = mapper;
       this.identitySupplier = identitySupplier;
       this.accumulator = accumulator;
@@ -327,7 +341,7 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
     }
 
     S execute(Ignite node, CellProcessor<S> cellProcessor) {
-      IgniteCache<Long, BinaryObject> cache = node.cache(cacheName).withKeepBinary();
+      IgniteCache<Long, Object> cache = node.cache(cacheName).withKeepBinary();
       // Getting a list of the partitions owned by this node.
       List<Integer> myPartitions = nodesToPart.get(node.cluster().localNode().id());
       Collections.shuffle(myPartitions);
@@ -344,13 +358,7 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
                         return identitySupplier.get();
                       }
                       // iterate over the history of all OSM objects in the current cell
-                      Object data = cacheEntry.getValue();
-                      GridOSHEntity cell;
-                      if (data instanceof BinaryObject binaryData) {
-                        cell = binaryData.deserialize();
-                      } else {
-                        cell = (GridOSHEntity) data;
-                      }
+                      GridOSHEntity cell = IgniteCells.decode(cacheEntry.getValue());
                       return cellProcessor.apply(
                           OSHEntitySource.fromGridOSHEntity(cell), this.cellIterator);
                     }
@@ -374,12 +382,12 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
     MapReduceCellsOSMContributionOnIgniteCacheComputeJob(TagInterpreter tagInterpreter,
         String cacheName, Map<Integer, TreeMap<Long, CellIdRange>> cellIdRangesByLevel,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<OSMContribution, Optional<R>> mapper,
         SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
         SerializableBinaryOperator<S> combiner) {
       super(tagInterpreter, cacheName, cellIdRangesByLevel, tstamps, bbox, poly, preFilter, filter,
-          mapper, identitySupplier, accumulator, combiner);
+          cellFilter, mapper, identitySupplier, accumulator, combiner);
     }
 
     @Override
@@ -399,12 +407,12 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
     FlatMapReduceCellsOSMContributionOnIgniteCacheComputeJob(TagInterpreter tagInterpreter,
         String cacheName, Map<Integer, TreeMap<Long, CellIdRange>> cellIdRangesByLevel,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<List<OSMContribution>, Iterable<R>> mapper,
         SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
         SerializableBinaryOperator<S> combiner) {
       super(tagInterpreter, cacheName, cellIdRangesByLevel, tstamps, bbox, poly, preFilter, filter,
-          mapper, identitySupplier, accumulator, combiner);
+          cellFilter, mapper, identitySupplier, accumulator, combiner);
     }
 
     @Override
@@ -424,12 +432,12 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
     MapReduceCellsOSMEntitySnapshotOnIgniteCacheComputeJob(TagInterpreter tagInterpreter,
         String cacheName, Map<Integer, TreeMap<Long, CellIdRange>> cellIdRangesByLevel,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<OSMEntitySnapshot, Optional<R>> mapper,
         SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
         SerializableBinaryOperator<S> combiner) {
       super(tagInterpreter, cacheName, cellIdRangesByLevel, tstamps, bbox, poly, preFilter, filter,
-          mapper, identitySupplier, accumulator, combiner);
+          cellFilter, mapper, identitySupplier, accumulator, combiner);
     }
 
     @Override
@@ -449,12 +457,12 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
     FlatMapReduceCellsOSMEntitySnapshotOnIgniteCacheComputeJob(TagInterpreter tagInterpreter,
         String cacheName, Map<Integer, TreeMap<Long, CellIdRange>> cellIdRangesByLevel,
         SortedSet<OSHDBTimestamp> tstamps, OSHDBBoundingBox bbox, P poly,
-        OSHEntityFilter preFilter, OSMEntityFilter filter,
+        OSHEntityFilter preFilter, OSMEntityFilter filter, CellSummaryFilter cellFilter,
         SerializableFunction<List<OSMEntitySnapshot>, Iterable<R>> mapper,
         SerializableSupplier<S> identitySupplier, SerializableBiFunction<S, R, S> accumulator,
         SerializableBinaryOperator<S> combiner) {
       super(tagInterpreter, cacheName, cellIdRangesByLevel, tstamps, bbox, poly, preFilter, filter,
-          mapper, identitySupplier, accumulator, combiner);
+          cellFilter, mapper, identitySupplier, accumulator, combiner);
     }
 
     @Override
@@ -474,8 +482,8 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
    * @throws OSHDBTimeoutException if a timeout was set and the computations took too long.
    */
   private static <V, R, M, S, P extends Geometry & Polygonal> S mapReduceOnIgniteCache(
-      OSHDBIgnite oshdb, String cacheName, SerializableSupplier<S> identitySupplier,
-      SerializableBinaryOperator<S> combiner,
+      OSHDBIgnite oshdb, Long timeout, String cacheName,
+      SerializableSupplier<S> identitySupplier, SerializableBinaryOperator<S> combiner,
       MapReduceCellsOnIgniteCacheComputeJob<V, R, M, S, P> computeJob) {
     Ignite ignite = oshdb.getIgnite();
 
@@ -507,11 +515,11 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
         null
     );
     S ret;
-    if (oshdb.timeoutInMilliseconds().isEmpty()) {
+    if (timeout == null) {
       ret = result.get();
     } else {
       try {
-        ret = result.get(oshdb.timeoutInMilliseconds().getAsLong());
+        ret = result.get(timeout);
       } catch (IgniteFutureTimeoutException e) {
         result.cancel();
         throw new OSHDBTimeoutException();
@@ -537,13 +545,7 @@ public class MapReducerIgniteScanQuery<X> extends MapReducer<X> {
             /*isActive() &&*/ MapReducerIgniteScanQuery.cellKeyInRange(key, cellIdRangesByLevel)
         ).setPageSize(SCAN_QUERY_PAGE_SIZE), cacheEntry -> {
           // iterate over the history of all OSM objects in the current cell
-          Object data = cacheEntry.getValue();
-          GridOSHEntity cell;
-          if (data instanceof BinaryObject binaryData) {
-            cell = binaryData.deserialize();
-          } else {
-            cell = (GridOSHEntity) data;
-          }
+          GridOSHEntity cell = IgniteCells.decode(cacheEntry.getValue());
           return cellProcessor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator)
               .toList();
         }
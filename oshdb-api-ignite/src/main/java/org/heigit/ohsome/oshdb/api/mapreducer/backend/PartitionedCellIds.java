@@ -0,0 +1,107 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.ignite.cache.affinity.Affinity;
+import org.heigit.ohsome.oshdb.index.XYGridTree.CellIdRange;
+import org.heigit.ohsome.oshdb.util.CellId;
+
+/**
+ * Groups the requested cell ids of an ignite cache by their cache partition, in batches of a
+ * bounded size.
+ *
+ * <p>The cell ids are enumerated lazily, range by range, into a buffer per partition. A batch is
+ * returned as soon as the buffer of its partition is full, and the remaining partially filled
+ * buffers are returned after all ranges have been enumerated. This way, at most
+ * {@code partitions * batchSize} cell ids are held in memory, regardless of the size of the
+ * requested area.</p>
+ */
+class PartitionedCellIds implements Iterator<PartitionedCellIds.Batch> {
+  /**
+   * A batch of cell ids belonging to the same cache partition.
+   *
+   * @param partition the cache partition
+   * @param cellIds the cell ids
+   */
+  record Batch(int partition, long[] cellIds) {}
+
+  private final Affinity<Long> affinity;
+  private final int batchSize;
+  private final Iterator<CellIdRange> cellIdRanges;
+  private final long[][] buffers;
+  private final int[] sizes;
+  // the remaining cell ids of the current range
+  private long nextCellId = 0;
+  private long lastCellId = -1;
+  // the next partition to flush, once all ranges have been enumerated
+  private int flushPartition = 0;
+  private Batch next = null;
+
+  PartitionedCellIds(Affinity<Long> affinity, Iterable<CellIdRange> cellIdRanges,
+      int batchSize) {
+    this.affinity = affinity;
+    this.batchSize = batchSize;
+    this.cellIdRanges = cellIdRanges.iterator();
+    this.buffers = new long[affinity.partitions()][];
+    this.sizes = new int[affinity.partitions()];
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      next = fill();
+    }
+    return next != null;
+  }
+
+  @Override
+  public Batch next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Batch batch = next;
+    next = null;
+    return batch;
+  }
+
+  private Batch fill() {
+    while (nextCellId <= lastCellId || advanceRange()) {
+      long cellId = nextCellId++;
+      int partition = affinity.partition(cellId);
+      if (buffers[partition] == null) {
+        buffers[partition] = new long[batchSize];
+      }
+      buffers[partition][sizes[partition]++] = cellId;
+      if (sizes[partition] == batchSize) {
+        return take(partition);
+      }
+    }
+    for (; flushPartition < buffers.length; flushPartition++) {
+      if (sizes[flushPartition] > 0) {
+        return take(flushPartition);
+      }
+    }
+    return null;
+  }
+
+  private boolean advanceRange() {
+    if (!cellIdRanges.hasNext()) {
+      return false;
+    }
+    CellIdRange cellIdRange = cellIdRanges.next();
+    int level = cellIdRange.getStart().getZoomLevel();
+    nextCellId = CellId.getLevelId(level, cellIdRange.getStart().getId());
+    lastCellId = CellId.getLevelId(level, cellIdRange.getEnd().getId());
+    return true;
+  }
+
+  private Batch take(int partition) {
+    long[] cellIds = sizes[partition] == batchSize
+        ? buffers[partition]
+        : Arrays.copyOf(buffers[partition], sizes[partition]);
+    buffers[partition] = null;
+    sizes[partition] = 0;
+    return new Batch(partition, cellIds);
+  }
+}
@@ -0,0 +1,40 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.heigit.ohsome.oshdb.api.db.OSHDBIgnite.ComputeMode.AFFINITY_CALL;
+import static org.heigit.ohsome.oshdb.api.db.OSHDBIgnite.ComputeMode.LOCAL_PEEK;
+import static org.heigit.ohsome.oshdb.api.db.OSHDBIgnite.ComputeMode.SCAN_QUERY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.EnumSet;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.ComputeModePlanner;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the choice of the compute mode by the cost based planner.
+ */
+class ComputeModePlannerTest {
+  @Test
+  void testSmallQuery() {
+    var decision = ComputeModePlanner.plan(OSMType.NODE, 10, 1_000_000, 1024, 4);
+    assertEquals(AFFINITY_CALL, decision.computeMode());
+  }
+
+  @Test
+  void testMediumQuery() {
+    var decision = ComputeModePlanner.plan(OSMType.WAY, 100_000, 1_000_000, 1024, 4);
+    assertEquals(LOCAL_PEEK, decision.computeMode());
+  }
+
+  @Test
+  void testLargeQuery() {
+    var decision = ComputeModePlanner.plan(OSMType.RELATION, 10_000_000, 1_000_000, 1024, 4);
+    assertEquals(SCAN_QUERY, decision.computeMode());
+
+    // only the given compute modes are considered
+    decision = ComputeModePlanner.plan(OSMType.RELATION, 10_000_000, 1_000_000, 1024, 4,
+        EnumSet.of(LOCAL_PEEK, AFFINITY_CALL));
+    assertEquals(LOCAL_PEEK, decision.computeMode());
+    assertEquals(2, decision.costs().size());
+  }
+}
@@ -0,0 +1,94 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.heigit.ohsome.oshdb.OSHDBBoundingBox.bboxWgs84Coordinates;
+import static org.heigit.ohsome.oshdb.api.db.H2Support.createJdbcPoolFromPath;
+import static org.heigit.ohsome.oshdb.api.db.OSHDBIgnite.ComputeMode.AUTO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cluster.ClusterState;
+import org.heigit.ohsome.oshdb.api.db.OSHDBIgnite;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMEntitySnapshotView;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.ComputeModePlanner.Decision;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.util.TableNames;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTimeoutException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@inheritDoc}
+ *
+ * <p>Runs the tests using the "auto" Ignite compute mode.</p>
+ */
+class MapReduceOSHDBIgniteAutoTest extends MapReduceOSHDBIgniteTest {
+  /**
+   * Creates the test runner using the adaptive ignite backend.
+   *
+   * @throws Exception if something goes wrong
+   */
+  MapReduceOSHDBIgniteAutoTest() throws Exception {
+    super(oshdb -> oshdb.computeMode(AUTO));
+  }
+
+  @Test
+  void testComputeModeDecisions() throws Exception {
+    List<Decision> decisions = new ArrayList<>();
+    ((OSHDBIgnite) oshdb).onComputeModeDecision(decisions::add);
+    try {
+      createMapReducerOSMEntitySnapshot()
+          .timestamps("2015-01-01")
+          .count();
+    } finally {
+      ((OSHDBIgnite) oshdb).onComputeModeDecision(null);
+    }
+    // one decision per queried OSM type
+    assertEquals(1, decisions.size());
+    Decision decision = decisions.get(0);
+    assertEquals(OSMType.NODE, decision.osmType());
+    assertTrue(decision.requestedCells() > 0);
+    assertTrue(decision.cachedCells() > 0);
+    assertEquals(3, decision.costs().size());
+  }
+
+  @Test
+  void testTimeoutSharedByComputeModes() throws Exception {
+    // separate caches: the empty node cache is cheapest to scan, the way cache holds more cells
+    // (outside of the query area) than cheaply can be scanned
+    final String prefix = "tests_auto";
+    ignite.cluster().state(ClusterState.ACTIVE);
+    ignite.getOrCreateCache(TableNames.T_NODES.toString(prefix));
+    ignite.getOrCreateCache(TableNames.T_RELATIONS.toString(prefix));
+    IgniteCache<Long, byte[]> ways = ignite.getOrCreateCache(TableNames.T_WAYS.toString(prefix));
+    for (long i = 0; i < 1000; i++) {
+      ways.put(Long.MAX_VALUE - i, new byte[0]);
+    }
+    ignite.cluster().state(ClusterState.ACTIVE_READ_ONLY);
+    var autoOshdb = new OSHDBIgnite(ignite, prefix, createJdbcPoolFromPath(KEYTABLES))
+        .computeMode(AUTO);
+
+    // planning takes longer than the whole timeout of the query: no backend gets to run
+    List<Decision> decisions = new ArrayList<>();
+    autoOshdb.onComputeModeDecision(decision -> {
+      decisions.add(decision);
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    autoOshdb.timeoutInMilliseconds(150);
+    assertThrows(OSHDBTimeoutException.class, OSMEntitySnapshotView.on(autoOshdb)
+        .areaOfInterest(bboxWgs84Coordinates(8.0, 49.0, 9.0, 50.0))
+        .timestamps("2015-01-01")
+        .filter("type:node or type:way")::count);
+
+    // the OSM types were planned onto different compute modes
+    assertEquals(2, decisions.size());
+    assertNotEquals(decisions.get(0).computeMode(), decisions.get(1).computeMode());
+  }
+}
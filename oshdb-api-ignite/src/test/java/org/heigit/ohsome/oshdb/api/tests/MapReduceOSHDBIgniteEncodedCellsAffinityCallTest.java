@@ -0,0 +1,22 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.heigit.ohsome.oshdb.api.db.OSHDBIgnite.ComputeMode.AFFINITY_CALL;
+
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
+
+/**
+ * {@inheritDoc}
+ *
+ * <p>Runs the tests using the "affinity call" Ignite backend on a cache storing the cells in their
+ * encoded binary form.</p>
+ */
+class MapReduceOSHDBIgniteEncodedCellsAffinityCallTest extends MapReduceOSHDBIgniteTest {
+  /**
+   * Creates the test runner using the ignite affinitycall backend on encoded cells.
+   *
+   * @throws Exception if something goes wrong
+   */
+  MapReduceOSHDBIgniteEncodedCellsAffinityCallTest() throws Exception {
+    super(ENCODED_PREFIX, GridOSHEntityCodec::encode, oshdb -> oshdb.computeMode(AFFINITY_CALL));
+  }
+}
@@ -0,0 +1,22 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.heigit.ohsome.oshdb.api.db.OSHDBIgnite.ComputeMode.AUTO;
+
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
+
+/**
+ * {@inheritDoc}
+ *
+ * <p>Runs the tests using the "auto" Ignite compute mode on a cache storing the cells in their
+ * encoded binary form.</p>
+ */
+class MapReduceOSHDBIgniteEncodedCellsAutoTest extends MapReduceOSHDBIgniteTest {
+  /**
+   * Creates the test runner using the adaptive ignite backend on encoded cells.
+   *
+   * @throws Exception if something goes wrong
+   */
+  MapReduceOSHDBIgniteEncodedCellsAutoTest() throws Exception {
+    super(ENCODED_PREFIX, GridOSHEntityCodec::encode, oshdb -> oshdb.computeMode(AUTO));
+  }
+}
@@ -0,0 +1,22 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.heigit.ohsome.oshdb.api.db.OSHDBIgnite.ComputeMode.LOCAL_PEEK;
+
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
+
+/**
+ * {@inheritDoc}
+ *
+ * <p>Runs the tests using the "local peek" Ignite backend on a cache storing the cells in their
+ * encoded binary form.</p>
+ */
+class MapReduceOSHDBIgniteEncodedCellsLocalPeekTest extends MapReduceOSHDBIgniteTest {
+  /**
+   * Creates the test runner using the ignite localpeak backend on encoded cells.
+   *
+   * @throws Exception if something goes wrong
+   */
+  MapReduceOSHDBIgniteEncodedCellsLocalPeekTest() throws Exception {
+    super(ENCODED_PREFIX, GridOSHEntityCodec::encode, oshdb -> oshdb.computeMode(LOCAL_PEEK));
+  }
+}
@@ -42,6 +42,18 @@ class MapReduceOSHDBIgniteMissingCacheTest extends MapReduceOSHDBIgniteTest {
     assertThrows(OSHDBTableNotFoundException.class, super::testOSMEntitySnapshotViewStream);
   }
 
+  @Override
+  @Test()
+  void testQueryMetrics() {
+    assertThrows(OSHDBTableNotFoundException.class, super::testQueryMetrics);
+  }
+
+  @Override
+  @Test()
+  void testQueryBatch() {
+    assertThrows(OSHDBTableNotFoundException.class, super::testQueryBatch);
+  }
+
   @Override
   @Test()
   void testTimeoutMapReduce() {
@@ -53,4 +65,10 @@ class MapReduceOSHDBIgniteMissingCacheTest extends MapReduceOSHDBIgniteTest {
   void testTimeoutStream() {
     assertThrows(OSHDBTableNotFoundException.class, this::timeoutStream);
   }
+
+  @Override
+  @Test()
+  void testStreamClosedEarly() {
+    assertThrows(OSHDBTableNotFoundException.class, super::testStreamClosedEarly);
+  }
 }
@@ -1,6 +1,7 @@
 package org.heigit.ohsome.oshdb.api.tests;
 
 import static org.heigit.ohsome.oshdb.api.db.H2Support.createJdbcPoolFromPath;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
@@ -11,6 +12,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.IgniteDataStreamer;
@@ -29,10 +32,12 @@ import org.heigit.ohsome.oshdb.api.db.OSHDBIgnite;
 import org.heigit.ohsome.oshdb.grid.GridOSHNodes;
 import org.heigit.ohsome.oshdb.util.CellId;
 import org.heigit.ohsome.oshdb.util.TableNames;
+import org.junit.jupiter.api.Test;
 
 abstract class MapReduceOSHDBIgniteTest extends MapReduceTest {
 
   static final String PREFIX = "tests";
+  static final String ENCODED_PREFIX = "tests_encoded";
   static final String KEYTABLES = "../data/test-data";
   static final Ignite ignite;
 
@@ -52,21 +57,22 @@ abstract class MapReduceOSHDBIgniteTest extends MapReduceTest {
     ignite = Ignition.start(cfg);
   }
 
-  private static OSHDBDatabase initOshdb(String prefix, String keytables, Consumer<OSHDBIgnite> computeMode) {
+  private static OSHDBDatabase initOshdb(String cachePrefix, Function<GridOSHNodes, ?> cellValue,
+      String prefix, String keytables, Consumer<OSHDBIgnite> computeMode) {
     ignite.cluster().state(ClusterState.ACTIVE);
 
-    CacheConfiguration<Long, GridOSHNodes> cacheCfg =
-        new CacheConfiguration<>(TableNames.T_NODES.toString(PREFIX));
+    CacheConfiguration<Long, Object> cacheCfg =
+        new CacheConfiguration<>(TableNames.T_NODES.toString(cachePrefix));
     cacheCfg.setStatisticsEnabled(true);
     cacheCfg.setBackups(0);
     cacheCfg.setCacheMode(CacheMode.PARTITIONED);
-    IgniteCache<Long, GridOSHNodes> cache = ignite.getOrCreateCache(cacheCfg);
+    IgniteCache<Long, Object> cache = ignite.getOrCreateCache(cacheCfg);
     cache.clear();
     // dummy caches for ways+relations (at the moment we don't use them in the actual TestMapReduce)
-    ignite.getOrCreateCache(new CacheConfiguration<>(TableNames.T_WAYS.toString(PREFIX)));
-    ignite.getOrCreateCache(new CacheConfiguration<>(TableNames.T_RELATIONS.toString(PREFIX)));
+    ignite.getOrCreateCache(new CacheConfiguration<>(TableNames.T_WAYS.toString(cachePrefix)));
+    ignite.getOrCreateCache(new CacheConfiguration<>(TableNames.T_RELATIONS.toString(cachePrefix)));
 
-    loadTestdataIntoIgnite(ignite, cache.getName(), KEYTABLES);
+    loadTestdataIntoIgnite(ignite, cache.getName(), KEYTABLES, cellValue);
 
     JdbcConnectionPool oshdbH2 = createJdbcPoolFromPath(keytables);
 
@@ -77,11 +83,12 @@ abstract class MapReduceOSHDBIgniteTest extends MapReduceTest {
     return oshdb;
   }
 
-  private static void loadTestdataIntoIgnite(Ignite ignite, String cache, String keytables) {
+  private static void loadTestdataIntoIgnite(Ignite ignite, String cache, String keytables,
+      Function<GridOSHNodes, ?> cellValue) {
     JdbcConnectionPool oshdbH2 = createJdbcPoolFromPath(keytables);
 
     // load test data into ignite cache
-    try (IgniteDataStreamer<Long, GridOSHNodes> streamer = ignite.dataStreamer(cache);
+    try (IgniteDataStreamer<Long, Object> streamer = ignite.dataStreamer(cache);
         Connection h2Conn = oshdbH2.getConnection();
         Statement h2Stmt = h2Conn.createStatement()) {
       streamer.allowOverwrite(true);
@@ -92,7 +99,7 @@ abstract class MapReduceOSHDBIgniteTest extends MapReduceTest {
           final long id = rst.getLong(2);
           final ObjectInputStream ois = new ObjectInputStream(rst.getBinaryStream(3));
           final GridOSHNodes grid = (GridOSHNodes) ois.readObject();
-          streamer.addData(CellId.getLevelId(level, id), grid);
+          streamer.addData(CellId.getLevelId(level, id), cellValue.apply(grid));
         }
       }
     } catch (IOException | ClassNotFoundException | SQLException e) {
@@ -103,10 +110,26 @@ abstract class MapReduceOSHDBIgniteTest extends MapReduceTest {
 
 
   MapReduceOSHDBIgniteTest(Consumer<OSHDBIgnite> computeMode) throws Exception {
-    super(initOshdb(PREFIX, KEYTABLES, computeMode));
+    super(initOshdb(PREFIX, grid -> grid, PREFIX, KEYTABLES, computeMode));
   }
 
   MapReduceOSHDBIgniteTest(String prefix, String keytables, Consumer<OSHDBIgnite> computeMode) throws Exception {
-    super(initOshdb(prefix, keytables, computeMode));
+    super(initOshdb(PREFIX, grid -> grid, prefix, keytables, computeMode));
+  }
+
+  MapReduceOSHDBIgniteTest(String prefix, Function<GridOSHNodes, ?> cellValue,
+      Consumer<OSHDBIgnite> computeMode) throws Exception {
+    super(initOshdb(prefix, cellValue, prefix, KEYTABLES, computeMode));
+  }
+
+  @Test
+  void testStreamClosedEarly() throws Exception {
+    var mapReducer = createMapReducerOSMEntitySnapshot()
+        .timestamps("2015-01-01")
+        .map(snapshot -> snapshot.getEntity().getId());
+    assertEquals(mapReducer.count().longValue(), mapReducer.stream().count());
+    try (Stream<Long> ids = mapReducer.stream()) {
+      assertEquals(1, ids.limit(1).count());
+    }
   }
 }
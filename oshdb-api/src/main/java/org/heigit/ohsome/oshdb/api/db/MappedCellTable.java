@@ -0,0 +1,225 @@
+package org.heigit.ohsome.oshdb.api.db;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
+import org.heigit.ohsome.oshdb.util.CellId;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBException;
+
+/**
+ * A read-only table of grid cells stored in a memory mapped file.
+ *
+ * <p>The file starts with a fixed size header (magic number, format version, number of cells and
+ * position of the cell index), followed by the cells in the binary format of
+ * {@link GridOSHEntityCodec}. The cell index at the end of the file holds one
+ * {@code (levelId, position, length)} entry per cell, sorted by the cell's
+ * {@link CellId#getLevelId() levelId}. This allows all cells of a {@code CellIdRange} to be found
+ * with a single binary search.</p>
+ *
+ * <p>Instances are thread safe.</p>
+ */
+public class MappedCellTable implements AutoCloseable {
+  private static final long MAGIC = 0x4F534844424D4354L; // "OSHDBMCT"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8 + 4 + 4 + 8;
+  private static final int INDEX_ENTRY_SIZE = 8 + 8 + 4;
+  private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+  private final FileChannel channel;
+  private final int size;
+  private final ByteBuffer index;
+  private final long[] segmentStarts;
+  private final MappedByteBuffer[] segments;
+
+  private MappedCellTable(FileChannel channel) throws IOException {
+    this.channel = channel;
+    var header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+    if (header.getLong() != MAGIC) {
+      throw new IOException("not an oshdb cell table");
+    }
+    var version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException("unsupported cell table version: " + version);
+    }
+    this.size = header.getInt();
+    var indexPosition = header.getLong();
+    this.index = channel.map(MapMode.READ_ONLY, indexPosition, (long) size * INDEX_ENTRY_SIZE);
+
+    // map the cell data in segments of at most 2GB, each containing only whole cells
+    var starts = new ArrayList<Long>();
+    var mapped = new ArrayList<MappedByteBuffer>();
+    long[] positions = new long[size];
+    int[] lengths = new int[size];
+    for (int i = 0; i < size; i++) {
+      positions[i] = index.getLong(i * INDEX_ENTRY_SIZE + 8);
+      lengths[i] = index.getInt(i * INDEX_ENTRY_SIZE + 16);
+    }
+    Integer[] byPosition = new Integer[size];
+    Arrays.setAll(byPosition, i -> i);
+    Arrays.sort(byPosition, Comparator.comparingLong(i -> positions[i]));
+    long segmentStart = HEADER_SIZE;
+    long segmentEnd = HEADER_SIZE;
+    for (int i : byPosition) {
+      long end = positions[i] + lengths[i];
+      if (end - segmentStart > MAX_SEGMENT_SIZE) {
+        starts.add(segmentStart);
+        mapped.add(channel.map(MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+        segmentStart = positions[i];
+      }
+      segmentEnd = end;
+    }
+    starts.add(segmentStart);
+    mapped.add(channel.map(MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+    this.segmentStarts = starts.stream().mapToLong(Long::longValue).toArray();
+    this.segments = mapped.toArray(MappedByteBuffer[]::new);
+  }
+
+  /**
+   * Opens a cell table file for reading.
+   *
+   * @param file the cell table file
+   * @return the opened cell table
+   * @throws IOException if the file cannot be opened or isn't a cell table
+   */
+  public static MappedCellTable open(Path file) throws IOException {
+    var channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      return new MappedCellTable(channel);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the given grid cells into a new cell table file.
+   *
+   * @param file the file to write, an already existing file is replaced
+   * @param cells the grid cells to store, in any order
+   * @return the number of written cells
+   * @throws IOException if the file cannot be written
+   */
+  public static int write(Path file, Iterator<? extends GridOSHEntity> cells) throws IOException {
+    try (var out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      List<long[]> entries = new ArrayList<>();
+      long position = HEADER_SIZE;
+      out.position(position);
+      while (cells.hasNext()) {
+        GridOSHEntity cell = cells.next();
+        var bytes = ByteBuffer.wrap(GridOSHEntityCodec.encode(cell));
+        long levelId = CellId.getLevelId(cell.getLevel(), cell.getId());
+        entries.add(new long[] {levelId, position, bytes.remaining()});
+        position += bytes.remaining();
+        while (bytes.hasRemaining()) {
+          out.write(bytes);
+        }
+      }
+      entries.sort(Comparator.comparingLong(entry -> entry[0]));
+      var index = ByteBuffer.allocate(entries.size() * INDEX_ENTRY_SIZE);
+      for (long[] entry : entries) {
+        index.putLong(entry[0]).putLong(entry[1]).putInt((int) entry[2]);
+      }
+      index.flip();
+      while (index.hasRemaining()) {
+        out.write(index);
+      }
+      var header = ByteBuffer.allocate(HEADER_SIZE)
+          .putLong(MAGIC).putInt(VERSION).putInt(entries.size()).putLong(position)
+          .flip();
+      out.position(0);
+      while (header.hasRemaining()) {
+        out.write(header);
+      }
+      return entries.size();
+    }
+  }
+
+  /**
+   * Returns the number of cells in this table.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns all cells of the given zoom level with an id in the given (inclusive) range, in
+   * ascending order of their ids.
+   *
+   * @param zoom the zoom level of the cells
+   * @param fromId the first cell id of the range
+   * @param toId the last cell id of the range
+   * @return an iterator over the decoded cells
+   */
+  public Iterator<GridOSHEntity> cells(int zoom, long fromId, long toId) {
+    final long toLevelId = CellId.getLevelId(zoom, toId);
+    final int first = lowerBound(CellId.getLevelId(zoom, fromId));
+    return new Iterator<>() {
+      private int pos = first;
+
+      @Override
+      public boolean hasNext() {
+        return pos < size && levelId(pos) <= toLevelId;
+      }
+
+      @Override
+      public GridOSHEntity next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return cell(pos++);
+      }
+    };
+  }
+
+  private long levelId(int entry) {
+    return index.getLong(entry * INDEX_ENTRY_SIZE);
+  }
+
+  private int lowerBound(long levelId) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (levelId(mid) < levelId) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private GridOSHEntity cell(int entry) {
+    long position = index.getLong(entry * INDEX_ENTRY_SIZE + 8);
+    int length = index.getInt(entry * INDEX_ENTRY_SIZE + 16);
+    int segment = Arrays.binarySearch(segmentStarts, position);
+    if (segment < 0) {
+      segment = -segment - 2;
+    }
+    int offset = (int) (position - segmentStarts[segment]);
+    try {
+      return GridOSHEntityCodec.decode(segments[segment].slice(offset, length));
+    } catch (IOException e) {
+      throw new OSHDBException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -2,6 +2,7 @@ package org.heigit.ohsome.oshdb.api.db;
 
 import java.util.OptionalLong;
 import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
+import org.heigit.ohsome.oshdb.api.mapreducer.QueryBatch;
 import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTimeoutException;
 import org.heigit.ohsome.oshdb.util.mappable.OSHDBMapReducible;
 import org.heigit.ohsome.oshdb.util.tagtranslator.TagTranslator;
@@ -30,6 +31,15 @@ public abstract class OSHDBDatabase implements AutoCloseable {
    */
   public abstract <X extends OSHDBMapReducible> MapReducer<X> createMapReducer(Class<X> forClass);
 
+  /**
+   * Creates a batch of queries which are calculated together in a single pass over the data.
+   *
+   * @return a new, empty query batch operating on this OSHDB backend
+   */
+  public QueryBatch batch() {
+    return new QueryBatch(this);
+  }
+
   /**
    * Returns metadata about the given OSHDB.
    *
@@ -68,6 +68,16 @@ public class OSHDBH2 extends OSHDBJdbc {
     return (OSHDBH2) super.multithreading(useMultithreading);
   }
 
+  @Override
+  public OSHDBH2 parallelism(int parallelism) {
+    return (OSHDBH2) super.parallelism(parallelism);
+  }
+
+  @Override
+  public OSHDBH2 fetchBatchSize(int fetchBatchSize) {
+    return (OSHDBH2) super.fetchBatchSize(fetchBatchSize);
+  }
+
   @Override
   public void close() throws Exception {
     try {
@@ -31,6 +31,8 @@ public class OSHDBJdbc extends OSHDBDatabase {
   protected final DataSource dataSource;
   protected final TagTranslator tagTranslator;
   private boolean useMultithreading = true;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private int fetchBatchSize = 64;
 
   /**
    * Creates a new OSHDBJdbc connection.
@@ -142,6 +144,46 @@ public class OSHDBJdbc extends OSHDBDatabase {
     return this.useMultithreading;
   }
 
+  /**
+   * Sets the default number of worker threads for multithreaded queries on this oshdb.
+   *
+   * <p>Each query uses its own thread pool of this size, it can also be changed for individual
+   * queries via {@link MapReducerJdbcMultithread#parallelism(int)}.</p>
+   *
+   * @param parallelism the number of worker threads, must be positive
+   * @return the current oshdb object
+   */
+  public OSHDBJdbc parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  public int parallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * Sets the number of (merged) cell id ranges which are fetched from the database with a single
+   * sql query.
+   *
+   * @param fetchBatchSize the number of cell id ranges per query, must be positive
+   * @return the current oshdb object
+   */
+  public OSHDBJdbc fetchBatchSize(int fetchBatchSize) {
+    if (fetchBatchSize < 1) {
+      throw new IllegalArgumentException("fetch batch size must be positive");
+    }
+    this.fetchBatchSize = fetchBatchSize;
+    return this;
+  }
+
+  public int fetchBatchSize() {
+    return this.fetchBatchSize;
+  }
+
   @Override
   public void close() throws Exception {
     //nothing to do
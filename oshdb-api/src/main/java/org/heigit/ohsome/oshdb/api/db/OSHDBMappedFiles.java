@@ -0,0 +1,215 @@
+package org.heigit.ohsome.oshdb.api.db;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Properties;
+import javax.sql.DataSource;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.MapReducerMappedFiles;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
+import org.heigit.ohsome.oshdb.grid.GridOSHRelations;
+import org.heigit.ohsome.oshdb.grid.GridOSHWays;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.util.TableNames;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBException;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTableNotFoundException;
+import org.heigit.ohsome.oshdb.util.mappable.OSHDBMapReducible;
+import org.heigit.ohsome.oshdb.util.tagtranslator.JdbcTagTranslator;
+import org.heigit.ohsome.oshdb.util.tagtranslator.TagTranslator;
+
+/**
+ * OSHDB database backend connector to grid tables stored in memory mapped files.
+ *
+ * <p>Each grid table is kept in a separate {@link MappedCellTable} file named after the table
+ * (e.g. {@code grid_node.cells}) inside a common directory, together with an optional
+ * {@code metadata.properties} file. Such a directory can be created from an existing JDBC oshdb
+ * using {@link #export(OSHDBJdbc, Path)}. Tags are translated using separate keytables.</p>
+ *
+ * <p>This backend is best suited for single machines where the whole dataset fits in the page
+ * cache of the operating system.</p>
+ */
+public class OSHDBMappedFiles extends OSHDBDatabase {
+  private static final String CELL_TABLE_SUFFIX = ".cells";
+  private static final String METADATA_FILE = "metadata.properties";
+
+  private final TagTranslator tagTranslator;
+  private final Map<OSMType, MappedCellTable> tables = new EnumMap<>(OSMType.class);
+  private final Properties metadata = new Properties();
+
+  /**
+   * Opens the memory mapped grid tables in the given directory.
+   *
+   * @param directory directory containing the cell table files
+   * @param keytables DataSource for the keytables
+   */
+  public OSHDBMappedFiles(Path directory, DataSource keytables) {
+    this(directory, "", new JdbcTagTranslator(keytables));
+  }
+
+  /**
+   * Opens the memory mapped grid tables in the given directory.
+   *
+   * @param directory directory containing the cell table files
+   * @param prefix Prefix for "table/cache" name
+   * @param tagTranslator tag translator for the keytables of this oshdb
+   */
+  public OSHDBMappedFiles(Path directory, String prefix, TagTranslator tagTranslator) {
+    super(prefix);
+    this.tagTranslator = tagTranslator;
+    try {
+      for (OSMType type : OSMType.values()) {
+        Optional<TableNames> tableName = TableNames.forOSMType(type);
+        if (tableName.isEmpty()) {
+          continue;
+        }
+        var file = directory.resolve(tableName.get().toString(prefix) + CELL_TABLE_SUFFIX);
+        if (!Files.exists(file)) {
+          throw new OSHDBTableNotFoundException(file.toString());
+        }
+        tables.put(type, MappedCellTable.open(file));
+      }
+      var metadataFile = directory.resolve(METADATA_FILE);
+      if (Files.exists(metadataFile)) {
+        try (Reader reader = Files.newBufferedReader(metadataFile)) {
+          metadata.load(reader);
+        }
+      }
+    } catch (IOException e) {
+      closeTables();
+      throw new OSHDBException(e);
+    } catch (RuntimeException e) {
+      closeTables();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the grid tables and metadata of a JDBC oshdb into memory mappable cell table files.
+   *
+   * <p>The metadata table is optional, if it is missing an empty metadata file is written. Cells
+   * are written together with a {@link org.heigit.ohsome.oshdb.grid.CellSummary summary} of their
+   * entities, which allows queries to skip cells without matching data. Way and relation cells
+   * store the nodes referenced by their entities in a
+   * {@link org.heigit.ohsome.oshdb.impl.osh.NodeDictionary node dictionary}.</p>
+   *
+   * @param source the oshdb to export
+   * @param directory the (existing) directory to write the files into
+   */
+  public static void export(OSHDBJdbc source, Path directory) {
+    var prefix = source.prefix();
+    try (var conn = source.getConnection()) {
+      for (OSMType type : OSMType.values()) {
+        Optional<TableNames> tableName = TableNames.forOSMType(type);
+        if (tableName.isEmpty()) {
+          continue;
+        }
+        var table = tableName.get().toString(prefix);
+        try (var stmt = conn.createStatement();
+            var rs = stmt.executeQuery("select data from " + table)) {
+          MappedCellTable.write(directory.resolve(table + CELL_TABLE_SUFFIX),
+              new Iterator<GridOSHEntity>() {
+                private boolean hasNext = rs.next();
+
+                @Override
+                public boolean hasNext() {
+                  return hasNext;
+                }
+
+                @Override
+                public GridOSHEntity next() {
+                  if (!hasNext) {
+                    throw new NoSuchElementException();
+                  }
+                  try {
+                    var cell = GridOSHEntityCodec.decode(rs.getBytes(1));
+                    if (cell.getSummary() == null) {
+                      cell = cell.withSummary();
+                    }
+                    if (cell instanceof GridOSHWays) {
+                      cell = ((GridOSHWays) cell).withNodeDictionary();
+                    } else if (cell instanceof GridOSHRelations) {
+                      cell = ((GridOSHRelations) cell).withNodeDictionary();
+                    }
+                    hasNext = rs.next();
+                    return cell;
+                  } catch (IOException | SQLException e) {
+                    throw new OSHDBException(e);
+                  }
+                }
+              });
+        }
+      }
+      var metadata = new Properties();
+      var metadataTable = TableNames.T_METADATA.toString(prefix);
+      boolean hasMetadata;
+      try (var tables = conn.getMetaData().getTables(null, null, "%", new String[]{"TABLE"})) {
+        hasMetadata = false;
+        while (tables.next()) {
+          hasMetadata |= metadataTable.equalsIgnoreCase(tables.getString("TABLE_NAME"));
+        }
+      }
+      if (hasMetadata) {
+        try (var stmt = conn.createStatement();
+            var rs = stmt.executeQuery("select key, value from " + metadataTable)) {
+          while (rs.next()) {
+            metadata.setProperty(rs.getString(1), rs.getString(2));
+          }
+        }
+      }
+      try (Writer writer = Files.newBufferedWriter(directory.resolve(METADATA_FILE))) {
+        metadata.store(writer, "oshdb metadata");
+      }
+    } catch (IOException | SQLException e) {
+      throw new OSHDBException(e);
+    }
+  }
+
+  @Override
+  public TagTranslator getTagTranslator() {
+    return tagTranslator;
+  }
+
+  @Override
+  public <X extends OSHDBMapReducible> MapReducer<X> createMapReducer(Class<X> forClass) {
+    return new MapReducerMappedFiles<>(this, forClass);
+  }
+
+  @Override
+  public String metadata(String property) {
+    return metadata.getProperty(property);
+  }
+
+  /**
+   * Returns the cell table holding the grid cells of the given OSM type.
+   */
+  public MappedCellTable getCellTable(OSMType type) {
+    return tables.get(type);
+  }
+
+  private void closeTables() {
+    for (MappedCellTable table : tables.values()) {
+      try {
+        table.close();
+      } catch (IOException e) {
+        // ignore, already failing
+      }
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    for (MappedCellTable table : tables.values()) {
+      table.close();
+    }
+  }
+}
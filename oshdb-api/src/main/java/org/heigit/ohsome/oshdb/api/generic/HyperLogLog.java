@@ -0,0 +1,205 @@
+package org.heigit.ohsome.oshdb.api.generic;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Mergeable sketch estimating the number of distinct values of a data set.
+ *
+ * <p>Implements the HyperLogLog algorithm with the 64 bit hashes and the small range correction
+ * (linear counting) of HyperLogLog++: https://research.google/pubs/pub40671/</p>
+ *
+ * <p>This is used by the {@code estimatedCountUniq} aggregations of the MapReducer: every partial
+ * result is a sketch of a fixed size, independent of the number of distinct values, and partial
+ * results are combined by merging their sketches.</p>
+ *
+ * <p>A sketch of precision {@code p} uses {@code 2^p} single byte registers and has a relative
+ * standard error of about {@code 1.04 / sqrt(2^p)}, e.g. 0.8% for the default precision of
+ * {@value #DEFAULT_PRECISION}. The registers are only allocated when the first value is added, so
+ * that empty sketches are cheap to create, serialize and merge.</p>
+ *
+ * <p>Values are hashed based on their {@link Object#hashCode() hash code} (the full 64 bits in
+ * case of {@link Long} values), which means that values must implement {@code hashCode}
+ * consistently with {@code equals}.</p>
+ */
+public class HyperLogLog implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** The smallest supported precision. */
+  public static final int MIN_PRECISION = 4;
+  /** The largest supported precision. */
+  public static final int MAX_PRECISION = 18;
+  /** The precision used by default. */
+  public static final int DEFAULT_PRECISION = 14;
+
+  private final int precision;
+  private byte[] registers;
+
+  /**
+   * Creates an empty sketch with the {@link #DEFAULT_PRECISION default precision}.
+   */
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * Creates an empty sketch.
+   *
+   * @param precision the number of bits used to select a register, between
+   *        {@value #MIN_PRECISION} and {@value #MAX_PRECISION}
+   * @throws IllegalArgumentException if the precision is out of range
+   */
+  public HyperLogLog(int precision) {
+    checkPrecision(precision);
+    this.precision = precision;
+  }
+
+  /**
+   * Checks that the given precision is supported.
+   *
+   * @param precision the precision to check
+   * @throws IllegalArgumentException if the precision is out of range
+   */
+  public static void checkPrecision(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and "
+          + MAX_PRECISION + ", got " + precision);
+    }
+  }
+
+  /**
+   * Returns the precision of this sketch.
+   */
+  public int getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Returns whether no values have been added to this sketch.
+   */
+  public boolean isEmpty() {
+    return registers == null;
+  }
+
+  /**
+   * Adds a value to this sketch.
+   *
+   * @param value the value to add, must not be null
+   * @return this sketch
+   */
+  public HyperLogLog add(Object value) {
+    long hash = mix(value instanceof Long ? (Long) value : value.hashCode());
+    if (registers == null) {
+      registers = new byte[1 << precision];
+    }
+    int index = (int) (hash >>> (64 - precision));
+    // the marker bit limits the rank to 64 - precision + 1
+    int rank = Long.numberOfLeadingZeros(hash << precision | 1L << (precision - 1)) + 1;
+    if (rank > registers[index]) {
+      registers[index] = (byte) rank;
+    }
+    return this;
+  }
+
+  /**
+   * Returns a new sketch containing the values of this and another sketch. Neither of the two
+   * sketches is modified.
+   *
+   * @param other the sketch to merge with this one
+   * @return the merged sketch
+   * @throws IllegalArgumentException if the sketches have different precisions
+   */
+  public HyperLogLog merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("cannot merge sketches of different precisions ("
+          + precision + " and " + other.precision + ")");
+    }
+    HyperLogLog result = new HyperLogLog(precision);
+    if (registers != null) {
+      result.registers = registers.clone();
+    }
+    if (other.registers != null) {
+      if (result.registers == null) {
+        result.registers = other.registers.clone();
+      } else {
+        for (int i = 0; i < result.registers.length; i++) {
+          if (other.registers[i] > result.registers[i]) {
+            result.registers[i] = other.registers[i];
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the estimated number of distinct values added to this sketch.
+   */
+  public long estimate() {
+    if (registers == null) {
+      return 0;
+    }
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += Double.longBitsToDouble((1023L - register) << 52); // 2^-register
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double estimate = alpha(m) * m * m / sum;
+    if (zeros > 0 && estimate <= 2.5 * m) {
+      // linear counting is more accurate for small cardinalities
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+
+  /**
+   * Spreads the bits of the given value over all 64 bits (finalizer of MurmurHash3).
+   */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "HyperLogLog(precision: " + precision + ", estimate: " + estimate() + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof HyperLogLog)) {
+      return false;
+    }
+    HyperLogLog other = (HyperLogLog) o;
+    return precision == other.precision && Arrays.equals(registers, other.registers);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * precision + Arrays.hashCode(registers);
+  }
+}
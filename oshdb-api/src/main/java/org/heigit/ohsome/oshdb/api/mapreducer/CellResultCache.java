@@ -0,0 +1,344 @@
+package org.heigit.ohsome.oshdb.api.mapreducer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBException;
+import org.heigit.ohsome.oshdb.util.metrics.MeteredValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent cache of the partial results of individual cells, which can be shared by
+ * repeated runs of the same reduce operations (see
+ * {@link MapReducer#cellResultCache(CellResultCache)}).
+ *
+ * <p>Each partial result is stored under a fingerprint of the query (its map functions,
+ * filters, timestamps, area of interest and reduce operation) and the id of the cell. The
+ * {@link GridOSHEntity#getDataFingerprint() data fingerprint} of the cell is stored alongside:
+ * cells whose data changed since the result was stored (e.g. by a new import) are processed
+ * again. Queries thus only process the cells which are not yet cached or were changed.</p>
+ *
+ * <p>The entries are stored in files of a local directory. If their total size exceeds the given
+ * maximum, the least recently used entries are removed. Only serializable partial results are
+ * cached, and queries collecting {@link MapReducer#collectMetrics() metrics} are not cached.</p>
+ *
+ * <p>The fingerprint of a query is derived from the serialized form of its functions. For lambda
+ * functions this covers their captured values and the name of the method implementing them, but
+ * not their code: the cache must be {@link #clear() cleared} if the code of the functions used by
+ * cached queries is changed.</p>
+ */
+public class CellResultCache {
+  private static final Logger LOG = LoggerFactory.getLogger(CellResultCache.class);
+  private static final String SUFFIX = ".cell";
+  private static final int MAGIC = 0x4f434331;
+
+  private final Path directory;
+  private final long maxBytes;
+  // sizes of all entries, in access order
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes = 0;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Opens the cache stored in the given directory, which is created if it doesn't exist yet.
+   *
+   * @param directory the directory of the cache entries
+   * @param maxBytes the maximum total size of the cache entries, in bytes
+   * @throws IOException if the directory cannot be created or read
+   */
+  public CellResultCache(Path directory, long maxBytes) throws IOException {
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("maximum size of the cache must be positive");
+    }
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    Files.createDirectories(directory);
+    List<Path> files = new ArrayList<>();
+    try (Stream<Path> list = Files.list(directory)) {
+      list.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+    }
+    // least recently used entries first
+    files.sort(Comparator.comparing(CellResultCache::lastModified));
+    synchronized (this) {
+      for (Path file : files) {
+        long size = Files.size(file);
+        entries.put(file.getFileName().toString(), size);
+        totalBytes += size;
+      }
+      evict();
+    }
+  }
+
+  private static FileTime lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  /**
+   * Returns the number of cell results which were found in the cache.
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of cell results which were not found in the cache, or whose cell was
+   * changed since they have been stored.
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the total size of the cache entries, in bytes.
+   */
+  public synchronized long getSize() {
+    return totalBytes;
+  }
+
+  /**
+   * Removes all entries of the cache.
+   *
+   * @throws IOException if an entry cannot be removed
+   */
+  public synchronized void clear() throws IOException {
+    for (String entry : entries.keySet()) {
+      Files.deleteIfExists(directory.resolve(entry));
+    }
+    entries.clear();
+    totalBytes = 0;
+  }
+
+  /**
+   * Returns the cache of the cell results of a single reduce operation.
+   *
+   * @param queryParts the objects defining the results of the operation, e.g. its cell processor
+   *        and cell iterator
+   * @return the cache of the operation, which computes all results if the query cannot be
+   *         fingerprinted (e.g. because some of its functions aren't serializable)
+   */
+  public Query query(Object... queryParts) {
+    try {
+      return new Query(fingerprint(queryParts));
+    } catch (IOException e) {
+      LOG.debug("query cannot be cached: {}", e.getMessage());
+      return new Query(null);
+    }
+  }
+
+  /**
+   * Computes a fingerprint of the given objects from their serialized form. MapReducers are
+   * represented by their settings, which excludes the state of a running operation.
+   */
+  private static byte[] fingerprint(Object... parts) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new OSHDBException(e);
+    }
+    try (var out = new FingerprintOutputStream(new DigestOutputStream(digest))) {
+      out.writeObject(parts);
+    }
+    return digest.digest();
+  }
+
+  private static class FingerprintOutputStream extends ObjectOutputStream {
+    FingerprintOutputStream(OutputStream out) throws IOException {
+      super(out);
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (obj instanceof MapReducer<?> mapReducer) {
+        return mapReducer.querySettings();
+      }
+      return obj;
+    }
+  }
+
+  private static class DigestOutputStream extends OutputStream {
+    private final MessageDigest digest;
+
+    DigestOutputStream(MessageDigest digest) {
+      this.digest = digest;
+    }
+
+    @Override
+    public void write(int b) {
+      digest.update((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      digest.update(b, off, len);
+    }
+  }
+
+  /**
+   * The cell results of a single reduce operation.
+   */
+  public class Query {
+    private final byte[] fingerprint;
+
+    private Query(byte[] fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the cached result of a cell, or computes (and stores) it if the cell isn't cached
+     * yet or was changed since its result has been stored.
+     *
+     * @param cell the cell
+     * @param compute computes the result of the cell
+     * @param <S> the type of the result
+     * @return the result of the cell
+     */
+    public <S> S computeIfAbsent(GridOSHEntity cell, Supplier<S> compute) {
+      return computeIfAbsent(cell, compute, () -> true);
+    }
+
+    /**
+     * Returns the cached result of a cell, or computes it if the cell isn't cached yet or was
+     * changed since its result has been stored. A computed result is only stored if it is
+     * complete, i.e. if the processing of the cell wasn't stopped early (e.g. by a timeout).
+     *
+     * @param cell the cell
+     * @param compute computes the result of the cell
+     * @param complete checked after computing the result, whether it is complete
+     * @param <S> the type of the result
+     * @return the result of the cell
+     */
+    public <S> S computeIfAbsent(GridOSHEntity cell, Supplier<S> compute,
+        BooleanSupplier complete) {
+      if (fingerprint == null) {
+        return compute.get();
+      }
+      String entry = entryName(cell);
+      long dataFingerprint = cell.getDataFingerprint();
+      S result = read(entry, dataFingerprint);
+      if (result != null) {
+        hits.increment();
+        return result;
+      }
+      misses.increment();
+      result = compute.get();
+      if (result instanceof Serializable && MeteredValue.metricsOf(result) == null
+          && complete.getAsBoolean()) {
+        write(entry, dataFingerprint, result);
+      }
+      return result;
+    }
+
+    private String entryName(GridOSHEntity cell) {
+      MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new OSHDBException(e);
+      }
+      digest.update(fingerprint);
+      digest.update(cell.getClass().getName().getBytes());
+      digest.update((byte) cell.getLevel());
+      for (int i = 0; i < 64; i += 8) {
+        digest.update((byte) (cell.getId() >>> i));
+      }
+      return HexFormat.of().formatHex(digest.digest(), 0, 20) + SUFFIX;
+    }
+  }
+
+  private synchronized boolean contains(String entry) {
+    return entries.get(entry) != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <S> S read(String entry, long dataFingerprint) {
+    if (!contains(entry)) {
+      return null;
+    }
+    Path file = directory.resolve(entry);
+    try (InputStream in = Files.newInputStream(file);
+        var data = new DataInputStream(in)) {
+      if (data.readInt() != MAGIC || data.readLong() != dataFingerprint) {
+        // outdated entry: the cell has changed
+        return null;
+      }
+      S result = (S) new ObjectInputStream(data).readObject();
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return result;
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      LOG.debug("could not read cell result cache entry {}: {}", entry, e.getMessage());
+      return null;
+    }
+  }
+
+  private void write(String entry, long dataFingerprint, Object result) {
+    try {
+      var bytes = new ByteArrayOutputStream();
+      try (var data = new DataOutputStream(bytes)) {
+        data.writeInt(MAGIC);
+        data.writeLong(dataFingerprint);
+        try (var out = new ObjectOutputStream(data)) {
+          out.writeObject(result);
+        }
+      }
+      Path tmp = Files.createTempFile(directory, "entry", ".tmp");
+      Files.write(tmp, bytes.toByteArray());
+      Files.move(tmp, directory.resolve(entry), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      synchronized (this) {
+        Long previous = entries.put(entry, (long) bytes.size());
+        totalBytes += bytes.size() - (previous == null ? 0 : previous);
+        evict();
+      }
+    } catch (IOException e) {
+      LOG.warn("could not write cell result cache entry {}: {}", entry, e.getMessage());
+    }
+  }
+
+  // removes the least recently used entries until the cache fits into its maximum size
+  private void evict() {
+    var itr = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && itr.hasNext()) {
+      Map.Entry<String, Long> eldest = itr.next();
+      try {
+        Files.deleteIfExists(directory.resolve(eldest.getKey()));
+      } catch (IOException e) {
+        LOG.warn("could not remove cell result cache entry {}: {}", eldest.getKey(),
+            e.getMessage());
+      }
+      totalBytes -= eldest.getValue();
+      itr.remove();
+    }
+  }
+}
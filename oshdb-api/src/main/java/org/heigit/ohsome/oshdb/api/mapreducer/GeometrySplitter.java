@@ -5,17 +5,20 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import org.heigit.ohsome.oshdb.OSHDB;
 import org.heigit.ohsome.oshdb.OSHDBBoundable;
 import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
 import org.heigit.ohsome.oshdb.api.object.OSMContributionImpl;
 import org.heigit.ohsome.oshdb.api.object.OSMEntitySnapshotImpl;
+import org.heigit.ohsome.oshdb.index.XYGrid;
+import org.heigit.ohsome.oshdb.osm.OSMCoordinates;
 import org.heigit.ohsome.oshdb.util.celliterator.ContributionType;
 import org.heigit.ohsome.oshdb.util.celliterator.LazyEvaluatedObject;
 import org.heigit.ohsome.oshdb.util.geometry.OSHDBGeometryBuilder;
@@ -38,47 +41,181 @@ import org.locationtech.jts.io.WKBWriter;
 /**
  * Helper class to split "MapReducible" objects into sub-regions of an area of interest.
  *
+ * <p>The sub-regions are pre-assigned to the cells of a regular grid: for each cell touched by a
+ * sub-region, it is recorded whether the cell lies completely inside the sub-region, or only
+ * partially. Entities which lie inside a single grid cell are then directly assigned to the
+ * sub-regions containing the whole cell, and only need to be checked against the sub-regions
+ * partially covering it. Other entities are matched to the sub-regions via a spatial index.</p>
+ *
  * @param <U> an arbitrary index type to identify supplied sub-regions
  */
 class GeometrySplitter<U extends Comparable<U> & Serializable> implements Serializable {
   private static final long serialVersionUID = 1L;
+  // the maximum number of grid cells to which the sub-regions are assigned
+  private static final long MAX_GRID_CELLS = 1L << 22;
+  // the targeted number of grid cells along the larger side of a typical sub-region
+  private static final int CELLS_PER_SUBREGION = 8;
+
+  // the state of the sub-regions, by their position in `indices`
+  private final Object[] indices;
+  private final FastBboxInPolygon[] bips;
+  private final FastBboxOutsidePolygon[] bops;
+  private final FastPolygonOperations[] poops;
+  private final PreparedGeometry[] pgs;
+  private final STRtree spatialIndex = new STRtree();
 
-  private STRtree spatialIndex = new STRtree();
-  private Map<U, FastBboxInPolygon> bips = new HashMap<>();
-  private Map<U, FastBboxOutsidePolygon> bops = new HashMap<>();
-  private Map<U, FastPolygonOperations> poops = new HashMap<>();
-  private Map<U, PreparedGeometry> pgs = new HashMap<>();
+  // the sub-regions touching the grid cells, sorted by cell id: the entries between
+  // `cellOffsets[i]` and `cellOffsets[i + 1]` of `cellRegions` are the sub-regions touching the
+  // cell `cellIds[i]`, either as `r` if the cell is completely inside sub-region r or as `~r`
+  private final XYGrid grid;
+  private final long[] cellIds;
+  private final int[] cellOffsets;
+  private final int[] cellRegions;
 
   private Map<U, ? extends Geometry> subregions;
 
   <P extends Geometry & Polygonal> GeometrySplitter(Map<U, P> subregions) {
     PreparedGeometryFactory pgf = new PreparedGeometryFactory();
-    subregions.forEach((index, geometry) -> {
-      spatialIndex.insert(geometry.getEnvelopeInternal(), index);
-      bips.put(index, new FastBboxInPolygon(geometry));
-      bops.put(index, new FastBboxOutsidePolygon(geometry));
-      poops.put(index, new FastPolygonOperations(geometry));
-      pgs.put(index, pgf.create(geometry));
-    });
+    int count = subregions.size();
+    indices = new Object[count];
+    bips = new FastBboxInPolygon[count];
+    bops = new FastBboxOutsidePolygon[count];
+    poops = new FastPolygonOperations[count];
+    pgs = new PreparedGeometry[count];
+    List<OSHDBBoundingBox> envelopes = new ArrayList<>(count);
+    int r = 0;
+    for (Entry<U, P> entry : subregions.entrySet()) {
+      P geometry = entry.getValue();
+      indices[r] = entry.getKey();
+      bips[r] = new FastBboxInPolygon(geometry);
+      bops[r] = new FastBboxOutsidePolygon(geometry);
+      poops[r] = new FastPolygonOperations(geometry);
+      pgs[r] = pgf.create(geometry);
+      spatialIndex.insert(geometry.getEnvelopeInternal(), r);
+      envelopes.add(OSHDBGeometryBuilder.boundingBoxOf(geometry.getEnvelopeInternal()));
+      r++;
+    }
     this.subregions = subregions;
+
+    // assign the sub-regions to the grid cells they touch
+    grid = new XYGrid(gridZoom(envelopes));
+    Map<Long, List<Integer>> cells = new HashMap<>();
+    for (r = 0; r < count; r++) {
+      for (long cellId : touchedCells(envelopes.get(r))) {
+        OSHDBBoundingBox cellBbox = grid.getCellDimensions(cellId);
+        if (bips[r].test(cellBbox)) {
+          cells.computeIfAbsent(cellId, ignored -> new ArrayList<>()).add(r);
+        } else if (!bops[r].test(cellBbox)) {
+          cells.computeIfAbsent(cellId, ignored -> new ArrayList<>()).add(~r);
+        }
+      }
+    }
+    cellIds = cells.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+    cellOffsets = new int[cellIds.length + 1];
+    cellRegions = new int[cells.values().stream().mapToInt(List::size).sum()];
+    int offset = 0;
+    for (int i = 0; i < cellIds.length; i++) {
+      cellOffsets[i] = offset;
+      for (int region : cells.get(cellIds[i])) {
+        cellRegions[offset++] = region;
+      }
+    }
+    cellOffsets[cellIds.length] = offset;
   }
 
-  private static class IndexData<I, D> {
-    private final I index;
-    private final D data;
+  /**
+   * Chooses the zoom level of the grid, such that a typical sub-region touches a few dozen cells.
+   */
+  private static int gridZoom(List<OSHDBBoundingBox> envelopes) {
+    if (envelopes.isEmpty()) {
+      return 0;
+    }
+    double[] sizes = envelopes.stream()
+        .mapToDouble(bbox -> Math.max(
+            bbox.getMaxLongitude() - (double) bbox.getMinLongitude(),
+            bbox.getMaxLatitude() - (double) bbox.getMinLatitude()) * OSMCoordinates.GEOM_PRECISION)
+        .sorted()
+        .toArray();
+    double medianSize = Math.max(sizes[sizes.length / 2], 1E-7);
+    int zoom = (int) Math.floor(Math.log(360.0 * CELLS_PER_SUBREGION / medianSize) / Math.log(2));
+    zoom = Math.max(0, Math.min(OSHDB.MAXZOOM, zoom));
+    while (zoom > 0 && cellCount(envelopes, zoom) > MAX_GRID_CELLS) {
+      zoom--;
+    }
+    return zoom;
+  }
 
-    IndexData(I index, D data) {
-      this.index = index;
-      this.data = data;
+  private static long cellCount(List<OSHDBBoundingBox> envelopes, int zoom) {
+    double cellWidth = new XYGrid(zoom).getCellWidth();
+    long result = 0;
+    for (OSHDBBoundingBox bbox : envelopes) {
+      result += (long) ((bbox.getMaxLongitude() - (double) bbox.getMinLongitude())
+          * OSMCoordinates.GEOM_PRECISION / cellWidth + 3)
+          * (long) ((bbox.getMaxLatitude() - (double) bbox.getMinLatitude())
+          * OSMCoordinates.GEOM_PRECISION / cellWidth + 3);
     }
+    return result;
+  }
 
-    I getIndex() {
-      return index;
+  /**
+   * Returns the ids of the grid cells touching the given bounding box.
+   */
+  private long[] touchedCells(OSHDBBoundingBox bbox) {
+    long zoompow = 1L << grid.getLevel();
+    long min = grid.getId(clampLongitude(bbox.getMinLongitude()),
+        clampLatitude(bbox.getMinLatitude()));
+    long max = grid.getId(clampLongitude(bbox.getMaxLongitude()),
+        clampLatitude(bbox.getMaxLatitude()));
+    // include the neighbouring cells, which may touch the bounding box at their border
+    long minX = Math.max(0, min % zoompow - 1);
+    long minY = Math.max(0, min / zoompow - 1);
+    long maxX = Math.min(zoompow - 1, max % zoompow + 1);
+    long maxY = Math.min(Math.max(0, zoompow / 2 - 1), max / zoompow + 1);
+    if (maxX < minX) {
+      // the bounding box reaches the antimeridian
+      maxX = zoompow - 1;
     }
+    long[] result = new long[(int) ((maxX - minX + 1) * (maxY - minY + 1))];
+    int i = 0;
+    for (long y = minY; y <= maxY; y++) {
+      for (long x = minX; x <= maxX; x++) {
+        result[i++] = y * zoompow + x;
+      }
+    }
+    return result;
+  }
 
-    D getData() {
-      return data;
+  private static long clampLongitude(long longitude) {
+    return Math.max(OSMCoordinates.toOSM(-180.0), Math.min(OSMCoordinates.toOSM(180.0) - 1,
+        longitude));
+  }
+
+  private static long clampLatitude(long latitude) {
+    return Math.max(OSMCoordinates.toOSM(-90.0), Math.min(OSMCoordinates.toOSM(90.0) - 1,
+        latitude));
+  }
+
+  /**
+   * Returns the sub-regions touching the given bounding box: sub-regions containing the whole
+   * bounding box as {@code r}, all others as {@code ~r}.
+   */
+  private int[] candidates(OSHDBBoundable bbox) {
+    long cellId = grid.getId(bbox.getMinLongitude(), bbox.getMinLatitude());
+    if (cellId >= 0 && cellId == grid.getId(bbox.getMaxLongitude(), bbox.getMaxLatitude())) {
+      // inside a single grid cell
+      int i = Arrays.binarySearch(cellIds, cellId);
+      return i < 0 ? new int[0] : Arrays.copyOfRange(cellRegions, cellOffsets[i],
+          cellOffsets[i + 1]);
     }
+    @SuppressWarnings("unchecked") // STRtree works with raw types unfortunately
+    List<Integer> regions = spatialIndex.query(
+        OSHDBGeometryBuilder.getGeometry(bbox).getEnvelopeInternal());
+    return regions.stream().mapToInt(r -> ~r).toArray();
+  }
+
+  @SuppressWarnings("unchecked") // only `U` objects are stored in `indices`
+  private U index(int r) {
+    return (U) indices[r];
   }
 
   /**
@@ -89,52 +226,62 @@ class GeometrySplitter<U extends Comparable<U> & Serializable> implements Serial
    */
   public Map<U, OSMEntitySnapshot> splitOSMEntitySnapshot(OSMEntitySnapshot data) {
     OSHDBBoundable oshBoundingBox = data.getOSHEntity().getBoundable();
-    @SuppressWarnings("unchecked") // STRtree works with raw types unfortunately
-    List<U> candidates = spatialIndex.query(
-        OSHDBGeometryBuilder.getGeometry(oshBoundingBox).getEnvelopeInternal()
-    );
-    return candidates.stream()
-        // OSH entity fully outside -> skip
-        .filter(index -> !bops.get(index).test(oshBoundingBox))
-        .flatMap(index -> {
-          if (bips.get(index).test(oshBoundingBox)) {
-            // OSH entity fully inside -> directly return
-            return Stream.of(new IndexData<>(index, data));
-          }
+    int[] candidates = candidates(oshBoundingBox);
+    Map<U, OSMEntitySnapshot> result = new HashMap<>(candidates.length * 2);
+    for (int candidate : candidates) {
+      if (candidate >= 0) {
+        // grid cell of the OSH entity fully inside -> directly return
+        result.put(index(candidate), data);
+        continue;
+      }
+      int r = ~candidate;
+      // OSH entity fully outside -> skip
+      if (bops[r].test(oshBoundingBox)) {
+        continue;
+      }
+      if (bips[r].test(oshBoundingBox)) {
+        // OSH entity fully inside -> directly return
+        result.put(index(r), data);
+        continue;
+      }
+      OSMEntitySnapshot split = splitOSMEntitySnapshot(data, r);
+      if (split != null) {
+        result.put(index(r), split);
+      }
+    }
+    return result;
+  }
 
-          // now we can check against the actual contribution geometry
-          var snapshotGeometry = data.getGeometry();
-          OSHDBBoundingBox snapshotBbox = OSHDBGeometryBuilder.boundingBoxOf(
-              snapshotGeometry.getEnvelopeInternal()
-          );
+  private OSMEntitySnapshot splitOSMEntitySnapshot(OSMEntitySnapshot data, int r) {
+    // now we can check against the actual contribution geometry
+    var snapshotGeometry = data.getGeometry();
+    OSHDBBoundingBox snapshotBbox = OSHDBGeometryBuilder.boundingBoxOf(
+        snapshotGeometry.getEnvelopeInternal()
+    );
 
-          // OSM entity fully outside -> skip
-          if (bops.get(index).test(snapshotBbox)) {
-            return Stream.empty();
-          }
-          // OSM entity fully inside -> directly return
-          if (bips.get(index).test(snapshotBbox)) {
-            return Stream.of(new IndexData<>(index, data));
-          }
+    // OSM entity fully outside -> skip
+    if (bops[r].test(snapshotBbox)) {
+      return null;
+    }
+    // OSM entity fully inside -> directly return
+    if (bips[r].test(snapshotBbox)) {
+      return data;
+    }
 
-          FastPolygonOperations poop = poops.get(index);
-          PreparedGeometry pg = pgs.get(index);
-          try {
-            boolean intersects = pg.intersects(snapshotGeometry);
-            if (!intersects) {
-              // not actually intersecting -> skip
-              return Stream.empty();
-            } else {
-              return Stream.of(new IndexData<>(index, new OSMEntitySnapshotImpl(data,
-                  new LazyEvaluatedObject<>(() ->
-                      faultTolerantIntersection(snapshotGeometry, poop))
-              )));
-            }
-          } catch (TopologyException ignored) {
-            // JTS cannot handle broken osm geometry -> skip
-            return Stream.empty();
-          }
-        }).collect(Collectors.toMap(IndexData::getIndex, IndexData::getData));
+    FastPolygonOperations poop = poops[r];
+    try {
+      boolean intersects = pgs[r].intersects(snapshotGeometry);
+      if (!intersects) {
+        // not actually intersecting -> skip
+        return null;
+      } else {
+        return new OSMEntitySnapshotImpl(data, new LazyEvaluatedObject<>(() ->
+            faultTolerantIntersection(snapshotGeometry, poop)));
+      }
+    } catch (TopologyException ignored) {
+      // JTS cannot handle broken osm geometry -> skip
+      return null;
+    }
   }
 
   /**
@@ -153,69 +300,81 @@ class GeometrySplitter<U extends Comparable<U> & Serializable> implements Serial
    */
   public Map<U, OSMContribution> splitOSMContribution(OSMContribution data) {
     OSHDBBoundable oshBoundingBox = data.getOSHEntity().getBoundable();
-    @SuppressWarnings("unchecked") // STRtree works with raw types unfortunately
-    List<U> candidates = spatialIndex.query(
-        OSHDBGeometryBuilder.getGeometry(oshBoundingBox).getEnvelopeInternal()
-    );
-    return candidates.stream()
-        // OSH entity fully outside -> skip
-        .filter(index -> !bops.get(index).test(oshBoundingBox))
-        .flatMap(index -> {
-          // OSH entity fully inside -> directly return
-          if (bips.get(index).test(oshBoundingBox)) {
-            return Stream.of(new IndexData<>(index, data));
-          }
+    int[] candidates = candidates(oshBoundingBox);
+    Map<U, OSMContribution> result = new HashMap<>(candidates.length * 2);
+    for (int candidate : candidates) {
+      if (candidate >= 0) {
+        // grid cell of the OSH entity fully inside -> directly return
+        result.put(index(candidate), data);
+        continue;
+      }
+      int r = ~candidate;
+      // OSH entity fully outside -> skip
+      if (bops[r].test(oshBoundingBox)) {
+        continue;
+      }
+      // OSH entity fully inside -> directly return
+      if (bips[r].test(oshBoundingBox)) {
+        result.put(index(r), data);
+        continue;
+      }
+      OSMContribution split = splitOSMContribution(data, r);
+      if (split != null) {
+        result.put(index(r), split);
+      }
+    }
+    return result;
+  }
 
-          // now we can check against the actual contribution geometry
-          var contributionGeometryBefore = data.getGeometryBefore();
-          var contributionGeometryAfter = data.getGeometryAfter();
-          OSHDBBoundingBox contributionGeometryBbox;
-          if (data.is(ContributionType.CREATION)) {
-            contributionGeometryBbox = OSHDBGeometryBuilder.boundingBoxOf(
-                contributionGeometryAfter.getEnvelopeInternal()
-            );
-          } else if (data.is(ContributionType.DELETION)) {
-            contributionGeometryBbox = OSHDBGeometryBuilder.boundingBoxOf(
-                contributionGeometryBefore.getEnvelopeInternal()
-            );
-          } else {
-            var env = contributionGeometryBefore.getEnvelopeInternal();
-            env.expandToInclude(contributionGeometryAfter.getEnvelopeInternal());
-            contributionGeometryBbox = OSHDBGeometryBuilder.boundingBoxOf(env);
-          }
+  private OSMContribution splitOSMContribution(OSMContribution data, int r) {
+    // now we can check against the actual contribution geometry
+    var contributionGeometryBefore = data.getGeometryBefore();
+    var contributionGeometryAfter = data.getGeometryAfter();
+    OSHDBBoundingBox contributionGeometryBbox;
+    if (data.is(ContributionType.CREATION)) {
+      contributionGeometryBbox = OSHDBGeometryBuilder.boundingBoxOf(
+          contributionGeometryAfter.getEnvelopeInternal()
+      );
+    } else if (data.is(ContributionType.DELETION)) {
+      contributionGeometryBbox = OSHDBGeometryBuilder.boundingBoxOf(
+          contributionGeometryBefore.getEnvelopeInternal()
+      );
+    } else {
+      var env = contributionGeometryBefore.getEnvelopeInternal();
+      env.expandToInclude(contributionGeometryAfter.getEnvelopeInternal());
+      contributionGeometryBbox = OSHDBGeometryBuilder.boundingBoxOf(env);
+    }
 
-          if (bops.get(index).test(contributionGeometryBbox)) {
-            // contribution fully outside -> skip
-            return Stream.empty();
-          }
-          if (bips.get(index).test(contributionGeometryBbox)) {
-            // contribution fully inside -> directly return
-            return Stream.of(new IndexData<>(index, data));
-          }
+    if (bops[r].test(contributionGeometryBbox)) {
+      // contribution fully outside -> skip
+      return null;
+    }
+    if (bips[r].test(contributionGeometryBbox)) {
+      // contribution fully inside -> directly return
+      return data;
+    }
 
-          FastPolygonOperations poop = poops.get(index);
-          PreparedGeometry pg = pgs.get(index);
-          try {
-            boolean intersectsBefore = contributionGeometryBefore != null
-                && pg.intersects(contributionGeometryBefore);
-            boolean intersectsAfter = contributionGeometryAfter != null
-                && pg.intersects(contributionGeometryAfter);
-            if ((!intersectsBefore) && (!intersectsAfter)) {
-              // not actually intersecting -> skip
-              return Stream.empty();
-            } else {
-              return Stream.of(new IndexData<>(index, new OSMContributionImpl(data,
-                  new LazyEvaluatedObject<>(() ->
-                      faultTolerantIntersection(contributionGeometryBefore, poop)),
-                  new LazyEvaluatedObject<>(() ->
-                      faultTolerantIntersection(contributionGeometryAfter, poop)))
-              ));
-            }
-          } catch (TopologyException ignored) {
-            // JTS cannot handle broken osm geometry -> skip
-            return Stream.empty();
-          }
-        }).collect(Collectors.toMap(IndexData::getIndex, IndexData::getData));
+    FastPolygonOperations poop = poops[r];
+    PreparedGeometry pg = pgs[r];
+    try {
+      boolean intersectsBefore = contributionGeometryBefore != null
+          && pg.intersects(contributionGeometryBefore);
+      boolean intersectsAfter = contributionGeometryAfter != null
+          && pg.intersects(contributionGeometryAfter);
+      if ((!intersectsBefore) && (!intersectsAfter)) {
+        // not actually intersecting -> skip
+        return null;
+      } else {
+        return new OSMContributionImpl(data,
+            new LazyEvaluatedObject<>(() ->
+                faultTolerantIntersection(contributionGeometryBefore, poop)),
+            new LazyEvaluatedObject<>(() ->
+                faultTolerantIntersection(contributionGeometryAfter, poop)));
+      }
+    } catch (TopologyException ignored) {
+      // JTS cannot handle broken osm geometry -> skip
+      return null;
+    }
   }
 
   private static Geometry faultTolerantIntersection(Geometry subject, FastPolygonOperations poop) {
@@ -0,0 +1,24 @@
+package org.heigit.ohsome.oshdb.api.mapreducer;
+
+import org.heigit.ohsome.oshdb.api.generic.HyperLogLog;
+
+class HyperLogLogReducer {
+  private HyperLogLogReducer() {}
+
+  static HyperLogLog identitySupplier(int precision) {
+    return new HyperLogLog(precision);
+  }
+
+  static <R> HyperLogLog accumulator(HyperLogLog acc, R cur) {
+    return acc.add(cur);
+  }
+
+  static HyperLogLog combiner(HyperLogLog a, HyperLogLog b) {
+    if (a.isEmpty()) {
+      return b;
+    } else if (b.isEmpty()) {
+      return a;
+    }
+    return a.merge(b);
+  }
+}
@@ -8,6 +8,7 @@ import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -24,7 +25,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
 import org.heigit.ohsome.oshdb.OSHDBTimestamp;
-import org.heigit.ohsome.oshdb.api.generic.NumberUtils;
+import org.heigit.ohsome.oshdb.api.generic.HyperLogLog;
 import org.heigit.ohsome.oshdb.api.generic.OSHDBCombinedIndex;
 import org.heigit.ohsome.oshdb.api.generic.WeightedValue;
 import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer.Grouping;
@@ -54,6 +55,9 @@ import org.locationtech.jts.geom.Polygonal;
  * "bins". This can be used to aggregate results by timestamp, geographic region, user id, osm tag,
  * etc.</p>
  *
+ * <p>Index values are grouped using their `equals` and `hashCode` methods, which must therefore
+ * be consistent with their natural ordering.</p>
+ *
  * <p>Internally, this wraps around an existing MapReducer object, which still continues to be
  * responsible for all actual calculations.</p>
  *
@@ -110,6 +114,12 @@ public class MapAggregator<U extends Comparable<U> & Serializable, X> implements
     return new MapAggregator<>(this, mapReducer);
   }
 
+  // returns a copy of this map aggregator whose reductions are handled by the given query batch
+  @Contract(pure = true)
+  MapAggregator<U, X> withBatchCapture(QueryBatch.Capture capture) {
+    return this.copyTransform(this.mapReducer.withBatchCapture(capture));
+  }
+
   @Contract(pure = true)
   private <V extends Comparable<V> & Serializable> MapAggregator<V, X>
       copyTransformKey(MapReducer<IndexValuePair<V, X>> mapReducer) {
@@ -328,12 +338,14 @@ public class MapAggregator<U extends Comparable<U> & Serializable, X> implements
   @Override
   @Contract(pure = true)
   public SortedMap<U, Number> sum() throws Exception {
-    return this
-        .makeNumeric()
-        .reduce(
-            () -> 0,
-            NumberUtils::add
-        );
+    return transformSortedMap(
+        this.makeNumeric().reduce(
+            MutableSum::identitySupplier,
+            MutableSum::accumulator,
+            MutableSum::combiner
+        ),
+        MutableSum::getValue
+    );
   }
 
   /**
@@ -350,12 +362,16 @@ public class MapAggregator<U extends Comparable<U> & Serializable, X> implements
   @Contract(pure = true)
   public <R extends Number> SortedMap<U, R> sum(SerializableFunction<X, R> mapper)
       throws Exception {
-    return this
-        .map(mapper)
-        .reduce(
-            () -> (R) (Integer) 0,
-            NumberUtils::add
-        );
+    @SuppressWarnings("unchecked") // the sum is of the same type as the summed up numbers
+    SortedMap<U, R> result = (SortedMap<U, R>) transformSortedMap(
+        this.map(mapper).reduce(
+            MutableSum::identitySupplier,
+            MutableSum::accumulator,
+            MutableSum::combiner
+        ),
+        MutableSum::getValue
+    );
+    return result;
   }
 
   /**
@@ -366,7 +382,14 @@ public class MapAggregator<U extends Comparable<U> & Serializable, X> implements
   @Override
   @Contract(pure = true)
   public SortedMap<U, Integer> count() throws Exception {
-    return this.sum(ignored -> 1);
+    return transformSortedMap(
+        this.reduce(
+            MutableSum::identitySupplier,
+            MutableSum::increment,
+            MutableSum::combiner
+        ),
+        MutableSum::intValue
+    );
   }
 
   /**
@@ -416,6 +439,83 @@ public class MapAggregator<U extends Comparable<U> & Serializable, X> implements
     return transformSortedMap(this.uniq(), Set::size);
   }
 
+  /**
+   * Returns an estimate of the number of unique values of the results.
+   *
+   * <p>For example, this can be used together with the OSMContributionView to get the approximate
+   * number of unique users editing specific feature types, using much less memory than
+   * {@link #countUniq()}.</p>
+   *
+   * @return estimated number of distinct values
+   * @see HyperLogLog
+   */
+  @Override
+  @Contract(pure = true)
+  public SortedMap<U, Long> estimatedCountUniq() throws Exception {
+    return this.estimatedCountUniq(HyperLogLog.DEFAULT_PRECISION);
+  }
+
+  /**
+   * Returns an estimate of the number of unique values of the results, using a sketch of the
+   * given precision.
+   *
+   * @param precision the precision of the sketch, see {@link HyperLogLog#HyperLogLog(int)}
+   * @return estimated number of distinct values
+   * @see HyperLogLog
+   */
+  @Override
+  @Contract(pure = true)
+  public SortedMap<U, Long> estimatedCountUniq(int precision) throws Exception {
+    return this.estimatedCountUniq(x -> x, precision);
+  }
+
+  /**
+   * Returns an estimate of the number of unique values of the results provided by a given mapper
+   * function.
+   *
+   * @param mapper function that returns some values
+   * @param <R> the type that is returned by the `mapper` function
+   * @return estimated number of distinct values returned by the `mapper` function
+   * @see HyperLogLog
+   */
+  @Override
+  @Contract(pure = true)
+  public <R> SortedMap<U, Long> estimatedCountUniq(SerializableFunction<X, R> mapper)
+      throws Exception {
+    return this.estimatedCountUniq(mapper, HyperLogLog.DEFAULT_PRECISION);
+  }
+
+  /**
+   * Returns an estimate of the number of unique values of the results provided by a given mapper
+   * function, using a sketch of the given precision.
+   *
+   * @param mapper function that returns some values
+   * @param precision the precision of the sketch, see {@link HyperLogLog#HyperLogLog(int)}
+   * @param <R> the type that is returned by the `mapper` function
+   * @return estimated number of distinct values returned by the `mapper` function
+   * @see HyperLogLog
+   */
+  @Override
+  @Contract(pure = true)
+  public <R> SortedMap<U, Long> estimatedCountUniq(SerializableFunction<X, R> mapper, int precision)
+      throws Exception {
+    HyperLogLog.checkPrecision(precision);
+    return transformSortedMap(this.sketch(mapper, precision), HyperLogLog::estimate);
+  }
+
+  /**
+   * Generates the HyperLogLog sketch of the complete result set.
+   */
+  @Contract(pure = true)
+  private <R> SortedMap<U, HyperLogLog> sketch(SerializableFunction<X, R> mapper, int precision)
+      throws Exception {
+    return this.map(mapper).reduce(
+        () -> HyperLogLogReducer.identitySupplier(precision),
+        HyperLogLogReducer::accumulator,
+        HyperLogLogReducer::combiner
+    );
+  }
+
   /**
    * Calculates the averages of the results.
    *
@@ -444,7 +544,14 @@ public class MapAggregator<U extends Comparable<U> & Serializable, X> implements
   @Contract(pure = true)
   public <R extends Number> SortedMap<U, Double> average(SerializableFunction<X, R> mapper)
       throws Exception {
-    return this.weightedAverage(data -> new WeightedValue(mapper.apply(data), 1.0));
+    return transformSortedMap(
+        this.map(mapper).reduce(
+            MutableWeightedDouble::identitySupplier,
+            MutableWeightedDouble::unweightedAccumulator,
+            MutableWeightedDouble::combiner
+        ),
+        x -> x.num / x.weight
+    );
   }
 
   /**
@@ -858,23 +965,19 @@ public class MapAggregator<U extends Comparable<U> & Serializable, X> implements
       SerializableBiFunction<S, X, S> accumulator,
       SerializableBinaryOperator<S> combiner)
       throws Exception {
-    SortedMap<U, S> result = this.mapReducer.reduce(
-        TreeMap::new,
-        (TreeMap<U, S> m, IndexValuePair<U, X> r) -> {
-          m.put(r.getKey(), accumulator.apply(
-              m.getOrDefault(r.getKey(), identitySupplier.get()),
-              r.getValue()
-          ));
+    // intermediate results are collected in hash maps which are only sorted at the very end
+    SortedMap<U, S> result = new TreeMap<>(this.mapReducer.reduce(
+        HashMap::new,
+        (HashMap<U, S> m, IndexValuePair<U, X> r) -> {
+          S current = m.get(r.getKey());
+          if (current == null) {
+            current = identitySupplier.get();
+          }
+          m.put(r.getKey(), accumulator.apply(current, r.getValue()));
           return m;
         },
-        (a, b) -> {
-          TreeMap<U, S> combined = new TreeMap<>(a);
-          for (Map.Entry<U, S> entry : b.entrySet()) {
-            combined.merge(entry.getKey(), entry.getValue(), combiner);
-          }
-          return combined;
-        }
-    );
+        (a, b) -> mergeInPlace(a, b, combiner)
+    ));
     // fill nodata entries with "0"
     @SuppressWarnings("unchecked") // all zerofills must "add up" to <U>
     Collection<U> allZerofills = (Collection<U>) this.completeZerofill(
@@ -962,6 +1065,32 @@ public class MapAggregator<U extends Comparable<U> & Serializable, X> implements
   }
 
 
+  /**
+   * Merges two (partial) aggregation results.
+   *
+   * <p>Instead of copying both maps, the entries of the smaller map are merged into the larger
+   * one, which is returned. Empty maps are never modified, because a backend may pass the same
+   * empty identity map to several combiner calls. Non-empty maps are always exclusively owned by
+   * the reduce step which produced them and are not used anymore after being combined.</p>
+   */
+  private static <U, S> HashMap<U, S> mergeInPlace(
+      HashMap<U, S> a, HashMap<U, S> b, SerializableBinaryOperator<S> combiner) {
+    if (a.isEmpty()) {
+      return b;
+    }
+    if (b.isEmpty()) {
+      return a;
+    }
+    if (a.size() >= b.size()) {
+      b.forEach((key, value) -> a.merge(key, value, combiner));
+      return a;
+    } else {
+      // keep the order of the arguments of the combiner function
+      a.forEach((key, value) -> b.merge(key, value, (bv, av) -> combiner.apply(av, bv)));
+      return b;
+    }
+  }
+
   // calculate complete set of indices to use for zerofilling
   @SuppressWarnings("rawtypes")
   // called recursively: the exact types of the zerofills are not known at this point
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -20,11 +21,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TimeZone;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.DoubleUnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -33,9 +36,11 @@ import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
 import org.heigit.ohsome.oshdb.OSHDBTag;
 import org.heigit.ohsome.oshdb.OSHDBTimestamp;
 import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.generic.HyperLogLog;
 import org.heigit.ohsome.oshdb.api.generic.NumberUtils;
 import org.heigit.ohsome.oshdb.api.generic.WeightedValue;
 import org.heigit.ohsome.oshdb.filter.AndOperator;
+import org.heigit.ohsome.oshdb.filter.CompiledFilter;
 import org.heigit.ohsome.oshdb.filter.Filter;
 import org.heigit.ohsome.oshdb.filter.FilterExpression;
 import org.heigit.ohsome.oshdb.filter.FilterParser;
@@ -48,9 +53,11 @@ import org.heigit.ohsome.oshdb.index.XYGridTree.CellIdRange;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
 import org.heigit.ohsome.oshdb.osm.OSMEntity;
 import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.util.CellId;
 import org.heigit.ohsome.oshdb.util.OSHDBTagKey;
 import org.heigit.ohsome.oshdb.util.exceptions.OSHDBInvalidTimestampException;
 import org.heigit.ohsome.oshdb.util.exceptions.OSHDBNotImplementedException;
+import org.heigit.ohsome.oshdb.util.function.CellSummaryFilter;
 import org.heigit.ohsome.oshdb.util.function.OSHEntityFilter;
 import org.heigit.ohsome.oshdb.util.function.OSMEntityFilter;
 import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
@@ -64,6 +71,8 @@ import org.heigit.ohsome.oshdb.util.geometry.OSHDBGeometryBuilder;
 import org.heigit.ohsome.oshdb.util.mappable.OSHDBMapReducible;
 import org.heigit.ohsome.oshdb.util.mappable.OSMContribution;
 import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.heigit.ohsome.oshdb.util.metrics.MeteredValue;
+import org.heigit.ohsome.oshdb.util.metrics.QueryMetrics;
 import org.heigit.ohsome.oshdb.util.taginterpreter.DefaultTagInterpreter;
 import org.heigit.ohsome.oshdb.util.taginterpreter.TagInterpreter;
 import org.heigit.ohsome.oshdb.util.time.IsoDateTimeParser;
@@ -132,6 +141,16 @@ public abstract class MapReducer<X> implements
 
   protected Long timeout = null;
 
+  // query metrics, only collected if a sink is set
+  private transient SerializableConsumer<QueryMetrics> metricsSink = null;
+  private final transient AtomicReference<QueryMetrics> queryMetrics;
+
+  // set while the reductions of this query are captured or replayed by a query batch
+  private transient QueryBatch.Capture batchCapture = null;
+
+  // persistent cache of the partial results of individual cells, if set
+  private transient CellResultCache cellResultCache = null;
+
   /** the class representing the used OSHDB view: either {@link OSMContribution} or
    * {@link OSMEntitySnapshot}. */
   Class<? extends OSHDBMapReducible> viewClass;
@@ -163,17 +182,24 @@ public abstract class MapReducer<X> implements
   protected EnumSet<OSMType> typeFilter = EnumSet.of(OSMType.NODE, OSMType.WAY, OSMType.RELATION);
   private final List<SerializablePredicate<OSHEntity>> preFilters = new ArrayList<>();
   private final List<SerializablePredicate<OSMEntity>> filters = new ArrayList<>();
+  private final List<CellSummaryFilter> cellFilters = new ArrayList<>();
+  private final Set<CellId> excludedCells = new HashSet<>();
   final LinkedList<MapFunction> mappers = new LinkedList<>();
 
   // basic constructor
   protected MapReducer(OSHDBDatabase oshdb, Class<? extends OSHDBMapReducible> viewClass) {
     this.oshdb = oshdb;
     this.viewClass = viewClass;
+    this.queryMetrics = new AtomicReference<>();
   }
 
   // copy constructor
   protected MapReducer(MapReducer<?> obj) {
     this.oshdb = obj.oshdb;
+    this.metricsSink = obj.metricsSink;
+    this.queryMetrics = obj.queryMetrics;
+    this.batchCapture = obj.batchCapture;
+    this.cellResultCache = obj.cellResultCache;
 
     this.viewClass = obj.viewClass;
     this.grouping = obj.grouping;
@@ -186,6 +212,8 @@ public abstract class MapReducer<X> implements
     this.typeFilter = obj.typeFilter.clone();
     this.preFilters.addAll(obj.preFilters);
     this.filters.addAll(obj.filters);
+    this.cellFilters.addAll(obj.cellFilters);
+    this.excludedCells.addAll(obj.excludedCells);
     this.mappers.addAll(obj.mappers);
   }
 
@@ -214,6 +242,129 @@ public abstract class MapReducer<X> implements
     return ret;
   }
 
+  /**
+   * Enables the collection of execution metrics (cells and bytes read, entities passing the
+   * individual filter stages, built and clipped geometries, time spent in the different phases)
+   * for all reduce operations run by this mapReducer, including the ones of any aggregation.
+   *
+   * <p>After each finished reduce operation, its metrics are passed to the given sink and can also
+   * be retrieved via {@link #getQueryMetrics()}. Operations returning streams (e.g.
+   * {@link #stream()}) don't collect metrics.</p>
+   *
+   * @param sink consumer which gets the metrics of every finished reduce operation
+   * @return a modified copy of this mapReducer (can be used to chain multiple commands together)
+   */
+  @Contract(pure = true)
+  public MapReducer<X> collectMetrics(SerializableConsumer<QueryMetrics> sink) {
+    MapReducer<X> ret = this.copy();
+    ret.metricsSink = sink;
+    return ret;
+  }
+
+  /**
+   * Enables the collection of execution metrics, which can be retrieved via
+   * {@link #getQueryMetrics()} after a reduce operation has finished.
+   *
+   * @return a modified copy of this mapReducer (can be used to chain multiple commands together)
+   * @see #collectMetrics(SerializableConsumer)
+   */
+  @Contract(pure = true)
+  public MapReducer<X> collectMetrics() {
+    return this.collectMetrics(ignored -> { });
+  }
+
+  /**
+   * Returns the execution metrics of the last finished reduce operation of this mapReducer, or
+   * of any other mapReducer derived from the same one.
+   *
+   * @return the query metrics, or null if metrics collection isn't
+   *         {@link #collectMetrics(SerializableConsumer) enabled} or no operation was run yet
+   */
+  public QueryMetrics getQueryMetrics() {
+    return this.queryMetrics.get();
+  }
+
+  /**
+   * Adds metrics only known by the backend (e.g. the time spent fetching cells from the
+   * database) to the metrics of a finished reduce operation.
+   *
+   * @param metrics the metrics of the finished operation
+   */
+  protected void completeQueryMetrics(QueryMetrics metrics) {
+    // no backend specific metrics by default
+  }
+
+  /**
+   * Caches the partial results of the individual cells of all reduce operations run by this
+   * mapReducer in the given cache.
+   *
+   * <p>When the same operation is run again (e.g. the same aggregation on a later day), the
+   * cached results of all cells which haven't changed since are reused, and only the remaining
+   * cells are processed. Only backends which process the cells locally use the cache.</p>
+   *
+   * @param cache the cache of the cell results
+   * @return a modified copy of this mapReducer (can be used to chain multiple commands together)
+   */
+  @Contract(pure = true)
+  public MapReducer<X> cellResultCache(CellResultCache cache) {
+    MapReducer<X> ret = this.copy();
+    ret.cellResultCache = cache;
+    return ret;
+  }
+
+  /**
+   * Returns the cache for the cell results of a reduce operation.
+   *
+   * @param queryParts the objects defining the results of the operation, e.g. its cell processor
+   *        and cell iterator
+   * @return the cache of the operation, or null if no {@link #cellResultCache(CellResultCache)
+   *         cell result cache} is set
+   */
+  protected CellResultCache.Query getCellResultCache(Object... queryParts) {
+    return this.cellResultCache == null ? null : this.cellResultCache.query(queryParts);
+  }
+
+  /**
+   * Returns the settings of this mapReducer which determine the results of its operations, used
+   * to fingerprint its queries in a {@link CellResultCache}.
+   */
+  List<Object> querySettings() {
+    return Arrays.asList(viewClass, grouping, mappers, tagInterpreter, tstamps, bboxFilter,
+        polyFilter, typeFilter, preFilters, filters, cellFilters, excludedCells);
+  }
+
+  // checks if the results of this mapReducer only depend on its view, area of interest (a bbox)
+  // and timestamps: no filters, transformations or custom tag interpreter are set
+  boolean isUnfiltered() {
+    return this.grouping == Grouping.NONE && this.mappers.isEmpty()
+        && this.polyFilter == null && this.tagInterpreter == null
+        && this.typeFilter.equals(EnumSet.allOf(OSMType.class))
+        && this.preFilters.isEmpty() && this.filters.isEmpty() && this.cellFilters.isEmpty()
+        && this.excludedCells.isEmpty();
+  }
+
+  /**
+   * Excludes the given grid cells from the analysis: the cells are not read, and entities which
+   * belong into one of these cells (see {@link XYGridTree#getInsertId}) are skipped in all other
+   * cells. Used by the {@link TemporalCube} to only scan the data not covered by its aggregates.
+   *
+   * @param cells the cells to exclude
+   * @return a modified copy of this mapReducer (can be used to chain multiple commands together)
+   */
+  @Contract(pure = true)
+  MapReducer<X> excludeCells(Set<CellId> cells) {
+    MapReducer<X> ret = this.copy();
+    if (cells.isEmpty()) {
+      return ret;
+    }
+    ret.excludedCells.addAll(cells);
+    final Set<CellId> excluded = Set.copyOf(cells);
+    final XYGridTree grid = new XYGridTree(OSHDB.MAXZOOM);
+    ret.preFilters.add(oshEntity ->
+        !excluded.contains(TemporalCube.insertCell(grid, oshEntity)));
+    return ret;
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Filtering methods
   // -----------------------------------------------------------------------------------------------
@@ -496,8 +647,16 @@ public abstract class MapReducer<X> implements
   @Contract(pure = true)
   public MapReducer<X> filter(FilterExpression f) {
     MapReducer<X> ret = this.copy();
-    ret.preFilters.add(f::applyOSH);
-    ret.filters.add(f::applyOSM);
+    try {
+      // evaluate the normalized filter as a single flat predicate
+      CompiledFilter compiled = CompiledFilter.compile(f);
+      ret.preFilters.add(compiled::applyOSH);
+      ret.filters.add(compiled::applyOSM);
+    } catch (IllegalStateException e) {
+      // filters which cannot be normalized are evaluated as they are
+      ret.preFilters.add(f::applyOSH);
+      ret.filters.add(f::applyOSM);
+    }
     // apply geometry filter as first map function
     final List<MapFunction> remainingMappers = List.copyOf(ret.mappers);
     ret.mappers.clear();
@@ -836,7 +995,31 @@ public abstract class MapReducer<X> implements
       SerializableBiFunction<S, X, S> accumulator,
       SerializableBinaryOperator<S> combiner)
       throws Exception {
+    if (this.batchCapture != null) {
+      return this.batchCapture.reduce(this, identitySupplier, accumulator, combiner);
+    }
     checkTimeout();
+    if (this.metricsSink == null) {
+      return this.reduceCells(identitySupplier, accumulator, combiner);
+    }
+    long start = System.nanoTime();
+    MeteredValue<S> result = this.reduceCells(
+        MeteredValue.identitySupplier(identitySupplier),
+        MeteredValue.accumulator(accumulator),
+        MeteredValue.combiner(combiner));
+    QueryMetrics metrics = result.getMetrics();
+    this.completeQueryMetrics(metrics);
+    metrics.setQueryTime(System.nanoTime() - start);
+    this.queryMetrics.set(metrics);
+    this.metricsSink.accept(metrics);
+    return result.getValue();
+  }
+
+  private <S> S reduceCells(
+      SerializableSupplier<S> identitySupplier,
+      SerializableBiFunction<S, X, S> accumulator,
+      SerializableBinaryOperator<S> combiner)
+      throws Exception {
     switch (this.grouping) {
       case NONE:
         if (this.mappers.stream().allMatch(this::canUseFastPath)) {
@@ -1075,6 +1258,82 @@ public abstract class MapReducer<X> implements
     return this.uniq().size();
   }
 
+  /**
+   * Returns an estimate of the number of unique values of the results.
+   *
+   * <p>For example, this can be used together with the OSMContributionView to get the approximate
+   * number of unique users editing specific feature types, using much less memory than
+   * {@link #countUniq()}.</p>
+   *
+   * @return estimated number of distinct values
+   * @see HyperLogLog
+   */
+  @Override
+  @Contract(pure = true)
+  public Long estimatedCountUniq() throws Exception {
+    return this.estimatedCountUniq(HyperLogLog.DEFAULT_PRECISION);
+  }
+
+  /**
+   * Returns an estimate of the number of unique values of the results, using a sketch of the
+   * given precision.
+   *
+   * @param precision the precision of the sketch, see {@link HyperLogLog#HyperLogLog(int)}
+   * @return estimated number of distinct values
+   * @see HyperLogLog
+   */
+  @Override
+  @Contract(pure = true)
+  public Long estimatedCountUniq(int precision) throws Exception {
+    return this.estimatedCountUniq(x -> x, precision);
+  }
+
+  /**
+   * Returns an estimate of the number of unique values of the results provided by a given mapper
+   * function.
+   *
+   * @param mapper function that returns some values
+   * @param <R> the type that is returned by the `mapper` function
+   * @return estimated number of distinct values returned by the `mapper` function
+   * @see HyperLogLog
+   */
+  @Override
+  @Contract(pure = true)
+  public <R> Long estimatedCountUniq(SerializableFunction<X, R> mapper) throws Exception {
+    return this.estimatedCountUniq(mapper, HyperLogLog.DEFAULT_PRECISION);
+  }
+
+  /**
+   * Returns an estimate of the number of unique values of the results provided by a given mapper
+   * function, using a sketch of the given precision.
+   *
+   * @param mapper function that returns some values
+   * @param precision the precision of the sketch, see {@link HyperLogLog#HyperLogLog(int)}
+   * @param <R> the type that is returned by the `mapper` function
+   * @return estimated number of distinct values returned by the `mapper` function
+   * @see HyperLogLog
+   */
+  @Override
+  @Contract(pure = true)
+  public <R> Long estimatedCountUniq(SerializableFunction<X, R> mapper, int precision)
+      throws Exception {
+    HyperLogLog.checkPrecision(precision);
+    return this.sketch(mapper, precision).estimate();
+  }
+
+  /**
+   * Generates the HyperLogLog sketch of the complete result set.
+   */
+  @Contract(pure = true)
+  private <R> HyperLogLog sketch(SerializableFunction<X, R> mapper, int precision)
+      throws Exception {
+    return this.map(mapper).reduce(
+        () -> HyperLogLogReducer.identitySupplier(precision),
+        HyperLogLogReducer::accumulator,
+        HyperLogLogReducer::combiner
+    );
+  }
+
   /**
    * Calculates the averages of the results.
    *
@@ -1353,6 +1612,9 @@ public abstract class MapReducer<X> implements
 
   @Contract(pure = true)
   private Stream<X> streamInternal() throws Exception {
+    if (this.batchCapture != null) {
+      throw new UnsupportedOperationException("streams are not supported in query batches");
+    }
     checkTimeout();
     switch (this.grouping) {
       case NONE:
@@ -1700,6 +1962,20 @@ public abstract class MapReducer<X> implements
         };
   }
 
+  // Helper that chains multiple cell summary filters together
+  protected CellSummaryFilter getCellFilter() {
+    return this.cellFilters.isEmpty()
+        ? summary -> true
+        : summary -> {
+          for (CellSummaryFilter filter : this.cellFilters) {
+            if (!filter.test(summary)) {
+              return false;
+            }
+          }
+          return true;
+        };
+  }
+
   // get all cell ids covered by the current area of interest's bounding box
   protected Iterable<CellIdRange> getCellIdRanges() {
     XYGridTree grid = new XYGridTree(OSHDB.MAXZOOM);
@@ -1710,7 +1986,33 @@ public abstract class MapReducer<X> implements
       LOG.warn("area of interest not set or empty");
       return Collections.emptyList();
     }
-    return grid.bbox2CellIdRanges(this.bboxFilter, true);
+    Iterable<CellIdRange> cellIdRanges = grid.bbox2CellIdRanges(this.bboxFilter, true);
+    if (this.excludedCells.isEmpty()) {
+      return cellIdRanges;
+    }
+    // split the ranges around the excluded cells
+    List<CellIdRange> result = new ArrayList<>();
+    for (CellIdRange range : cellIdRanges) {
+      int level = range.getStart().getZoomLevel();
+      long start = range.getStart().getId();
+      long end = range.getEnd().getId();
+      long[] excluded = this.excludedCells.stream()
+          .filter(cell -> cell.getZoomLevel() == level)
+          .mapToLong(CellId::getId)
+          .filter(id -> id >= range.getStart().getId() && id <= end)
+          .sorted()
+          .toArray();
+      for (long id : excluded) {
+        if (id > start) {
+          result.add(CellIdRange.of(new CellId(level, start), new CellId(level, id - 1)));
+        }
+        start = id + 1;
+      }
+      if (start <= end) {
+        result.add(CellIdRange.of(new CellId(level, start), new CellId(level, end)));
+      }
+    }
+    return result;
   }
 
   // hack, so that we can use a variable that is of both Geometry and implements Polygonal (i.e.
@@ -1721,7 +2023,7 @@ public abstract class MapReducer<X> implements
   }
 
   // concatenates all applied `map` functions
-  private SerializableFunction<Object, Optional<X>> getMapper() {
+  SerializableFunction<Object, Optional<X>> getMapper() {
     // todo: maybe we can somehow optimize this?? at least for special cases like
     // this.mappers.size() == 1
     return (SerializableFunction<Object, Optional<X>>) data -> {
@@ -1747,7 +2049,7 @@ public abstract class MapReducer<X> implements
   }
 
   // concatenates all applied `flatMap` and `map` functions
-  private SerializableFunction<Object, Iterable<X>> getFlatMapper() {
+  SerializableFunction<Object, Iterable<X>> getFlatMapper() {
     // todo: maybe we can somehow optimize this?? at least for special cases like
     // this.mappers.size() == 1
     return (SerializableFunction<Object, Iterable<X>>) data -> {
@@ -1771,6 +2073,85 @@ public abstract class MapReducer<X> implements
     };
   }
 
+  // returns a copy of this map reducer whose reductions are handled by the given query batch
+  @Contract(pure = true)
+  MapReducer<X> withBatchCapture(QueryBatch.Capture capture) {
+    MapReducer<X> ret = this.copy();
+    ret.batchCapture = capture;
+    return ret;
+  }
+
+  // checks if this and the other query can be calculated in a single pass over the data:
+  // snapshot queries can differ in their filters, contribution queries only in their map
+  // functions and aggregation, because the contributions of an entity depend on the filter
+  boolean canShareScanWith(MapReducer<?> other) {
+    boolean compatible = this.oshdb == other.oshdb
+        && this.viewClass.equals(other.viewClass)
+        && this.tstamps.get().equals(other.tstamps.get())
+        && this.bboxFilter.equals(other.bboxFilter)
+        && Objects.equals(this.polyFilter, other.polyFilter)
+        && this.tagInterpreter == other.tagInterpreter
+        && this.excludedCells.equals(other.excludedCells);
+    if (compatible && isOSMContributionViewQuery()) {
+      compatible = this.typeFilter.equals(other.typeFilter)
+          && this.preFilters.equals(other.preFilters)
+          && this.filters.equals(other.filters);
+    }
+    return compatible;
+  }
+
+  // returns a copy of this map reducer which iterates over the data of all given queries:
+  // the (pre-)filters of snapshot queries are or-combined, transformations are removed and the
+  // data is grouped by entity if any of the queries requires this
+  @Contract(pure = true)
+  MapReducer<Object> sharedScan(List<? extends MapReducer<?>> queries) {
+    @SuppressWarnings("unchecked") // all transformations are removed
+    MapReducer<Object> ret = (MapReducer<Object>) this.copy();
+    ret.metricsSink = null;
+    ret.batchCapture = null;
+    ret.mappers.clear();
+    ret.grouping = queries.stream().anyMatch(q -> q.grouping == Grouping.BY_ID)
+        ? Grouping.BY_ID
+        : Grouping.NONE;
+    if (isOSMEntitySnapshotViewQuery()) {
+      ret.typeFilter = EnumSet.noneOf(OSMType.class);
+      queries.forEach(q -> ret.typeFilter.addAll(q.typeFilter));
+      List<EnumSet<OSMType>> typeFilters = new ArrayList<>(queries.size());
+      List<OSHEntityFilter> preFilters = new ArrayList<>(queries.size());
+      List<OSMEntityFilter> filters = new ArrayList<>(queries.size());
+      List<CellSummaryFilter> cellFilters = new ArrayList<>(queries.size());
+      for (MapReducer<?> q : queries) {
+        typeFilters.add(q.typeFilter);
+        preFilters.add(q.getPreFilter());
+        filters.add(q.getFilter());
+        cellFilters.add(q.getCellFilter());
+      }
+      ret.cellFilters.clear();
+      ret.cellFilters.add(summary -> cellFilters.stream().anyMatch(f -> f.test(summary)));
+      ret.preFilters.clear();
+      ret.preFilters.add(oshEntity -> {
+        for (int i = 0; i < typeFilters.size(); i++) {
+          if (typeFilters.get(i).contains(oshEntity.getType())
+              && preFilters.get(i).test(oshEntity)) {
+            return true;
+          }
+        }
+        return false;
+      });
+      ret.filters.clear();
+      ret.filters.add(osmEntity -> {
+        for (int i = 0; i < typeFilters.size(); i++) {
+          if (typeFilters.get(i).contains(osmEntity.getType())
+              && filters.get(i).test(osmEntity)) {
+            return true;
+          }
+        }
+        return false;
+      });
+    }
+    return ret;
+  }
+
   // gets list of timestamps to use for zerofilling
   Collection<OSHDBTimestamp> getZerofillTimestamps() {
     if (isOSMEntitySnapshotViewQuery()) {
@@ -1924,6 +2305,28 @@ public abstract class MapReducer<X> implements
       allTypes.addAll(subTypes);
     }
     mapRed = mapRed.osmTypeInternal(allTypes);
+    // cells can be skipped if they don't contain the tag keys required by any of the clauses
+    List<int[]> requiredKeys = new ArrayList<>(filterNormalized.size());
+    for (List<Filter> andSubFilter : filterNormalized) {
+      int[] keys = andSubFilter.stream()
+          .mapToInt(MapReducer::requiredTagKey)
+          .filter(key -> key != NO_REQUIRED_TAG_KEY)
+          .distinct()
+          .toArray();
+      if (keys.length == 0) {
+        // this clause can match entities of any cell
+        return mapRed;
+      }
+      requiredKeys.add(keys);
+    }
+    mapRed.cellFilters.add(summary -> {
+      for (int[] keys : requiredKeys) {
+        if (Arrays.stream(keys).allMatch(summary::mayContainKey)) {
+          return true;
+        }
+      }
+      return false;
+    });
     // (todo) intelligently group queried tags
     /*
      * here, we could optimize a few situations further: when a specific tag or key is used in all
@@ -1934,13 +2337,25 @@ public abstract class MapReducer<X> implements
     return mapRed;
   }
 
+  private static final int NO_REQUIRED_TAG_KEY = Integer.MIN_VALUE;
+
+  // returns the tag key which entities matching the given filter must have in any version
+  private static int requiredTagKey(Filter filter) {
+    if (filter instanceof TagFilterEquals tagFilter) {
+      return tagFilter.getTag().getKey();
+    } else if (filter instanceof TagFilterEqualsAny tagFilter) {
+      return tagFilter.getTag().toInt();
+    }
+    return NO_REQUIRED_TAG_KEY;
+  }
+
   private String currentDate() {
     var formatter = new SimpleDateFormat("yyyy-MM-dd");
     formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
     return formatter.format(new Date());
   }
 
-  private boolean canUseFastPath(MapFunction f) {
+  boolean canUseFastPath(MapFunction f) {
     return f instanceof FilterFunction || !f.isFlatMapper();
   }
 }
@@ -1,5 +1,6 @@
 package org.heigit.ohsome.oshdb.api.mapreducer;
 
+import org.heigit.ohsome.oshdb.api.generic.HyperLogLog;
 import org.heigit.ohsome.oshdb.api.generic.WeightedValue;
 import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
 import org.heigit.ohsome.oshdb.util.function.SerializableBinaryOperator;
@@ -175,6 +176,48 @@ interface MapReducerAggregations<X> {
    */
   Object countUniq() throws Exception;
 
+  /**
+   * Returns an estimate of the number of unique values of the results.
+   *
+   * @return estimated number of distinct values
+   * @see HyperLogLog
+   */
+  Object estimatedCountUniq() throws Exception;
+
+  /**
+   * Returns an estimate of the number of unique values of the results, using a sketch of the
+   * given precision.
+   *
+   * @param precision the precision of the sketch, see {@link HyperLogLog#HyperLogLog(int)}
+   * @return estimated number of distinct values
+   * @see HyperLogLog
+   */
+  Object estimatedCountUniq(int precision) throws Exception;
+
+  /**
+   * Returns an estimate of the number of unique values of the results provided by a given mapper
+   * function.
+   *
+   * @param mapper function that returns some values
+   * @param <R> the type that is returned by the `mapper` function
+   * @return estimated number of distinct values returned by the `mapper` function
+   * @see HyperLogLog
+   */
+  <R> Object estimatedCountUniq(SerializableFunction<X, R> mapper) throws Exception;
+
+  /**
+   * Returns an estimate of the number of unique values of the results provided by a given mapper
+   * function, using a sketch of the given precision.
+   *
+   * @param mapper function that returns some values
+   * @param precision the precision of the sketch, see {@link HyperLogLog#HyperLogLog(int)}
+   * @param <R> the type that is returned by the `mapper` function
+   * @return estimated number of distinct values returned by the `mapper` function
+   * @see HyperLogLog
+   */
+  <R> Object estimatedCountUniq(SerializableFunction<X, R> mapper, int precision)
+      throws Exception;
+
   /**
    * Calculates the averages of the results.
    *
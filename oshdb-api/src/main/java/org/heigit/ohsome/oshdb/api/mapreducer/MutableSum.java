@@ -0,0 +1,77 @@
+package org.heigit.ohsome.oshdb.api.mapreducer;
+
+import java.io.Serializable;
+import org.heigit.ohsome.oshdb.api.generic.NumberUtils;
+
+/**
+ * Mutable sum of arbitrary numbers.
+ *
+ * <p>For internal use to do faster aggregation during reduce operations. Starting from an
+ * Integer zero, the result type is the same as when repeatedly using
+ * {@link NumberUtils#add(Number, Number)}: the sum stays an Integer as long as only Integers are
+ * added, and becomes a Double otherwise.</p>
+ */
+class MutableSum implements Serializable {
+  private boolean integer = true;
+  private int intValue;
+  private double doubleValue;
+
+  private MutableSum() {}
+
+  static MutableSum identitySupplier() {
+    return new MutableSum();
+  }
+
+  static MutableSum accumulator(MutableSum acc, Number cur) {
+    if (acc.integer && cur instanceof Integer) {
+      acc.intValue += cur.intValue();
+    } else {
+      acc.addDouble(cur.doubleValue());
+    }
+    return acc;
+  }
+
+  static <T> MutableSum increment(MutableSum acc, T ignored) {
+    if (acc.integer) {
+      acc.intValue++;
+    } else {
+      acc.doubleValue++;
+    }
+    return acc;
+  }
+
+  static MutableSum combiner(MutableSum a, MutableSum b) {
+    MutableSum result = new MutableSum();
+    result.integer = a.integer;
+    result.intValue = a.intValue;
+    result.doubleValue = a.doubleValue;
+    if (result.integer && b.integer) {
+      result.intValue += b.intValue;
+    } else {
+      result.addDouble(b.integer ? b.intValue : b.doubleValue);
+    }
+    return result;
+  }
+
+  private void addDouble(double value) {
+    if (integer) {
+      integer = false;
+      doubleValue = intValue;
+    }
+    doubleValue += value;
+  }
+
+  /**
+   * Returns the sum as an Integer if only Integers were added, as a Double otherwise.
+   */
+  Number getValue() {
+    return integer ? (Number) intValue : (Number) doubleValue;
+  }
+
+  /**
+   * Returns the sum as an Integer.
+   */
+  int intValue() {
+    return integer ? intValue : (int) doubleValue;
+  }
+}
@@ -29,6 +29,14 @@ class MutableWeightedDouble implements Serializable {
     return acc;
   }
 
+  static MutableWeightedDouble unweightedAccumulator(
+      MutableWeightedDouble acc,
+      Number cur) {
+    acc.num += cur.doubleValue();
+    acc.weight += 1.0;
+    return acc;
+  }
+
   static MutableWeightedDouble combiner(
       MutableWeightedDouble a,
       MutableWeightedDouble b) {
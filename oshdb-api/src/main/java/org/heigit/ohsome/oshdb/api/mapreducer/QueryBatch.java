@@ -0,0 +1,345 @@
+package org.heigit.ohsome.oshdb.api.mapreducer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer.Grouping;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.util.function.OSHEntityFilter;
+import org.heigit.ohsome.oshdb.util.function.OSMEntityFilter;
+import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
+import org.heigit.ohsome.oshdb.util.function.SerializableBinaryOperator;
+import org.heigit.ohsome.oshdb.util.function.SerializableFunction;
+import org.heigit.ohsome.oshdb.util.function.SerializablePredicate;
+import org.heigit.ohsome.oshdb.util.function.SerializableSupplier;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+
+/**
+ * Calculates the results of several queries in a single pass over the data.
+ *
+ * <p>Each query is given as a MapReducer or MapAggregator together with the operation which
+ * calculates its result, e.g. {@code batch.add(mapReducer, MapReducer::count)}. All queries are
+ * then executed together by {@link #execute()}: every cell is read and decoded only once, and each
+ * entity snapshot or contribution is passed to the map functions and accumulators of all queries.
+ * </p>
+ *
+ * <p>The queries of a batch must use the same data view, timestamps, area of interest and tag
+ * interpreter. Snapshot queries can have different filters. Contribution queries can only differ
+ * in their map functions, lambda filters and aggregation, because the contributions of an entity
+ * depend on the used filter: they need to be derived from a common MapReducer to which the filter
+ * has already been applied.</p>
+ *
+ * <p>The operations are called twice: once when a query is added, to record the reductions it
+ * performs (these see an empty result), and once after the batch has been executed, to calculate
+ * the final result from the results of the reductions. Operations which don't perform their
+ * calculations via reductions (e.g. streams) are not supported.</p>
+ */
+public class QueryBatch {
+  private final OSHDBDatabase oshdb;
+  private final List<PendingQuery<?, ?>> queries = new ArrayList<>();
+  private MapReducer<?> reference = null;
+  private boolean executed = false;
+
+  /**
+   * A function which calculates the result of a query.
+   *
+   * @param <Q> the type of the query, a MapReducer or MapAggregator
+   * @param <R> the type of the result
+   */
+  @FunctionalInterface
+  public interface Operation<Q, R> {
+    R apply(Q query) throws Exception;
+  }
+
+  /**
+   * The result of a query of a batch, available after the batch has been executed.
+   *
+   * @param <R> the type of the result
+   */
+  public static class Result<R> {
+    private R value;
+    private boolean available = false;
+
+    private Result() {}
+
+    /**
+     * Returns the result of the query.
+     *
+     * @throws IllegalStateException if the batch has not been executed yet
+     */
+    public R get() {
+      if (!available) {
+        throw new IllegalStateException("query batch has not been executed yet");
+      }
+      return value;
+    }
+  }
+
+  public QueryBatch(OSHDBDatabase oshdb) {
+    this.oshdb = oshdb;
+  }
+
+  /**
+   * Adds a query to this batch.
+   *
+   * @param query the query
+   * @param operation the operation calculating the result of the query, e.g.
+   *        {@code MapReducer::count}
+   * @param <X> the type of the query's data
+   * @param <R> the type of the result
+   * @return the result of the query, available after the batch has been executed
+   * @throws IllegalArgumentException if the query cannot be calculated together with the
+   *         previously added queries
+   * @throws Exception if the operation throws an exception while recording its reductions
+   */
+  public <X, R> Result<R> add(MapReducer<X> query, Operation<MapReducer<X>, R> operation)
+      throws Exception {
+    Capture capture = new Capture();
+    return this.add(query.withBatchCapture(capture), operation, capture);
+  }
+
+  /**
+   * Adds an aggregated query to this batch.
+   *
+   * @param query the query
+   * @param operation the operation calculating the result of the query, e.g.
+   *        {@code MapAggregator::count}
+   * @param <U> the type of the index values of the query
+   * @param <X> the type of the query's data
+   * @param <R> the type of the result
+   * @return the result of the query, available after the batch has been executed
+   * @throws IllegalArgumentException if the query cannot be calculated together with the
+   *         previously added queries
+   * @throws Exception if the operation throws an exception while recording its reductions
+   */
+  public <U extends Comparable<U> & Serializable, X, R> Result<R> add(
+      MapAggregator<U, X> query, Operation<MapAggregator<U, X>, R> operation) throws Exception {
+    Capture capture = new Capture();
+    return this.add(query.withBatchCapture(capture), operation, capture);
+  }
+
+  private <Q, R> Result<R> add(Q query, Operation<Q, R> operation, Capture capture)
+      throws Exception {
+    if (executed) {
+      throw new IllegalStateException("query batch has already been executed");
+    }
+    operation.apply(query);
+    MapReducer<?> first = reference;
+    for (Reduction reduction : capture.reductions) {
+      if (reduction.query.oshdb != this.oshdb) {
+        throw new IllegalArgumentException("query uses a different database than the batch");
+      }
+      if (first == null) {
+        first = reduction.query;
+      } else if (!first.canShareScanWith(reduction.query)) {
+        throw new IllegalArgumentException("query cannot be calculated together with the other "
+            + "queries of the batch: data view, timestamps, area of interest or tag interpreter "
+            + "differ (or the filter, for contribution queries)");
+      }
+    }
+    reference = first;
+    PendingQuery<Q, R> pending = new PendingQuery<>(query, operation, capture);
+    queries.add(pending);
+    return pending.result;
+  }
+
+  /**
+   * Executes all queries of this batch in a single pass over the data.
+   *
+   * @throws IllegalStateException if the batch has already been executed
+   * @throws Exception if an exception happens during the calculation
+   */
+  public void execute() throws Exception {
+    if (executed) {
+      throw new IllegalStateException("query batch has already been executed");
+    }
+    executed = true;
+    List<Reduction> reductions = queries.stream()
+        .flatMap(query -> query.capture.reductions.stream())
+        .collect(Collectors.toCollection(ArrayList::new));
+    Object[] results = reductions.isEmpty() ? new Object[0] : reduce(reductions);
+    int offset = 0;
+    for (PendingQuery<?, ?> query : queries) {
+      int size = query.capture.reductions.size();
+      query.capture.replay(Arrays.copyOfRange(results, offset, offset + size));
+      offset += size;
+      query.complete();
+    }
+  }
+
+  private static Object[] reduce(List<Reduction> reductions) throws Exception {
+    List<MapReducer<?>> scanQueries = reductions.stream()
+        .<MapReducer<?>>map(reduction -> reduction.query)
+        .collect(Collectors.toList());
+    MapReducer<Object> scan = scanQueries.get(0).sharedScan(scanQueries);
+    final boolean grouped = scan.grouping == Grouping.BY_ID;
+    final int size = reductions.size();
+    return scan.reduce(
+        () -> {
+          Object[] identity = new Object[size];
+          for (int i = 0; i < size; i++) {
+            identity[i] = reductions.get(i).identitySupplier.get();
+          }
+          return identity;
+        },
+        (acc, data) -> {
+          for (int i = 0; i < size; i++) {
+            acc[i] = reductions.get(i).accumulate(acc[i], data, grouped);
+          }
+          return acc;
+        },
+        (a, b) -> {
+          Object[] result = new Object[size];
+          for (int i = 0; i < size; i++) {
+            result[i] = reductions.get(i).combiner.apply(a[i], b[i]);
+          }
+          return result;
+        });
+  }
+
+  private static class PendingQuery<Q, R> {
+    private final Q query;
+    private final Operation<Q, R> operation;
+    private final Capture capture;
+    private final Result<R> result = new Result<>();
+
+    PendingQuery(Q query, Operation<Q, R> operation, Capture capture) {
+      this.query = query;
+      this.operation = operation;
+      this.capture = capture;
+    }
+
+    void complete() throws Exception {
+      result.value = operation.apply(query);
+      result.available = true;
+    }
+  }
+
+  /**
+   * Records the reductions of a query, and later replays their results.
+   */
+  static class Capture {
+    private final List<Reduction> reductions = new ArrayList<>();
+    private Object[] results = null;
+    private int next = 0;
+
+    <X, S> S reduce(
+        MapReducer<X> query,
+        SerializableSupplier<S> identitySupplier,
+        SerializableBiFunction<S, X, S> accumulator,
+        SerializableBinaryOperator<S> combiner) {
+      if (results == null) {
+        reductions.add(new Reduction(query, identitySupplier, accumulator, combiner));
+        return identitySupplier.get();
+      }
+      if (next >= results.length) {
+        throw new IllegalStateException(
+            "query operation performed more reductions than when it was added to the batch");
+      }
+      @SuppressWarnings("unchecked") // results are in the same order as the reductions
+      S result = (S) results[next++];
+      return result;
+    }
+
+    void replay(Object[] results) {
+      this.results = results;
+      this.next = 0;
+    }
+  }
+
+  /**
+   * A single reduction of a query: the filters and map functions of the query together with the
+   * identity supplier, accumulator and combiner of the reduction.
+   */
+  private static class Reduction implements Serializable {
+    private final transient MapReducer<?> query;
+    private final Grouping grouping;
+    // null if all data of the shared scan belongs to the query
+    private final SerializablePredicate<Object> accepts;
+    // null if the query has flat map functions
+    private final SerializableFunction<Object, Optional<Object>> mapper;
+    private final SerializableFunction<Object, Iterable<Object>> flatMapper;
+    private final SerializableSupplier<Object> identitySupplier;
+    private final SerializableBiFunction<Object, Object, Object> accumulator;
+    private final SerializableBinaryOperator<Object> combiner;
+
+    @SuppressWarnings("unchecked") // the data and results are passed around as raw objects
+    <X, S> Reduction(
+        MapReducer<X> query,
+        SerializableSupplier<S> identitySupplier,
+        SerializableBiFunction<S, X, S> accumulator,
+        SerializableBinaryOperator<S> combiner) {
+      this.query = query;
+      this.grouping = query.grouping;
+      if (query.isOSMEntitySnapshotViewQuery()) {
+        final EnumSet<OSMType> typeFilter = query.typeFilter;
+        final OSHEntityFilter preFilter = query.getPreFilter();
+        final OSMEntityFilter filter = query.getFilter();
+        this.accepts = data -> {
+          OSMEntitySnapshot snapshot = (OSMEntitySnapshot) data;
+          return typeFilter.contains(snapshot.getEntity().getType())
+              && preFilter.test(snapshot.getOSHEntity())
+              && filter.test(snapshot.getEntity());
+        };
+      } else {
+        this.accepts = null;
+      }
+      if (query.mappers.stream().allMatch(query::canUseFastPath)) {
+        this.mapper = (SerializableFunction<Object, Optional<Object>>) (Object) query.getMapper();
+        this.flatMapper = null;
+      } else {
+        this.mapper = null;
+        this.flatMapper =
+            (SerializableFunction<Object, Iterable<Object>>) (Object) query.getFlatMapper();
+      }
+      this.identitySupplier = (SerializableSupplier<Object>) identitySupplier;
+      this.accumulator = (SerializableBiFunction<Object, Object, Object>) (Object) accumulator;
+      this.combiner = (SerializableBinaryOperator<Object>) combiner;
+    }
+
+    /**
+     * Accumulates the data of the shared scan.
+     *
+     * @param acc the accumulation value
+     * @param data a snapshot or contribution, or a list of all snapshots or contributions of an
+     *        entity if the shared scan is grouped by entity
+     * @param grouped whether the shared scan is grouped by entity
+     * @return the new accumulation value
+     */
+    Object accumulate(Object acc, Object data, boolean grouped) {
+      if (!grouped) {
+        return accepts == null || accepts.test(data) ? apply(acc, data) : acc;
+      }
+      List<?> group = (List<?>) data;
+      if (accepts != null) {
+        group = group.stream().filter(accepts).collect(Collectors.toList());
+        if (group.isEmpty()) {
+          return acc;
+        }
+      }
+      if (grouping == Grouping.BY_ID) {
+        return apply(acc, group);
+      }
+      for (Object entry : group) {
+        acc = apply(acc, entry);
+      }
+      return acc;
+    }
+
+    private Object apply(Object acc, Object data) {
+      if (mapper != null) {
+        Optional<Object> mapped = mapper.apply(data);
+        return mapped.isPresent() ? accumulator.apply(acc, mapped.get()) : acc;
+      }
+      for (Object mapped : flatMapper.apply(data)) {
+        acc = accumulator.apply(acc, mapped);
+      }
+      return acc;
+    }
+  }
+}
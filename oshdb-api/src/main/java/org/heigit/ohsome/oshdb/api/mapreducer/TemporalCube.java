@@ -0,0 +1,354 @@
+package org.heigit.ohsome.oshdb.api.mapreducer;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.heigit.ohsome.oshdb.OSHDB;
+import org.heigit.ohsome.oshdb.OSHDBBoundable;
+import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.OSHDBTag;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
+import org.heigit.ohsome.oshdb.filter.Filter;
+import org.heigit.ohsome.oshdb.filter.FilterExpression;
+import org.heigit.ohsome.oshdb.filter.FilterParser;
+import org.heigit.ohsome.oshdb.filter.TagFilterEquals;
+import org.heigit.ohsome.oshdb.filter.TagFilterEqualsAny;
+import org.heigit.ohsome.oshdb.filter.TypeFilter;
+import org.heigit.ohsome.oshdb.index.XYGrid;
+import org.heigit.ohsome.oshdb.index.XYGridTree;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.util.CellId;
+import org.heigit.ohsome.oshdb.util.OSHDBTagKey;
+import org.heigit.ohsome.oshdb.util.geometry.Geo;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.heigit.ohsome.oshdb.util.tagtranslator.TagTranslator;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * A pre-aggregated data cube of the number, length and area of the OSM entities having one of a
+ * given set of tag keys, per grid cell, type, tag and timestamp.
+ *
+ * <p>The cube is {@link #materialize(MapReducer, String...) materialized} once from a snapshot
+ * query of a bounding box and a list of timestamps. The snapshots are aggregated by the grid cell
+ * the OSHDB stores their entity in (see {@link XYGridTree#getInsertId}), which completely
+ * contains the entity.</p>
+ *
+ * <p>Queries counting the snapshots matching a simple tag filter (e.g. {@code building=*} or
+ * {@code type:way and highway=residential}) per timestamp, or summing up their lengths or areas,
+ * can then be answered using the cube (see {@link #count}, {@link #length} and {@link #area}):
+ * the results of the cells lying completely inside the query's area of interest are taken from the
+ * cube, and only the remaining cells at the boundary of the area of interest are read from the
+ * database. Queries which cannot be answered by the cube (e.g. because they use other filters, a
+ * polygonal area of interest or timestamps not contained in the cube) are calculated by reading
+ * all of their data.</p>
+ *
+ * <p>The cube reflects the data at the time of its materialization: it has to be materialized
+ * again after the database has been updated.</p>
+ */
+public class TemporalCube implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private static final int COUNT = 0;
+  private static final int LENGTH = 1;
+  private static final int AREA = 2;
+  private static final int MEASURES = 3;
+
+  private final OSHDBBoundingBox bbox;
+  private final OSHDBTimestamp[] timestamps;
+  private final int[] keys;
+  // values of all measures at all timestamps, per cell and bucket
+  private final Map<CellId, Map<Bucket, double[]>> cells;
+
+  /** The entities of a single type having a certain tag. */
+  private record Bucket(OSMType type, int key, int value) implements Serializable {}
+
+  /** The entities selected by a query's filter. */
+  private record Selection(Set<OSMType> types, int key, Integer value) {
+    boolean contains(Bucket bucket) {
+      return types.contains(bucket.type()) && key == bucket.key()
+          && (value == null || value == bucket.value());
+    }
+  }
+
+  private TemporalCube(OSHDBBoundingBox bbox, OSHDBTimestamp[] timestamps, int[] keys,
+      Map<CellId, Map<Bucket, double[]>> cells) {
+    this.bbox = bbox;
+    this.timestamps = timestamps;
+    this.keys = keys;
+    this.cells = cells;
+  }
+
+  /**
+   * Materializes the cube for the area of interest and the timestamps of the given query.
+   *
+   * @param snapshots a snapshot query with a bounding box as area of interest, without filters
+   *        or map functions
+   * @param keys the tag keys for which to aggregate the entities, unknown keys are ignored
+   * @return the materialized cube
+   * @throws IllegalArgumentException if the query has any filters or map functions
+   * @throws Exception if the query fails
+   */
+  public static TemporalCube materialize(MapReducer<OSMEntitySnapshot> snapshots, String... keys)
+      throws Exception {
+    if (!snapshots.isOSMEntitySnapshotViewQuery() || !snapshots.isUnfiltered()) {
+      throw new IllegalArgumentException(
+          "temporal cubes can only be materialized from unfiltered snapshot queries");
+    }
+    TagTranslator tagTranslator = snapshots.oshdb.getTagTranslator();
+    final int[] keyIds = Arrays.stream(keys)
+        .map(tagTranslator::getOSHDBTagKeyOf)
+        .flatMap(Optional::stream)
+        .mapToInt(OSHDBTagKey::toInt)
+        .distinct()
+        .sorted()
+        .toArray();
+    final OSHDBTimestamp[] timestamps = snapshots.tstamps.get().toArray(new OSHDBTimestamp[0]);
+    final XYGridTree grid = new XYGridTree(OSHDB.MAXZOOM);
+    Map<CellId, Map<Bucket, double[]>> cells = snapshots
+        .filter(snapshot -> hasAnyKey(snapshot, keyIds))
+        .reduce(
+            HashMap::new,
+            (acc, snapshot) -> add(acc, snapshot, keyIds, timestamps, grid),
+            TemporalCube::merge);
+    return new TemporalCube(snapshots.bboxFilter, timestamps, keyIds, cells);
+  }
+
+  private static boolean hasAnyKey(OSMEntitySnapshot snapshot, int[] keys) {
+    for (OSHDBTag tag : snapshot.getEntity().getTags()) {
+      if (Arrays.binarySearch(keys, tag.getKey()) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Map<CellId, Map<Bucket, double[]>> add(Map<CellId, Map<Bucket, double[]>> acc,
+      OSMEntitySnapshot snapshot, int[] keys, OSHDBTimestamp[] timestamps, XYGridTree grid) {
+    int t = Arrays.binarySearch(timestamps, snapshot.getTimestamp());
+    CellId cell = insertCell(grid, snapshot.getOSHEntity());
+    Geometry geometry = snapshot.getGeometryUnclipped();
+    double length = Geo.lengthOf(geometry);
+    double area = Geo.areaOf(geometry);
+    OSMType type = snapshot.getEntity().getType();
+    var buckets = acc.computeIfAbsent(cell, ignored -> new HashMap<>());
+    for (OSHDBTag tag : snapshot.getEntity().getTags()) {
+      if (Arrays.binarySearch(keys, tag.getKey()) < 0) {
+        continue;
+      }
+      double[] values = buckets.computeIfAbsent(new Bucket(type, tag.getKey(), tag.getValue()),
+          ignored -> new double[timestamps.length * MEASURES]);
+      values[t * MEASURES + COUNT] += 1;
+      values[t * MEASURES + LENGTH] += length;
+      values[t * MEASURES + AREA] += area;
+    }
+    return acc;
+  }
+
+  /**
+   * Returns the grid cell the given entity is stored in.
+   */
+  static CellId insertCell(XYGridTree grid, OSHEntity entity) {
+    OSHDBBoundable bounds = entity.getBoundable();
+    return grid.getInsertId(OSHDBBoundingBox.bboxOSMCoordinates(bounds.getMinLongitude(),
+        bounds.getMinLatitude(), bounds.getMaxLongitude(), bounds.getMaxLatitude()));
+  }
+
+  private static Map<CellId, Map<Bucket, double[]>> merge(Map<CellId, Map<Bucket, double[]>> a,
+      Map<CellId, Map<Bucket, double[]>> b) {
+    if (a.isEmpty()) {
+      return b;
+    }
+    b.forEach((cell, buckets) -> a.merge(cell, buckets, (bucketsA, bucketsB) -> {
+      bucketsB.forEach((bucket, values) -> bucketsA.merge(bucket, values, (valuesA, valuesB) -> {
+        for (int i = 0; i < valuesA.length; i++) {
+          valuesA[i] += valuesB[i];
+        }
+        return valuesA;
+      }));
+      return bucketsA;
+    }));
+    return a;
+  }
+
+  /**
+   * Writes the cube to a file.
+   *
+   * @param file the file to write to
+   * @throws IOException if the file cannot be written
+   */
+  public void save(Path file) throws IOException {
+    try (var out = new ObjectOutputStream(Files.newOutputStream(file))) {
+      out.writeObject(this);
+    }
+  }
+
+  /**
+   * Reads a cube written by {@link #save(Path)}.
+   *
+   * @param file the file to read from
+   * @return the cube
+   * @throws IOException if the file cannot be read or doesn't contain a cube
+   */
+  public static TemporalCube load(Path file) throws IOException {
+    try (var in = new ObjectInputStream(Files.newInputStream(file))) {
+      return (TemporalCube) in.readObject();
+    } catch (ClassNotFoundException | ClassCastException e) {
+      throw new IOException("not a temporal cube: " + file, e);
+    }
+  }
+
+  /**
+   * Returns the number of grid cells containing aggregated entities.
+   */
+  public int getCellCount() {
+    return cells.size();
+  }
+
+  /**
+   * Counts the snapshots of a query matching the given filter, per timestamp.
+   *
+   * @param query the snapshot query, defining the area of interest and timestamps
+   * @param filter the filter to apply to the snapshots
+   * @return the number of matching snapshots at each timestamp of the query
+   * @throws Exception if the query fails
+   */
+  public SortedMap<OSHDBTimestamp, Integer> count(MapReducer<OSMEntitySnapshot> query,
+      String filter) throws Exception {
+    return aggregate(query, filter, COUNT).entrySet().stream().collect(Collectors.toMap(
+        Map.Entry::getKey, entry -> entry.getValue().intValue(), (a, b) -> a, TreeMap::new));
+  }
+
+  /**
+   * Sums up the lengths (in meters) of the snapshots of a query matching the given filter, per
+   * timestamp.
+   *
+   * @param query the snapshot query, defining the area of interest and timestamps
+   * @param filter the filter to apply to the snapshots
+   * @return the total length of the matching snapshots at each timestamp of the query
+   * @throws Exception if the query fails
+   */
+  public SortedMap<OSHDBTimestamp, Number> length(MapReducer<OSMEntitySnapshot> query,
+      String filter) throws Exception {
+    return aggregate(query, filter, LENGTH);
+  }
+
+  /**
+   * Sums up the areas (in square meters) of the snapshots of a query matching the given filter,
+   * per timestamp.
+   *
+   * @param query the snapshot query, defining the area of interest and timestamps
+   * @param filter the filter to apply to the snapshots
+   * @return the total area of the matching snapshots at each timestamp of the query
+   * @throws Exception if the query fails
+   */
+  public SortedMap<OSHDBTimestamp, Number> area(MapReducer<OSMEntitySnapshot> query,
+      String filter) throws Exception {
+    return aggregate(query, filter, AREA);
+  }
+
+  private SortedMap<OSHDBTimestamp, Number> aggregate(MapReducer<OSMEntitySnapshot> query,
+      String filter, int measure) throws Exception {
+    FilterExpression expression = new FilterParser(query.oshdb.getTagTranslator()).parse(filter);
+    Selection selection = select(query, expression);
+    if (selection == null) {
+      return scan(query.filter(expression), measure);
+    }
+    // cells whose entities are completely inside the area of interest and the cube
+    Set<CellId> inside = new HashSet<>();
+    for (CellId cell : cells.keySet()) {
+      OSHDBBoundingBox cellBbox = XYGrid.getBoundingBox(cell, true);
+      if (cellBbox.coveredBy(query.bboxFilter) && cellBbox.coveredBy(bbox)) {
+        inside.add(cell);
+      }
+    }
+    SortedMap<OSHDBTimestamp, Number> result =
+        scan(query.excludeCells(inside).filter(expression), measure);
+    for (var entry : result.entrySet()) {
+      int t = Arrays.binarySearch(timestamps, entry.getKey());
+      double value = entry.getValue().doubleValue();
+      for (CellId cell : inside) {
+        for (var bucket : cells.get(cell).entrySet()) {
+          if (selection.contains(bucket.getKey())) {
+            value += bucket.getValue()[t * MEASURES + measure];
+          }
+        }
+      }
+      entry.setValue(value);
+    }
+    return result;
+  }
+
+  private static SortedMap<OSHDBTimestamp, Number> scan(MapReducer<OSMEntitySnapshot> query,
+      int measure) throws Exception {
+    var byTimestamp = query.aggregateByTimestamp();
+    switch (measure) {
+      case COUNT:
+        return new TreeMap<>(byTimestamp.count());
+      case LENGTH:
+        return new TreeMap<>(byTimestamp.map(snapshot -> Geo.lengthOf(snapshot.getGeometry()))
+            .sum());
+      case AREA:
+        return new TreeMap<>(byTimestamp.map(snapshot -> Geo.areaOf(snapshot.getGeometry()))
+            .sum());
+      default:
+        throw new IllegalArgumentException("unknown measure " + measure);
+    }
+  }
+
+  /**
+   * Returns the entities selected by a query, or null if the query cannot be answered using this
+   * cube.
+   */
+  private Selection select(MapReducer<OSMEntitySnapshot> query, FilterExpression filter) {
+    if (!query.isOSMEntitySnapshotViewQuery() || !query.isUnfiltered()
+        || !query.tstamps.get().stream()
+            .allMatch(timestamp -> Arrays.binarySearch(timestamps, timestamp) >= 0)) {
+      return null;
+    }
+    List<List<Filter>> clauses;
+    try {
+      clauses = filter.normalize();
+    } catch (IllegalStateException e) {
+      return null;
+    }
+    if (clauses.size() != 1) {
+      return null;
+    }
+    EnumSet<OSMType> types = EnumSet.allOf(OSMType.class);
+    OSHDBTag tag = null;
+    OSHDBTagKey tagKey = null;
+    for (Filter subFilter : clauses.get(0)) {
+      if (subFilter instanceof TypeFilter typeFilter) {
+        types.retainAll(EnumSet.of(typeFilter.getType()));
+      } else if (subFilter instanceof TagFilterEquals tagFilter && tag == null && tagKey == null) {
+        tag = tagFilter.getTag();
+      } else if (subFilter instanceof TagFilterEqualsAny tagFilter && tag == null
+          && tagKey == null) {
+        tagKey = tagFilter.getTag();
+      } else {
+        return null;
+      }
+    }
+    if (tag != null && Arrays.binarySearch(keys, tag.getKey()) >= 0) {
+      return new Selection(types, tag.getKey(), tag.getValue());
+    } else if (tagKey != null && Arrays.binarySearch(keys, tagKey.toInt()) >= 0) {
+      return new Selection(types, tagKey.toInt(), null);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,300 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.Kernels.CancelableProcessStatus;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBException;
+
+/**
+ * Streams the results of individual cells, which are processed by a fixed number of worker
+ * threads, through a bounded buffer to the consumer of the stream.
+ *
+ * <p>Workers block while the buffer is full, so a slow consumer slows down the processing of the
+ * cells instead of letting the buffered results pile up in memory. Results are handed over in
+ * small chunks to keep the synchronization overhead low.</p>
+ *
+ * <p>In ordered mode, the results are returned in the order of the cells. Each cell gets its own
+ * part of the buffer, and at most {@code parallelism} cells are processed (or waiting to be
+ * consumed) at the same time. Otherwise, the results of all cells share one buffer and are
+ * returned as soon as they are available.</p>
+ *
+ * <p>Closing the returned stream before it is exhausted stops the workers and runs the given
+ * close action (e.g. closing the database connections of the query) right away.</p>
+ *
+ * @param <C> the type of the processed cells
+ * @param <X> the type of the results
+ */
+class BoundedCellStream<C, X> {
+  private static final int MAX_CHUNK_SIZE = 64;
+  private static final long PUT_TIMEOUT_MILLIS = 100;
+  // marks the end of the results of a worker (unordered mode) or of a cell (ordered mode)
+  private static final Object END = new Object();
+
+  private final int parallelism;
+  private final int capacity;
+  private final boolean ordered;
+  private final Function<C, Stream<X>> processor;
+  private final CancelableProcessStatus process;
+
+  /** A failure of a worker, which is rethrown to the consumer of the stream. */
+  private static class Failure {
+    private final Throwable error;
+
+    Failure(Throwable error) {
+      this.error = error;
+    }
+  }
+
+  BoundedCellStream(int parallelism, int capacity, boolean ordered,
+      Function<C, Stream<X>> processor, CancelableProcessStatus process) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.parallelism = parallelism;
+    this.capacity = capacity;
+    this.ordered = ordered;
+    this.processor = processor;
+    this.process = process;
+  }
+
+  /**
+   * Returns a stream of the results of all given cells.
+   *
+   * @param cells the cells to process
+   * @param onClose run once all cells are processed, or when the returned stream is closed
+   * @return a sequential stream of the results of all cells
+   */
+  Stream<X> stream(List<C> cells, Runnable onClose) {
+    var run = new Run(cells, onClose);
+    return StreamSupport.stream(spliteratorUnknownSize(run, ordered ? ORDERED : 0), false)
+        .onClose(run::close);
+  }
+
+  private class Run implements Iterator<X> {
+    private final List<C> cells;
+    private final Runnable onClose;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final int chunkSize;
+    private final ExecutorService workers;
+    private final AtomicInteger nextCell = new AtomicInteger(0);
+    private final AtomicInteger activeWorkers;
+    private volatile boolean cancelled = false;
+    // unordered mode: the buffer shared by all workers, and the number of workers still running
+    private final BlockingQueue<Object> shared;
+    private int runningWorkers;
+    // ordered mode: the buffers of all cells, and the permits to start the processing of a cell
+    private final List<BlockingQueue<Object>> cellBuffers;
+    private final Semaphore window;
+    private int head = 0;
+
+    private Iterator<X> current = Collections.emptyIterator();
+    private boolean done = false;
+
+    Run(List<C> cells, Runnable onClose) {
+      this.cells = cells;
+      this.onClose = onClose;
+      int workerCount = Math.max(1, Math.min(parallelism, cells.size()));
+      this.chunkSize = Math.max(1, Math.min(MAX_CHUNK_SIZE, capacity / (2 * workerCount)));
+      int chunks = Math.max(1, capacity / chunkSize);
+      if (ordered) {
+        this.shared = null;
+        this.cellBuffers = new ArrayList<>(cells.size());
+        int cellChunks = Math.max(1, chunks / workerCount);
+        for (int i = 0; i < cells.size(); i++) {
+          cellBuffers.add(new LinkedBlockingQueue<>(cellChunks));
+        }
+        this.window = new Semaphore(workerCount);
+      } else {
+        this.shared = new LinkedBlockingQueue<>(chunks);
+        this.cellBuffers = null;
+        this.window = null;
+      }
+      if (cells.isEmpty()) {
+        this.workers = null;
+        this.activeWorkers = new AtomicInteger(0);
+        this.done = true;
+        close();
+        return;
+      }
+      this.runningWorkers = workerCount;
+      this.activeWorkers = new AtomicInteger(workerCount);
+      this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+        var thread = new Thread(runnable, "oshdb-stream-worker");
+        thread.setDaemon(true);
+        return thread;
+      });
+      for (int i = 0; i < workerCount; i++) {
+        workers.execute(this::work);
+      }
+      workers.shutdown();
+    }
+
+    private void work() {
+      try {
+        if (ordered) {
+          workOrdered();
+        } else {
+          workUnordered();
+        }
+      } catch (InterruptedException e) {
+        // the stream was closed
+        Thread.currentThread().interrupt();
+      } finally {
+        if (activeWorkers.decrementAndGet() == 0) {
+          // all results are in the buffers: the cells' resources aren't needed anymore
+          runOnClose();
+        }
+      }
+    }
+
+    private void workUnordered() throws InterruptedException {
+      try {
+        int i;
+        while (!cancelled && (i = nextCell.getAndIncrement()) < cells.size()) {
+          if (process.isActive()) {
+            processCell(cells.get(i), shared);
+          }
+        }
+      } catch (RuntimeException | Error e) {
+        put(shared, new Failure(e));
+        return;
+      }
+      put(shared, END);
+    }
+
+    private void workOrdered() throws InterruptedException {
+      while (!cancelled) {
+        window.acquire();
+        int i = nextCell.getAndIncrement();
+        if (i >= cells.size()) {
+          window.release();
+          return;
+        }
+        var buffer = cellBuffers.get(i);
+        try {
+          if (process.isActive()) {
+            processCell(cells.get(i), buffer);
+          }
+        } catch (RuntimeException | Error e) {
+          put(buffer, new Failure(e));
+          return;
+        }
+        put(buffer, END);
+      }
+    }
+
+    private void processCell(C cell, BlockingQueue<Object> buffer) throws InterruptedException {
+      var chunk = new ArrayList<X>(chunkSize);
+      try (var results = processor.apply(cell)) {
+        var itr = results.iterator();
+        while (itr.hasNext()) {
+          if (cancelled) {
+            return;
+          }
+          chunk.add(itr.next());
+          if (chunk.size() == chunkSize) {
+            put(buffer, chunk);
+            chunk = new ArrayList<>(chunkSize);
+          }
+        }
+      }
+      if (!chunk.isEmpty()) {
+        put(buffer, chunk);
+      }
+    }
+
+    /**
+     * Adds an item to a buffer, waiting for free space unless the stream gets closed.
+     */
+    private void put(BlockingQueue<Object> buffer, Object item) throws InterruptedException {
+      while (!cancelled && !buffer.offer(item, PUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        // the consumer is slower than the workers: wait
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        if (done) {
+          return false;
+        }
+        Object item = take();
+        if (item == END) {
+          if (ordered) {
+            cellBuffers.set(head, null);
+            head++;
+            window.release();
+            done = head == cells.size();
+          } else {
+            done = --runningWorkers == 0;
+          }
+        } else if (item instanceof Failure failure) {
+          close();
+          if (failure.error instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+          } else if (failure.error instanceof Error error) {
+            throw error;
+          }
+          throw new OSHDBException(failure.error);
+        } else {
+          @SuppressWarnings("unchecked")
+          var chunk = (List<X>) item;
+          current = chunk.iterator();
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public X next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return current.next();
+    }
+
+    private Object take() {
+      try {
+        return ordered ? cellBuffers.get(head).take() : shared.take();
+      } catch (InterruptedException e) {
+        close();
+        Thread.currentThread().interrupt();
+        throw new OSHDBException("interrupted while waiting for the results of a cell", e);
+      }
+    }
+
+    private void close() {
+      cancelled = true;
+      if (workers != null) {
+        workers.shutdownNow();
+      }
+      runOnClose();
+    }
+
+    private void runOnClose() {
+      if (closed.compareAndSet(false, true)) {
+        onClose.run();
+      }
+    }
+  }
+}
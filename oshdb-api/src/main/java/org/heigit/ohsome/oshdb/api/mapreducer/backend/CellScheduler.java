@@ -0,0 +1,118 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.Kernels.CancelableProcessStatus;
+
+/**
+ * Schedules the processing of individual cells on a dedicated work-stealing thread pool.
+ *
+ * <p>Cells are ordered by decreasing (estimated) weight and then recursively split into tasks of
+ * about equal total weight. Each worker processes its own part of the task tree depth-first, while
+ * idle workers steal the not yet started halves from busy ones. Heavy cells are started first, so
+ * that a single large cell doesn't end up delaying the end of a query.</p>
+ *
+ * @param <C> the type of the scheduled cells
+ * @param <S> the type of the (partial) results
+ */
+class CellScheduler<C, S> {
+  private final int parallelism;
+  private final Function<C, S> processor;
+  private final Supplier<S> identitySupplier;
+  private final BinaryOperator<S> combiner;
+  private final CancelableProcessStatus process;
+
+  CellScheduler(int parallelism, Function<C, S> processor, Supplier<S> identitySupplier,
+      BinaryOperator<S> combiner, CancelableProcessStatus process) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    this.parallelism = parallelism;
+    this.processor = processor;
+    this.identitySupplier = identitySupplier;
+    this.combiner = combiner;
+    this.process = process;
+  }
+
+  /**
+   * Processes all given cells and combines their results.
+   *
+   * @param cells the cells to process
+   * @param weight function returning the estimated processing cost of a cell
+   * @return the combined result of all cells
+   */
+  S reduce(List<C> cells, ToLongFunction<C> weight) {
+    if (cells.isEmpty()) {
+      return identitySupplier.get();
+    }
+    var sorted = new ArrayList<>(cells);
+    sorted.sort(Comparator.comparingLong(weight).reversed());
+    // cumulative weights, every cell counts at least 1 to keep splits balanced by count too
+    long[] cumulative = new long[sorted.size() + 1];
+    for (int i = 0; i < sorted.size(); i++) {
+      cumulative[i + 1] = cumulative[i] + Math.max(1, weight.applyAsLong(sorted.get(i)));
+    }
+    var pool = new ForkJoinPool(parallelism);
+    try {
+      return pool.invoke(new Task(sorted, cumulative, 0, sorted.size()));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private class Task extends RecursiveTask<S> {
+    private static final long serialVersionUID = 1L;
+    private final transient List<C> cells;
+    private final long[] cumulative;
+    private final int from;
+    private final int to;
+
+    Task(List<C> cells, long[] cumulative, int from, int to) {
+      this.cells = cells;
+      this.cumulative = cumulative;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected S compute() {
+      if (!process.isActive()) {
+        return identitySupplier.get();
+      }
+      if (to - from == 1) {
+        return processor.apply(cells.get(from));
+      }
+      int split = splitIndex();
+      var second = new Task(cells, cumulative, split, to);
+      second.fork();
+      S first = new Task(cells, cumulative, from, split).compute();
+      return combiner.apply(first, second.join());
+    }
+
+    /**
+     * Returns the index which divides the cells of this task into two parts of about equal
+     * weight, each containing at least one cell.
+     */
+    private int splitIndex() {
+      long half = (cumulative[from] + cumulative[to]) / 2;
+      int low = from + 1;
+      int high = to - 1;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (cumulative[mid] < half) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,376 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import static java.util.stream.Collectors.joining;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import org.heigit.ohsome.oshdb.api.db.OSHDBJdbc;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.MapReducerJdbc.CellRef;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
+import org.heigit.ohsome.oshdb.index.XYGridTree.CellIdRange;
+import org.heigit.ohsome.oshdb.util.CellId;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBException;
+
+/**
+ * Fetches grid cells of a single query from a JDBC database in batches.
+ *
+ * <p>Adjacent cell id ranges of the same zoom level are merged, and the resulting ranges are
+ * fetched in batches of a fixed number of ranges per sql query (unused slots of the last batch
+ * are filled with empty ranges). This way every connection only needs one prepared statement for
+ * all batches, which is reused for the whole query. Connections are kept open until the fetcher
+ * is closed and are shared between threads, but are only used by one thread at a time. Closing
+ * the fetcher closes the idle connections immediately, and the ones still in use as soon as they
+ * are returned.</p>
+ */
+class JdbcCellFetcher implements AutoCloseable {
+  private final OSHDBJdbc oshdb;
+  private final List<String> tables;
+  private final int batchSize;
+  private final JdbcFetchStatistics statistics;
+  private final String batchSql;
+
+  // guarded by this
+  private final Queue<PooledConnection> idle = new ArrayDeque<>();
+  private final Set<PooledConnection> inUse = new HashSet<>();
+  private ExecutorService prefetchExecutor;
+  private boolean closed = false;
+
+  /**
+   * A connection together with the statements which were already prepared on it.
+   */
+  private class PooledConnection {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    PooledConnection() throws SQLException {
+      this.connection = oshdb.getConnection();
+      statistics.connections.increment();
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+      var statement = statements.get(sql);
+      if (statement == null) {
+        statement = connection.prepareStatement(sql);
+        statistics.preparedStatements.increment();
+        statements.put(sql, statement);
+      }
+      return statement;
+    }
+
+    void close() throws SQLException {
+      try {
+        for (PreparedStatement statement : statements.values()) {
+          statement.close();
+        }
+      } finally {
+        connection.close();
+      }
+    }
+  }
+
+  JdbcCellFetcher(OSHDBJdbc oshdb, List<String> tables, int batchSize,
+      JdbcFetchStatistics statistics) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batch size must be positive");
+    }
+    this.oshdb = oshdb;
+    this.tables = tables;
+    this.batchSize = batchSize;
+    this.statistics = statistics;
+    this.batchSql = tables.stream()
+        .flatMap(table -> IntStream.range(0, batchSize).mapToObj(ignored ->
+            "(select data from " + table + " where level = ? and id between ? and ?)"))
+        .collect(joining(" union all "));
+  }
+
+  /**
+   * Merges overlapping and adjacent cell id ranges of the same zoom level.
+   *
+   * @param cellIdRanges the ranges to merge
+   * @return the merged ranges, ordered by zoom level and cell id
+   */
+  static List<CellIdRange> mergeRanges(Iterable<CellIdRange> cellIdRanges) {
+    var ranges = new ArrayList<CellIdRange>();
+    cellIdRanges.forEach(ranges::add);
+    ranges.sort(Comparator
+        .comparingInt((CellIdRange range) -> range.getStart().getZoomLevel())
+        .thenComparingLong(range -> range.getStart().getId()));
+    var merged = new ArrayList<CellIdRange>(ranges.size());
+    CellIdRange current = null;
+    for (CellIdRange range : ranges) {
+      if (current != null
+          && current.getStart().getZoomLevel() == range.getStart().getZoomLevel()
+          && range.getStart().getId() <= current.getEnd().getId() + 1) {
+        if (range.getEnd().getId() > current.getEnd().getId()) {
+          current = CellIdRange.of(current.getStart(), range.getEnd());
+        }
+      } else {
+        if (current != null) {
+          merged.add(current);
+        }
+        current = range;
+      }
+    }
+    if (current != null) {
+      merged.add(current);
+    }
+    return merged;
+  }
+
+  /**
+   * Merges the given cell id ranges and splits them into batches which are fetched by a single
+   * sql query each.
+   */
+  List<List<CellIdRange>> batches(Iterable<CellIdRange> cellIdRanges) {
+    var merged = mergeRanges(cellIdRanges);
+    cellIdRanges.forEach(ignored -> statistics.requestedRanges.increment());
+    statistics.mergedRanges.add(merged.size());
+    var batches = new ArrayList<List<CellIdRange>>();
+    for (int i = 0; i < merged.size(); i += batchSize) {
+      batches.add(Collections.unmodifiableList(
+          merged.subList(i, Math.min(i + batchSize, merged.size()))));
+    }
+    return batches;
+  }
+
+  /**
+   * Fetches all cells of the given batch.
+   */
+  List<GridOSHEntity> fetch(List<CellIdRange> batch) {
+    if (batch.isEmpty() || tables.isEmpty()) {
+      return Collections.emptyList();
+    }
+    statistics.batches.increment();
+    return withConnection(conn -> {
+      var statement = conn.prepare(batchSql);
+      int param = 1;
+      for (int t = 0; t < tables.size(); t++) {
+        for (int i = 0; i < batchSize; i++) {
+          if (i < batch.size()) {
+            CellIdRange range = batch.get(i);
+            statement.setInt(param++, range.getStart().getZoomLevel());
+            statement.setLong(param++, range.getStart().getId());
+            statement.setLong(param++, range.getEnd().getId());
+          } else {
+            // empty range
+            statement.setInt(param++, -1);
+            statement.setLong(param++, 0);
+            statement.setLong(param++, -1);
+          }
+        }
+      }
+      return readCells(statement);
+    });
+  }
+
+  /**
+   * A batch of cell id ranges which is fetched by a single sql query, together with the total
+   * size of the data of its cells.
+   */
+  record SizedBatch(List<CellIdRange> ranges, long size) {}
+
+  /**
+   * Groups the given cells into batches which are fetched by a single sql query each.
+   *
+   * <p>Cells are ordered by decreasing size and packed into batches of at most the batch size of
+   * this fetcher and about {@code targetSize} bytes of data: heavy cells end up in batches of
+   * their own, while many small cells share a single query. The cells of all tables with the same
+   * cell id are fetched together.</p>
+   *
+   * @param cellRefs the cells to fetch
+   * @param targetSize the total size of the data of the cells of a batch to aim for
+   * @return the batches, ordered by decreasing size of their heaviest cell
+   */
+  List<SizedBatch> sizedBatches(List<CellRef> cellRefs, long targetSize) {
+    var sizes = new HashMap<CellId, Long>();
+    for (CellRef cellRef : cellRefs) {
+      sizes.merge(new CellId(cellRef.level, cellRef.id), cellRef.size, Long::sum);
+    }
+    var cells = new ArrayList<>(sizes.entrySet());
+    cells.sort(Map.Entry.<CellId, Long>comparingByValue().reversed());
+    var batches = new ArrayList<SizedBatch>();
+    var ranges = new ArrayList<CellIdRange>();
+    long size = 0;
+    for (var cell : cells) {
+      ranges.add(CellIdRange.of(cell.getKey(), cell.getKey()));
+      size += cell.getValue();
+      if (ranges.size() == batchSize || size >= targetSize) {
+        batches.add(new SizedBatch(List.copyOf(ranges), size));
+        ranges.clear();
+        size = 0;
+      }
+    }
+    if (!ranges.isEmpty()) {
+      batches.add(new SizedBatch(List.copyOf(ranges), size));
+    }
+    return batches;
+  }
+
+  /**
+   * Returns an iterator over all cells of the given ranges. While the cells of one batch are
+   * being consumed, the next batch is already fetched in the background.
+   */
+  Iterator<GridOSHEntity> cells(Iterable<CellIdRange> cellIdRanges) {
+    var batches = batches(cellIdRanges).iterator();
+    synchronized (this) {
+      if (prefetchExecutor == null) {
+        prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+          var thread = new Thread(runnable, "oshdb-jdbc-prefetch");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
+    return new Iterator<>() {
+      private Iterator<GridOSHEntity> current = Collections.emptyIterator();
+      private CompletableFuture<List<GridOSHEntity>> next = prefetch();
+
+      private CompletableFuture<List<GridOSHEntity>> prefetch() {
+        if (!batches.hasNext()) {
+          return null;
+        }
+        var batch = batches.next();
+        return CompletableFuture.supplyAsync(() -> fetch(batch), prefetchExecutor);
+      }
+
+      @Override
+      public boolean hasNext() {
+        while (!current.hasNext() && next != null) {
+          try {
+            current = next.join().iterator();
+          } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+              throw (RuntimeException) e.getCause();
+            }
+            throw new OSHDBException(e.getCause());
+          }
+          next = prefetch();
+        }
+        return current.hasNext();
+      }
+
+      @Override
+      public GridOSHEntity next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return current.next();
+      }
+    };
+  }
+
+  private List<GridOSHEntity> readCells(PreparedStatement statement)
+      throws SQLException, IOException {
+    statistics.queries.increment();
+    var cells = new ArrayList<GridOSHEntity>();
+    try (var rs = statement.executeQuery()) {
+      while (rs.next()) {
+        byte[] data = rs.getBytes(1);
+        statistics.bytes.add(data.length);
+        cells.add(GridOSHEntityCodec.decode(data));
+      }
+    }
+    statistics.cells.add(cells.size());
+    return cells;
+  }
+
+  private interface ConnectionFunction<T> {
+    T apply(PooledConnection conn) throws SQLException, IOException;
+  }
+
+  private <T> T withConnection(ConnectionFunction<T> function) {
+    long start = System.nanoTime();
+    try {
+      PooledConnection conn = acquire();
+      try {
+        return function.apply(conn);
+      } finally {
+        release(conn);
+      }
+    } catch (SQLException | IOException e) {
+      throw new OSHDBException(e);
+    } finally {
+      statistics.fetchNanos.add(System.nanoTime() - start);
+    }
+  }
+
+  private PooledConnection acquire() throws SQLException {
+    synchronized (this) {
+      if (closed) {
+        throw new OSHDBException("cell fetcher already closed");
+      }
+      var conn = idle.poll();
+      if (conn != null) {
+        inUse.add(conn);
+        return conn;
+      }
+    }
+    // open new connections outside the lock, they might take a while
+    var conn = new PooledConnection();
+    synchronized (this) {
+      if (!closed) {
+        inUse.add(conn);
+        return conn;
+      }
+    }
+    // the fetcher was closed while the connection was opened
+    conn.close();
+    throw new OSHDBException("cell fetcher already closed");
+  }
+
+  private void release(PooledConnection conn) throws SQLException {
+    synchronized (this) {
+      inUse.remove(conn);
+      if (!closed) {
+        idle.add(conn);
+        return;
+      }
+    }
+    conn.close();
+  }
+
+  @Override
+  public void close() {
+    List<PooledConnection> connections;
+    synchronized (this) {
+      closed = true;
+      if (prefetchExecutor != null) {
+        prefetchExecutor.shutdownNow();
+      }
+      // connections which are still in use are closed when they are released
+      connections = new ArrayList<>(idle);
+      idle.clear();
+    }
+    var exception = new OSHDBException("could not close jdbc connections");
+    for (PooledConnection conn : connections) {
+      try {
+        conn.close();
+      } catch (SQLException e) {
+        exception.addSuppressed(e);
+      }
+    }
+    if (exception.getSuppressed().length > 0) {
+      throw exception;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package org.heigit.ohsome.oshdb.api.mapreducer.backend;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics about the cell data fetched from a JDBC database during a single query.
+ *
+ * <p>All counters are updated concurrently while the query is running.</p>
+ */
+public class JdbcFetchStatistics {
+  final LongAdder requestedRanges = new LongAdder();
+  final LongAdder mergedRanges = new LongAdder();
+  final LongAdder batches = new LongAdder();
+  final LongAdder queries = new LongAdder();
+  final LongAdder preparedStatements = new LongAdder();
+  final LongAdder connections = new LongAdder();
+  final LongAdder cells = new LongAdder();
+  final LongAdder bytes = new LongAdder();
+  final LongAdder fetchNanos = new LongAdder();
+
+  /**
+   * Returns the number of cell id ranges requested by the query.
+   */
+  public long getRequestedRanges() {
+    return requestedRanges.sum();
+  }
+
+  /**
+   * Returns the number of cell id ranges left after merging adjacent ranges.
+   */
+  public long getMergedRanges() {
+    return mergedRanges.sum();
+  }
+
+  /**
+   * Returns the number of batches the merged ranges were fetched in.
+   */
+  public long getBatches() {
+    return batches.sum();
+  }
+
+  /**
+   * Returns the number of executed sql queries.
+   */
+  public long getQueries() {
+    return queries.sum();
+  }
+
+  /**
+   * Returns the number of prepared statements created; the remaining queries reused an already
+   * prepared statement.
+   */
+  public long getPreparedStatements() {
+    return preparedStatements.sum();
+  }
+
+  /**
+   * Returns the number of database connections opened.
+   */
+  public long getConnections() {
+    return connections.sum();
+  }
+
+  /**
+   * Returns the number of fetched cells.
+   */
+  public long getCells() {
+    return cells.sum();
+  }
+
+  /**
+   * Returns the total size of the fetched cell data in bytes.
+   */
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  /**
+   * Returns the total time spent waiting for and decoding cell data, summed over all threads.
+   */
+  public long getFetchTime(TimeUnit unit) {
+    return unit.convert(fetchNanos.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ENGLISH,
+        "ranges: %d (merged: %d), batches: %d, queries: %d, prepared statements: %d, "
+            + "connections: %d, cells: %d, bytes: %d, fetch time: %dms",
+        getRequestedRanges(), getMergedRanges(), getBatches(), getQueries(),
+        getPreparedStatements(), getConnections(), getCells(), getBytes(),
+        getFetchTime(TimeUnit.MILLISECONDS));
+  }
+}
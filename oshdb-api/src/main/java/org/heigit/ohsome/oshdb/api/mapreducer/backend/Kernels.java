@@ -7,10 +7,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import org.heigit.ohsome.oshdb.api.mapreducer.CellResultCache;
 import org.heigit.ohsome.oshdb.api.object.OSMContributionImpl;
 import org.heigit.ohsome.oshdb.api.object.OSMEntitySnapshotImpl;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
 import org.heigit.ohsome.oshdb.util.celliterator.CellIterator;
 import org.heigit.ohsome.oshdb.util.celliterator.OSHEntitySource;
 import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
@@ -18,6 +21,8 @@ import org.heigit.ohsome.oshdb.util.function.SerializableFunction;
 import org.heigit.ohsome.oshdb.util.function.SerializableSupplier;
 import org.heigit.ohsome.oshdb.util.mappable.OSMContribution;
 import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.heigit.ohsome.oshdb.util.metrics.MeteredValue;
+import org.heigit.ohsome.oshdb.util.metrics.QueryMetrics;
 
 class Kernels implements Serializable {
   interface CellProcessor<S> extends SerializableBiFunction<OSHEntitySource, CellIterator, S> {}
@@ -40,6 +45,64 @@ class Kernels implements Serializable {
 
   private static final CancelableProcessStatus NC = new NonCancelableProcessStatus();
 
+  /**
+   * Processes a single cell and records its metrics, if the accumulation value the cell starts
+   * with carries {@link MeteredValue query metrics}.
+   *
+   * @param source the cell to process
+   * @param identity the accumulation value to start the cell with
+   * @param processing the actual processing of the cell, gets the accumulation value to start
+   *        with and the metrics to record into (or null)
+   * @return the result of the processing
+   */
+  private static <S> S processCell(OSHEntitySource source, S identity,
+      BiFunction<S, QueryMetrics, S> processing) {
+    QueryMetrics metrics = MeteredValue.metricsOf(identity);
+    if (metrics == null) {
+      return processing.apply(identity, null);
+    }
+    long start = System.nanoTime();
+    long cpuStart = QueryMetrics.currentThreadCpuTime();
+    S result = processing.apply(identity, metrics);
+    metrics.recordCell(source.getDataSize(), System.nanoTime() - start,
+        QueryMetrics.currentThreadCpuTime() - cpuStart);
+    return result;
+  }
+
+  /**
+   * Processes a cell, or returns its result from the given cell result cache.
+   *
+   * <p>The result is only stored in the cache if the process is still active after the cell has
+   * been processed: the cell processors stop early when the process is canceled, which leaves
+   * them with the partial result of the cell.</p>
+   *
+   * @param cache the cell result cache of the operation, or null
+   * @param cell the cell to process
+   * @param processor the processor of the cells
+   * @param cellIterator the cell iterator to process the cell with
+   * @param process the status of the process the cell is processed by
+   * @return the result of the cell
+   */
+  static <S> S processCached(CellResultCache.Query cache, GridOSHEntity cell,
+      CellProcessor<S> processor, CellIterator cellIterator, CancelableProcessStatus process) {
+    if (cache == null) {
+      return processor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator);
+    }
+    return cache.computeIfAbsent(cell,
+        () -> processor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator),
+        process::isActive);
+  }
+
+  private static long startTimer(QueryMetrics metrics) {
+    return metrics == null ? 0 : System.nanoTime();
+  }
+
+  private static void recordResults(QueryMetrics metrics, int count, long start) {
+    if (metrics != null) {
+      metrics.recordResults(count, System.nanoTime() - start);
+    }
+  }
+
   // === map-reduce processors ===
 
   @Nonnull
@@ -58,18 +121,21 @@ class Kernels implements Serializable {
       SerializableBiFunction<S, R, S> accumulator,
       CancelableProcessStatus process
   ) {
-    return (source, cellIterator) -> {
-      // iterate over the history of all OSM objects in the current cell
-      AtomicReference<S> accInternal = new AtomicReference<>(identitySupplier.get());
-      cellIterator.iterateByContribution(source)
-          .takeWhile(process::isActive)
-          .forEach(contribution -> {
-            OSMContribution osmContribution = new OSMContributionImpl(contribution);
-            mapper.apply(osmContribution).ifPresent(mapped ->
-                accInternal.set(accumulator.apply(accInternal.get(), mapped)));
-          });
-      return accInternal.get();
-    };
+    return (source, cellIterator) -> processCell(source, identitySupplier.get(),
+        (identity, metrics) -> {
+          // iterate over the history of all OSM objects in the current cell
+          AtomicReference<S> accInternal = new AtomicReference<>(identity);
+          cellIterator.iterateByContribution(source, metrics)
+              .takeWhile(process::isActive)
+              .forEach(contribution -> {
+                long start = startTimer(metrics);
+                OSMContribution osmContribution = new OSMContributionImpl(contribution);
+                mapper.apply(osmContribution).ifPresent(mapped ->
+                    accInternal.set(accumulator.apply(accInternal.get(), mapped)));
+                recordResults(metrics, 1, start);
+              });
+          return accInternal.get();
+        });
   }
 
   @Nonnull
@@ -88,33 +154,38 @@ class Kernels implements Serializable {
       SerializableBiFunction<S, R, S> accumulator,
       CancelableProcessStatus process
   ) {
-    return (source, cellIterator) -> {
-      AtomicReference<S> accInternal = new AtomicReference<>(identitySupplier.get());
-      // iterate over the history of all OSM objects in the current cell
-      List<OSMContribution> contributions = new ArrayList<>();
-      cellIterator.iterateByContribution(source)
-          .takeWhile(process::isActive)
-          .forEach(contribution -> {
-            OSMContribution thisContribution = new OSMContributionImpl(contribution);
-            if (contributions.size() > 0
-                && thisContribution.getEntityAfter().getId() != contributions
-                .get(contributions.size() - 1).getEntityAfter().getId()) {
-              // immediately fold the results
-              for (R r : mapper.apply(contributions)) {
-                accInternal.set(accumulator.apply(accInternal.get(), r));
-              }
-              contributions.clear();
+    return (source, cellIterator) -> processCell(source, identitySupplier.get(),
+        (identity, metrics) -> {
+          AtomicReference<S> accInternal = new AtomicReference<>(identity);
+          // iterate over the history of all OSM objects in the current cell
+          List<OSMContribution> contributions = new ArrayList<>();
+          cellIterator.iterateByContribution(source, metrics)
+              .takeWhile(process::isActive)
+              .forEach(contribution -> {
+                OSMContribution thisContribution = new OSMContributionImpl(contribution);
+                if (contributions.size() > 0
+                    && thisContribution.getEntityAfter().getId() != contributions
+                    .get(contributions.size() - 1).getEntityAfter().getId()) {
+                  // immediately fold the results
+                  long start = startTimer(metrics);
+                  for (R r : mapper.apply(contributions)) {
+                    accInternal.set(accumulator.apply(accInternal.get(), r));
+                  }
+                  recordResults(metrics, contributions.size(), start);
+                  contributions.clear();
+                }
+                contributions.add(thisContribution);
+              });
+          // apply mapper and fold results one more time for last entity in current cell
+          if (contributions.size() > 0) {
+            long start = startTimer(metrics);
+            for (R r : mapper.apply(contributions)) {
+              accInternal.set(accumulator.apply(accInternal.get(), r));
             }
-            contributions.add(thisContribution);
-          });
-      // apply mapper and fold results one more time for last entity in current cell
-      if (contributions.size() > 0) {
-        for (R r : mapper.apply(contributions)) {
-          accInternal.set(accumulator.apply(accInternal.get(), r));
-        }
-      }
-      return accInternal.get();
-    };
+            recordResults(metrics, contributions.size(), start);
+          }
+          return accInternal.get();
+        });
   }
 
   @Nonnull
@@ -133,19 +204,22 @@ class Kernels implements Serializable {
       SerializableBiFunction<S, R, S> accumulator,
       CancelableProcessStatus process
   ) {
-    return (source, cellIterator) -> {
-      // iterate over the history of all OSM objects in the current cell
-      AtomicReference<S> accInternal = new AtomicReference<>(identitySupplier.get());
-      cellIterator.iterateByTimestamps(source)
-          .takeWhile(process::isActive)
-          .forEach(data -> {
-            OSMEntitySnapshot snapshot = new OSMEntitySnapshotImpl(data);
-            // immediately fold the result
-            mapper.apply(snapshot).ifPresent(mapped ->
-                accInternal.set(accumulator.apply(accInternal.get(), mapped)));
-          });
-      return accInternal.get();
-    };
+    return (source, cellIterator) -> processCell(source, identitySupplier.get(),
+        (identity, metrics) -> {
+          // iterate over the history of all OSM objects in the current cell
+          AtomicReference<S> accInternal = new AtomicReference<>(identity);
+          cellIterator.iterateByTimestamps(source, metrics)
+              .takeWhile(process::isActive)
+              .forEach(data -> {
+                long start = startTimer(metrics);
+                OSMEntitySnapshot snapshot = new OSMEntitySnapshotImpl(data);
+                // immediately fold the result
+                mapper.apply(snapshot).ifPresent(mapped ->
+                    accInternal.set(accumulator.apply(accInternal.get(), mapped)));
+                recordResults(metrics, 1, start);
+              });
+          return accInternal.get();
+        });
   }
 
   @Nonnull
@@ -164,33 +238,38 @@ class Kernels implements Serializable {
       SerializableBiFunction<S, R, S> accumulator,
       CancelableProcessStatus process
   ) {
-    return (source, cellIterator) -> {
-      // iterate over the history of all OSM objects in the current cell
-      AtomicReference<S> accInternal = new AtomicReference<>(identitySupplier.get());
-      List<OSMEntitySnapshot> osmEntitySnapshots = new ArrayList<>();
-      cellIterator.iterateByTimestamps(source)
-          .takeWhile(process::isActive)
-          .forEach(data -> {
-            OSMEntitySnapshot thisSnapshot = new OSMEntitySnapshotImpl(data);
-            if (osmEntitySnapshots.size() > 0
-                && thisSnapshot.getEntity().getId() != osmEntitySnapshots
-                .get(osmEntitySnapshots.size() - 1).getEntity().getId()) {
-              // immediately fold the results
-              for (R r : mapper.apply(osmEntitySnapshots)) {
-                accInternal.set(accumulator.apply(accInternal.get(), r));
-              }
-              osmEntitySnapshots.clear();
+    return (source, cellIterator) -> processCell(source, identitySupplier.get(),
+        (identity, metrics) -> {
+          // iterate over the history of all OSM objects in the current cell
+          AtomicReference<S> accInternal = new AtomicReference<>(identity);
+          List<OSMEntitySnapshot> osmEntitySnapshots = new ArrayList<>();
+          cellIterator.iterateByTimestamps(source, metrics)
+              .takeWhile(process::isActive)
+              .forEach(data -> {
+                OSMEntitySnapshot thisSnapshot = new OSMEntitySnapshotImpl(data);
+                if (osmEntitySnapshots.size() > 0
+                    && thisSnapshot.getEntity().getId() != osmEntitySnapshots
+                    .get(osmEntitySnapshots.size() - 1).getEntity().getId()) {
+                  // immediately fold the results
+                  long start = startTimer(metrics);
+                  for (R r : mapper.apply(osmEntitySnapshots)) {
+                    accInternal.set(accumulator.apply(accInternal.get(), r));
+                  }
+                  recordResults(metrics, osmEntitySnapshots.size(), start);
+                  osmEntitySnapshots.clear();
+                }
+                osmEntitySnapshots.add(thisSnapshot);
+              });
+          // apply mapper and fold results one more time for last entity in current cell
+          if (osmEntitySnapshots.size() > 0) {
+            long start = startTimer(metrics);
+            for (R r : mapper.apply(osmEntitySnapshots)) {
+              accInternal.set(accumulator.apply(accInternal.get(), r));
             }
-            osmEntitySnapshots.add(thisSnapshot);
-          });
-      // apply mapper and fold results one more time for last entity in current cell
-      if (osmEntitySnapshots.size() > 0) {
-        for (R r : mapper.apply(osmEntitySnapshots)) {
-          accInternal.set(accumulator.apply(accInternal.get(), r));
-        }
-      }
-      return accInternal.get();
-    };
+            recordResults(metrics, osmEntitySnapshots.size(), start);
+          }
+          return accInternal.get();
+        });
   }
 
   // === stream processors ===
@@ -1,17 +1,16 @@
 package org.heigit.ohsome.oshdb.api.mapreducer.backend;
 
 import static java.util.Spliterators.spliteratorUnknownSize;
-import static java.util.stream.Collectors.joining;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.annotation.Nonnull;
@@ -25,8 +24,12 @@ import org.heigit.ohsome.oshdb.util.TableNames;
 import org.heigit.ohsome.oshdb.util.exceptions.OSHDBException;
 import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTimeoutException;
 import org.heigit.ohsome.oshdb.util.mappable.OSHDBMapReducible;
+import org.heigit.ohsome.oshdb.util.metrics.QueryMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 abstract class MapReducerJdbc<X> extends MapReducer<X> implements CancelableProcessStatus {
+  private static final Logger LOG = LoggerFactory.getLogger(MapReducerJdbc.class);
 
   /**
    * Stores the start time of reduce/stream operation as returned by
@@ -34,14 +37,22 @@ abstract class MapReducerJdbc<X> extends MapReducer<X> implements CancelableProc
    */
   protected long executionStartTimeMillis;
 
+  /**
+   * Holds the fetch statistics of the last operation, shared by all copies of this mapReducer
+   * (e.g. the ones created internally by {@link #count()}).
+   */
+  private final AtomicReference<JdbcFetchStatistics> fetchStatistics;
+
   MapReducerJdbc(OSHDBDatabase oshdb, Class<? extends OSHDBMapReducible> forClass) {
     super(oshdb, forClass);
+    this.fetchStatistics = new AtomicReference<>();
   }
 
   // copy constructor
   MapReducerJdbc(MapReducerJdbc<?> source) {
     super(source);
     this.executionStartTimeMillis = source.executionStartTimeMillis;
+    this.fetchStatistics = source.fetchStatistics;
   }
 
   @Override
@@ -52,99 +63,140 @@ abstract class MapReducerJdbc<X> extends MapReducer<X> implements CancelableProc
     return true;
   }
 
-  /**
-   * Returns data of one cell from the raw data stream.
-   */
-  protected GridOSHEntity readOshCellRawData(ResultSet oshCellsRawData)
-      throws IOException, ClassNotFoundException, SQLException {
-    return (GridOSHEntity)
-        (new ObjectInputStream(oshCellsRawData.getBinaryStream(1))).readObject();
-  }
-
-  protected String sqlQuery() {
+  private List<String> tableNames() {
     return this.typeFilter.stream()
         .map(osmType -> TableNames.forOSMType(osmType)
-                .map(tn -> tn.toString(this.oshdb.prefix())))
+            .map(tn -> tn.toString(this.oshdb.prefix())))
         .filter(Optional::isPresent)
         .map(Optional::get)
-        .map(tn -> "(select data from " + tn + " where level = ?1 and id between ?2 and ?3)")
-        .collect(joining(" union all "));
+        .toList();
   }
 
-  @Nonnull
-  protected Stream<GridOSHEntity> getOshCellsStream(CellIdRange cellIdRange) {
-    try {
-      if (this.typeFilter.isEmpty()) {
-        return Stream.empty();
-      }
+  /**
+   * Reference to a single cell of one of the grid tables, including the size of its data.
+   */
+  static class CellRef {
+    final String table;
+    final int level;
+    final long id;
+    final long size;
+
+    CellRef(String table, int level, long id, long size) {
+      this.table = table;
+      this.level = level;
+      this.id = id;
+      this.size = size;
+    }
+
+    long getSize() {
+      return size;
+    }
+  }
 
-      var conn = ((OSHDBJdbc) this.oshdb).getConnection();
-      var pstmt = conn.prepareStatement(sqlQuery());
-      pstmt.setInt(1, cellIdRange.getStart().getZoomLevel());
-      pstmt.setLong(2, cellIdRange.getStart().getId());
-      pstmt.setLong(3, cellIdRange.getEnd().getId());
-      var oshCellsRawData = pstmt.executeQuery();
-      return StreamSupport.stream(spliteratorUnknownSize(
-          new GridOSHEntityIterator(oshCellsRawData, pstmt, conn), 0
-      ), false);
+  /**
+   * Returns references to all existing cells in the given cell id ranges, without fetching
+   * their data.
+   */
+  protected List<CellRef> getCellRefs(Iterable<CellIdRange> cellIdRanges) {
+    var cellRefs = new ArrayList<CellRef>();
+    try (var conn = ((OSHDBJdbc) this.oshdb).getConnection()) {
+      for (String table : tableNames()) {
+        try (var pstmt = conn.prepareStatement("select level, id, length(data) from " + table
+            + " where level = ? and id between ? and ?")) {
+          for (CellIdRange cellIdRange : JdbcCellFetcher.mergeRanges(cellIdRanges)) {
+            pstmt.setInt(1, cellIdRange.getStart().getZoomLevel());
+            pstmt.setLong(2, cellIdRange.getStart().getId());
+            pstmt.setLong(3, cellIdRange.getEnd().getId());
+            try (var rs = pstmt.executeQuery()) {
+              while (rs.next()) {
+                cellRefs.add(new CellRef(table, rs.getInt(1), rs.getLong(2), rs.getLong(3)));
+              }
+            }
+          }
+        }
+      }
     } catch (SQLException e) {
       throw new OSHDBException(e);
     }
+    return cellRefs;
   }
 
-  private class GridOSHEntityIterator implements Iterator<GridOSHEntity> {
-
-    private final ResultSet oshCellsRawData;
-    private final PreparedStatement preparedStatement;
-    private final Connection conn;
-    GridOSHEntity next;
-
-    public GridOSHEntityIterator(
-        ResultSet oshCellsRawData,
-        PreparedStatement pstmt,
-        Connection conn
-    ) {
-      this.oshCellsRawData = oshCellsRawData;
-      this.preparedStatement = pstmt;
-      this.conn = conn;
-    }
+  /**
+   * Creates the cell fetcher for a new reduce/stream operation, which also resets the
+   * {@link #getFetchStatistics() fetch statistics} of this mapReducer.
+   */
+  protected JdbcCellFetcher newCellFetcher() {
+    var statistics = new JdbcFetchStatistics();
+    this.fetchStatistics.set(statistics);
+    var jdbc = (OSHDBJdbc) this.oshdb;
+    return new JdbcCellFetcher(jdbc, tableNames(), jdbc.fetchBatchSize(), statistics);
+  }
+
+  /**
+   * Returns statistics about the cell data fetched by the last (or currently running) reduce or
+   * stream operation of this mapReducer, or of any other mapReducer derived from the same one.
+   *
+   * @return the fetch statistics, or null if no operation was run yet
+   */
+  public JdbcFetchStatistics getFetchStatistics() {
+    return this.fetchStatistics.get();
+  }
 
-    @Override
-    public boolean hasNext() {
-      return next != null || (next = getNext()) != null;
+  @Override
+  protected void completeQueryMetrics(QueryMetrics metrics) {
+    var statistics = this.fetchStatistics.get();
+    if (statistics != null) {
+      metrics.recordFetch(statistics.getFetchTime(TimeUnit.NANOSECONDS));
     }
+  }
 
-    @Override
-    public GridOSHEntity next() {
-      if (!hasNext()) {
-        throw new NoSuchElementException();
-      }
-      var grid = next;
-      next = null;
-      return grid;
+  /**
+   * Logs the fetch statistics of a finished operation and closes the given cell fetcher.
+   */
+  protected void closeCellFetcher(JdbcCellFetcher fetcher) {
+    try {
+      fetcher.close();
+    } finally {
+      LOG.debug("fetch statistics: {}", this.fetchStatistics.get());
     }
+  }
 
-    private GridOSHEntity getNext() {
-      try {
-        if (!oshCellsRawData.next()) {
-          try {
-            oshCellsRawData.close();
-            preparedStatement.close();
-          } finally {
-            conn.close();
+  /**
+   * Returns a stream of all cells in the given ranges, using the given fetcher. The fetcher is
+   * closed once the stream is exhausted or closed.
+   */
+  @Nonnull
+  protected Stream<GridOSHEntity> getOshCellsStream(
+      JdbcCellFetcher fetcher, Iterable<CellIdRange> cellIdRanges) {
+    var cells = fetcher.cells(cellIdRanges);
+    var closed = new AtomicBoolean(false);
+    Runnable close = () -> {
+      if (closed.compareAndSet(false, true)) {
+        closeCellFetcher(fetcher);
+      }
+    };
+    return StreamSupport.stream(spliteratorUnknownSize(new Iterator<GridOSHEntity>() {
+      @Override
+      public boolean hasNext() {
+        try {
+          if (cells.hasNext()) {
+            return true;
           }
-          return null;
+        } catch (RuntimeException e) {
+          close.run();
+          throw e;
         }
-        return readOshCellRawData(oshCellsRawData);
-      } catch (IOException | ClassNotFoundException | SQLException e) {
-        var exception = new OSHDBException(e);
-        try {
-          conn.close();
-        } catch (Exception e2) {
-          exception.addSuppressed(e2);
+        close.run();
+        return false;
+      }
+
+      @Override
+      public GridOSHEntity next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
         }
-        throw exception;
+        return cells.next();
       }
-    }
+    }, 0), false).onClose(close);
   }
 }
@@ -1,14 +1,16 @@
 package org.heigit.ohsome.oshdb.api.mapreducer.backend;
 
 import java.io.IOException;
-import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.db.OSHDBJdbc;
 import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
 import org.heigit.ohsome.oshdb.api.mapreducer.backend.Kernels.CellProcessor;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
 import org.heigit.ohsome.oshdb.index.XYGridTree.CellIdRange;
 import org.heigit.ohsome.oshdb.util.celliterator.CellIterator;
 import org.heigit.ohsome.oshdb.util.celliterator.OSHEntitySource;
@@ -26,18 +28,85 @@ import org.json.simple.parser.ParseException;
  * An implementation of the OSHDB API using a JDBC database as backend, where calculations run in
  * parallel.
  *
- * <p>This implementation uses JAVA's {@link Stream#parallel()} implementation to run some
- * operations concurrently.</p>
+ * <p>Reduce operations split the query into batches of cells, weighted by the size of their
+ * data, which are fetched by a single sql query each and processed on a dedicated work-stealing
+ * thread pool (see {@link #parallelism(int)}). Stream operations use JAVA's {@link Stream#parallel()}
+ * implementation to run some operations concurrently, or a bounded buffer between dedicated worker
+ * threads and the consumer of the stream (see {@link #boundedStream(int, boolean)}).</p>
  */
 public class MapReducerJdbcMultithread<X> extends MapReducerJdbc<X> {
+  private static final int BATCHES_PER_WORKER = 4;
+
+  private int parallelism;
+  // maximum number of buffered results of stream operations, or 0 to use a parallel stream
+  private int streamCapacity = 0;
+  private boolean orderedStream = false;
+
+  /**
+   * Creates a new multithreaded JDBC map reducer.
+   *
+   * <p>The parallelism defaults to the one set on the {@link OSHDBJdbc} database object, or to the
+   * number of available processors if the database doesn't provide one.</p>
+   */
   public MapReducerJdbcMultithread(OSHDBDatabase oshdb,
       Class<? extends OSHDBMapReducible> forClass) {
     super(oshdb, forClass);
+    this.parallelism = oshdb instanceof OSHDBJdbc
+        ? ((OSHDBJdbc) oshdb).parallelism()
+        : Runtime.getRuntime().availableProcessors();
   }
 
   // copy constructor
-  private MapReducerJdbcMultithread(MapReducerJdbcMultithread obj) {
+  private MapReducerJdbcMultithread(MapReducerJdbcMultithread<?> obj) {
     super(obj);
+    this.parallelism = obj.parallelism;
+    this.streamCapacity = obj.streamCapacity;
+    this.orderedStream = obj.orderedStream;
+  }
+
+  /**
+   * Sets the number of worker threads used by reduce operations of this query.
+   *
+   * @param parallelism the number of worker threads, must be positive
+   * @return a modified copy of this mapReducer object
+   */
+  public MapReducerJdbcMultithread<X> parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    MapReducerJdbcMultithread<X> ret = new MapReducerJdbcMultithread<>(this);
+    ret.parallelism = parallelism;
+    return ret;
+  }
+
+  /**
+   * Returns the number of worker threads used by reduce operations of this query.
+   */
+  public int parallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * Makes stream operations of this query use a bounded buffer between the worker threads
+   * processing the cells and the consumer of the stream.
+   *
+   * <p>At most about {@code capacity} results are buffered: the workers wait while the buffer is
+   * full, so memory usage stays bounded even if the consumer is slow. The number of workers is
+   * given by {@link #parallelism(int)}. Closing the stream before it is exhausted stops the
+   * workers and releases the database connections of the query right away.</p>
+   *
+   * @param capacity the maximum number of buffered results, must be positive
+   * @param ordered whether to return the results in the order of the cells
+   * @return a modified copy of this mapReducer object
+   */
+  public MapReducerJdbcMultithread<X> boundedStream(int capacity, boolean ordered) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    MapReducerJdbcMultithread<X> ret = new MapReducerJdbcMultithread<>(this);
+    ret.streamCapacity = capacity;
+    ret.orderedStream = ordered;
+    return ret;
   }
 
   @NotNull
@@ -62,38 +131,90 @@ public class MapReducerJdbcMultithread<X> extends MapReducerJdbc<X> {
         this.tstamps.get(),
         this.bboxFilter, this.getPolyFilter(),
         this.getTagInterpreter(), this.getPreFilter(), this.getFilter(), false
-    );
-
-    final List<CellIdRange> cellIdRanges = new ArrayList<>();
-    this.getCellIdRanges().forEach(cellIdRanges::add);
+    ).withCellFilter(this.getCellFilter());
 
-    return cellIdRanges.parallelStream()
-        .filter(ignored -> this.isActive())
-        .flatMap(this::getOshCellsStream)
-        .filter(ignored -> this.isActive())
-        .map(cell -> processor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator))
-        .reduce(identitySupplier.get(), combiner);
+    if (this.typeFilter.isEmpty()) {
+      return identitySupplier.get();
+    }
+    var cache = this.getCellResultCache(processor, cellIterator);
+    var fetcher = newCellFetcher();
+    try {
+      var cellRefs = getCellRefs(this.getCellIdRanges());
+      long totalSize = cellRefs.stream().mapToLong(CellRef::getSize).sum();
+      // a few batches per worker, so that idle workers can steal work from busy ones
+      var batches = fetcher.sizedBatches(cellRefs,
+          Math.max(1, totalSize / (BATCHES_PER_WORKER * this.parallelism)));
+      return new CellScheduler<JdbcCellFetcher.SizedBatch, S>(
+          this.parallelism,
+          batch -> fetcher.fetch(batch.ranges()).stream()
+              .map(cell -> Kernels.processCached(cache, cell, processor, cellIterator, this))
+              .reduce(identitySupplier.get(), combiner),
+          identitySupplier,
+          combiner,
+          this
+      ).reduce(batches, JdbcCellFetcher.SizedBatch::size);
+    } finally {
+      closeCellFetcher(fetcher);
+    }
   }
 
   private Stream<X> stream(
       CellProcessor<Stream<X>> processor
-  ) throws ParseException, SQLException, IOException {
+  ) throws ParseException, IOException {
     this.executionStartTimeMillis = System.currentTimeMillis();
 
     CellIterator cellIterator = new CellIterator(
         this.tstamps.get(),
         this.bboxFilter, this.getPolyFilter(),
         this.getTagInterpreter(), this.getPreFilter(), this.getFilter(), false
-    );
-
-    final List<CellIdRange> cellIdRanges = new ArrayList<>();
-    this.getCellIdRanges().forEach(cellIdRanges::add);
+    ).withCellFilter(this.getCellFilter());
 
-    return cellIdRanges.parallelStream()
+    if (this.typeFilter.isEmpty()) {
+      return Stream.empty();
+    }
+    var fetcher = newCellFetcher();
+    var batches = fetcher.batches(this.getCellIdRanges());
+    if (this.streamCapacity > 0) {
+      return new BoundedCellStream<List<CellIdRange>, X>(
+          this.parallelism,
+          this.streamCapacity,
+          this.orderedStream,
+          batch -> fetcher.fetch(batch).stream()
+              .filter(ignored -> this.isActive())
+              .flatMap(cell ->
+                  processor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator)),
+          this
+      ).stream(batches, () -> closeCellFetcher(fetcher));
+    }
+    // close the fetcher (and its connections) as soon as the last batch has been fetched
+    var remainingBatches = new AtomicInteger(batches.size());
+    var closed = new AtomicBoolean(false);
+    Runnable close = () -> {
+      if (closed.compareAndSet(false, true)) {
+        closeCellFetcher(fetcher);
+      }
+    };
+    if (batches.isEmpty()) {
+      close.run();
+    }
+    return batches.parallelStream()
         .filter(ignored -> this.isActive())
-        .flatMap(this::getOshCellsStream)
+        .flatMap(batch -> {
+          List<GridOSHEntity> cells;
+          try {
+            cells = fetcher.fetch(batch);
+          } catch (RuntimeException e) {
+            close.run();
+            throw e;
+          }
+          if (remainingBatches.decrementAndGet() == 0) {
+            close.run();
+          }
+          return cells.stream();
+        })
         .filter(ignored -> this.isActive())
-        .flatMap(cell -> processor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator));
+        .flatMap(cell -> processor.apply(OSHEntitySource.fromGridOSHEntity(cell), cellIterator))
+        .onClose(close);
   }
 
   // === map-reduce operations ===
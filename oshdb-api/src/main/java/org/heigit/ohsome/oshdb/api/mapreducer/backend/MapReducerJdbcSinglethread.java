@@ -1,17 +1,14 @@
 package org.heigit.ohsome.oshdb.api.mapreducer.backend;
 
-import com.google.common.collect.Streams;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
-import org.heigit.ohsome.oshdb.api.db.OSHDBJdbc;
 import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
 import org.heigit.ohsome.oshdb.api.mapreducer.backend.Kernels.CellProcessor;
 import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
-import org.heigit.ohsome.oshdb.index.XYGridTree.CellIdRange;
 import org.heigit.ohsome.oshdb.util.celliterator.CellIterator;
 import org.heigit.ohsome.oshdb.util.celliterator.OSHEntitySource;
 import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
@@ -54,33 +51,30 @@ public class MapReducerJdbcSinglethread<X> extends MapReducerJdbc<X> {
       CellProcessor<S> cellProcessor,
       SerializableSupplier<S> identitySupplier,
       SerializableBinaryOperator<S> combiner
-  ) throws ParseException, SQLException, IOException, ClassNotFoundException {
+  ) throws ParseException, SQLException, IOException {
     this.executionStartTimeMillis = System.currentTimeMillis();
 
     CellIterator cellIterator = new CellIterator(
         this.tstamps.get(),
         this.bboxFilter, this.getPolyFilter(),
         this.getTagInterpreter(), this.getPreFilter(), this.getFilter(), false
-    );
+    ).withCellFilter(this.getCellFilter());
 
     S result = identitySupplier.get();
     if (this.typeFilter.isEmpty()) {
       return result;
     }
-    for (CellIdRange cellIdRange : this.getCellIdRanges()) {
-      try (var conn = ((OSHDBJdbc) this.oshdb).getConnection();
-          var pstmt = conn.prepareStatement(sqlQuery());) {
-        pstmt.setInt(1, cellIdRange.getStart().getZoomLevel());
-        pstmt.setLong(2, cellIdRange.getStart().getId());
-        pstmt.setLong(3, cellIdRange.getEnd().getId());
-        try (var oshCellsRawData = pstmt.executeQuery()) {
-          while (oshCellsRawData.next()) {
-            GridOSHEntity cell = readOshCellRawData(oshCellsRawData);
-            result = combiner.apply(result, cellProcessor.apply(
-                OSHEntitySource.fromGridOSHEntity(cell), cellIterator));
-          }
-        }
+    var cache = this.getCellResultCache(cellProcessor, cellIterator);
+    var fetcher = newCellFetcher();
+    try {
+      var cells = fetcher.cells(this.getCellIdRanges());
+      while (cells.hasNext()) {
+        GridOSHEntity cell = cells.next();
+        result = combiner.apply(result,
+            Kernels.processCached(cache, cell, cellProcessor, cellIterator, this));
       }
+    } finally {
+      closeCellFetcher(fetcher);
     }
     return result;
   }
@@ -94,10 +88,12 @@ public class MapReducerJdbcSinglethread<X> extends MapReducerJdbc<X> {
         this.tstamps.get(),
         this.bboxFilter, this.getPolyFilter(),
         this.getTagInterpreter(), this.getPreFilter(), this.getFilter(), false
-    );
+    ).withCellFilter(this.getCellFilter());
 
-    return Streams.stream(this.getCellIdRanges())
-        .flatMap(this::getOshCellsStream)
+    if (this.typeFilter.isEmpty()) {
+      return Stream.empty();
+    }
+    return getOshCellsStream(newCellFetcher(), this.getCellIdRanges())
         .flatMap(cell -> cellProcessor.apply(
             OSHEntitySource.fromGridOSHEntity(cell), cellIterator));
   }
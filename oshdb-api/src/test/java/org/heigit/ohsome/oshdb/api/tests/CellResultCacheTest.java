@@ -0,0 +1,163 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.SortedMap;
+import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
+import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.db.OSHDBH2;
+import org.heigit.ohsome.oshdb.api.mapreducer.CellResultCache;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMEntitySnapshotView;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTimeoutException;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.heigit.ohsome.oshdb.util.time.OSHDBTimestamps;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the persistent cache of cell results.
+ */
+class CellResultCacheTest {
+  private final OSHDBDatabase oshdb;
+
+  private final OSHDBBoundingBox bbox =
+      OSHDBBoundingBox.bboxWgs84Coordinates(8.0, 49.0, 9.0, 50.0);
+
+  @TempDir
+  Path directory;
+
+  CellResultCacheTest() throws Exception {
+    oshdb = new OSHDBH2("../data/test-data");
+  }
+
+  private MapReducer<OSMEntitySnapshot> createMapReducer() {
+    return OSMEntitySnapshotView.on(oshdb)
+        .areaOfInterest(bbox)
+        .timestamps("2010-01-01", "2015-01-01", OSHDBTimestamps.Interval.YEARLY);
+  }
+
+  private SortedMap<OSHDBTimestamp, Integer> countBuildings(MapReducer<OSMEntitySnapshot> mr)
+      throws Exception {
+    return mr.filter("type:way and building=*").aggregateByTimestamp().count();
+  }
+
+  @Test
+  void testRepeatedQuery() throws Exception {
+    var expected = countBuildings(createMapReducer());
+    var cache = new CellResultCache(directory, Long.MAX_VALUE);
+
+    assertEquals(expected, countBuildings(createMapReducer().cellResultCache(cache)));
+    assertEquals(0, cache.getHits());
+    long cells = cache.getMisses();
+    assertTrue(cells > 0);
+    assertTrue(cache.getSize() > 0);
+
+    // all cells are cached now
+    assertEquals(expected, countBuildings(createMapReducer().cellResultCache(cache)));
+    assertEquals(cells, cache.getHits());
+    assertEquals(cells, cache.getMisses());
+
+    // the cache is persistent
+    var reopened = new CellResultCache(directory, Long.MAX_VALUE);
+    assertEquals(cache.getSize(), reopened.getSize());
+    assertEquals(expected, countBuildings(createMapReducer().cellResultCache(reopened)));
+    assertEquals(cells, reopened.getHits());
+    assertEquals(0, reopened.getMisses());
+  }
+
+  @Test
+  void testDifferentQueries() throws Exception {
+    var cache = new CellResultCache(directory, Long.MAX_VALUE);
+    countBuildings(createMapReducer().cellResultCache(cache));
+    long cells = cache.getMisses();
+
+    // other filter
+    var expected = createMapReducer()
+        .filter("type:way and highway=*")
+        .aggregateByTimestamp().count();
+    assertEquals(expected, createMapReducer().cellResultCache(cache)
+        .filter("type:way and highway=*")
+        .aggregateByTimestamp().count());
+    assertEquals(0, cache.getHits());
+
+    // other timestamps
+    var expectedTimestamps = countBuildings(createMapReducer().timestamps("2012-01-01"));
+    assertEquals(expectedTimestamps,
+        countBuildings(createMapReducer().timestamps("2012-01-01").cellResultCache(cache)));
+    assertEquals(0, cache.getHits());
+
+    // other map function
+    var expectedSum = createMapReducer()
+        .filter("type:way and building=*")
+        .aggregateByTimestamp()
+        .map(snapshot -> snapshot.getEntity().getVersion())
+        .sum();
+    assertEquals(expectedSum, createMapReducer().cellResultCache(cache)
+        .filter("type:way and building=*")
+        .aggregateByTimestamp()
+        .map(snapshot -> snapshot.getEntity().getVersion())
+        .sum());
+    assertEquals(0, cache.getHits());
+    assertTrue(cache.getMisses() >= 4 * cells);
+  }
+
+  private static volatile int mapperDelay = 0;
+
+  private SortedMap<OSHDBTimestamp, Integer> countSlowBuildings(MapReducer<OSMEntitySnapshot> mr)
+      throws Exception {
+    return mr.filter("type:way and building=*").aggregateByTimestamp()
+        .map(snapshot -> {
+          try {
+            Thread.sleep(mapperDelay);
+            return snapshot;
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        })
+        .count();
+  }
+
+  @Test
+  void testTimedOutQuery() throws Exception {
+    var expected = countBuildings(createMapReducer());
+    var cache = new CellResultCache(directory, Long.MAX_VALUE);
+
+    // the query times out while processing a cell
+    mapperDelay = 5;
+    oshdb.timeoutInMilliseconds(100);
+    try {
+      assertThrows(OSHDBTimeoutException.class,
+          () -> countSlowBuildings(createMapReducer().cellResultCache(cache)));
+    } finally {
+      mapperDelay = 0;
+      oshdb.timeoutInMilliseconds(Long.MAX_VALUE);
+    }
+
+    // partial results of the timed out query are not reused
+    assertEquals(expected, countSlowBuildings(createMapReducer().cellResultCache(cache)));
+  }
+
+  @Test
+  void testEviction() throws Exception {
+    var cache = new CellResultCache(directory, Long.MAX_VALUE);
+    countBuildings(createMapReducer().cellResultCache(cache));
+    long size = cache.getSize();
+    cache.clear();
+    assertEquals(0, cache.getSize());
+
+    var small = new CellResultCache(directory, size / 2);
+    var expected = countBuildings(createMapReducer());
+    assertEquals(expected, countBuildings(createMapReducer().cellResultCache(small)));
+    assertTrue(small.getSize() <= size / 2);
+    assertFalse(small.getSize() == 0);
+    // evicted cells are computed again
+    assertEquals(expected, countBuildings(createMapReducer().cellResultCache(small)));
+    assertTrue(small.getMisses() > small.getHits());
+  }
+}
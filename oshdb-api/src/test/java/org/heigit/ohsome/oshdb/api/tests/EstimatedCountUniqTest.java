@@ -0,0 +1,176 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.SortedMap;
+import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
+import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.db.OSHDBH2;
+import org.heigit.ohsome.oshdb.api.generic.HyperLogLog;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapAggregator;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMContributionView;
+import org.heigit.ohsome.oshdb.util.mappable.OSMContribution;
+import org.heigit.ohsome.oshdb.util.time.OSHDBTimestamps;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the approximate distinct count reducer of the OSHDB API.
+ */
+class EstimatedCountUniqTest {
+  private final OSHDBDatabase oshdb;
+
+  private final OSHDBBoundingBox bbox =
+      OSHDBBoundingBox.bboxWgs84Coordinates(8.651133, 49.387611, 8.6561, 49.390513);
+  private final OSHDBTimestamps timestamps =
+      new OSHDBTimestamps("2008-01-01", "2015-01-01", "P1Y");
+
+  private static final double REQUIRED_ACCURACY = 0.02;
+
+  EstimatedCountUniqTest() throws Exception {
+    oshdb = new OSHDBH2("../data/test-data");
+  }
+
+  private static void assertApproximateCount(long expected, long result, double accuracy) {
+    assertEquals(expected, result, Math.max(1, expected * accuracy));
+  }
+
+  // HyperLogLog
+
+  @Test
+  void testSketch() {
+    HyperLogLog sketch = new HyperLogLog();
+    assertTrue(sketch.isEmpty());
+    assertEquals(0, sketch.estimate());
+    for (long i = 0; i < 100_000; i++) {
+      // every value twice
+      sketch.add(i);
+      sketch.add(i);
+    }
+    assertApproximateCount(100_000, sketch.estimate(), 0.03);
+  }
+
+  @Test
+  void testSketchSmallCardinalities() {
+    HyperLogLog sketch = new HyperLogLog();
+    for (int i = 0; i < 100; i++) {
+      sketch.add("user" + i);
+    }
+    assertApproximateCount(100, sketch.estimate(), 0.03);
+  }
+
+  @Test
+  void testSketchMerge() {
+    HyperLogLog a = new HyperLogLog(10);
+    HyperLogLog b = new HyperLogLog(10);
+    HyperLogLog all = new HyperLogLog(10);
+    for (long i = 0; i < 20_000; i++) {
+      (i % 3 == 0 ? a : b).add(i);
+      all.add(i);
+    }
+    HyperLogLog merged = a.merge(b);
+    assertEquals(all, merged);
+    assertEquals(all.estimate(), merged.estimate());
+    // merging doesn't modify the input sketches
+    assertTrue(a.estimate() < merged.estimate());
+    assertEquals(a, a.merge(new HyperLogLog(10)));
+
+    assertThrows(IllegalArgumentException.class, () -> a.merge(new HyperLogLog(11)));
+  }
+
+  @Test
+  void testSketchSerialization() throws Exception {
+    HyperLogLog sketch = new HyperLogLog(8);
+    for (int i = 0; i < 1000; i++) {
+      sketch.add(i);
+    }
+    var bytes = new ByteArrayOutputStream();
+    try (var out = new ObjectOutputStream(bytes)) {
+      out.writeObject(sketch);
+    }
+    try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertEquals(sketch, in.readObject());
+    }
+  }
+
+  @Test
+  void testInvalidPrecision() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new HyperLogLog(HyperLogLog.MIN_PRECISION - 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> createMapReducer().estimatedCountUniq(OSMContribution::getContributorUserId, 3));
+  }
+
+  // MapReducer
+
+  private MapReducer<OSMContribution> createMapReducer() {
+    return OSMContributionView.on(oshdb)
+        .timestamps(timestamps)
+        .areaOfInterest(bbox)
+        .filter("type:way and building=yes");
+  }
+
+  @Test
+  void testEstimatedCountUniq() throws Exception {
+    MapReducer<Integer> mr = this.createMapReducer()
+        .map(OSMContribution::getContributorUserId);
+
+    assertApproximateCount(mr.countUniq(), mr.estimatedCountUniq(), REQUIRED_ACCURACY);
+    assertApproximateCount(mr.countUniq(), mr.estimatedCountUniq(12), REQUIRED_ACCURACY);
+  }
+
+  @Test
+  void testEstimatedCountUniqMapper() throws Exception {
+    MapReducer<OSMContribution> mr = this.createMapReducer();
+
+    assertApproximateCount(
+        mr.map(c -> c.getEntityAfter().getId()).countUniq(),
+        mr.estimatedCountUniq(c -> c.getEntityAfter().getId()),
+        REQUIRED_ACCURACY);
+  }
+
+  // MapAggregator
+
+  private MapAggregator<OSHDBTimestamp, OSMContribution> createMapAggregator() {
+    return this.createMapReducer()
+        .aggregateByTimestamp();
+  }
+
+  @Test
+  void testEstimatedCountUniqMapAggregator() throws Exception {
+    MapAggregator<OSHDBTimestamp, Integer> mr = this.createMapAggregator()
+        .map(OSMContribution::getContributorUserId);
+    SortedMap<OSHDBTimestamp, Integer> fullResult = mr.countUniq();
+
+    SortedMap<OSHDBTimestamp, Long> result = mr.estimatedCountUniq();
+
+    assertEquals(fullResult.keySet(), result.keySet());
+    result.forEach((ts, count) ->
+        assertApproximateCount(fullResult.get(ts), count, REQUIRED_ACCURACY)
+    );
+  }
+
+  @Test
+  void testEstimatedCountUniqMapAggregatorMapper() throws Exception {
+    MapAggregator<OSHDBTimestamp, OSMContribution> mr = this.createMapAggregator();
+    SortedMap<OSHDBTimestamp, Integer> fullResult =
+        mr.map(c -> c.getEntityAfter().getId()).countUniq();
+
+    SortedMap<OSHDBTimestamp, Long> result =
+        mr.estimatedCountUniq(c -> c.getEntityAfter().getId(), 16);
+
+    assertEquals(fullResult.keySet(), result.keySet());
+    result.forEach((ts, count) ->
+        assertApproximateCount(fullResult.get(ts), count, REQUIRED_ACCURACY)
+    );
+  }
+}
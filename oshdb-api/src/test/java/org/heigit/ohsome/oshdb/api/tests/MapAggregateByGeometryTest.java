@@ -203,6 +203,49 @@ class MapAggregateByGeometryTest {
     }
   }
 
+  @Test
+  void testManySubRegions() throws Exception {
+    // a regular grid of sub-regions, most of them containing some completely covered grid cells
+    Map<Integer, Polygon> subRegions = new TreeMap<>();
+    for (int x = 0; x < 5; x++) {
+      for (int y = 0; y < 5; y++) {
+        subRegions.put(x * 5 + y, OSHDBGeometryBuilder.getGeometry(bboxWgs84Coordinates(
+            8.5 + x * 0.06, 49.3 + y * 0.06, 8.5 + (x + 1) * 0.06 - 1E-5, 49.3 + (y + 1) * 0.06)));
+      }
+    }
+    SortedMap<Integer, Integer> resultCount = createMapReducerOSMEntitySnapshot()
+        .timestamps(timestamps1)
+        .aggregateByGeometry(subRegions)
+        .count();
+    SortedMap<Integer, Double> resultSumLength = createMapReducerOSMEntitySnapshot()
+        .timestamps(timestamps1)
+        .aggregateByGeometry(subRegions)
+        .map(snapshot -> Geo.lengthOf(snapshot.getGeometry()))
+        .reduce(() -> 0.0, Double::sum);
+    SortedMap<Integer, Integer> resultContributions = createMapReducerOSMContribution()
+        .timestamps(timestamps2)
+        .aggregateByGeometry(subRegions)
+        .count();
+    for (var subRegion : subRegions.entrySet()) {
+      int index = subRegion.getKey();
+      assertEquals(
+          createMapReducerOSMEntitySnapshot().timestamps(timestamps1)
+              .areaOfInterest(subRegion.getValue()).count(),
+          resultCount.get(index));
+      assertEquals(
+          createMapReducerOSMEntitySnapshot().timestamps(timestamps1)
+              .areaOfInterest(subRegion.getValue())
+              .map(snapshot -> Geo.lengthOf(snapshot.getGeometry()))
+              .reduce(() -> 0.0, Double::sum),
+          resultSumLength.get(index),
+          DELTA);
+      assertEquals(
+          createMapReducerOSMContribution().timestamps(timestamps2)
+              .areaOfInterest(subRegion.getValue()).count(),
+          resultContributions.get(index));
+    }
+  }
+
   @SuppressWarnings("ResultOfMethodCallIgnored") //  we test for a thrown exception here
   @Test()
   void testCombinedWithAggregateByTimestampUnsupportedOrder3() {
@@ -2,12 +2,19 @@ package org.heigit.ohsome.oshdb.api.tests;
 
 import static org.heigit.ohsome.oshdb.OSHDBBoundingBox.bboxWgs84Coordinates;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
 import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
 import org.heigit.ohsome.oshdb.api.db.OSHDBH2;
 import org.heigit.ohsome.oshdb.api.generic.OSHDBCombinedIndex;
@@ -168,4 +175,61 @@ class MapAggregateByIndexTest {
         OSHDBCombinedIndex.nest(OSHDBCombinedIndex.nest(result));
     assertEquals(1, (int) nestedResult.get(617308093L).get(OSMType.NODE).get(165061));
   }
+
+  @Test
+  void testNumericResultTypes() throws Exception {
+    var mapAggregator = createMapReducerOSMContribution()
+        .timestamps(timestamps2)
+        .filter("id:617308093")
+        .aggregateBy(contribution -> contribution.getEntityAfter().getId(),
+            Collections.singletonList(-1L));
+
+    SortedMap<Long, Integer> intSum = mapAggregator.sum(ignored -> 2);
+    assertEquals(14, intSum.get(617308093L));
+    assertEquals(0, intSum.get(-1L));
+
+    SortedMap<Long, Double> doubleSum = mapAggregator.sum(ignored -> 0.5);
+    assertEquals(3.5, doubleSum.get(617308093L), DELTA);
+
+    SortedMap<Long, Number> mixedSum = mapAggregator
+        .map(contribution ->
+            contribution.getEntityAfter().getVersion() % 2 == 0 ? (Number) 1 : (Number) 0.5)
+        .sum();
+    assertEquals(Double.class, mixedSum.get(617308093L).getClass());
+    assertEquals(Integer.class, mixedSum.get(-1L).getClass());
+
+    SortedMap<Long, Double> average = mapAggregator
+        .average(contribution -> contribution.getEntityAfter().getVersion());
+    assertEquals(
+        mapAggregator.sum(contribution -> contribution.getEntityAfter().getVersion())
+            .get(617308093L) / 7.0,
+        average.get(617308093L), DELTA);
+    assertTrue(average.get(-1L).isNaN());
+  }
+
+  @Test
+  void testMergeOfPartialResults() throws Exception {
+    try (var multithreaded = new OSHDBH2("../data/test-data").multithreading(true)) {
+      SortedMap<OSHDBCombinedIndex<OSMType, OSHDBTimestamp>, Integer> expected =
+          OSMEntitySnapshotView.on(oshdb)
+              .areaOfInterest(bbox)
+              .timestamps(timestamps72)
+              .aggregateBy(snapshot -> snapshot.getEntity().getType())
+              .aggregateByTimestamp()
+              .collect()
+              .entrySet().stream()
+              .collect(Collectors.toMap(Entry::getKey, e -> e.getValue().size(),
+                  (a, b) -> a, TreeMap::new));
+      SortedMap<OSHDBCombinedIndex<OSMType, OSHDBTimestamp>, Integer> result =
+          OSMEntitySnapshotView.on(multithreaded)
+              .areaOfInterest(bbox)
+              .timestamps(timestamps72)
+              .aggregateBy(snapshot -> snapshot.getEntity().getType())
+              .aggregateByTimestamp()
+              .count();
+      assertEquals(expected, result);
+      assertEquals(new ArrayList<>(new TreeSet<>(result.keySet())),
+          new ArrayList<>(result.keySet()));
+    }
+  }
 }
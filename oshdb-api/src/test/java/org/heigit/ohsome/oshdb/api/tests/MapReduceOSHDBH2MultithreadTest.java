@@ -1,6 +1,17 @@
 package org.heigit.ohsome.oshdb.api.tests;
 
+import static org.heigit.ohsome.oshdb.OSHDBBoundingBox.bboxWgs84Coordinates;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
 import org.heigit.ohsome.oshdb.api.db.OSHDBH2;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMEntitySnapshotView;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.MapReducerJdbcMultithread;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.junit.jupiter.api.Test;
 
 /**
  * {@inheritDoc}
@@ -18,4 +29,66 @@ class MapReduceOSHDBH2MultithreadTest extends MapReduceTest {
         (new OSHDBH2("../data/test-data")).multithreading(true)
     );
   }
+
+  @Test
+  void testParallelism() throws Exception {
+    var mapReducer = (MapReducerJdbcMultithread<OSMEntitySnapshot>) OSMEntitySnapshotView
+        .on(oshdb)
+        .areaOfInterest(bboxWgs84Coordinates(8.0, 49.0, 9.0, 50.0))
+        .timestamps("2015-01-01")
+        .filter("type:way and building=*");
+    var expected = mapReducer.count();
+    assertEquals(expected, mapReducer.parallelism(1).count());
+    assertEquals(expected, mapReducer.parallelism(3).count());
+    assertEquals(1, ((MapReducerJdbcMultithread<?>) mapReducer.parallelism(1).map(s -> s))
+        .parallelism());
+    assertThrows(IllegalArgumentException.class, () -> mapReducer.parallelism(0));
+  }
+
+  @Test
+  void testFetchStatistics() throws Exception {
+    var mapReducer = ((MapReducerJdbcMultithread<OSMEntitySnapshot>) OSMEntitySnapshotView
+        .on(oshdb)
+        .areaOfInterest(bboxWgs84Coordinates(8.0, 49.0, 9.0, 50.0))
+        .timestamps("2015-01-01"))
+        .parallelism(1);
+    mapReducer.count();
+    var statistics = mapReducer.getFetchStatistics();
+    // the cells are fetched in a few batches (one query each) instead of one by one
+    assertTrue(statistics.getCells() > 0);
+    assertEquals(statistics.getBatches(), statistics.getQueries());
+    assertTrue(statistics.getQueries() < statistics.getCells());
+  }
+
+  @Test
+  void testBoundedStream() throws Exception {
+    var mapReducer = (MapReducerJdbcMultithread<Long>) OSMEntitySnapshotView
+        .on(oshdb)
+        .areaOfInterest(bboxWgs84Coordinates(8.0, 49.0, 9.0, 50.0))
+        .timestamps("2010-01-01", "2012-01-01", "2015-01-01")
+        .filter("type:way and building=*")
+        .map(snapshot -> snapshot.getEntity().getId());
+    List<Long> expected = mapReducer.stream().sorted().toList();
+    assertFalse(expected.isEmpty());
+
+    // unordered
+    assertEquals(expected, mapReducer.boundedStream(1, false).stream().sorted().toList());
+    assertEquals(expected,
+        mapReducer.parallelism(3).boundedStream(10, false).stream().sorted().toList());
+
+    // ordered: same order as with a single worker
+    List<Long> ordered = mapReducer.parallelism(1).boundedStream(1, true).stream().toList();
+    assertEquals(expected, ordered.stream().sorted().toList());
+    assertEquals(ordered, mapReducer.parallelism(3).boundedStream(2, true).stream().toList());
+
+    // closing the stream before it is exhausted
+    try (var stream = mapReducer.boundedStream(1, true).stream()) {
+      assertEquals(expected.get(0), stream.sorted().findFirst().orElseThrow());
+    }
+    try (var stream = mapReducer.boundedStream(1, false).stream()) {
+      assertEquals(1, stream.limit(1).count());
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> mapReducer.boundedStream(0, false));
+  }
 }
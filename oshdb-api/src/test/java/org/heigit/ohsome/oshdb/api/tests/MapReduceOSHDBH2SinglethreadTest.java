@@ -1,6 +1,14 @@
 package org.heigit.ohsome.oshdb.api.tests;
 
+import static org.heigit.ohsome.oshdb.OSHDBBoundingBox.bboxWgs84Coordinates;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import org.heigit.ohsome.oshdb.api.db.OSHDBH2;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMEntitySnapshotView;
+import org.heigit.ohsome.oshdb.api.mapreducer.backend.MapReducerJdbcSinglethread;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.junit.jupiter.api.Test;
 
 /**
  * {@inheritDoc}
@@ -18,4 +26,34 @@ class MapReduceOSHDBH2SinglethreadTest extends MapReduceTest {
         (new OSHDBH2("../data/test-data")).multithreading(false)
     );
   }
+
+  @Test
+  void testFetchStatistics() throws Exception {
+    var mapReducer = (MapReducerJdbcSinglethread<OSMEntitySnapshot>) OSMEntitySnapshotView
+        .on(oshdb)
+        .areaOfInterest(bboxWgs84Coordinates(8.0, 49.0, 9.0, 50.0))
+        .timestamps("2015-01-01")
+        .filter("type:way and building=*");
+    var count = mapReducer.count();
+    var statistics = mapReducer.getFetchStatistics();
+    assertTrue(statistics.getCells() > 0);
+    assertTrue(statistics.getBytes() > 0);
+    assertTrue(statistics.getMergedRanges() <= statistics.getRequestedRanges());
+    assertEquals(statistics.getBatches(), statistics.getQueries());
+    assertEquals(1, statistics.getPreparedStatements());
+
+    // fetching each range with a separate query gives the same result
+    var h2 = (OSHDBH2) oshdb;
+    int fetchBatchSize = h2.fetchBatchSize();
+    h2.fetchBatchSize(1);
+    try {
+      assertEquals(count, mapReducer.count());
+      statistics = mapReducer.getFetchStatistics();
+      assertEquals(statistics.getMergedRanges(), statistics.getBatches());
+      assertEquals(1, statistics.getPreparedStatements());
+      assertEquals(count, (int) mapReducer.stream().count());
+    } finally {
+      h2.fetchBatchSize(fetchBatchSize);
+    }
+  }
 }
@@ -43,6 +43,18 @@ class MapReduceOSHDBJdbcMissingTablesTest extends MapReduceTest {
     assertThrows(OSHDBTableNotFoundException.class, super::testOSMEntitySnapshotViewStream);
   }
 
+  @Override
+  @Test()
+  void testQueryMetrics() {
+    assertThrows(OSHDBTableNotFoundException.class, super::testQueryMetrics);
+  }
+
+  @Override
+  @Test()
+  void testQueryBatch() {
+    assertThrows(OSHDBTableNotFoundException.class, super::testQueryBatch);
+  }
+
   @Override
   @Test()
   void testTimeoutMapReduce() {
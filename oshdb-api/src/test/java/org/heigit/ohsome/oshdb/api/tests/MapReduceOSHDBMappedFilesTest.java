@@ -0,0 +1,90 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.heigit.ohsome.oshdb.OSHDBBoundingBox.bboxWgs84Coordinates;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.heigit.ohsome.oshdb.api.db.H2Support;
+import org.heigit.ohsome.oshdb.api.db.OSHDBH2;
+import org.heigit.ohsome.oshdb.api.db.OSHDBMappedFiles;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMContributionView;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMEntitySnapshotView;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTableNotFoundException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@inheritDoc}
+ *
+ * <p>Runs the tests using the memory mapped files backend, exported from the H2 test data.</p>
+ */
+class MapReduceOSHDBMappedFilesTest extends MapReduceTest {
+  private static Path directory;
+
+  /**
+   * Creates the test runner using the memory mapped files backend.
+   *
+   * @throws Exception if something goes wrong
+   */
+  MapReduceOSHDBMappedFilesTest() throws Exception {
+    super(new OSHDBMappedFiles(exportedTestData(),
+        H2Support.createJdbcPoolFromPath("../data/test-data")));
+  }
+
+  private static synchronized Path exportedTestData() throws Exception {
+    if (directory == null) {
+      directory = Files.createTempDirectory("oshdb-mapped-test");
+      directory.toFile().deleteOnExit();
+      try (var h2 = new OSHDBH2("../data/test-data")) {
+        OSHDBMappedFiles.export(h2, directory);
+      }
+      try (var files = Files.list(directory)) {
+        files.forEach(file -> file.toFile().deleteOnExit());
+      }
+    }
+    return directory;
+  }
+
+  @Test
+  void testMetadata() {
+    // the test data has no metadata table
+    assertNull(oshdb.metadata("extract.region"));
+  }
+
+  @Test
+  void testCellSummaries() throws Exception {
+    // the exported cells have summaries which are used to skip cells, unlike the h2 test data
+    try (var h2 = new OSHDBH2("../data/test-data")) {
+      var bbox = bboxWgs84Coordinates(8.0, 49.0, 9.0, 50.0);
+      for (String filter : List.of("building=yes", "highway=* or landuse=*",
+          "not building=*", "type:way and (building=* and highway=*)")) {
+        assertEquals(
+            OSMEntitySnapshotView.on(h2).areaOfInterest(bbox).timestamps("2014-01-01")
+                .filter(filter).count(),
+            OSMEntitySnapshotView.on(oshdb).areaOfInterest(bbox).timestamps("2014-01-01")
+                .filter(filter).count());
+        assertEquals(
+            OSMContributionView.on(h2).areaOfInterest(bbox).timestamps("2012-01-01", "2014-01-01")
+                .filter(filter).count(),
+            OSMContributionView.on(oshdb).areaOfInterest(bbox)
+                .timestamps("2012-01-01", "2014-01-01").filter(filter).count());
+      }
+      assertEquals(0, OSMEntitySnapshotView.on(oshdb).areaOfInterest(bbox)
+          .timestamps("2000-01-01").count());
+    }
+  }
+
+  @Test
+  void testMissingTables() throws Exception {
+    var emptyDirectory = Files.createTempDirectory("oshdb-mapped-test-empty");
+    try {
+      assertThrows(OSHDBTableNotFoundException.class, () -> new OSHDBMappedFiles(emptyDirectory,
+          H2Support.createJdbcPoolFromPath("../data/test-data")));
+    } finally {
+      Files.delete(emptyDirectory);
+    }
+  }
+}
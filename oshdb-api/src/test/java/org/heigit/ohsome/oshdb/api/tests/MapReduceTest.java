@@ -2,13 +2,18 @@ package org.heigit.ohsome.oshdb.api.tests;
 
 import static org.heigit.ohsome.oshdb.OSHDBBoundingBox.bboxWgs84Coordinates;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
 import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapAggregator;
 import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
 import org.heigit.ohsome.oshdb.api.mapreducer.OSMContributionView;
 import org.heigit.ohsome.oshdb.api.mapreducer.OSMEntitySnapshotView;
@@ -16,6 +21,7 @@ import org.heigit.ohsome.oshdb.util.exceptions.OSHDBTimeoutException;
 import org.heigit.ohsome.oshdb.util.function.SerializableFunction;
 import org.heigit.ohsome.oshdb.util.mappable.OSMContribution;
 import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.heigit.ohsome.oshdb.util.metrics.QueryMetrics;
 import org.heigit.ohsome.oshdb.util.time.OSHDBTimestamps;
 import org.junit.jupiter.api.Test;
 
@@ -187,6 +193,82 @@ abstract class MapReduceTest {
     );
   }
 
+  @Test
+  void testQueryMetrics() throws Exception {
+    var sink = new ArrayList<QueryMetrics>();
+    var mapReducer = createMapReducerOSMEntitySnapshot()
+        .timestamps(timestamps6)
+        .collectMetrics(sink::add);
+    var count = mapReducer.count();
+    // metrics don't change the result
+    assertEquals(createMapReducerOSMEntitySnapshot().timestamps(timestamps6).count(), count);
+
+    assertEquals(1, sink.size());
+    var metrics = mapReducer.getQueryMetrics();
+    assertSame(sink.get(0), metrics);
+    assertTrue(metrics.getCells() > 0);
+    assertTrue(metrics.getEntities() >= metrics.getEntitiesPassingPreFilter());
+    assertTrue(metrics.getEntitiesPassingPreFilter() >= metrics.getEntitiesPassingFilter());
+    assertTrue(metrics.getVersions() >= metrics.getVersionsPassingFilter());
+    assertTrue(metrics.getEntitiesPassingFilter() > 0);
+    assertEquals(count.longValue(), metrics.getResults());
+    assertTrue(metrics.getQueryTime(TimeUnit.NANOSECONDS) > 0);
+
+    // grouped by entity: all contributions of the entities are passed to the map functions
+    var contributions = createMapReducerOSMContribution()
+        .timestamps(timestamps72)
+        .count();
+    createMapReducerOSMContribution()
+        .timestamps(timestamps72)
+        .collectMetrics(sink::add)
+        .groupByEntity()
+        .count();
+    assertEquals(2, sink.size());
+    assertEquals(contributions.longValue(), sink.get(1).getResults());
+  }
+
+  @Test
+  void testQueryBatch() throws Exception {
+    // snapshot queries with different filters
+    var snapshots = OSMEntitySnapshotView.on(oshdb)
+        .areaOfInterest(bbox)
+        .timestamps(timestamps6);
+    var batch = oshdb.batch();
+    var highways = batch.add(snapshots.filter("type:node and highway=*"), MapReducer::count);
+    var users = batch.add(snapshots
+        .filter("id:617308093")
+        .map(snapshot -> snapshot.getEntity().getUserId()), MapReducer::uniq);
+    var highwaysByTimestamp = batch.add(snapshots
+        .filter("type:node and highway=*")
+        .aggregateByTimestamp(), MapAggregator::count);
+    var versions = batch.add(snapshots
+        .filter("id:617308093")
+        .groupByEntity()
+        .map(List::size), MapReducer::sum);
+    batch.execute();
+
+    assertEquals(snapshots.filter("type:node and highway=*").count(), highways.get());
+    assertEquals(3, users.get().size());
+    assertEquals(snapshots.filter("type:node and highway=*").aggregateByTimestamp().count(),
+        highwaysByTimestamp.get());
+    assertEquals(5, versions.get());
+
+    // contribution queries derived from a common filtered query
+    var contributions = createMapReducerOSMContribution()
+        .timestamps(timestamps72)
+        .filter("id:617308093");
+    batch = oshdb.batch();
+    var contributors = batch.add(contributions
+        .map(OSMContribution::getContributorUserId), MapReducer::countUniq);
+    var groupedContributions = batch.add(contributions
+        .groupByEntity()
+        .map(List::size), MapReducer::sum);
+    batch.execute();
+
+    assertEquals(5, contributors.get());
+    assertEquals(7, groupedContributions.get());
+  }
+
   @Test
   void testTimeoutMapReduce() throws Exception {
     assertThrows(OSHDBTimeoutException.class, this::timeoutMapReduce);
@@ -0,0 +1,152 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.SortedMap;
+import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
+import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.db.OSHDBH2;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapAggregator;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMContributionView;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMEntitySnapshotView;
+import org.heigit.ohsome.oshdb.api.mapreducer.QueryBatch;
+import org.heigit.ohsome.oshdb.util.mappable.OSMContribution;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.heigit.ohsome.oshdb.util.time.OSHDBTimestamps;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the shared-scan execution of query batches.
+ */
+class QueryBatchTest {
+  private final OSHDBDatabase oshdb;
+
+  private final OSHDBBoundingBox bbox =
+      OSHDBBoundingBox.bboxWgs84Coordinates(8.651133, 49.387611, 8.6561, 49.390513);
+  private final OSHDBTimestamps timestamps = new OSHDBTimestamps("2010-01-01", "2015-01-01",
+      OSHDBTimestamps.Interval.YEARLY);
+
+  QueryBatchTest() throws Exception {
+    oshdb = new OSHDBH2("../data/test-data");
+  }
+
+  private MapReducer<OSMEntitySnapshot> createMapReducerOSMEntitySnapshot() {
+    return OSMEntitySnapshotView.on(oshdb)
+        .areaOfInterest(bbox)
+        .timestamps(timestamps);
+  }
+
+  @Test
+  void testSnapshotQueries() throws Exception {
+    var snapshots = createMapReducerOSMEntitySnapshot();
+    var batch = oshdb.batch();
+    var buildings = batch.add(snapshots.filter("type:way and building=*"), MapReducer::count);
+    var buildingAreas = batch.add(snapshots
+        .filter("geometry:polygon and building=*")
+        .aggregateByTimestamp()
+        .map(snapshot -> snapshot.getGeometry().getArea()), MapAggregator::sum);
+    var highwayLengths = batch.add(snapshots
+        .filter("type:way and highway=*")
+        .map(snapshot -> snapshot.getGeometry().getLength()), MapReducer::estimatedMedian);
+    var nodes = batch.add(snapshots
+        .filter("type:node")
+        .aggregateByTimestamp()
+        .map(snapshot -> snapshot.getEntity().getId()), MapAggregator::countUniq);
+    var buildingVersions = batch.add(snapshots
+        .filter("type:way and building=*")
+        .groupByEntity()
+        .map(List::size), MapReducer::sum);
+    batch.execute();
+
+    assertEquals(snapshots.filter("type:way and building=*").count(), buildings.get());
+    SortedMap<OSHDBTimestamp, Number> expectedAreas = snapshots
+        .filter("geometry:polygon and building=*")
+        .aggregateByTimestamp()
+        .map(snapshot -> snapshot.getGeometry().getArea())
+        .sum();
+    assertEquals(expectedAreas.keySet(), buildingAreas.get().keySet());
+    expectedAreas.forEach((timestamp, area) -> assertEquals(area.doubleValue(),
+        buildingAreas.get().get(timestamp).doubleValue(), 1E-12));
+    assertEquals(snapshots
+        .filter("type:way and highway=*")
+        .map(snapshot -> snapshot.getGeometry().getLength())
+        .estimatedMedian(), highwayLengths.get());
+    assertEquals(snapshots
+        .filter("type:node")
+        .aggregateByTimestamp()
+        .map(snapshot -> snapshot.getEntity().getId())
+        .countUniq(), nodes.get());
+    assertEquals(snapshots
+        .filter("type:way and building=*")
+        .groupByEntity()
+        .map(List::size)
+        .sum(), buildingVersions.get());
+  }
+
+  @Test
+  void testContributionQueries() throws Exception {
+    var contributions = OSMContributionView.on(oshdb)
+        .areaOfInterest(bbox)
+        .timestamps(timestamps)
+        .filter("type:way and building=*");
+    var batch = oshdb.batch();
+    var count = batch.add(contributions, MapReducer::count);
+    var byTimestamp = batch.add(contributions.aggregateByTimestamp(), MapAggregator::count);
+    var contributors = batch.add(contributions
+        .map(OSMContribution::getContributorUserId), MapReducer::uniq);
+    batch.execute();
+
+    assertEquals(contributions.count(), count.get());
+    assertEquals(contributions.aggregateByTimestamp().count(), byTimestamp.get());
+    assertEquals(contributions.map(OSMContribution::getContributorUserId).uniq(),
+        contributors.get());
+  }
+
+  @Test
+  void testIncompatibleQueries() throws Exception {
+    var snapshots = createMapReducerOSMEntitySnapshot();
+    var batch = oshdb.batch();
+    batch.add(snapshots, MapReducer::count);
+    assertThrows(IllegalArgumentException.class, () ->
+        batch.add(snapshots.timestamps("2015-01-01"), MapReducer::count));
+    assertThrows(IllegalArgumentException.class, () ->
+        batch.add(snapshots.areaOfInterest(OSHDBBoundingBox.bboxWgs84Coordinates(
+            8.651133, 49.387611, 8.653, 49.389)), MapReducer::count));
+    assertThrows(IllegalArgumentException.class, () ->
+        batch.add(OSMContributionView.on(oshdb)
+            .areaOfInterest(bbox)
+            .timestamps(timestamps), MapReducer::count));
+
+    // contribution queries can't differ in their filters
+    var contributions = OSMContributionView.on(oshdb)
+        .areaOfInterest(bbox)
+        .timestamps(timestamps);
+    var contributionBatch = oshdb.batch();
+    contributionBatch.add(contributions.filter("building=*"), MapReducer::count);
+    assertThrows(IllegalArgumentException.class, () ->
+        contributionBatch.add(contributions.filter("highway=*"), MapReducer::count));
+  }
+
+  @Test
+  void testUnsupportedOperations() throws Exception {
+    var batch = oshdb.batch();
+    assertThrows(UnsupportedOperationException.class, () ->
+        batch.add(createMapReducerOSMEntitySnapshot(), MapReducer::stream));
+  }
+
+  @Test
+  void testResultsOnlyAvailableAfterExecution() throws Exception {
+    QueryBatch batch = oshdb.batch();
+    var result = batch.add(createMapReducerOSMEntitySnapshot(), MapReducer::count);
+    assertThrows(IllegalStateException.class, result::get);
+    batch.execute();
+    assertEquals(createMapReducerOSMEntitySnapshot().count(), result.get());
+    assertThrows(IllegalStateException.class, batch::execute);
+    assertThrows(IllegalStateException.class, () ->
+        batch.add(createMapReducerOSMEntitySnapshot(), MapReducer::count));
+  }
+}
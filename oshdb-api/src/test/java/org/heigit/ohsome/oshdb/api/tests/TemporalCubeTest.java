@@ -0,0 +1,128 @@
+package org.heigit.ohsome.oshdb.api.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
+import org.heigit.ohsome.oshdb.api.db.OSHDBDatabase;
+import org.heigit.ohsome.oshdb.api.db.OSHDBH2;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapReducer;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMEntitySnapshotView;
+import org.heigit.ohsome.oshdb.api.mapreducer.TemporalCube;
+import org.heigit.ohsome.oshdb.util.geometry.Geo;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.heigit.ohsome.oshdb.util.time.OSHDBTimestamps;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the pre-aggregated temporal data cube.
+ */
+class TemporalCubeTest {
+  private static final double DELTA = 1E-6;
+
+  private final OSHDBDatabase oshdb;
+  private final TemporalCube cube;
+
+  private final OSHDBBoundingBox bbox =
+      OSHDBBoundingBox.bboxWgs84Coordinates(8.0, 49.0, 9.0, 50.0);
+  private final OSHDBBoundingBox smallBbox =
+      OSHDBBoundingBox.bboxWgs84Coordinates(8.6, 49.35, 8.75, 49.45);
+
+  @TempDir
+  Path directory;
+
+  TemporalCubeTest() throws Exception {
+    oshdb = new OSHDBH2("../data/test-data");
+    cube = TemporalCube.materialize(createMapReducer(bbox), "building", "highway");
+  }
+
+  private MapReducer<OSMEntitySnapshot> createMapReducer(OSHDBBoundingBox bbox) {
+    return OSMEntitySnapshotView.on(oshdb)
+        .areaOfInterest(bbox)
+        .timestamps("2010-01-01", "2015-01-01", OSHDBTimestamps.Interval.YEARLY);
+  }
+
+  private static void assertResultsEqual(SortedMap<OSHDBTimestamp, Number> expected,
+      SortedMap<OSHDBTimestamp, Number> actual) {
+    assertEquals(expected.keySet(), actual.keySet());
+    for (var timestamp : expected.keySet()) {
+      double value = expected.get(timestamp).doubleValue();
+      assertEquals(value, actual.get(timestamp).doubleValue(), DELTA * Math.max(1, value));
+    }
+  }
+
+  @Test
+  void testCount() throws Exception {
+    assertTrue(cube.getCellCount() > 0);
+    for (var aoi : new OSHDBBoundingBox[] {bbox, smallBbox}) {
+      for (var filter : new String[] {"building=*", "type:way and building=*", "highway=*",
+          "type:way and highway=residential"}) {
+        assertEquals(
+            createMapReducer(aoi).filter(filter).aggregateByTimestamp().count(),
+            cube.count(createMapReducer(aoi), filter),
+            filter);
+      }
+    }
+  }
+
+  @Test
+  void testLengthAndArea() throws Exception {
+    for (var aoi : new OSHDBBoundingBox[] {bbox, smallBbox}) {
+      assertResultsEqual(
+          createMapReducer(aoi).filter("type:way and highway=*").aggregateByTimestamp()
+              .sum(snapshot -> Geo.lengthOf(snapshot.getGeometry())),
+          cube.length(createMapReducer(aoi), "type:way and highway=*"));
+      assertResultsEqual(
+          createMapReducer(aoi).filter("building=*").aggregateByTimestamp()
+              .sum(snapshot -> Geo.areaOf(snapshot.getGeometry())),
+          cube.area(createMapReducer(aoi), "building=*"));
+    }
+  }
+
+  @Test
+  void testBoundaryCellsOnly() throws Exception {
+    AtomicLong cellsScanned = new AtomicLong();
+    var scan = createMapReducer(bbox)
+        .collectMetrics(metrics -> cellsScanned.set(metrics.getCells()));
+    scan.filter("building=*").aggregateByTimestamp().count();
+    long allCells = cellsScanned.get();
+    cube.count(scan, "building=*");
+    assertTrue(cellsScanned.get() < allCells);
+  }
+
+  @Test
+  void testIneligibleQueries() throws Exception {
+    // filters not covered by the cube
+    assertEquals(
+        createMapReducer(bbox).filter("landuse=*").aggregateByTimestamp().count(),
+        cube.count(createMapReducer(bbox), "landuse=*"));
+    assertEquals(
+        createMapReducer(bbox).filter("building=* or highway=*").aggregateByTimestamp().count(),
+        cube.count(createMapReducer(bbox), "building=* or highway=*"));
+    // timestamps not contained in the cube
+    assertEquals(
+        createMapReducer(bbox).timestamps("2012-06-01").filter("building=*")
+            .aggregateByTimestamp().count(),
+        cube.count(createMapReducer(bbox).timestamps("2012-06-01"), "building=*"));
+    // the cube can only be materialized from unfiltered queries
+    assertThrows(IllegalArgumentException.class,
+        () -> TemporalCube.materialize(createMapReducer(bbox).filter("building=*"), "building"));
+  }
+
+  @Test
+  void testSaveAndLoad() throws Exception {
+    Path file = directory.resolve("cube");
+    cube.save(file);
+    var loaded = TemporalCube.load(file);
+    assertEquals(cube.getCellCount(), loaded.getCellCount());
+    assertEquals(
+        cube.count(createMapReducer(bbox), "building=*"),
+        loaded.count(createMapReducer(bbox), "building=*"));
+  }
+}
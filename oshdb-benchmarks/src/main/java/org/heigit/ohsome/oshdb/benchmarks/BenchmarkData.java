@@ -0,0 +1,115 @@
+package org.heigit.ohsome.oshdb.benchmarks;
+
+import static org.heigit.ohsome.oshdb.OSHDBBoundingBox.bboxWgs84Coordinates;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.api.db.OSHDBH2;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.util.TableNames;
+import org.heigit.ohsome.oshdb.util.exceptions.OSHDBException;
+import org.heigit.ohsome.oshdb.util.taginterpreter.DefaultTagInterpreter;
+import org.heigit.ohsome.oshdb.util.taginterpreter.TagInterpreter;
+import org.heigit.ohsome.oshdb.util.tagtranslator.TagTranslator;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark state holding the oshdb test database and its grid cells.
+ *
+ * <p>The location of the H2 database can be set with the system property
+ * {@value #DATA_PROPERTY} (path without the {@code .mv.db} extension). By default the
+ * {@code data/test-data} database of this repository is used, looked up relative to the working
+ * directory or its parent directory.</p>
+ */
+@State(Scope.Benchmark)
+public class BenchmarkData {
+  public static final String DATA_PROPERTY = "oshdb.benchmark.data";
+  private static final String DEFAULT_DATA = "data/test-data";
+
+  /** Bounding box covering the whole test data. */
+  public static final OSHDBBoundingBox BBOX = bboxWgs84Coordinates(8.0, 49.0, 9.0, 50.0);
+
+  public OSHDBH2 oshdb;
+  public TagTranslator tagTranslator;
+  public TagInterpreter tagInterpreter;
+  /** Raw (encoded) cells of all grid tables. */
+  public List<byte[]> rawCells;
+  /** Decoded cells of all grid tables. */
+  public List<GridOSHEntity> cells;
+  /** Decoded cells of the way grid table. */
+  public List<GridOSHEntity> wayCells;
+  /** Decoded cells of the relation grid table. */
+  public List<GridOSHEntity> relationCells;
+
+  /**
+   * Opens the test database and reads all its grid cells into memory.
+   */
+  @Setup
+  public void setup() throws Exception {
+    oshdb = new OSHDBH2(dataPath());
+    tagTranslator = oshdb.getTagTranslator();
+    tagInterpreter = new DefaultTagInterpreter(tagTranslator);
+    rawCells = new ArrayList<>();
+    cells = new ArrayList<>();
+    wayCells = new ArrayList<>();
+    relationCells = new ArrayList<>();
+    for (OSMType type : OSMType.values()) {
+      Optional<TableNames> table = TableNames.forOSMType(type);
+      if (table.isEmpty()) {
+        continue;
+      }
+      for (byte[] data : readCells(table.get().toString())) {
+        var cell = GridOSHEntityCodec.decode(data);
+        rawCells.add(data);
+        cells.add(cell);
+        if (type == OSMType.WAY) {
+          wayCells.add(cell);
+        } else if (type == OSMType.RELATION) {
+          relationCells.add(cell);
+        }
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    oshdb.close();
+  }
+
+  private List<byte[]> readCells(String table) {
+    var result = new ArrayList<byte[]>();
+    try (var conn = oshdb.getConnection();
+        var stmt = conn.createStatement();
+        var rs = stmt.executeQuery("select data from " + table)) {
+      while (rs.next()) {
+        result.add(rs.getBytes(1));
+      }
+    } catch (SQLException e) {
+      throw new OSHDBException(e);
+    }
+    return result;
+  }
+
+  private static String dataPath() {
+    var path = System.getProperty(DATA_PROPERTY);
+    if (path != null) {
+      return path;
+    }
+    for (String candidate : List.of(DEFAULT_DATA, "../" + DEFAULT_DATA)) {
+      if (Files.exists(Path.of(candidate + ".mv.db"))) {
+        return candidate;
+      }
+    }
+    throw new OSHDBException("test data not found, set the system property " + DATA_PROPERTY);
+  }
+}
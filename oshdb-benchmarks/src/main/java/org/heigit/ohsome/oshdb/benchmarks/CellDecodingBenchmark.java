@@ -0,0 +1,111 @@
+package org.heigit.ohsome.oshdb.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntityCodec;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.osm.OSMEntity;
+import org.heigit.ohsome.oshdb.util.bytearray.ByteArrayOutputWrapper;
+import org.heigit.ohsome.oshdb.util.bytearray.ByteArrayWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of decoding grid cells and the OSH entities stored in them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CellDecodingBenchmark {
+
+  /**
+   * Holds a buffer of variable length encoded numbers.
+   */
+  @State(Scope.Thread)
+  public static class Varints {
+    private static final int COUNT = 100_000;
+    byte[] data;
+
+    /**
+     * Writes numbers of varying magnitude in both signed and unsigned encoding.
+     */
+    @Setup
+    public void setup() {
+      var out = new ByteArrayOutputWrapper();
+      for (int i = 0; i < COUNT; i++) {
+        long value = (long) i * i * (i % 7 + 1);
+        out.writeU64(value);
+        out.writeS64(i % 2 == 0 ? value : -value);
+      }
+      data = out.array();
+    }
+  }
+
+  /**
+   * Decodes all raw grid cells.
+   */
+  @Benchmark
+  public void decodeCells(BenchmarkData data, Blackhole blackhole) throws IOException {
+    for (byte[] raw : data.rawCells) {
+      blackhole.consume(GridOSHEntityCodec.decode(raw));
+    }
+  }
+
+  /**
+   * Reads all versions of all entities using {@link OSHEntity#getVersions()}.
+   */
+  @Benchmark
+  public void readVersions(BenchmarkData data, Blackhole blackhole) {
+    for (GridOSHEntity cell : data.cells) {
+      for (OSHEntity osh : cell.getEntities()) {
+        for (OSMEntity osm : osh.getVersions()) {
+          blackhole.consume(osm.getEpochSecond());
+          blackhole.consume(osm.getTags());
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads all versions of all entities using {@link OSHEntity#getVersionCursor()}.
+   */
+  @Benchmark
+  public void readVersionCursor(BenchmarkData data, Blackhole blackhole) {
+    for (GridOSHEntity cell : data.cells) {
+      for (OSHEntity osh : cell.getEntities()) {
+        var cursor = osh.getVersionCursor();
+        while (cursor.hasNext()) {
+          var osm = cursor.next();
+          blackhole.consume(osm.getEpochSecond());
+          blackhole.consume(osm.getTags());
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads variable length encoded numbers.
+   */
+  @Benchmark
+  public long readVarints(Varints varints) {
+    var wrapper = ByteArrayWrapper.newInstance(varints.data, 0, varints.data.length);
+    long sum = 0;
+    for (int i = 0; i < Varints.COUNT; i++) {
+      sum += wrapper.readU64();
+      sum += wrapper.readS64();
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,70 @@
+package org.heigit.ohsome.oshdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.util.celliterator.CellIterator;
+import org.heigit.ohsome.oshdb.util.celliterator.OSHEntitySource;
+import org.heigit.ohsome.oshdb.util.time.OSHDBTimestamps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of iterating over the snapshots and contributions of all cells with a
+ * {@link CellIterator}, including building the (clipped) geometries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CellIteratorBenchmark {
+
+  /** Time interval between the requested timestamps. */
+  @Param({"YEARLY", "MONTHLY"})
+  public OSHDBTimestamps.Interval interval;
+
+  private CellIterator cellIterator;
+
+  /**
+   * Creates the cell iterator for the requested timestamps.
+   */
+  @Setup
+  public void setup(BenchmarkData data) {
+    var timestamps = new OSHDBTimestamps("2008-01-01", "2016-01-01", interval);
+    cellIterator = new CellIterator(timestamps.get(), BenchmarkData.BBOX, data.tagInterpreter,
+        osh -> true, osm -> true, false);
+  }
+
+  /**
+   * Iterates over the snapshots of all entities and builds their clipped geometries.
+   */
+  @Benchmark
+  public void iterateByTimestamps(BenchmarkData data, Blackhole blackhole) {
+    for (GridOSHEntity cell : data.cells) {
+      cellIterator.iterateByTimestamps(OSHEntitySource.fromGridOSHEntity(cell))
+          .forEach(entry -> blackhole.consume(entry.geometry().get()));
+    }
+  }
+
+  /**
+   * Iterates over the contributions of all entities and builds their clipped geometries.
+   */
+  @Benchmark
+  public void iterateByContribution(BenchmarkData data, Blackhole blackhole) {
+    for (GridOSHEntity cell : data.cells) {
+      cellIterator.iterateByContribution(OSHEntitySource.fromGridOSHEntity(cell))
+          .forEach(entry -> blackhole.consume(entry.geometry().get()));
+    }
+  }
+}
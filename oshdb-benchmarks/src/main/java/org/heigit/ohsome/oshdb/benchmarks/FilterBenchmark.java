@@ -0,0 +1,90 @@
+package org.heigit.ohsome.oshdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.heigit.ohsome.oshdb.filter.FilterExpression;
+import org.heigit.ohsome.oshdb.filter.FilterParser;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.osm.OSMEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of evaluating filter expressions on all entities and versions of all cells.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+
+  /** The filter expression to evaluate. */
+  @Param({
+      "building=*",
+      "type:way and highway in (primary, secondary, tertiary)",
+      "(type:way or type:relation) and (landuse=* or natural=*) and not name=*",
+      "highway=* and geometry:line and not id:(1..1000000)"
+  })
+  public String filter;
+
+  private FilterExpression expression;
+
+  /**
+   * Parses the filter expression.
+   */
+  @Setup
+  public void setup(BenchmarkData data) {
+    expression = new FilterParser(data.tagTranslator).parse(filter);
+  }
+
+  /**
+   * Applies the filter on the level of OSH entities.
+   */
+  @Benchmark
+  public int applyOSH(BenchmarkData data) {
+    int matches = 0;
+    for (GridOSHEntity cell : data.cells) {
+      for (OSHEntity osh : cell.getEntities()) {
+        if (expression.applyOSH(osh)) {
+          matches++;
+        }
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Applies the filter to all versions of the OSH entities which pass the OSH level filter, as
+   * done by the cell iterator.
+   */
+  @Benchmark
+  public int applyOSM(BenchmarkData data) {
+    int matches = 0;
+    for (GridOSHEntity cell : data.cells) {
+      for (OSHEntity osh : cell.getEntities()) {
+        if (!expression.applyOSH(osh)) {
+          continue;
+        }
+        var versions = osh.getVersionCursor();
+        while (versions.hasNext()) {
+          OSMEntity osm = versions.next();
+          if (expression.applyOSM(osm)) {
+            matches++;
+          }
+        }
+      }
+    }
+    return matches;
+  }
+}
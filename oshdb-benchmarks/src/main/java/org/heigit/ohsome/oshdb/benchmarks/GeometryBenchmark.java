@@ -0,0 +1,138 @@
+package org.heigit.ohsome.oshdb.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.osm.OSMEntity;
+import org.heigit.ohsome.oshdb.util.geometry.OSHDBGeometryBuilder;
+import org.heigit.ohsome.oshdb.util.geometry.fip.FastPolygonOperations;
+import org.heigit.ohsome.oshdb.util.time.IsoDateTimeParser;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of building (multi)polygon geometries and clipping geometries to a polygonal area of
+ * interest.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeometryBenchmark {
+
+  /**
+   * Holds the entities and geometries used by the benchmarks.
+   */
+  @State(Scope.Benchmark)
+  public static class Geometries {
+    OSHDBTimestamp timestamp;
+    /** Versions of area ways and relations valid at the timestamp. */
+    List<OSMEntity> areas;
+    /** Geometries of all ways valid at the timestamp. */
+    List<Geometry> wayGeometries;
+    Polygon clipPolygon;
+    FastPolygonOperations clipOperations;
+
+    /**
+     * Collects the entities valid at the benchmark timestamp and builds the clip polygon.
+     */
+    @Setup
+    public void setup(BenchmarkData data) {
+      timestamp = new OSHDBTimestamp(
+          IsoDateTimeParser.parseIsoDateTime("2015-12-01T00:00:00Z").toEpochSecond());
+      areas = new ArrayList<>();
+      wayGeometries = new ArrayList<>();
+      for (OSMEntity osm : versionsAt(data.wayCells, timestamp)) {
+        if (data.tagInterpreter.isArea(osm)) {
+          areas.add(osm);
+        }
+        wayGeometries.add(OSHDBGeometryBuilder.getGeometry(osm, timestamp, data.tagInterpreter));
+      }
+      for (OSMEntity osm : versionsAt(data.relationCells, timestamp)) {
+        if (data.tagInterpreter.isArea(osm)) {
+          areas.add(osm);
+        }
+      }
+      clipPolygon = regularPolygon(8.68, 49.41, 0.02, 64);
+      clipOperations = new FastPolygonOperations(clipPolygon);
+    }
+
+    private static List<OSMEntity> versionsAt(List<GridOSHEntity> cells,
+        OSHDBTimestamp timestamp) {
+      var result = new ArrayList<OSMEntity>();
+      for (GridOSHEntity cell : cells) {
+        for (OSHEntity osh : cell.getEntities()) {
+          // versions are ordered from newest to oldest
+          for (OSMEntity osm : osh.getVersions()) {
+            if (osm.getEpochSecond() <= timestamp.getEpochSecond()) {
+              if (osm.isVisible()) {
+                result.add(osm);
+              }
+              break;
+            }
+          }
+        }
+      }
+      return result;
+    }
+
+    private static Polygon regularPolygon(double lon, double lat, double radius, int corners) {
+      var coordinates = new Coordinate[corners + 1];
+      for (int i = 0; i < corners; i++) {
+        double angle = 2 * Math.PI * i / corners;
+        coordinates[i] = new Coordinate(
+            lon + radius * Math.cos(angle), lat + radius * Math.sin(angle));
+      }
+      coordinates[corners] = coordinates[0];
+      return new GeometryFactory().createPolygon(coordinates);
+    }
+  }
+
+  /**
+   * Builds the (multi)polygon geometries of all closed area ways and multipolygon relations.
+   */
+  @Benchmark
+  public void buildAreas(BenchmarkData data, Geometries geometries, Blackhole blackhole) {
+    for (OSMEntity osm : geometries.areas) {
+      blackhole.consume(
+          OSHDBGeometryBuilder.getGeometry(osm, geometries.timestamp, data.tagInterpreter));
+    }
+  }
+
+  /**
+   * Clips all way geometries using {@link FastPolygonOperations}.
+   */
+  @Benchmark
+  public void clipFastPolygonOperations(Geometries geometries, Blackhole blackhole) {
+    for (Geometry geometry : geometries.wayGeometries) {
+      blackhole.consume(geometries.clipOperations.intersection(geometry));
+    }
+  }
+
+  /**
+   * Clips all way geometries using a plain JTS intersection, as a baseline.
+   */
+  @Benchmark
+  public void clipJts(Geometries geometries, Blackhole blackhole) {
+    for (Geometry geometry : geometries.wayGeometries) {
+      blackhole.consume(geometries.clipPolygon.intersection(geometry));
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package org.heigit.ohsome.oshdb.benchmarks;
+
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
+import org.heigit.ohsome.oshdb.api.mapreducer.MapAggregator;
+import org.heigit.ohsome.oshdb.api.mapreducer.OSMEntitySnapshotView;
+import org.heigit.ohsome.oshdb.util.mappable.OSMEntitySnapshot;
+import org.heigit.ohsome.oshdb.util.time.OSHDBTimestamps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of whole snapshot queries aggregated by timestamp, using the different reductions of
+ * the {@link MapAggregator}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapAggregatorBenchmark {
+
+  /** Whether the query is executed on multiple threads. */
+  @Param({"false", "true"})
+  public boolean multithreading;
+
+  /**
+   * Configures the database to use the requested execution mode.
+   */
+  @Setup
+  public void setup(BenchmarkData data) {
+    data.oshdb.multithreading(multithreading);
+  }
+
+  private MapAggregator<OSHDBTimestamp, OSMEntitySnapshot> snapshots(BenchmarkData data) {
+    return OSMEntitySnapshotView.on(data.oshdb)
+        .areaOfInterest(BenchmarkData.BBOX)
+        .timestamps(new OSHDBTimestamps("2008-01-01", "2016-01-01",
+            OSHDBTimestamps.Interval.MONTHLY))
+        .filter("type:way and highway=*")
+        .aggregateByTimestamp();
+  }
+
+  /**
+   * Counts the matching entities.
+   */
+  @Benchmark
+  public SortedMap<OSHDBTimestamp, Integer> count(BenchmarkData data) throws Exception {
+    return snapshots(data).count();
+  }
+
+  /**
+   * Sums up the number of nodes of the matching ways.
+   */
+  @Benchmark
+  public SortedMap<OSHDBTimestamp, Number> sum(BenchmarkData data) throws Exception {
+    return snapshots(data)
+        .map(snapshot -> snapshot.getGeometry().getNumPoints())
+        .sum();
+  }
+
+  /**
+   * Averages the number of nodes of the matching ways.
+   */
+  @Benchmark
+  public SortedMap<OSHDBTimestamp, Double> average(BenchmarkData data) throws Exception {
+    return snapshots(data)
+        .map(snapshot -> snapshot.getGeometry().getNumPoints())
+        .average();
+  }
+
+  /**
+   * Collects the distinct ids of the matching entities.
+   */
+  @Benchmark
+  public SortedMap<OSHDBTimestamp, Set<Long>> uniq(BenchmarkData data) throws Exception {
+    return snapshots(data)
+        .map(snapshot -> snapshot.getEntity().getId())
+        .uniq();
+  }
+}
@@ -0,0 +1,71 @@
+package org.heigit.ohsome.oshdb.benchmarks;
+
+import static org.heigit.ohsome.oshdb.OSHDBBoundingBox.bboxWgs84Coordinates;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
+import org.heigit.ohsome.oshdb.util.celliterator.CellIterator;
+import org.heigit.ohsome.oshdb.util.celliterator.OSHEntitySource;
+import org.heigit.ohsome.oshdb.util.time.OSHDBTimestamps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of querying a small area of interest from the way and relation cells, with and
+ * without a spatial index of the cells' entities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpatialIndexBenchmark {
+
+  /** Whether the cells get a spatial index. */
+  @Param({"false", "true"})
+  public boolean spatialIndex;
+
+  private List<GridOSHEntity> cells;
+  private CellIterator cellIterator;
+
+  /**
+   * Prepares the (indexed) cells and a cell iterator for a small area of interest.
+   */
+  @Setup
+  public void setup(BenchmarkData data) {
+    cells = new ArrayList<>();
+    for (List<GridOSHEntity> list : List.of(data.wayCells, data.relationCells)) {
+      for (GridOSHEntity cell : list) {
+        cells.add(spatialIndex ? cell.withSpatialIndex() : cell);
+      }
+    }
+    var timestamps = new OSHDBTimestamps("2016-01-01");
+    cellIterator = new CellIterator(timestamps.get(),
+        bboxWgs84Coordinates(8.68, 49.40, 8.69, 49.41), data.tagInterpreter,
+        osh -> true, osm -> true, false);
+  }
+
+  /**
+   * Iterates over the snapshots of all entities inside the area of interest.
+   */
+  @Benchmark
+  public void iterateByTimestamps(Blackhole blackhole) {
+    for (GridOSHEntity cell : cells) {
+      cellIterator.iterateByTimestamps(OSHEntitySource.fromGridOSHEntity(cell))
+          .forEach(entry -> blackhole.consume(entry.geometry().get()));
+    }
+  }
+}
@@ -0,0 +1,310 @@
+package org.heigit.ohsome.oshdb.filter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import org.heigit.ohsome.oshdb.OSHDBTag;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.osm.OSMEntity;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.util.OSHDBTagKey;
+import org.jetbrains.annotations.Contract;
+
+/**
+ * A filter expression compiled into a flat predicate.
+ *
+ * <p>The {@link FilterExpression#normalize() normalized} form of the expression is evaluated
+ * clause by clause. The values of all tag keys used by any of the clauses are looked up in a
+ * single pass over the entity's (key ordered) tags, after which all tag and type conditions are
+ * simple array lookups. Other conditions (ids, changesets, contributors, geometry types, …) are
+ * checked by the respective filters in the same pass over the clauses.</p>
+ *
+ * <p>The results of {@link #applyOSH} and {@link #applyOSM} are the same as those of the original
+ * filter expression's {@link FilterExpression#applyOSH} and {@link FilterExpression#applyOSM}.
+ * The geometry based checks (e.g. {@link FilterExpression#applyOSMGeometry}) are not
+ * compiled.</p>
+ */
+public final class CompiledFilter implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private static final int ABSENT = Integer.MIN_VALUE;
+  private static final int ALL_TYPES = typeBit(OSMType.NODE) | typeBit(OSMType.WAY)
+      | typeBit(OSMType.RELATION);
+
+  private static final byte HAS_TAG = 0;
+  private static final byte NOT_TAG = 1;
+  private static final byte HAS_KEY = 2;
+  private static final byte NOT_KEY = 3;
+  private static final byte IN = 4;
+  private static final byte NOT_IN = 5;
+
+  /** The tag keys used by any of the clauses in ascending order, referenced by their index. */
+  private final int[] keys;
+  private final Clause[] clauses;
+
+  private static class Clause implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Allowed osm types of the clause. */
+    private int types = ALL_TYPES;
+    /** Tag conditions: operation, index of the tag key, and value (or sorted values). */
+    private byte[] operations = new byte[0];
+    private int[] keys = new int[0];
+    private int[] values = new int[0];
+    private int[][] valueSets = new int[0][];
+    /** Indices of tag keys which any version of an OSH entity must have. */
+    private int[] requiredKeys = new int[0];
+    /** Other filters, checked by their own applyOSM/applyOSH methods. */
+    private Filter[] filters = new Filter[0];
+    /** Filters which can exclude OSH entities, except those covered by the required keys. */
+    private Filter[] oshFilters = new Filter[0];
+  }
+
+  private CompiledFilter(int[] keys, Clause[] clauses) {
+    this.keys = keys;
+    this.clauses = clauses;
+  }
+
+  /**
+   * Compiles a filter expression.
+   *
+   * @param expression the filter expression to compile
+   * @return the compiled filter
+   * @throws IllegalStateException if the filter cannot be normalized
+   */
+  public static CompiledFilter compile(FilterExpression expression) {
+    List<List<Filter>> normalized = expression.normalize();
+    TreeSet<Integer> usedKeys = new TreeSet<>();
+    for (List<Filter> andFilters : normalized) {
+      for (Filter filter : andFilters) {
+        int key = tagKey(filter);
+        if (key != ABSENT) {
+          usedKeys.add(key);
+        }
+      }
+    }
+    int[] keys = usedKeys.stream().mapToInt(Integer::intValue).toArray();
+    Clause[] clauses = new Clause[normalized.size()];
+    for (int i = 0; i < clauses.length; i++) {
+      clauses[i] = compileClause(normalized.get(i), keys);
+    }
+    return new CompiledFilter(keys, clauses);
+  }
+
+  private static Clause compileClause(List<Filter> andFilters, int[] keys) {
+    Clause clause = new Clause();
+    List<Byte> operations = new ArrayList<>();
+    List<Integer> slots = new ArrayList<>();
+    List<Integer> values = new ArrayList<>();
+    List<int[]> valueSets = new ArrayList<>();
+    List<Integer> requiredKeys = new ArrayList<>();
+    List<Filter> filters = new ArrayList<>();
+    List<Filter> oshFilters = new ArrayList<>();
+    for (Filter filter : andFilters) {
+      final byte operation;
+      int value = 0;
+      if (filter instanceof TypeFilter typeFilter) {
+        clause.types &= typeBit(typeFilter.getType());
+        continue;
+      } else if (filter instanceof TagFilterEquals tagFilter) {
+        operation = HAS_TAG;
+        value = tagFilter.getTag().getValue();
+      } else if (filter instanceof TagFilterNotEquals tagFilter) {
+        operation = NOT_TAG;
+        value = tagFilter.getTag().getValue();
+      } else if (filter instanceof TagFilterEqualsAny) {
+        operation = HAS_KEY;
+      } else if (filter instanceof TagFilterNotEqualsAny) {
+        operation = NOT_KEY;
+      } else if (filter instanceof TagFilterAnyOf tagFilter) {
+        operation = tagFilter instanceof TagFilterEqualsAnyOf ? IN : NOT_IN;
+        value = valueSets.size();
+        valueSets.add(tagFilter.tags.stream().mapToInt(OSHDBTag::getValue).sorted().toArray());
+      } else {
+        filters.add(filter);
+        oshFilters.add(filter);
+        continue;
+      }
+      int slot = Arrays.binarySearch(keys, tagKey(filter));
+      operations.add(operation);
+      slots.add(slot);
+      values.add(value);
+      if (operation == HAS_TAG || operation == HAS_KEY || operation == IN) {
+        // positive tag filters only check whether an OSH entity has the tag key
+        requiredKeys.add(slot);
+      } else {
+        oshFilters.add(filter);
+      }
+    }
+    clause.operations = new byte[operations.size()];
+    for (int i = 0; i < clause.operations.length; i++) {
+      clause.operations[i] = operations.get(i);
+    }
+    clause.keys = slots.stream().mapToInt(Integer::intValue).toArray();
+    clause.values = values.stream().mapToInt(Integer::intValue).toArray();
+    clause.valueSets = valueSets.toArray(new int[0][]);
+    clause.requiredKeys = requiredKeys.stream().mapToInt(Integer::intValue).distinct().toArray();
+    clause.filters = filters.toArray(new Filter[0]);
+    clause.oshFilters = oshFilters.toArray(new Filter[0]);
+    return clause;
+  }
+
+  /** Returns the tag key checked by a tag filter, or {@link #ABSENT} for other filters. */
+  private static int tagKey(Filter filter) {
+    if (filter instanceof TagFilterEquals tagFilter) {
+      return tagFilter.getTag().getKey();
+    } else if (filter instanceof TagFilterNotEquals tagFilter) {
+      return tagFilter.getTag().getKey();
+    } else if (filter instanceof TagFilterEqualsAny tagFilter) {
+      return tagFilter.getTag().toInt();
+    } else if (filter instanceof TagFilterNotEqualsAny tagFilter) {
+      return tagFilter.getTag().toInt();
+    } else if (filter instanceof TagFilterAnyOf tagFilter) {
+      return tagFilter.keyId;
+    }
+    return ABSENT;
+  }
+
+  private static int typeBit(OSMType type) {
+    return 1 << type.intValue();
+  }
+
+  /**
+   * Apply the filter to an OSH entity.
+   *
+   * @param entity the OSH entity to check.
+   * @return false if the filter knows that none of the versions of the OSH entity can fulfill the
+   *         filter, true otherwise.
+   * @see FilterExpression#applyOSH(OSHEntity)
+   */
+  @Contract(pure = true)
+  public boolean applyOSH(OSHEntity entity) {
+    final int type = typeBit(entity.getType());
+    boolean[] present = null;
+    for (Clause clause : clauses) {
+      if ((clause.types & type) == 0) {
+        continue;
+      }
+      if (clause.requiredKeys.length > 0 && present == null) {
+        present = presentKeys(entity);
+      }
+      if (allKeysPresent(clause.requiredKeys, present)
+          && allMatchOSH(clause.oshFilters, entity)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Apply the filter to an OSM entity.
+   *
+   * @param entity the OSM entity to check.
+   * @return true if the entity fulfills the filter, otherwise false.
+   * @see FilterExpression#applyOSM(OSMEntity)
+   */
+  @Contract(pure = true)
+  public boolean applyOSM(OSMEntity entity) {
+    final int type = typeBit(entity.getType());
+    int[] values = null;
+    for (Clause clause : clauses) {
+      if ((clause.types & type) == 0) {
+        continue;
+      }
+      if (clause.operations.length > 0 && values == null) {
+        values = new int[keys.length];
+        entity.getTags().lookupValues(keys, values, ABSENT);
+      }
+      if (matchesTags(clause, values) && allMatchOSM(clause.filters, entity)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean[] presentKeys(OSHEntity entity) {
+    boolean[] present = new boolean[keys.length];
+    int k = 0;
+    for (OSHDBTagKey tagKey : entity.getTagKeys()) {
+      while (k < keys.length && keys[k] < tagKey.toInt()) {
+        k++;
+      }
+      if (k == keys.length) {
+        break;
+      }
+      if (keys[k] == tagKey.toInt()) {
+        present[k] = true;
+      }
+    }
+    return present;
+  }
+
+  private static boolean allKeysPresent(int[] requiredKeys, boolean[] present) {
+    for (int key : requiredKeys) {
+      if (!present[key]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matchesTags(Clause clause, int[] values) {
+    for (int i = 0; i < clause.operations.length; i++) {
+      final int value = values[clause.keys[i]];
+      final boolean matches;
+      switch (clause.operations[i]) {
+        case HAS_TAG:
+          matches = value == clause.values[i];
+          break;
+        case NOT_TAG:
+          matches = value != clause.values[i];
+          break;
+        case HAS_KEY:
+          matches = value != ABSENT;
+          break;
+        case NOT_KEY:
+          matches = value == ABSENT;
+          break;
+        case IN:
+          matches = value != ABSENT
+              && Arrays.binarySearch(clause.valueSets[clause.values[i]], value) >= 0;
+          break;
+        case NOT_IN:
+          matches = value == ABSENT
+              || Arrays.binarySearch(clause.valueSets[clause.values[i]], value) < 0;
+          break;
+        default:
+          throw new IllegalStateException("unknown compiled filter operation");
+      }
+      if (!matches) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean allMatchOSH(Filter[] filters, OSHEntity entity) {
+    for (Filter filter : filters) {
+      if (!filter.applyOSH(entity)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean allMatchOSM(Filter[] filters, OSMEntity entity) {
+    for (Filter filter : filters) {
+      if (!filter.applyOSM(entity)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "compiled(" + clauses.length + " clauses, " + keys.length + " tag keys)";
+  }
+}
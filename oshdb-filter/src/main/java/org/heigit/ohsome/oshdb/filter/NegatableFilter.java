@@ -1,9 +1,10 @@
 package org.heigit.ohsome.oshdb.filter;
 
-import com.google.common.collect.Streams;
+import java.util.List;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import javax.annotation.Nonnull;
+import org.heigit.ohsome.oshdb.osh.OSHEntities;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
 import org.heigit.ohsome.oshdb.osm.OSMEntity;
 import org.heigit.ohsome.oshdb.util.mappable.OSMContribution;
@@ -56,24 +57,37 @@ class NegatableFilter implements Filter {
      */
     protected static boolean applyToOSHEntityRecursively(OSHEntity entity,
         Predicate<OSMEntity> predicate) {
+      if (OSHEntities.anyVersionMatches(entity, predicate)) {
+        return true;
+      }
       switch (entity.getType()) {
         case NODE:
-          return Streams.stream(entity.getVersions()).anyMatch(predicate);
+          return false;
         case WAY:
-          return Streams
-              .concat(Streams.stream(entity.getVersions()),
-                  entity.getNodes().stream().flatMap(n -> Streams.stream(n.getVersions())))
-              .anyMatch(predicate);
+          return anyVersionMatches(entity.getNodes(), predicate);
         case RELATION:
         default:
-          return Streams
-              .concat(Streams.stream(entity.getVersions()),
-                  entity.getNodes().stream().flatMap(n -> Streams.stream(n.getVersions())),
-                  entity.getWays().stream().flatMap(w -> Streams.stream(w.getVersions())),
-                  entity.getWays().stream().flatMap(
-                      w -> w.getNodes().stream().flatMap(wn -> Streams.stream(wn.getVersions()))))
-              .anyMatch(predicate);
+          if (anyVersionMatches(entity.getNodes(), predicate)
+              || anyVersionMatches(entity.getWays(), predicate)) {
+            return true;
+          }
+          for (OSHEntity way : entity.getWays()) {
+            if (anyVersionMatches(way.getNodes(), predicate)) {
+              return true;
+            }
+          }
+          return false;
+      }
+    }
+
+    private static boolean anyVersionMatches(List<? extends OSHEntity> entities,
+        Predicate<OSMEntity> predicate) {
+      for (OSHEntity entity : entities) {
+        if (OSHEntities.anyVersionMatches(entity, predicate)) {
+          return true;
+        }
       }
+      return false;
     }
   }
 
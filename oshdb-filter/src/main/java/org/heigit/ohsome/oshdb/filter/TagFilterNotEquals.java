@@ -1,7 +1,7 @@
 package org.heigit.ohsome.oshdb.filter;
 
-import com.google.common.collect.Streams;
 import org.heigit.ohsome.oshdb.OSHDBTag;
+import org.heigit.ohsome.oshdb.osh.OSHEntities;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
 import org.heigit.ohsome.oshdb.osm.OSMEntity;
 
@@ -22,7 +22,7 @@ public class TagFilterNotEquals implements TagFilter {
 
   @Override
   public boolean applyOSH(OSHEntity entity) {
-    return Streams.stream(entity.getVersions()).anyMatch(this::applyOSM);
+    return OSHEntities.anyVersionMatches(entity, this::applyOSM);
   }
 
   @Override
@@ -0,0 +1,131 @@
+package org.heigit.ohsome.oshdb.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.heigit.ohsome.oshdb.OSHDBTag;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.osm.OSM;
+import org.heigit.ohsome.oshdb.osm.OSMEntity;
+import org.heigit.ohsome.oshdb.osm.OSMMember;
+import org.heigit.ohsome.oshdb.osm.OSMNode;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.heigit.ohsome.oshdb.osm.OSMWay;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that compiled filters give the same results as the original filter expressions.
+ */
+class CompiledFilterTest extends FilterTest {
+  private static final String[] FILTERS = {
+      "highway=residential",
+      "highway=*",
+      "highway!=residential",
+      "highway!=*",
+      "highway in (residential, track)",
+      "not highway in (residential, track)",
+      "highway=residential or building=yes",
+      "(highway=residential or highway=track) and name=*",
+      "building=* and not building=yes",
+      "type:node and highway=*",
+      "type:way or name!=FIXME",
+      "id:1 and highway=*",
+      "id:(1..3) or building=*",
+      "changeset:1 and building in (yes, house)",
+      "contributor:2 or highway!=*",
+      "geometry:point and highway=*",
+      "highway=track and highway=residential",
+      "highway in (residential, track) and not highway=track",
+  };
+
+  private FilterExpression parse(String filter) {
+    return new FilterParser(tagTranslator, true).parse(filter);
+  }
+
+  // creates tags with keys in ascending order, as they are stored in the oshdb
+  private int[] sortedTags(String... keyValues) {
+    int[] tags = createTestTags(keyValues);
+    List<OSHDBTag> list = new ArrayList<>();
+    for (int i = 0; i < tags.length; i += 2) {
+      list.add(new OSHDBTag(tags[i], tags[i + 1]));
+    }
+    list.sort(Comparator.comparingInt(OSHDBTag::getKey));
+    int[] result = new int[tags.length];
+    for (int i = 0; i < list.size(); i++) {
+      result[2 * i] = list.get(i).getKey();
+      result[2 * i + 1] = list.get(i).getValue();
+    }
+    return result;
+  }
+
+  private OSMNode node(long changeset, int user, String... keyValues) {
+    return OSM.node(1, 1, 0L, changeset, user, sortedTags(keyValues), 0, 0);
+  }
+
+  private OSMWay way(long id, String... keyValues) {
+    return OSM.way(id, 1, 0L, 1, 2, sortedTags(keyValues),
+        new OSMMember[] {new OSMMember(1, OSMType.NODE, 0)});
+  }
+
+  private List<OSMEntity> entities() {
+    return List.of(
+        node(1, 1),
+        node(1, 2, "highway", "residential"),
+        node(2, 1, "highway", "track", "name", "FIXME"),
+        node(1, 1, "highway", "primary", "name", "FIXME", "building", "yes"),
+        node(2, 2, "building", "house"),
+        node(2, 2, "building", "yes", "name", "FIXME"),
+        way(1, "highway", "residential", "name", "FIXME"),
+        way(4, "building", "yes"),
+        way(2, "highway", "track"),
+        way(3));
+  }
+
+  @Test
+  void testApplyOSM() {
+    for (String filter : FILTERS) {
+      FilterExpression expression = parse(filter);
+      CompiledFilter compiled = CompiledFilter.compile(expression);
+      for (OSMEntity entity : entities()) {
+        assertEquals(expression.applyOSM(entity), compiled.applyOSM(entity),
+            filter + " on " + entity);
+      }
+    }
+  }
+
+  @Test
+  void testApplyOSH() throws IOException {
+    List<OSHEntity> entities = new ArrayList<>();
+    var osm = entities();
+    for (int i = 0; i < 6; i++) {
+      entities.add(createTestOSHEntityNode((OSMNode) osm.get(i)));
+    }
+    entities.add(createTestOSHEntityNode(
+        OSM.node(1, 2, 1L, 1, 1, sortedTags("highway", "track"), 0, 0),
+        OSM.node(1, 1, 0L, 1, 1, sortedTags("building", "yes"), 0, 0)));
+    for (int i = 6; i < osm.size(); i++) {
+      entities.add(createTestOSHEntityWay((OSMWay) osm.get(i)));
+    }
+    for (String filter : FILTERS) {
+      FilterExpression expression = parse(filter);
+      CompiledFilter compiled = CompiledFilter.compile(expression);
+      for (OSHEntity entity : entities) {
+        assertEquals(expression.applyOSH(entity), compiled.applyOSH(entity),
+            filter + " on " + entity);
+      }
+    }
+  }
+
+  @Test
+  void testUnknownTags() {
+    CompiledFilter compiled = CompiledFilter.compile(parse("highway=doesNotExist"));
+    assertFalse(compiled.applyOSM(node(1, 1, "highway", "residential")));
+    compiled = CompiledFilter.compile(parse("doesNotExist!=*"));
+    assertTrue(compiled.applyOSM(node(1, 1, "highway", "residential")));
+  }
+}
@@ -4,16 +4,14 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Streams;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
@@ -21,13 +19,17 @@ import org.heigit.ohsome.oshdb.OSHDBBoundable;
 import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
 import org.heigit.ohsome.oshdb.OSHDBTemporal;
 import org.heigit.ohsome.oshdb.OSHDBTimestamp;
+import org.heigit.ohsome.oshdb.grid.CellSummary;
 import org.heigit.ohsome.oshdb.osh.OSHEntities;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.osm.OSM;
 import org.heigit.ohsome.oshdb.osm.OSMEntity;
 import org.heigit.ohsome.oshdb.osm.OSMMember;
+import org.heigit.ohsome.oshdb.osm.OSMNode;
 import org.heigit.ohsome.oshdb.osm.OSMRelation;
 import org.heigit.ohsome.oshdb.osm.OSMType;
 import org.heigit.ohsome.oshdb.osm.OSMWay;
+import org.heigit.ohsome.oshdb.util.function.CellSummaryFilter;
 import org.heigit.ohsome.oshdb.util.function.OSHEntityFilter;
 import org.heigit.ohsome.oshdb.util.function.OSMEntityFilter;
 import org.heigit.ohsome.oshdb.util.geometry.Geo;
@@ -35,6 +37,7 @@ import org.heigit.ohsome.oshdb.util.geometry.OSHDBGeometryBuilder;
 import org.heigit.ohsome.oshdb.util.geometry.fip.FastBboxInPolygon;
 import org.heigit.ohsome.oshdb.util.geometry.fip.FastBboxOutsidePolygon;
 import org.heigit.ohsome.oshdb.util.geometry.fip.FastPolygonOperations;
+import org.heigit.ohsome.oshdb.util.metrics.QueryMetrics;
 import org.heigit.ohsome.oshdb.util.osh.OSHEntityTimeUtils;
 import org.heigit.ohsome.oshdb.util.taginterpreter.TagInterpreter;
 import org.heigit.ohsome.oshdb.util.time.OSHDBTimestampInterval;
@@ -73,6 +76,7 @@ public class CellIterator implements Serializable {
   private final OSHEntityFilter oshEntityPreFilter;
   private final OSMEntityFilter osmEntityFilter;
   private final boolean includeOldStyleMultipolygons;
+  private CellSummaryFilter cellFilter = null;
 
 
   /**
@@ -204,6 +208,23 @@ public class CellIterator implements Serializable {
     this.includeOldStyleMultipolygons = includeOldStyleMultipolygons;
   }
 
+  /**
+   * Sets a filter on the {@link CellSummary summaries} of the iterated cells: cells whose summary
+   * doesn't match the filter are skipped without looking at their entities. The filter must only
+   * reject cells which don't contain any entity matching the pre-filter and filter of this cell
+   * iterator.
+   *
+   * <p>Independently of this filter, cells whose summary shows that they weren't modified in the
+   * requested time range are always skipped.</p>
+   *
+   * @param cellFilter the filter on cell summaries, or null
+   * @return this cell iterator
+   */
+  public CellIterator withCellFilter(CellSummaryFilter cellFilter) {
+    this.cellFilter = cellFilter;
+    return this;
+  }
+
   /**
    * Holds the result of a single item returned by {@link #iterateByTimestamps(OSHEntitySource)}.
    *
@@ -238,12 +259,33 @@ public class CellIterator implements Serializable {
    *         geometries later on in the code.
    */
   public Stream<IterateByTimestampEntry> iterateByTimestamps(OSHEntitySource source) {
+    return iterateByTimestamps(source, null);
+  }
+
+  /**
+   * Same as {@link #iterateByTimestamps(OSHEntitySource)}, but records the processed entities,
+   * versions and geometries into the given query metrics.
+   *
+   * @param source a provider of a stream of OSHEntity objects and a corresponding bounding box
+   * @param metrics the metrics to record into (or null), must only be used by the thread
+   *        consuming the returned stream
+   * @return a stream of matching filtered OSMEntities with their clipped Geometries at each
+   *         timestamp
+   */
+  public Stream<IterateByTimestampEntry> iterateByTimestamps(OSHEntitySource source,
+      QueryMetrics metrics) {
+    var summary = source.getSummary();
+    if (summary != null && (!matches(summary)
+        || summary.getMinTimestamp() > timestamps.last().getEpochSecond())) {
+      // the cell doesn't contain matching entities, or only ones created after the last timestamp
+      return Stream.empty();
+    }
     var cellBoundingBox = source.getBoundingBox();
     final boolean allFullyInside = fullyInside(cellBoundingBox);
     if (!allFullyInside && isBoundByPolygon && bboxOutsidePolygon.test(cellBoundingBox)) {
       return Stream.empty();
     }
-    return iterateByTimestamps(source.getData(), allFullyInside);
+    return iterateByTimestamps(getData(source, allFullyInside), allFullyInside, metrics);
   }
 
   /**
@@ -252,6 +294,7 @@ public class CellIterator implements Serializable {
    *
    * @param oshData the entities to iterate through
    * @param allFullyInside indicator that exact geometry inclusion checks can be skipped
+   * @param metrics the metrics to record into, or null
    *
    * @return a stream of matching filtered OSMEntities with their clipped Geometries at each
    *         timestamp. If an object has not been modified between timestamps, the output may
@@ -260,8 +303,12 @@ public class CellIterator implements Serializable {
    *         geometries later on in the code.
    */
   private Stream<IterateByTimestampEntry> iterateByTimestamps(Stream<? extends OSHEntity> oshData,
-      boolean allFullyInside) {
+      boolean allFullyInside, QueryMetrics metrics) {
+    final List<OSHDBTimestamp> requestedTimestamps = new ArrayList<>(this.timestamps);
     return oshData.flatMap(oshEntity -> {
+      if (metrics != null) {
+        metrics.recordEntity();
+      }
       if (!oshEntityPreFilter.test(oshEntity)
           || !allFullyInside && (
               !oshEntity.getBoundable().intersects(boundingBox)
@@ -271,180 +318,442 @@ public class CellIterator implements Serializable {
         // area of interest -> skip it
         return Stream.empty();
       }
-      if (Streams.stream(oshEntity.getVersions()).noneMatch(osmEntityFilter)) {
+      if (metrics != null) {
+        metrics.recordEntityPassingPreFilter();
+      }
+      if (!OSHEntities.anyVersionMatches(oshEntity, osmEntityFilter)) {
         // none of this osh entity's versions matches the filter -> skip it
         return Stream.empty();
       }
+      if (metrics != null) {
+        metrics.recordEntityPassingFilter();
+      }
       boolean fullyInside = allFullyInside || fullyInside(oshEntity.getBoundable());
+      return Streams.stream(
+          new SnapshotIterator(oshEntity, fullyInside, requestedTimestamps, metrics));
+    });
+  }
+
+  /**
+   * Iterates over the snapshots of a single OSH entity at the requested timestamps.
+   *
+   * <p>The requested timestamps are grouped by the modifications of the entity: the snapshots of
+   * all timestamps between two modifications share the same entity version and geometry objects.
+   * Additionally, the geometries of the previous group are reused if the geometry relevant state
+   * (see {@link GeometryState}) of the entity didn't change, e.g. if only tags of a way's nodes
+   * were modified.</p>
+   */
+  private class SnapshotIterator implements Iterator<IterateByTimestampEntry> {
+    private final OSHEntity oshEntity;
+    private final boolean fullyInside;
+    private final List<OSHDBTimestamp> requestedTimestamps;
+    private final QueryMetrics metrics;
+    // index of the first requested timestamp of each group, plus the end index
+    private final int[] groupStart;
+    // last modification timestamp before each requested timestamp
+    private final OSHDBTimestamp[] lastModificationTimestamps;
+    private final List<OSHDBTimestamp> queryTimestamps;
+    // entity version of each group, or null if the group doesn't produce any results
+    private final OSMEntity[] osmEntityAtTimestamps;
 
-      // optimize loop by requesting modification timestamps first, and skip geometry calculations
-      // where not needed
-      SortedMap<OSHDBTimestamp, List<OSHDBTimestamp>> queryTs = new TreeMap<>();
-      SortedMap<OSHDBTimestamp, OSHDBTimestamp> lastModificationTimestamps = new TreeMap<>();
+    private int group = -1;
+    private int pos = 0;
+    private int groupEnd = 0;
+    private OSMEntity osmEntity;
+    private LazyEvaluatedObject<Geometry> geometry;
+    private LazyEvaluatedObject<Geometry> unclippedGeometry;
+    private GeometryState state = new GeometryState();
+    private GeometryState cachedState = new GeometryState();
+    private boolean cachedEmpty;
+
+    private SnapshotIterator(OSHEntity oshEntity, boolean fullyInside,
+        List<OSHDBTimestamp> requestedTimestamps, QueryMetrics metrics) {
+      this.oshEntity = oshEntity;
+      this.fullyInside = fullyInside;
+      this.requestedTimestamps = requestedTimestamps;
+      this.metrics = metrics;
+      int[] starts = new int[requestedTimestamps.size() + 1];
+      int groups = 0;
       if (!includeOldStyleMultipolygons) {
+        // optimize loop by requesting modification timestamps first, and skip geometry
+        // calculations where not needed
+        this.lastModificationTimestamps = new OSHDBTimestamp[requestedTimestamps.size()];
         List<OSHDBTimestamp> modTs =
             OSHEntityTimeUtils.getModificationTimestamps(oshEntity, osmEntityFilter);
         int j = 0;
         OSHDBTimestamp lastModificationTimestamp = null;
-        for (OSHDBTimestamp requestedT : timestamps) {
-          boolean needToRequest = false;
-          while (j < modTs.size()
-              && modTs.get(j).getEpochSecond() <= requestedT.getEpochSecond()) {
-            needToRequest = true;
+        for (int i = 0; i < requestedTimestamps.size(); i++) {
+          long requestedT = requestedTimestamps.get(i).getEpochSecond();
+          boolean modified = false;
+          while (j < modTs.size() && modTs.get(j).getEpochSecond() <= requestedT) {
+            modified = true;
             lastModificationTimestamp = modTs.get(j);
             j++;
           }
-          if (needToRequest) {
-            queryTs.put(requestedT, new LinkedList<>());
-          } else if (queryTs.size() > 0) {
-            queryTs.get(queryTs.lastKey()).add(requestedT);
+          if (modified) {
+            starts[groups++] = i;
           }
-          lastModificationTimestamps.put(requestedT, lastModificationTimestamp);
+          lastModificationTimestamps[i] = lastModificationTimestamp;
         }
       } else {
         // todo: make this work with old style multipolygons!!?!
-        for (OSHDBTimestamp ts : timestamps) {
-          queryTs.put(ts, new LinkedList<>());
+        this.lastModificationTimestamps = null;
+        for (int i = 0; i < requestedTimestamps.size(); i++) {
+          starts[groups++] = i;
         }
       }
+      starts[groups] = requestedTimestamps.size();
+      this.groupStart = starts;
+      this.queryTimestamps = new ArrayList<>(groups);
+      for (int g = 0; g < groups; g++) {
+        queryTimestamps.add(requestedTimestamps.get(starts[g]));
+      }
+      this.osmEntityAtTimestamps = versionsAtQueryTimestamps();
+    }
 
-      List<OSHDBTimestamp> timestamps = new ArrayList<>(queryTs.keySet());
-      List<OSMEntity> osmEntityAtTimestamps = getVersionsByTimestamps(oshEntity, timestamps);
+    /**
+     * Returns the entity versions which are current at the query timestamps.
+     *
+     * <p>The versions are visited using the version cursor of the OSH entity, and are checked
+     * against the filter in place. Only the versions which are current at any of the query
+     * timestamps and which can produce results are materialized.</p>
+     */
+    private OSMEntity[] versionsAtQueryTimestamps() {
+      var result = new OSMEntity[queryTimestamps.size()];
+      int i = result.length - 1;
+      var cursor = oshEntity.getVersionCursor();
+      while (cursor.hasNext() && i >= 0) {
+        OSMEntity version = cursor.next();
+        int last = i;
+        while (i >= 0 && OSHDBTemporal.compare(version, queryTimestamps.get(i)) <= 0) {
+          i--;
+        }
+        if (i < last && producesResults(version, last - i)) {
+          Arrays.fill(result, i + 1, last + 1, OSM.copyOf(version));
+        }
+      }
+      return result;
+    }
 
-      List<IterateByTimestampEntry> results = new LinkedList<>();
-      osmEntityLoop: for (int j = 0; j < osmEntityAtTimestamps.size(); j++) {
-        OSHDBTimestamp timestamp = timestamps.get(j);
-        OSMEntity osmEntity = osmEntityAtTimestamps.get(j);
+    /**
+     * Checks whether an entity version can produce results.
+     *
+     * @param version the entity version, possibly a reused view of the version cursor
+     * @param groups the number of groups this version is current in
+     */
+    private boolean producesResults(OSMEntity version, int groups) {
+      if (!version.isVisible()) {
+        // skip because this entity is deleted at this timestamp
+        return false;
+      }
+      if (version instanceof OSMWay osmWay && osmWay.getMembers().length == 0
+          || version instanceof OSMRelation osmRelation
+              && osmRelation.getMembers().length == 0) {
+        // skip way/relation with zero nodes/members
+        return false;
+      }
+      if (includeOldStyleMultipolygons && version instanceof OSMRelation rel
+          && tagInterpreter.isOldStyleMultipolygon(rel)) {
+        // old-style multipolygons are checked via their outer way, see nextGroup
+        return true;
+      }
+      boolean matches = osmEntityFilter.test(version);
+      if (metrics != null) {
+        for (int g = 0; g < groups; g++) {
+          metrics.recordVersion(matches);
+        }
+      }
+      return matches;
+    }
 
-        if (!osmEntity.isVisible()) {
-          // skip because this entity is deleted at this timestamp
-          continue;
+    @Override
+    public boolean hasNext() {
+      while (pos >= groupEnd) {
+        if (group + 1 >= queryTimestamps.size()) {
+          return false;
         }
-        if (osmEntity instanceof OSMWay osmWay && osmWay.getMembers().length == 0
-            || osmEntity instanceof OSMRelation osmRelation
-                && osmRelation.getMembers().length == 0) {
-          // skip way/relation with zero nodes/members
-          continue;
+        group++;
+        if (nextGroup()) {
+          pos = groupStart[group];
+          groupEnd = groupStart[group + 1];
         }
+      }
+      return true;
+    }
 
-        boolean isOldStyleMultipolygon = false;
-        if (includeOldStyleMultipolygons && osmEntity instanceof OSMRelation rel
-            && tagInterpreter.isOldStyleMultipolygon(rel)) {
-          for (int i = 0; i < rel.getMembers().length; i++) {
-            final OSMMember relMember = rel.getMembers()[i];
-            if (relMember.getType() == OSMType.WAY
-                && tagInterpreter.isMultipolygonOuterMember(relMember)) {
-              OSMEntity way = OSHEntities.getByTimestamp(relMember.getEntity(), timestamp);
-              if (!osmEntityFilter.test(way)) {
-                // skip this old-style-multipolygon because it doesn't match our filter
-                continue osmEntityLoop;
-              } else {
-                // we know this multipolygon only has exactly one outer way, so we can abort the
-                // loop and actually
-                // "continue" with the calculations ^-^
-                isOldStyleMultipolygon = true;
-                break;
-              }
+    @Override
+    public IterateByTimestampEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      var timestamp = requestedTimestamps.get(pos);
+      var lastModificationTimestamp =
+          lastModificationTimestamps == null ? null : lastModificationTimestamps[pos];
+      pos++;
+      return new IterateByTimestampEntry(timestamp, lastModificationTimestamp, osmEntity,
+          oshEntity, geometry, unclippedGeometry);
+    }
+
+    /**
+     * Prepares the entity version and geometries of the current group.
+     *
+     * @return false if the group doesn't produce any results
+     */
+    private boolean nextGroup() {
+      OSHDBTimestamp timestamp = queryTimestamps.get(group);
+      OSMEntity osmEntity = osmEntityAtTimestamps[group];
+
+      if (osmEntity == null) {
+        // skip because this entity is deleted, has no nodes/members or doesn't match our filter
+        // at this timestamp (see producesResults)
+        return false;
+      }
+
+      boolean isOldStyleMultipolygon = false;
+      if (includeOldStyleMultipolygons && osmEntity instanceof OSMRelation rel
+          && tagInterpreter.isOldStyleMultipolygon(rel)) {
+        for (int i = 0; i < rel.getMembers().length; i++) {
+          final OSMMember relMember = rel.getMembers()[i];
+          if (relMember.getType() == OSMType.WAY
+              && tagInterpreter.isMultipolygonOuterMember(relMember)) {
+            OSMEntity way = OSHEntities.getByTimestamp(relMember.getEntity(), timestamp);
+            if (!osmEntityFilter.test(way)) {
+              // skip this old-style-multipolygon because it doesn't match our filter
+              return false;
+            } else {
+              // we know this multipolygon only has exactly one outer way, so we can abort the
+              // loop and actually
+              // "continue" with the calculations ^-^
+              isOldStyleMultipolygon = true;
+              break;
             }
           }
-        } else {
-          if (!osmEntityFilter.test(osmEntity)) {
-            // skip because this entity doesn't match our filter
-            continue osmEntityLoop;
-          }
         }
+      }
 
-        try {
-          LazyEvaluatedObject<Geometry> geom;
-          if (!isOldStyleMultipolygon) {
-            geom = constructClippedGeometry(osmEntity, timestamp, fullyInside);
-          } else {
-            // old style multipolygons: return only the inner holes of the geometry -> this is then
-            // used to "fix" the results obtained from calculating the geometry on the object's
-            // outer way which doesn't know about the inner members of the multipolygon relation
-            // todo: check if this is all valid?
-            GeometryFactory gf = new GeometryFactory();
-            geom = new LazyEvaluatedObject<>(() -> {
-              Geometry geometry = OSHDBGeometryBuilder
-                  .getGeometry(osmEntity, timestamp, tagInterpreter);
-
-              Polygon poly = (Polygon) geometry;
-              Polygon[] interiorRings = new Polygon[poly.getNumInteriorRing()];
-              for (int i = 0; i < poly.getNumInteriorRing(); i++) {
-                interiorRings[i] =
-                    new Polygon((LinearRing) poly.getInteriorRingN(i), new LinearRing[]{}, gf);
-              }
-              geometry = new MultiPolygon(interiorRings, gf);
-              if (!fullyInside) {
-                geometry = isBoundByPolygon
-                    ? fastPolygonClipper.intersection(geometry)
-                    : Geo.clip(geometry, boundingBox);
-              }
-              return geometry;
-            });
+      this.osmEntity = osmEntity;
+      if (isOldStyleMultipolygon) {
+        cachedState.clear();
+        return oldStyleMultipolygonGeometry(osmEntity, timestamp);
+      }
+      boolean tracked = state.read(osmEntity, timestamp);
+      if (tracked && state.sameAs(cachedState)) {
+        // geometry relevant state didn't change: reuse the geometries of the previous group
+        return !cachedEmpty;
+      }
+      var swap = cachedState;
+      cachedState = state;
+      state = swap;
+      if (!tracked) {
+        cachedState.clear();
+      }
+      try {
+        unclippedGeometry = new LazyEvaluatedObject<>(
+            () -> buildGeometry(osmEntity, timestamp, metrics));
+        geometry = constructClippedGeometry(unclippedGeometry, fullyInside, metrics);
+        cachedEmpty = !fullyInside && geometry.get().isEmpty();
+        return !cachedEmpty;
+      } catch (IllegalArgumentException err) {
+        // maybe some corner case where JTS doesn't support operations on a broken geometry
+        LOG.info("Entity {}/{} skipped because of invalid geometry at timestamp {}",
+            osmEntity.getType().toString().toLowerCase(), osmEntity.getId(), timestamp);
+      } catch (TopologyException err) {
+        // happens e.g. in JTS intersection method when geometries are self-overlapping
+        LOG.info("Topology error with entity {}/{} at timestamp {}: {}",
+            osmEntity.getType().toString().toLowerCase(), osmEntity.getId(), timestamp,
+            err.toString());
+      }
+      cachedState.clear();
+      return false;
+    }
+
+    private boolean oldStyleMultipolygonGeometry(OSMEntity osmEntity, OSHDBTimestamp timestamp) {
+      // old style multipolygons: return only the inner holes of the geometry -> this is then
+      // used to "fix" the results obtained from calculating the geometry on the object's
+      // outer way which doesn't know about the inner members of the multipolygon relation
+      // todo: check if this is all valid?
+      GeometryFactory gf = new GeometryFactory();
+      try {
+        geometry = new LazyEvaluatedObject<>(() -> {
+          Geometry geometry = buildGeometry(osmEntity, timestamp, metrics);
+
+          Polygon poly = (Polygon) geometry;
+          Polygon[] interiorRings = new Polygon[poly.getNumInteriorRing()];
+          for (int i = 0; i < poly.getNumInteriorRing(); i++) {
+            interiorRings[i] =
+                new Polygon((LinearRing) poly.getInteriorRingN(i), new LinearRing[]{}, gf);
+          }
+          geometry = new MultiPolygon(interiorRings, gf);
+          if (!fullyInside) {
+            geometry = clip(geometry, metrics);
           }
+          return geometry;
+        });
+        if (fullyInside) {
+          unclippedGeometry = geometry;
+          return true;
+        }
+        unclippedGeometry = new LazyEvaluatedObject<>(
+            () -> buildGeometry(osmEntity, timestamp, metrics));
+        return !geometry.get().isEmpty();
+      } catch (IllegalArgumentException err) {
+        // maybe some corner case where JTS doesn't support operations on a broken geometry
+        LOG.info("Entity {}/{} skipped because of invalid geometry at timestamp {}",
+            osmEntity.getType().toString().toLowerCase(), osmEntity.getId(), timestamp);
+      } catch (TopologyException err) {
+        // happens e.g. in JTS intersection method when geometries are self-overlapping
+        LOG.info("Topology error with entity {}/{} at timestamp {}: {}",
+            osmEntity.getType().toString().toLowerCase(), osmEntity.getId(), timestamp,
+            err.toString());
+      }
+      return false;
+    }
+  }
 
-          var lastModificationTimestamp = lastModificationTimestamps.get(timestamp);
-          if (fullyInside || !geom.get().isEmpty()) {
-            LazyEvaluatedObject<Geometry> fullGeom = fullyInside ? geom : new LazyEvaluatedObject<>(
-                () -> OSHDBGeometryBuilder.getGeometry(osmEntity, timestamp, tagInterpreter));
-            results.add(new IterateByTimestampEntry(
-                timestamp, lastModificationTimestamp, osmEntity, oshEntity, geom, fullGeom)
-            );
-            // add skipped timestamps (where nothing has changed from the last timestamp) to result
-            for (OSHDBTimestamp additionalT : queryTs.get(timestamp)) {
-              results.add(new IterateByTimestampEntry(
-                  additionalT, lastModificationTimestamp, osmEntity, oshEntity, geom, fullGeom)
-              );
+  /**
+   * The state of an entity version which determines its geometry at a given timestamp: the
+   * coordinates of nodes, the version (tags and members) of ways and relations and the
+   * coordinates of their (way) members at the timestamp.
+   *
+   * <p>The state of relations with relation members is not tracked.</p>
+   */
+  private static class GeometryState {
+    private static final long MISSING = Long.MIN_VALUE;
+
+    private long[] values = new long[16];
+    private int size = 0;
+
+    /**
+     * Reads the state of the given entity at the given timestamp.
+     *
+     * @return false if the state of the entity can't be tracked
+     */
+    boolean read(OSMEntity osmEntity, OSHDBTimestamp timestamp) {
+      size = 0;
+      if (osmEntity instanceof OSMNode node) {
+        addNode(node);
+      } else if (osmEntity instanceof OSMWay way) {
+        add(way.getVersion());
+        addNodes(way, timestamp);
+      } else if (osmEntity instanceof OSMRelation relation) {
+        add(relation.getVersion());
+        for (OSMMember member : relation.getMembers()) {
+          var memberEntity = member.getEntity() == null ? null
+              : OSHEntities.getByTimestamp(member.getEntity(), timestamp);
+          if (memberEntity == null) {
+            add(MISSING);
+          } else if (memberEntity instanceof OSMNode node) {
+            addNode(node);
+          } else if (memberEntity instanceof OSMWay way) {
+            add(way.isVisible() ? way.getVersion() : -way.getVersion());
+            if (way.isVisible()) {
+              addNodes(way, timestamp);
             }
+          } else {
+            size = -1;
+            return false;
           }
-        } catch (IllegalArgumentException err) {
-          // maybe some corner case where JTS doesn't support operations on a broken geometry
-          LOG.info("Entity {}/{} skipped because of invalid geometry at timestamp {}",
-              osmEntity.getType().toString().toLowerCase(), osmEntity.getId(), timestamp);
-        } catch (TopologyException err) {
-          // happens e.g. in JTS intersection method when geometries are self-overlapping
-          LOG.info("Topology error with entity {}/{} at timestamp {}: {}",
-              osmEntity.getType().toString().toLowerCase(), osmEntity.getId(), timestamp,
-              err.toString());
         }
       }
-      // stream this oshEntity's results
-      return results.stream();
-    });
+      return true;
+    }
+
+    private void addNodes(OSMWay way, OSHDBTimestamp timestamp) {
+      for (OSMMember member : way.getMembers()) {
+        var node = member.getEntity() == null ? null
+            : (OSMNode) OSHEntities.getByTimestamp(member.getEntity(), timestamp);
+        if (node == null) {
+          add(MISSING);
+        } else {
+          addNode(node);
+        }
+      }
+    }
+
+    private void addNode(OSMNode node) {
+      // valid coordinates never produce the MISSING value
+      add(node.isVisible() ? (long) node.getLon() << 32 | (node.getLat() & 0xffffffffL) : MISSING);
+    }
+
+    private void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    /**
+     * Returns true if both states are tracked and equal.
+     */
+    boolean sameAs(GeometryState other) {
+      return size >= 0 && other.size >= 0
+          && Arrays.equals(values, 0, size, other.values, 0, other.size);
+    }
+
+    void clear() {
+      size = -1;
+    }
   }
 
   private LazyEvaluatedObject<Geometry> constructClippedGeometry(
-      OSMEntity osmEntity,
-      OSHDBTimestamp timestamp,
-      boolean fullyInside
+      LazyEvaluatedObject<Geometry> unclippedGeometry,
+      boolean fullyInside,
+      QueryMetrics metrics
   ) {
     if (fullyInside) {
-      return new LazyEvaluatedObject<>(() ->
-          OSHDBGeometryBuilder.getGeometry(osmEntity, timestamp, tagInterpreter)
-      );
+      return unclippedGeometry;
     }
-    Geometry geometry = OSHDBGeometryBuilder.getGeometry(osmEntity, timestamp, tagInterpreter);
+    Geometry geometry = unclippedGeometry.get();
     OSHDBBoundingBox bbox = OSHDBGeometryBuilder.boundingBoxOf(geometry.getEnvelopeInternal());
     if (isBoundByPolygon) {
       if (bboxInPolygon.test(bbox)) {
-        return new LazyEvaluatedObject<>(geometry);
+        return unclippedGeometry;
       } else if (bboxOutsidePolygon.test(bbox)) {
         return new LazyEvaluatedObject<>(createEmptyGeometryLike(geometry));
       } else {
-        return new LazyEvaluatedObject<>(fastPolygonClipper.intersection(geometry));
+        return new LazyEvaluatedObject<>(clip(geometry, metrics));
       }
     } else {
       if (bbox.coveredBy(this.boundingBox)) {
-        return new LazyEvaluatedObject<>(geometry);
+        return unclippedGeometry;
       } else if (!bbox.intersects(this.boundingBox)) {
         return new LazyEvaluatedObject<>(createEmptyGeometryLike(geometry));
       } else {
-        return new LazyEvaluatedObject<>(Geo.clip(geometry, this.boundingBox));
+        return new LazyEvaluatedObject<>(clip(geometry, metrics));
       }
     }
   }
 
+  /**
+   * Builds the (unclipped) geometry of an entity.
+   */
+  private Geometry buildGeometry(OSMEntity osmEntity, OSHDBTimestamp timestamp,
+      QueryMetrics metrics) {
+    if (metrics == null) {
+      return OSHDBGeometryBuilder.getGeometry(osmEntity, timestamp, tagInterpreter);
+    }
+    long start = System.nanoTime();
+    try {
+      return OSHDBGeometryBuilder.getGeometry(osmEntity, timestamp, tagInterpreter);
+    } finally {
+      metrics.recordGeometry(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Clips a geometry to the area of interest.
+   */
+  private Geometry clip(Geometry geometry, QueryMetrics metrics) {
+    long start = metrics == null ? 0 : System.nanoTime();
+    Geometry clipped = isBoundByPolygon
+        ? fastPolygonClipper.intersection(geometry)
+        : Geo.clip(geometry, this.boundingBox);
+    if (metrics != null) {
+      metrics.recordClipping(System.nanoTime() - start);
+    }
+    return clipped;
+  }
+
   private Geometry createEmptyGeometryLike(Geometry geometry) {
     GeometryFactory gf = new GeometryFactory();
     if (geometry instanceof Polygonal) {
@@ -500,12 +809,34 @@ public class CellIterator implements Serializable {
    *         intervals.
    */
   public Stream<IterateAllEntry> iterateByContribution(OSHEntitySource source) {
+    return iterateByContribution(source, null);
+  }
+
+  /**
+   * Same as {@link #iterateByContribution(OSHEntitySource)}, but records the processed entities,
+   * versions and geometries into the given query metrics.
+   *
+   * @param source a provider of a stream of OSHEntity objects and a corresponding bounding box
+   * @param metrics the metrics to record into (or null), must only be used by the thread
+   *        consuming the returned stream
+   * @return a stream of matching filtered OSMEntities with their clipped Geometries and timestamp
+   *         intervals.
+   */
+  public Stream<IterateAllEntry> iterateByContribution(OSHEntitySource source,
+      QueryMetrics metrics) {
+    var summary = source.getSummary();
+    if (summary != null && (!matches(summary) || !timeInterval.intersects(
+        new OSHDBTimestampInterval(new OSHDBTimestamp(summary.getMinTimestamp()),
+            new OSHDBTimestamp(summary.getMaxTimestamp()))))) {
+      // the cell doesn't contain matching entities, or wasn't modified in the time interval
+      return Stream.empty();
+    }
     var cellBoundingBox = source.getBoundingBox();
     final boolean allFullyInside = fullyInside(cellBoundingBox);
     if (!allFullyInside && isBoundByPolygon && bboxOutsidePolygon.test(cellBoundingBox)) {
       return Stream.empty();
     }
-    return iterateByContribution(source.getData(), allFullyInside);
+    return iterateByContribution(getData(source, allFullyInside), allFullyInside, metrics);
   }
 
   /**
@@ -514,24 +845,32 @@ public class CellIterator implements Serializable {
    *
    * @param oshData the entities to iterate through
    * @param allFullyInside indicator that exact geometry inclusion checks can be skipped
+   * @param metrics the metrics to record into, or null
    *
    * @return a stream of matching filtered OSMEntities with their clipped Geometries and timestamp
    *         intervals.
    */
   private Stream<IterateAllEntry> iterateByContribution(Stream<? extends OSHEntity> oshData,
-      boolean allFullyInside) {
+      boolean allFullyInside, QueryMetrics metrics) {
     if (includeOldStyleMultipolygons) {
       //todo: remove this by finishing the functionality below
       throw new UnsupportedOperationException("this is not yet properly implemented (probably)");
     }
-    return oshData
+    if (metrics != null) {
+      oshData = oshData.peek(ignored -> metrics.recordEntity());
+    }
+    var filtered = oshData
         .filter(oshEntity -> allFullyInside || oshEntity.getBoundable().intersects(boundingBox))
         .filter(oshEntityPreFilter)
         .filter(oshEntity -> allFullyInside || !isBoundByPolygon
-            || !bboxOutsidePolygon.test(oshEntity.getBoundable()))
+            || !bboxOutsidePolygon.test(oshEntity.getBoundable()));
+    if (metrics != null) {
+      filtered = filtered.peek(ignored -> metrics.recordEntityPassingPreFilter());
+    }
+    return filtered
         .flatMap(oshEntity -> {
           var fullyInside = allFullyInside || fullyInside(oshEntity.getBoundable());
-          var contribs = new ContributionIterator(oshEntity, fullyInside);
+          var contribs = new ContributionIterator(oshEntity, fullyInside, metrics);
           return Streams.stream(contribs);
         });
   }
@@ -539,6 +878,7 @@ public class CellIterator implements Serializable {
   private class ContributionIterator implements Iterator<IterateAllEntry> {
     private final OSHEntity oshEntity;
     private final boolean fullyInside;
+    private final QueryMetrics metrics;
     private final Map<OSHDBTimestamp, Long> changesetTs;
     private final List<OSHDBTimestamp> modTs;
     private final List<OSMEntity> osmEntityAtTimestamps;
@@ -547,12 +887,17 @@ public class CellIterator implements Serializable {
     private IterateAllEntry prev;
     private IterateAllEntry next;
 
-    private ContributionIterator(OSHEntity oshEntity, boolean fullyInside) {
+    private ContributionIterator(OSHEntity oshEntity, boolean fullyInside,
+        QueryMetrics metrics) {
       this.oshEntity = oshEntity;
       this.fullyInside = fullyInside;
+      this.metrics = metrics;
       this.changesetTs = OSHEntityTimeUtils.getChangesetTimestamps(oshEntity);
       this.modTs =
           OSHEntityTimeUtils.getModificationTimestamps(oshEntity, osmEntityFilter, changesetTs);
+      if (metrics != null && !modTs.isEmpty()) {
+        metrics.recordEntityPassingFilter();
+      }
       if (modTs.isEmpty() || !timeInterval.intersects(
           new OSHDBTimestampInterval(modTs.get(0), modTs.get(modTs.size() - 1))
       )) {
@@ -639,7 +984,11 @@ public class CellIterator implements Serializable {
           continue;
         }
 
-        if (!osmEntityFilter.test(osmEntity)) {
+        boolean matches = osmEntityFilter.test(osmEntity);
+        if (metrics != null) {
+          metrics.recordVersion(matches);
+        }
+        if (!matches) {
           // this entity doesn't match our filter (anymore)
           // TODO?: separate/additional activity type (e.g. "RECYCLED" ??) and still construct
           // geometries for these?
@@ -659,7 +1008,10 @@ public class CellIterator implements Serializable {
         }
 
         try {
-          var geom = constructClippedGeometry(osmEntity, timestamp, fullyInside);
+          var unclippedGeom = new LazyEvaluatedObject<>(() ->
+              buildGeometry(osmEntity, timestamp, metrics)
+          );
+          var geom = constructClippedGeometry(unclippedGeom, fullyInside, metrics);
 
           LazyEvaluatedContributionTypes activity;
           if (!fullyInside && geom.get().isEmpty()) {
@@ -698,9 +1050,6 @@ public class CellIterator implements Serializable {
             });
           }
 
-          var unclippedGeom = new LazyEvaluatedObject<>(() ->
-              OSHDBGeometryBuilder.getGeometry(osmEntity, timestamp, tagInterpreter)
-          );
           IterateAllEntry result;
           if (prev != null) {
             result = new IterateAllEntry(timestamp,
@@ -739,6 +1088,19 @@ public class CellIterator implements Serializable {
     }
   }
 
+  // whether the cell summary allows the cell to contain matching entities
+  private boolean matches(CellSummary summary) {
+    return cellFilter == null || cellFilter.test(summary);
+  }
+
+  /**
+   * Returns the entities of the given source, skipping entities outside of the query area
+   * if the source has a spatial index.
+   */
+  private Stream<? extends OSHEntity> getData(OSHEntitySource source, boolean allFullyInside) {
+    return allFullyInside ? source.getData() : source.getData(boundingBox);
+  }
+
   private boolean fullyInside(OSHDBBoundable bbox) {
     if (isBoundByPolygon) {
       return bboxInPolygon.test(bbox);
@@ -2,7 +2,9 @@ package org.heigit.ohsome.oshdb.util.celliterator;
 
 import com.google.common.collect.Streams;
 import java.util.stream.Stream;
+import org.heigit.ohsome.oshdb.OSHDBBoundable;
 import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.grid.CellSummary;
 import org.heigit.ohsome.oshdb.grid.GridOSHEntity;
 import org.heigit.ohsome.oshdb.index.XYGrid;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
@@ -20,6 +22,19 @@ public interface OSHEntitySource {
    */
   Stream<? extends OSHEntity> getData();
 
+  /**
+   * Returns a stream of the OSH entities which may intersect the given bounding box.
+   *
+   * <p>Sources with a spatial index can skip entities whose bounding box doesn't intersect the
+   * given one, other sources return all entities.</p>
+   *
+   * @param bbox the bounding box of interest
+   * @return a stream of OSH entities, containing at least all entities intersecting the bbox
+   */
+  default Stream<? extends OSHEntity> getData(OSHDBBoundable bbox) {
+    return getData();
+  }
+
   /**
    * Returns the bounding box of the entities returned by `getData()`.
    *
@@ -30,6 +45,24 @@ public interface OSHEntitySource {
    */
   OSHDBBoundingBox getBoundingBox();
 
+  /**
+   * Returns the size of the (encoded) data of the entities of this source in bytes, if known.
+   *
+   * @return the size of the data in bytes, or 0 if unknown
+   */
+  default long getDataSize() {
+    return 0;
+  }
+
+  /**
+   * Returns the summary of the entities of this source, if known.
+   *
+   * @return the summary of the entities, or null if unknown
+   */
+  default CellSummary getSummary() {
+    return null;
+  }
+
   /**
    * A helper method which transforms a grid cell to an OSH entity source.
    *
@@ -43,10 +76,25 @@ public interface OSHEntitySource {
         return Streams.stream(cell.getEntities());
       }
 
+      @Override
+      public Stream<? extends OSHEntity> getData(OSHDBBoundable bbox) {
+        return Streams.stream(cell.getEntities(bbox));
+      }
+
       @Override
       public OSHDBBoundingBox getBoundingBox() {
         return XYGrid.getBoundingBox(new CellId(cell.getLevel(), cell.getId()), true);
       }
+
+      @Override
+      public long getDataSize() {
+        return cell.getDataSize();
+      }
+
+      @Override
+      public CellSummary getSummary() {
+        return cell.getSummary();
+      }
     };
   }
 }
@@ -0,0 +1,8 @@
+package org.heigit.ohsome.oshdb.util.function;
+
+import org.heigit.ohsome.oshdb.grid.CellSummary;
+
+/**
+ * A serializable {@link java.util.function.Predicate} on {@link CellSummary} objects.
+ */
+public interface CellSummaryFilter extends SerializablePredicate<CellSummary> {}
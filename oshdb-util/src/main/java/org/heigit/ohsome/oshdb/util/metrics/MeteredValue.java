@@ -0,0 +1,78 @@
+package org.heigit.ohsome.oshdb.util.metrics;
+
+import java.io.Serializable;
+import org.heigit.ohsome.oshdb.util.function.SerializableBiFunction;
+import org.heigit.ohsome.oshdb.util.function.SerializableBinaryOperator;
+import org.heigit.ohsome.oshdb.util.function.SerializableSupplier;
+
+/**
+ * A (partial) reduce result together with the query metrics recorded while producing it.
+ *
+ * <p>Used to transport the metrics of a query through the reduce operations of any backend: the
+ * cell processors record the metrics of each cell into the accumulation value they start with,
+ * and the metrics are merged together with the partial results.</p>
+ *
+ * @param <S> the type of the wrapped reduce result
+ */
+public class MeteredValue<S> implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private S value;
+  private final QueryMetrics metrics;
+
+  private MeteredValue(S value, QueryMetrics metrics) {
+    this.value = value;
+    this.metrics = metrics;
+  }
+
+  public S getValue() {
+    return value;
+  }
+
+  public QueryMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns the metrics carried by the given accumulation value.
+   *
+   * @param value an arbitrary accumulation value
+   * @return the metrics if the value is a {@link MeteredValue}, null otherwise
+   */
+  public static QueryMetrics metricsOf(Object value) {
+    return value instanceof MeteredValue<?> metered ? metered.metrics : null;
+  }
+
+  /**
+   * Wraps an identity supplier, every returned value gets its own empty metrics object.
+   */
+  public static <S> SerializableSupplier<MeteredValue<S>> identitySupplier(
+      SerializableSupplier<S> identitySupplier) {
+    return () -> new MeteredValue<>(identitySupplier.get(), new QueryMetrics());
+  }
+
+  /**
+   * Wraps an accumulator, which updates the given accumulation value in place.
+   */
+  public static <S, R> SerializableBiFunction<MeteredValue<S>, R, MeteredValue<S>> accumulator(
+      SerializableBiFunction<S, R, S> accumulator) {
+    return (acc, cur) -> {
+      acc.value = accumulator.apply(acc.value, cur);
+      return acc;
+    };
+  }
+
+  /**
+   * Wraps a combiner, which merges both the values and the metrics into a new object.
+   */
+  public static <S> SerializableBinaryOperator<MeteredValue<S>> combiner(
+      SerializableBinaryOperator<S> combiner) {
+    return (a, b) -> {
+      long start = System.nanoTime();
+      var value = combiner.apply(a.value, b.value);
+      var metrics = new QueryMetrics().add(a.metrics).add(b.metrics);
+      metrics.recordCombine(System.nanoTime() - start);
+      return new MeteredValue<>(value, metrics);
+    };
+  }
+}
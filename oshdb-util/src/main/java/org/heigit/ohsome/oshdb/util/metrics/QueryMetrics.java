@@ -0,0 +1,327 @@
+package org.heigit.ohsome.oshdb.util.metrics;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution metrics of a single query.
+ *
+ * <p>The metrics of individual cells are recorded by the thread processing the cell into a
+ * separate object each, which are then merged together with the partial results of the query.
+ * Because of this, the recording methods of this class are not thread safe.</p>
+ *
+ * <p>Wall and CPU times of cells are summed over all threads (and machines), which is why they
+ * can be larger than the total {@link #getQueryTime query time}.</p>
+ */
+public class QueryMetrics implements Serializable {
+  private static final long serialVersionUID = 1L;
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private long cells;
+  private long bytes;
+  private long entities;
+  private long entitiesPassingPreFilter;
+  private long entitiesPassingFilter;
+  private long versions;
+  private long versionsPassingFilter;
+  private long results;
+  private long geometriesBuilt;
+  private long geometriesClipped;
+
+  private long cellNanos;
+  private long cellCpuNanos;
+  private long geometryNanos;
+  private long clippingNanos;
+  private long mapNanos;
+  private long combineNanos;
+  private long fetchNanos;
+  private long queryNanos;
+
+  /**
+   * Returns the CPU time of the current thread in nanoseconds, or 0 if this is not supported by
+   * the JVM.
+   */
+  public static long currentThreadCpuTime() {
+    return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+  }
+
+  // === recording ===
+
+  /**
+   * Records a processed cell.
+   *
+   * @param dataSize size of the cell's data in bytes
+   * @param wallNanos wall time spent processing the cell
+   * @param cpuNanos CPU time spent processing the cell
+   */
+  public void recordCell(long dataSize, long wallNanos, long cpuNanos) {
+    cells++;
+    bytes += dataSize;
+    cellNanos += wallNanos;
+    cellCpuNanos += cpuNanos;
+  }
+
+  /**
+   * Records an OSH entity which was read from a cell.
+   */
+  public void recordEntity() {
+    entities++;
+  }
+
+  /**
+   * Records an OSH entity which passed the pre-filter and lies (at least partially) inside the
+   * area of interest.
+   */
+  public void recordEntityPassingPreFilter() {
+    entitiesPassingPreFilter++;
+  }
+
+  /**
+   * Records an OSH entity of which at least one version matches the filter.
+   */
+  public void recordEntityPassingFilter() {
+    entitiesPassingFilter++;
+  }
+
+  /**
+   * Records an entity version which was tested against the filter.
+   *
+   * @param passed whether the version matched the filter
+   */
+  public void recordVersion(boolean passed) {
+    versions++;
+    if (passed) {
+      versionsPassingFilter++;
+    }
+  }
+
+  /**
+   * Records a built geometry.
+   *
+   * @param nanos time spent building the geometry
+   */
+  public void recordGeometry(long nanos) {
+    geometriesBuilt++;
+    geometryNanos += nanos;
+  }
+
+  /**
+   * Records a geometry which was clipped to the area of interest.
+   *
+   * @param nanos time spent clipping the geometry
+   */
+  public void recordClipping(long nanos) {
+    geometriesClipped++;
+    clippingNanos += nanos;
+  }
+
+  /**
+   * Records results (snapshots or contributions) which were passed to the map functions and
+   * accumulated.
+   *
+   * @param count the number of results
+   * @param nanos time spent in the map functions and accumulator
+   */
+  public void recordResults(long count, long nanos) {
+    results += count;
+    mapNanos += nanos;
+  }
+
+  /**
+   * Records time spent in combining partial results.
+   */
+  public void recordCombine(long nanos) {
+    combineNanos += nanos;
+  }
+
+  /**
+   * Records time spent in fetching cells from the database.
+   */
+  public void recordFetch(long nanos) {
+    fetchNanos += nanos;
+  }
+
+  /**
+   * Sets the total wall time of the query.
+   */
+  public void setQueryTime(long nanos) {
+    queryNanos = nanos;
+  }
+
+  /**
+   * Adds all metrics of another object to this one.
+   *
+   * @param other the metrics to add
+   * @return this object
+   */
+  public QueryMetrics add(QueryMetrics other) {
+    cells += other.cells;
+    bytes += other.bytes;
+    entities += other.entities;
+    entitiesPassingPreFilter += other.entitiesPassingPreFilter;
+    entitiesPassingFilter += other.entitiesPassingFilter;
+    versions += other.versions;
+    versionsPassingFilter += other.versionsPassingFilter;
+    results += other.results;
+    geometriesBuilt += other.geometriesBuilt;
+    geometriesClipped += other.geometriesClipped;
+    cellNanos += other.cellNanos;
+    cellCpuNanos += other.cellCpuNanos;
+    geometryNanos += other.geometryNanos;
+    clippingNanos += other.clippingNanos;
+    mapNanos += other.mapNanos;
+    combineNanos += other.combineNanos;
+    fetchNanos += other.fetchNanos;
+    queryNanos = Math.max(queryNanos, other.queryNanos);
+    return this;
+  }
+
+  // === results ===
+
+  /**
+   * Returns the number of processed cells.
+   */
+  public long getCells() {
+    return cells;
+  }
+
+  /**
+   * Returns the total size of the data of the processed cells in bytes.
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the number of OSH entities read from the processed cells.
+   */
+  public long getEntities() {
+    return entities;
+  }
+
+  /**
+   * Returns the number of OSH entities which passed the pre-filter and lie (at least partially)
+   * inside the area of interest.
+   */
+  public long getEntitiesPassingPreFilter() {
+    return entitiesPassingPreFilter;
+  }
+
+  /**
+   * Returns the number of OSH entities of which at least one version matches the filter.
+   */
+  public long getEntitiesPassingFilter() {
+    return entitiesPassingFilter;
+  }
+
+  /**
+   * Returns the number of entity versions which were tested against the filter.
+   */
+  public long getVersions() {
+    return versions;
+  }
+
+  /**
+   * Returns the number of entity versions which matched the filter.
+   */
+  public long getVersionsPassingFilter() {
+    return versionsPassingFilter;
+  }
+
+  /**
+   * Returns the number of results (snapshots or contributions) passed to the map functions.
+   */
+  public long getResults() {
+    return results;
+  }
+
+  /**
+   * Returns the number of built geometries.
+   */
+  public long getGeometriesBuilt() {
+    return geometriesBuilt;
+  }
+
+  /**
+   * Returns the number of geometries clipped to the area of interest.
+   */
+  public long getGeometriesClipped() {
+    return geometriesClipped;
+  }
+
+  /**
+   * Returns the total wall time spent processing cells, summed over all threads.
+   */
+  public long getCellTime(TimeUnit unit) {
+    return unit.convert(cellNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the total CPU time spent processing cells, summed over all threads.
+   */
+  public long getCellCpuTime(TimeUnit unit) {
+    return unit.convert(cellCpuNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the total time spent building geometries (excluding clipping).
+   */
+  public long getGeometryTime(TimeUnit unit) {
+    return unit.convert(geometryNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the total time spent clipping geometries to the area of interest.
+   */
+  public long getClippingTime(TimeUnit unit) {
+    return unit.convert(clippingNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the total time spent in the map functions and the accumulator. This includes the
+   * time to build geometries which are only built when requested by a map function.
+   */
+  public long getMapTime(TimeUnit unit) {
+    return unit.convert(mapNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the total time spent combining partial results.
+   */
+  public long getCombineTime(TimeUnit unit) {
+    return unit.convert(combineNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the total time spent fetching and decoding cells from the database, if reported by
+   * the backend.
+   */
+  public long getFetchTime(TimeUnit unit) {
+    return unit.convert(fetchNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the total wall time of the query.
+   */
+  public long getQueryTime(TimeUnit unit) {
+    return unit.convert(queryNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ENGLISH,
+        "cells: %d, bytes: %d, entities: %d (pre-filter: %d, filter: %d), "
+            + "versions: %d (filter: %d), results: %d, geometries: %d (clipped: %d), "
+            + "query time: %dms, cell time: %dms (cpu: %dms), geometry time: %dms, "
+            + "clipping time: %dms, map time: %dms, combine time: %dms, fetch time: %dms",
+        cells, bytes, entities, entitiesPassingPreFilter, entitiesPassingFilter,
+        versions, versionsPassingFilter, results, geometriesBuilt, geometriesClipped,
+        getQueryTime(TimeUnit.MILLISECONDS), getCellTime(TimeUnit.MILLISECONDS),
+        getCellCpuTime(TimeUnit.MILLISECONDS), getGeometryTime(TimeUnit.MILLISECONDS),
+        getClippingTime(TimeUnit.MILLISECONDS), getMapTime(TimeUnit.MILLISECONDS),
+        getCombineTime(TimeUnit.MILLISECONDS), getFetchTime(TimeUnit.MILLISECONDS));
+  }
+}
@@ -202,7 +202,9 @@ public class OSHEntityTimeUtils {
     //     loop, the nextNonMatchTime will be set to t3, in the second iteration it will be set
     //     to t2 and in the third iteration it will be added to the result.
     OSHDBTimestamp nextNonMatchTime = null;
-    for (OSMEntity osm : osh.getVersions()) {
+    var versions = osh.getVersionCursor();
+    while (versions.hasNext()) {
+      OSMEntity osm = versions.next();
       if (osm.isVisible() && (osmEntityFilter == null || osmEntityFilter.test(osm))) {
         if (nextNonMatchTime != null) {
           // the next version of this entity is deleted or doesn't match the filter anymore
@@ -223,7 +225,9 @@ public class OSHEntityTimeUtils {
    * Puts all changeset timestamps into the result of the given OSH entity.
    */
   private static void putChangesetTimestamps(OSHEntity osh, Map<OSHDBTimestamp, Long> result) {
-    for (OSMEntity osm : osh.getVersions()) {
+    var versions = osh.getVersionCursor();
+    while (versions.hasNext()) {
+      OSMEntity osm = versions.next();
       result.putIfAbsent(new OSHDBTimestamp(osm), osm.getChangesetId());
     }
   }
@@ -237,9 +241,7 @@ public class OSHEntityTimeUtils {
       if (osh == null) {
         continue;
       }
-      for (OSMEntity osm : osh.getVersions()) {
-        result.putIfAbsent(new OSHDBTimestamp(osm), osm.getChangesetId());
-      }
+      putChangesetTimestamps(osh, result);
     }
   }
 
@@ -264,7 +266,9 @@ public class OSHEntityTimeUtils {
       OSHEntity osh, Predicate<OSMEntity> osmEntityFilter) {
     Map<OSHEntity, LinkedList<OSHDBTimestamp>> memberTimes = new HashMap<>();
     OSHDBTimestamp nextT = new OSHDBTimestamp(Long.MAX_VALUE);
-    for (OSMEntity osm : osh.getVersions()) {
+    var versions = osh.getVersionCursor();
+    while (versions.hasNext()) {
+      OSMEntity osm = versions.next();
       OSHDBTimestamp thisT = new OSHDBTimestamp(osm);
       // skip versions which are deleted or don't match the given filter
       if (!osm.isVisible() || osmEntityFilter != null && !osmEntityFilter.test(osm)) {
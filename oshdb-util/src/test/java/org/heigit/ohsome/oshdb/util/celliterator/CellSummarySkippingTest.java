@@ -0,0 +1,133 @@
+package org.heigit.ohsome.oshdb.util.celliterator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.stream.Stream;
+import org.heigit.ohsome.oshdb.OSHDBBoundable;
+import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
+import org.heigit.ohsome.oshdb.grid.CellSummary;
+import org.heigit.ohsome.oshdb.grid.GridOSHNodes;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.util.celliterator.helpers.GridOSHFactory;
+import org.heigit.ohsome.oshdb.util.geometry.helpers.OSMXmlReaderTagInterpreter;
+import org.heigit.ohsome.oshdb.util.taginterpreter.TagInterpreter;
+import org.heigit.ohsome.oshdb.util.time.OSHDBTimestamps;
+import org.heigit.ohsome.oshdb.util.xmlreader.OSMXmlReader;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the {@link CellIterator} skips cells based on their {@link CellSummary summary}.
+ */
+class CellSummarySkippingTest {
+  private final GridOSHNodes oshdbDataGridCell;
+  private final OSMXmlReader osmXmlTestData = new OSMXmlReader();
+  private final TagInterpreter areaDecider;
+
+  CellSummarySkippingTest() throws IOException {
+    osmXmlTestData.add("./src/test/resources/different-timestamps/node.osm");
+    areaDecider = new OSMXmlReaderTagInterpreter(osmXmlTestData);
+    oshdbDataGridCell = GridOSHFactory.getGridOSHNodes(osmXmlTestData);
+  }
+
+  /**
+   * Source of the test cell which records whether its entities were requested.
+   */
+  private class RecordingSource implements OSHEntitySource {
+    private final OSHEntitySource source = OSHEntitySource.fromGridOSHEntity(oshdbDataGridCell);
+    private final boolean withSummary;
+    private boolean read = false;
+
+    RecordingSource(boolean withSummary) {
+      this.withSummary = withSummary;
+    }
+
+    @Override
+    public Stream<? extends OSHEntity> getData() {
+      read = true;
+      return source.getData();
+    }
+
+    @Override
+    public Stream<? extends OSHEntity> getData(OSHDBBoundable bbox) {
+      read = true;
+      return source.getData(bbox);
+    }
+
+    @Override
+    public OSHDBBoundingBox getBoundingBox() {
+      return source.getBoundingBox();
+    }
+
+    @Override
+    public CellSummary getSummary() {
+      return withSummary ? source.getSummary() : null;
+    }
+  }
+
+  private CellIterator cellIterator(SortedSet<OSHDBTimestamp> timestamps) {
+    return new CellIterator(
+        timestamps,
+        OSHDBBoundingBox.bboxWgs84Coordinates(-180.0, -90.0, 180.0, 90.0),
+        areaDecider,
+        oshEntity -> true,
+        osmEntity -> true,
+        false
+    );
+  }
+
+  @Test
+  void testSnapshotsBeforeFirstModification() {
+    assertNotNull(oshdbDataGridCell.getSummary());
+    var source = new RecordingSource(true);
+    var result = cellIterator(new OSHDBTimestamps("2000-01-01", "2006-01-01").get())
+        .iterateByTimestamps(source).toList();
+    assertTrue(result.isEmpty());
+    assertFalse(source.read);
+  }
+
+  @Test
+  void testContributionsAfterLastModification() {
+    var source = new RecordingSource(true);
+    var result = cellIterator(new OSHDBTimestamps("2020-01-01", "2021-01-01").get())
+        .iterateByContribution(source).toList();
+    assertTrue(result.isEmpty());
+    assertFalse(source.read);
+  }
+
+  @Test
+  void testCellFilter() {
+    var timestamps = new OSHDBTimestamps("2000-01-01", "2018-01-01").get();
+    var source = new RecordingSource(true);
+    var result = cellIterator(timestamps)
+        .withCellFilter(summary -> false)
+        .iterateByContribution(source).toList();
+    assertTrue(result.isEmpty());
+    assertFalse(source.read);
+  }
+
+  @Test
+  void testMatchingCell() {
+    var timestamps = new OSHDBTimestamps("2000-01-01", "2018-01-01",
+        OSHDBTimestamps.Interval.YEARLY).get();
+    List<Long> expected = cellIterator(timestamps)
+        .iterateByContribution(new RecordingSource(false))
+        .map(contribution -> contribution.osmEntity().getId())
+        .toList();
+    var source = new RecordingSource(true);
+    List<Long> result = cellIterator(timestamps)
+        .withCellFilter(summary -> true)
+        .iterateByContribution(source)
+        .map(contribution -> contribution.osmEntity().getId())
+        .toList();
+    assertTrue(source.read);
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, result);
+  }
+}
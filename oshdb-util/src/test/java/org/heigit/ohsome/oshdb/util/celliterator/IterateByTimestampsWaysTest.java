@@ -2,6 +2,7 @@ package org.heigit.ohsome.oshdb.util.celliterator;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
@@ -373,4 +374,30 @@ class IterateByTimestampsWaysTest {
     // only 4 timestamps in result, because after 03/2012 no more node refs
     assertEquals(4, result.size());
   }
+
+  @Test
+  void testNodeTagChangeReusesGeometry() {
+    // way: node 12 gets a new version in 2014 with unchanged coordinates
+    List<IterateByTimestampEntry> result = (new CellIterator(
+        new OSHDBTimestamps(
+            "2008-01-01T00:00:00Z",
+            "2018-01-01T00:00:00Z",
+            "P1Y"
+        ).get(),
+        OSHDBBoundingBox.bboxWgs84Coordinates(1.0, 1.0, 1.425, 2.0),
+        areaDecider,
+        oshEntity -> oshEntity.getId() == 111,
+        osmEntity -> true,
+        false
+    )).iterateByTimestamps(
+        OSHEntitySource.fromGridOSHEntity(oshdbDataGridCell)
+    ).toList();
+
+    assertEquals(11, result.size());
+    // 2013 and 2014: same geometry objects, clipped and unclipped
+    assertSame(result.get(5).geometry(), result.get(6).geometry());
+    assertSame(result.get(5).unclippedGeometry(), result.get(6).unclippedGeometry());
+    assertTrue(result.get(6).geometry().get().getLength()
+        < result.get(6).unclippedGeometry().get().getLength());
+  }
 }
@@ -56,6 +56,53 @@ public abstract class OSHDBTags extends AbstractSet<OSHDBTag> implements Seriali
    */
   public abstract boolean hasTag(OSHDBTag tag);
 
+  /**
+   * Looks up the values of several tag keys in a single pass over the (key ordered) tags.
+   *
+   * @param keys the tag keys to look up, in ascending order
+   * @param values is filled with the value of each of the keys, or with {@code absent} if the
+   *        key isn't present
+   * @param absent the value to use for keys which aren't present
+   */
+  public void lookupValues(int[] keys, int[] values, int absent) {
+    Arrays.fill(values, 0, keys.length, absent);
+    int k = 0;
+    for (OSHDBTag tag : this) {
+      while (k < keys.length && keys[k] < tag.getKey()) {
+        k++;
+      }
+      if (k == keys.length) {
+        return;
+      }
+      if (keys[k] == tag.getKey()) {
+        values[k] = tag.getValue();
+      }
+    }
+  }
+
+  /**
+   * Looks up the values of several tag keys in a single pass over a key ordered array of
+   * alternating tag keys and values.
+   *
+   * @see #lookupValues(int[], int[], int)
+   */
+  protected static void lookupValues(int[] kvs, int length, int[] keys, int[] values,
+      int absent) {
+    Arrays.fill(values, 0, keys.length, absent);
+    int k = 0;
+    for (int i = 0; i < length; i += 2) {
+      while (k < keys.length && keys[k] < kvs[i]) {
+        k++;
+      }
+      if (k == keys.length) {
+        return;
+      }
+      if (keys[k] == kvs[i]) {
+        values[k] = kvs[i + 1];
+      }
+    }
+  }
+
   /**
    * KV based OSHDBTags.
    *
@@ -149,5 +196,10 @@ public abstract class OSHDBTags extends AbstractSet<OSHDBTag> implements Seriali
       }
       return false;
     }
+
+    @Override
+    public void lookupValues(int[] keys, int[] values, int absent) {
+      lookupValues(tags, tags.length, keys, values, absent);
+    }
   }
 }
@@ -0,0 +1,212 @@
+package org.heigit.ohsome.oshdb.grid;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import org.heigit.ohsome.oshdb.OSHDBBoundable;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+
+/**
+ * Spatial index of the entities of a single grid cell.
+ *
+ * <p>Holds the bounding boxes of all entities of the cell, sorted by the hilbert curve value of
+ * their centers, and packed into blocks of {@value #BLOCK_SIZE} entries. Each block additionally
+ * stores the bounding box of all of its entries, so that queries for small areas only need to look
+ * at the entries of a few blocks. Entities can thus be skipped without decoding them.</p>
+ */
+public final class CellSpatialIndex implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** Number of entries per block. */
+  public static final int BLOCK_SIZE = 16;
+  /** Cells with fewer entities than this don't get a spatial index. */
+  public static final int MIN_ENTITIES = 4 * BLOCK_SIZE;
+
+  private static final int HILBERT_ORDER = 15;
+
+  // position of each entry's entity in the cell
+  private final int[] positions;
+  // minLon, minLat, maxLon, maxLat of each entry
+  private final int[] boxes;
+  // minLon, minLat, maxLon, maxLat of each block
+  private final int[] blockBoxes;
+
+  private CellSpatialIndex(int[] positions, int[] boxes) {
+    this.positions = positions;
+    this.boxes = boxes;
+    int blocks = (positions.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    this.blockBoxes = new int[4 * blocks];
+    for (int block = 0; block < blocks; block++) {
+      int minLon = Integer.MAX_VALUE;
+      int minLat = Integer.MAX_VALUE;
+      int maxLon = Integer.MIN_VALUE;
+      int maxLat = Integer.MIN_VALUE;
+      for (int i = block * BLOCK_SIZE; i < Math.min(positions.length, (block + 1) * BLOCK_SIZE);
+          i++) {
+        minLon = Math.min(minLon, boxes[4 * i]);
+        minLat = Math.min(minLat, boxes[4 * i + 1]);
+        maxLon = Math.max(maxLon, boxes[4 * i + 2]);
+        maxLat = Math.max(maxLat, boxes[4 * i + 3]);
+      }
+      blockBoxes[4 * block] = minLon;
+      blockBoxes[4 * block + 1] = minLat;
+      blockBoxes[4 * block + 2] = maxLon;
+      blockBoxes[4 * block + 3] = maxLat;
+    }
+  }
+
+  /**
+   * Builds the spatial index of the given entities.
+   *
+   * @param entities the entities of a grid cell, in the order in which they are stored
+   * @return the spatial index, or null if there are less than {@link #MIN_ENTITIES} entities
+   */
+  public static CellSpatialIndex build(List<? extends OSHEntity> entities) {
+    if (entities.size() < MIN_ENTITIES) {
+      return null;
+    }
+    int size = entities.size();
+    int[] unsorted = new int[4 * size];
+    long minX = Long.MAX_VALUE;
+    long minY = Long.MAX_VALUE;
+    long maxX = Long.MIN_VALUE;
+    long maxY = Long.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      OSHDBBoundable bbox = entities.get(i).getBoundable();
+      unsorted[4 * i] = bbox.getMinLongitude();
+      unsorted[4 * i + 1] = bbox.getMinLatitude();
+      unsorted[4 * i + 2] = bbox.getMaxLongitude();
+      unsorted[4 * i + 3] = bbox.getMaxLatitude();
+      long x = centerX2(unsorted, i);
+      long y = centerY2(unsorted, i);
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+    }
+    // sort by hilbert value (upper 32 bits) and position (lower 32 bits)
+    int max = (1 << HILBERT_ORDER) - 1;
+    long[] keys = new long[size];
+    for (int i = 0; i < size; i++) {
+      int x = scale(centerX2(unsorted, i), minX, maxX, max);
+      int y = scale(centerY2(unsorted, i), minY, maxY, max);
+      keys[i] = (long) hilbert(x, y) << 32 | i;
+    }
+    Arrays.sort(keys);
+    int[] positions = new int[size];
+    int[] boxes = new int[4 * size];
+    for (int i = 0; i < size; i++) {
+      int pos = (int) keys[i];
+      positions[i] = pos;
+      System.arraycopy(unsorted, 4 * pos, boxes, 4 * i, 4);
+    }
+    return new CellSpatialIndex(positions, boxes);
+  }
+
+  /**
+   * Creates a spatial index from its stored entries.
+   *
+   * @param positions the positions of the entities in the cell, in index order
+   * @param boxes the bounding boxes of the entities (minLon, minLat, maxLon, maxLat), in the same
+   *        order as the positions
+   * @return the spatial index
+   */
+  static CellSpatialIndex of(int[] positions, int[] boxes) {
+    if (boxes.length != 4 * positions.length) {
+      throw new IllegalArgumentException("number of boxes doesn't match number of positions");
+    }
+    return new CellSpatialIndex(positions, boxes);
+  }
+
+  int[] positions() {
+    return positions;
+  }
+
+  int[] boxes() {
+    return boxes;
+  }
+
+  /**
+   * Returns the number of indexed entities.
+   */
+  public int size() {
+    return positions.length;
+  }
+
+  /**
+   * Returns the positions of all entities whose bounding box intersects the given bounding box.
+   *
+   * @param bbox the bounding box to query
+   * @return the positions of the matching entities in the cell, in ascending order
+   */
+  public int[] query(OSHDBBoundable bbox) {
+    int minLon = bbox.getMinLongitude();
+    int minLat = bbox.getMinLatitude();
+    int maxLon = bbox.getMaxLongitude();
+    int maxLat = bbox.getMaxLatitude();
+    int[] result = new int[positions.length];
+    int count = 0;
+    for (int block = 0; 4 * block < blockBoxes.length; block++) {
+      if (!intersects(blockBoxes, block, minLon, minLat, maxLon, maxLat)) {
+        continue;
+      }
+      for (int i = block * BLOCK_SIZE; i < Math.min(positions.length, (block + 1) * BLOCK_SIZE);
+          i++) {
+        if (intersects(boxes, i, minLon, minLat, maxLon, maxLat)) {
+          result[count++] = positions[i];
+        }
+      }
+    }
+    result = Arrays.copyOf(result, count);
+    Arrays.sort(result);
+    return result;
+  }
+
+  private static boolean intersects(int[] boxes, int i, int minLon, int minLat, int maxLon,
+      int maxLat) {
+    return boxes[4 * i + 3] >= minLat
+        && boxes[4 * i + 1] <= maxLat
+        && boxes[4 * i + 2] >= minLon
+        && boxes[4 * i] <= maxLon;
+  }
+
+  private static long centerX2(int[] boxes, int i) {
+    return (long) boxes[4 * i] + boxes[4 * i + 2];
+  }
+
+  private static long centerY2(int[] boxes, int i) {
+    return (long) boxes[4 * i + 1] + boxes[4 * i + 3];
+  }
+
+  private static int scale(long value, long min, long max, int target) {
+    if (max == min) {
+      return 0;
+    }
+    return (int) ((value - min) * target / (max - min));
+  }
+
+  /**
+   * Returns the distance of the given point along a hilbert curve of order
+   * {@value #HILBERT_ORDER}.
+   */
+  private static int hilbert(int x, int y) {
+    int n = 1 << HILBERT_ORDER;
+    int d = 0;
+    for (int s = n / 2; s > 0; s >>= 1) {
+      int rx = (x & s) > 0 ? 1 : 0;
+      int ry = (y & s) > 0 ? 1 : 0;
+      d += s * s * ((3 * rx) ^ ry);
+      // rotate quadrant
+      if (ry == 0) {
+        if (rx == 1) {
+          x = n - 1 - x;
+          y = n - 1 - y;
+        }
+        int t = x;
+        x = y;
+        y = t;
+      }
+    }
+    return d;
+  }
+}
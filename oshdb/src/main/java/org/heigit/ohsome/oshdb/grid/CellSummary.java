@@ -0,0 +1,175 @@
+package org.heigit.ohsome.oshdb.grid;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.osm.OSMEntity;
+import org.heigit.ohsome.oshdb.util.OSHDBTagKey;
+
+/**
+ * Summary of the entities of a single grid cell.
+ *
+ * <p>Holds a bloom filter of the tag keys used by any version of the cell's entities and the range
+ * of their modification timestamps. Queries can use it to skip whole cells which cannot contain
+ * any matching data, without looking at their entities.</p>
+ *
+ * <p>The timestamp range covers the versions of the cell's entities as well as the versions of
+ * the nodes and ways referenced by them, i.e. all modifications which can result in a contribution
+ * of one of the cell's entities.</p>
+ */
+public final class CellSummary implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** Number of bits of the bloom filter per distinct tag key. */
+  public static final int BITS_PER_KEY = 8;
+  /** Maximum size of the bloom filter in 64 bit words. */
+  public static final int MAX_WORDS = 1024;
+
+  private static final int HASHES = 3;
+
+  private final long minTimestamp;
+  private final long maxTimestamp;
+  private final long[] keyFilter;
+
+  private CellSummary(long minTimestamp, long maxTimestamp, long[] keyFilter) {
+    this.minTimestamp = minTimestamp;
+    this.maxTimestamp = maxTimestamp;
+    this.keyFilter = keyFilter;
+  }
+
+  /**
+   * Builds the summary of the given entities.
+   *
+   * @param entities the entities of a grid cell
+   * @return the summary of the entities
+   */
+  public static CellSummary build(Iterable<? extends OSHEntity> entities) {
+    long[] timestamps = {Long.MAX_VALUE, Long.MIN_VALUE};
+    var keys = new BitSet();
+    for (OSHEntity entity : entities) {
+      for (OSHDBTagKey key : entity.getTagKeys()) {
+        if (key.toInt() >= 0) {
+          keys.set(key.toInt());
+        }
+      }
+      addTimestamps(timestamps, entity);
+    }
+    int needed = (keys.cardinality() * BITS_PER_KEY + 63) / 64;
+    int words = needed <= 1 ? needed : Math.min(MAX_WORDS, Integer.highestOneBit(needed - 1) << 1);
+    long[] keyFilter = new long[words];
+    keys.stream().forEach(key -> add(keyFilter, key));
+    return new CellSummary(timestamps[0], timestamps[1], keyFilter);
+  }
+
+  private static void addTimestamps(long[] timestamps, OSHEntity entity) {
+    for (OSMEntity version : entity.getVersions()) {
+      timestamps[0] = Math.min(timestamps[0], version.getEpochSecond());
+      timestamps[1] = Math.max(timestamps[1], version.getEpochSecond());
+    }
+    for (OSHEntity node : entity.getNodes()) {
+      addTimestamps(timestamps, node);
+    }
+    for (OSHEntity way : entity.getWays()) {
+      addTimestamps(timestamps, way);
+    }
+  }
+
+  /**
+   * Creates a summary from its stored values.
+   */
+  static CellSummary of(long minTimestamp, long maxTimestamp, long[] keyFilter) {
+    if (keyFilter.length != 0 && Integer.bitCount(keyFilter.length) != 1) {
+      throw new IllegalArgumentException("size of key filter must be a power of two");
+    }
+    return new CellSummary(minTimestamp, maxTimestamp, keyFilter);
+  }
+
+  long[] keyFilter() {
+    return keyFilter;
+  }
+
+  /**
+   * Returns the oldest modification timestamp of the cell's entities (including the nodes and ways
+   * referenced by them) in seconds since the epoch, or {@link Long#MAX_VALUE} if the cell is empty.
+   */
+  public long getMinTimestamp() {
+    return minTimestamp;
+  }
+
+  /**
+   * Returns the newest modification timestamp of the cell's entities (including the nodes and ways
+   * referenced by them) in seconds since the epoch, or {@link Long#MIN_VALUE} if the cell is empty.
+   */
+  public long getMaxTimestamp() {
+    return maxTimestamp;
+  }
+
+  /**
+   * Checks whether any entity of the cell may use the given tag key.
+   *
+   * @param key the tag key to check
+   * @return false if none of the entities uses the key in any version, true if one of them may
+   *         use it
+   */
+  public boolean mayContainKey(int key) {
+    if (key < 0 || keyFilter.length == 0) {
+      return false;
+    }
+    int bits = keyFilter.length * 64;
+    long hash = mix(key);
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (int) (hash >>> (i * 21)) & (bits - 1);
+      if ((keyFilter[bit >>> 6] & 1L << bit) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void add(long[] keyFilter, int key) {
+    int bits = keyFilter.length * 64;
+    long hash = mix(key);
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (int) (hash >>> (i * 21)) & (bits - 1);
+      keyFilter[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Spreads the bits of the given value over all 64 bits (finalizer of MurmurHash3).
+   */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CellSummary)) {
+      return false;
+    }
+    CellSummary other = (CellSummary) o;
+    return minTimestamp == other.minTimestamp && maxTimestamp == other.maxTimestamp
+        && Arrays.equals(keyFilter, other.keyFilter);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Long.hashCode(minTimestamp) + Long.hashCode(maxTimestamp))
+        + Arrays.hashCode(keyFilter);
+  }
+
+  @Override
+  public String toString() {
+    return "CellSummary(timestamps: " + minTimestamp + " - " + maxTimestamp
+        + ", key filter: " + keyFilter.length * 64 + " bits)";
+  }
+}
@@ -1,7 +1,11 @@
 package org.heigit.ohsome.oshdb.grid;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.NoSuchElementException;
+import org.heigit.ohsome.oshdb.OSHDBBoundable;
 import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
 import org.heigit.ohsome.oshdb.index.XYGrid;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
@@ -11,6 +15,10 @@ public abstract class GridOSHEntity
     implements Serializable {
 
   private static final long serialVersionUID = 1L;
+  // parameters of the 64 bit FNV-1a hash used for data fingerprints
+  private static final long FINGERPRINT_OFFSET = 0xcbf29ce484222325L;
+  private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+
   protected final long id;
   protected final int level;
 
@@ -23,6 +31,8 @@ public abstract class GridOSHEntity
 
   protected final int[] index;
   protected final byte[] data;
+  protected final CellSpatialIndex spatialIndex;
+  protected final CellSummary summary;
 
   /**
    * Base constructor {@code GridOSHEntity}.
@@ -30,6 +40,26 @@ public abstract class GridOSHEntity
   protected GridOSHEntity(final long id, final int level, final long baseId,
       final long baseTimestamp, final int baseLongitude, final int baseLatitude, final int[] index,
       final byte[] data) {
+    this(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, index, data, null);
+  }
+
+  /**
+   * Base constructor {@code GridOSHEntity} with an (optional) spatial index of the entities.
+   */
+  protected GridOSHEntity(final long id, final int level, final long baseId,
+      final long baseTimestamp, final int baseLongitude, final int baseLatitude, final int[] index,
+      final byte[] data, final CellSpatialIndex spatialIndex) {
+    this(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, index, data, spatialIndex,
+        null);
+  }
+
+  /**
+   * Base constructor {@code GridOSHEntity} with an (optional) spatial index and an (optional)
+   * summary of the entities.
+   */
+  protected GridOSHEntity(final long id, final int level, final long baseId,
+      final long baseTimestamp, final int baseLongitude, final int baseLatitude, final int[] index,
+      final byte[] data, final CellSpatialIndex spatialIndex, final CellSummary summary) {
 
     this.id = id;
     this.level = level;
@@ -40,6 +70,8 @@ public abstract class GridOSHEntity
 
     this.index = index;
     this.data = data;
+    this.spatialIndex = spatialIndex;
+    this.summary = summary;
   }
 
   public long getId() {
@@ -50,8 +82,143 @@ public abstract class GridOSHEntity
     return level;
   }
 
+  /**
+   * Returns the size of the encoded entity data stored in this cell in bytes.
+   */
+  public int getDataSize() {
+    return data.length;
+  }
+
+  /**
+   * Returns a fingerprint of the entity data stored in this cell, e.g. to detect whether a cell
+   * was changed by a later import.
+   *
+   * <p>Cells storing the same data have the same fingerprint, any change of the data changes it
+   * (with very high probability). The spatial index and summary of the cell are derived from its
+   * data and are not part of the fingerprint.</p>
+   *
+   * @return a 64 bit fingerprint of the data of this cell
+   */
+  public long getDataFingerprint() {
+    long hash = fingerprint(FINGERPRINT_OFFSET, getClass().getName().hashCode());
+    hash = fingerprint(hash, id);
+    hash = fingerprint(hash, level);
+    hash = fingerprint(hash, baseId);
+    hash = fingerprint(hash, baseTimestamp);
+    hash = fingerprint(hash, baseLongitude);
+    hash = fingerprint(hash, baseLatitude);
+    hash = fingerprint(hash, index);
+    return fingerprint(hash, data);
+  }
+
+  protected static long fingerprint(long hash, long value) {
+    for (int i = 0; i < 64; i += 8) {
+      hash = (hash ^ ((value >>> i) & 0xff)) * FINGERPRINT_PRIME;
+    }
+    return hash;
+  }
+
+  protected static long fingerprint(long hash, int[] values) {
+    hash = fingerprint(hash, values.length);
+    for (int value : values) {
+      hash = fingerprint(hash, value);
+    }
+    return hash;
+  }
+
+  protected static long fingerprint(long hash, byte[] bytes) {
+    hash = fingerprint(hash, bytes.length);
+    for (byte b : bytes) {
+      hash = (hash ^ (b & 0xff)) * FINGERPRINT_PRIME;
+    }
+    return hash;
+  }
+
   public abstract Iterable<? extends OSHEntity> getEntities();
 
+  /**
+   * Returns the entity stored at the given position of this cell.
+   */
+  protected abstract OSHEntity getEntity(int pos);
+
+  /**
+   * Returns a copy of this cell with a {@link CellSpatialIndex spatial index} of its entities.
+   * Cells with only a few entities don't get an index.
+   */
+  public abstract GridOSHEntity withSpatialIndex();
+
+  /**
+   * Builds the spatial index of the entities of this cell.
+   */
+  protected CellSpatialIndex buildSpatialIndex() {
+    var entities = new ArrayList<OSHEntity>(index.length);
+    getEntities().forEach(entities::add);
+    return CellSpatialIndex.build(entities);
+  }
+
+  /**
+   * Returns the spatial index of the entities of this cell.
+   *
+   * @return the spatial index, or null if this cell doesn't have one
+   */
+  public CellSpatialIndex getSpatialIndex() {
+    return spatialIndex;
+  }
+
+  /**
+   * Returns a copy of this cell with a {@link CellSummary summary} of its entities.
+   */
+  public abstract GridOSHEntity withSummary();
+
+  /**
+   * Builds the summary of the entities of this cell.
+   */
+  protected CellSummary buildSummary() {
+    return CellSummary.build(getEntities());
+  }
+
+  /**
+   * Returns the summary of the entities of this cell.
+   *
+   * @return the summary, or null if this cell doesn't have one
+   */
+  public CellSummary getSummary() {
+    return summary;
+  }
+
+  /**
+   * Returns the entities of this cell which may intersect the given bounding box.
+   *
+   * <p>If the cell has a {@link #getSpatialIndex() spatial index}, only entities whose bounding
+   * box intersects the given one are returned (and decoded). Otherwise, all entities are
+   * returned.</p>
+   *
+   * @param bbox the bounding box to query
+   * @return the entities of this cell, in the order in which they are stored
+   */
+  public Iterable<? extends OSHEntity> getEntities(OSHDBBoundable bbox) {
+    if (spatialIndex == null) {
+      return getEntities();
+    }
+    final int[] positions = spatialIndex.query(bbox);
+    return () -> new Iterator<OSHEntity>() {
+      private int pos = 0;
+
+      @Override
+      public boolean hasNext() {
+        return pos < positions.length;
+      }
+
+      @Override
+      public OSHEntity next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return getEntity(positions[pos++]);
+      }
+    };
+  }
+
   @Override
   public String toString() {
     if (id >= 0) {
@@ -0,0 +1,363 @@
+package org.heigit.ohsome.oshdb.grid;
+
+import static org.heigit.ohsome.oshdb.util.bytearray.ByteArrayWrapper.readS64;
+import static org.heigit.ohsome.oshdb.util.bytearray.ByteArrayWrapper.readU64;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import org.heigit.ohsome.oshdb.impl.osh.NodeDictionary;
+import org.heigit.ohsome.oshdb.util.bytearray.ByteArrayOutputWrapper;
+
+/**
+ * Binary encoding of {@link GridOSHEntity grid cells}.
+ *
+ * <p>The layout of an encoded cell is:</p>
+ * <pre>
+ * magic (2 bytes: 'O', 'G')
+ * format version (1 byte)
+ * cell type (1 byte: 0 = nodes, 1 = ways, 2 = relations)
+ * id (varint), level (varint)
+ * baseId, baseTimestamp, baseLongitude, baseLatitude (zigzag varints)
+ * [version 3 and 4] summary: minTimestamp, maxTimestamp (zigzag varints),
+ *     tag key bloom filter length (varint), bloom filter words (8 bytes each, big endian)
+ * index length (varint), index entries (delta encoded varints)
+ * [version 2 to 4] spatial index length (varint, 0 = no spatial index), spatial index entries:
+ *     entity position (varint), minLon, minLat (zigzag varints, delta encoded),
+ *     width, height (varints)
+ * [version 4] node dictionary length (varint), node record offsets (delta encoded varints),
+ *     node data length (varint), node data (raw bytes)
+ * data length (varint), data (raw bytes)
+ * </pre>
+ *
+ * <p>Only cells of ways or relations with a {@link NodeDictionary node dictionary} are written in
+ * version 4 of the format. Cells without a {@link CellSummary summary} are written in version 2,
+ * cells which additionally don't have a {@link CellSpatialIndex spatial index} in version 1, so
+ * that they can still be read by older versions of the oshdb. The summary is stored in front of the
+ * entity index, so that it can be read cheaply via {@link #decodeSummary(byte[])}.</p>
+ *
+ * <p>Cells written with plain java serialization (as in databases produced by older versions of
+ * the oshdb) are recognized by their stream header and are still decoded via
+ * {@link ObjectInputStream}.</p>
+ */
+public class GridOSHEntityCodec {
+  private static final byte MAGIC_0 = 'O';
+  private static final byte MAGIC_1 = 'G';
+  private static final byte[] JAVA_SERIALIZATION_MAGIC = {(byte) 0xAC, (byte) 0xED};
+
+  /** Current version of the binary cell format. */
+  public static final int VERSION = 4;
+  private static final int VERSION_WITHOUT_NODE_DICTIONARY = 3;
+  private static final int VERSION_WITHOUT_SUMMARY = 2;
+  private static final int VERSION_WITHOUT_SPATIAL_INDEX = 1;
+
+  private static final int TYPE_NODES = 0;
+  private static final int TYPE_WAYS = 1;
+  private static final int TYPE_RELATIONS = 2;
+
+  private GridOSHEntityCodec() {}
+
+  /**
+   * Encodes a grid cell in the current version of the binary cell format.
+   *
+   * @param grid the grid cell to encode
+   * @return the encoded cell
+   */
+  public static byte[] encode(GridOSHEntity grid) {
+    final int type;
+    if (grid instanceof GridOSHNodes) {
+      type = TYPE_NODES;
+    } else if (grid instanceof GridOSHWays) {
+      type = TYPE_WAYS;
+    } else if (grid instanceof GridOSHRelations) {
+      type = TYPE_RELATIONS;
+    } else {
+      throw new IllegalArgumentException("unsupported grid cell type: " + grid.getClass());
+    }
+    var out = new ByteArrayOutputWrapper(grid.data.length + 4 * grid.index.length + 64);
+    out.writeByte(MAGIC_0);
+    out.writeByte(MAGIC_1);
+    final NodeDictionary nodeDictionary = nodeDictionary(grid);
+    final CellSummary summary =
+        nodeDictionary != null && grid.summary == null ? grid.buildSummary() : grid.summary;
+    final int version;
+    if (nodeDictionary != null) {
+      version = VERSION;
+    } else if (summary != null) {
+      version = VERSION_WITHOUT_NODE_DICTIONARY;
+    } else if (grid.spatialIndex != null) {
+      version = VERSION_WITHOUT_SUMMARY;
+    } else {
+      version = VERSION_WITHOUT_SPATIAL_INDEX;
+    }
+    out.writeByte(version);
+    out.writeByte(type);
+    out.writeU64(grid.id);
+    out.writeU32(grid.level);
+    out.writeS64(grid.baseId);
+    out.writeS64(grid.baseTimestamp);
+    out.writeS64(grid.baseLongitude);
+    out.writeS64(grid.baseLatitude);
+    if (version >= VERSION_WITHOUT_NODE_DICTIONARY) {
+      writeSummary(out, summary);
+    }
+    out.writeU32(grid.index.length);
+    int last = 0;
+    for (int offset : grid.index) {
+      out.writeU32(offset - last);
+      last = offset;
+    }
+    if (version >= VERSION_WITHOUT_NODE_DICTIONARY) {
+      if (grid.spatialIndex == null) {
+        out.writeU32(0);
+      } else {
+        writeSpatialIndex(out, grid.spatialIndex);
+      }
+    } else if (version == VERSION_WITHOUT_SUMMARY) {
+      writeSpatialIndex(out, grid.spatialIndex);
+    }
+    if (version == VERSION) {
+      writeNodeDictionary(out, nodeDictionary);
+    }
+    out.writeU32(grid.data.length);
+    out.writeByteArray(grid.data, 0, grid.data.length);
+    var result = new byte[out.length()];
+    System.arraycopy(out.array(), 0, result, 0, result.length);
+    return result;
+  }
+
+  private static NodeDictionary nodeDictionary(GridOSHEntity grid) {
+    if (grid instanceof GridOSHWays) {
+      return ((GridOSHWays) grid).getNodeDictionary();
+    } else if (grid instanceof GridOSHRelations) {
+      return ((GridOSHRelations) grid).getNodeDictionary();
+    }
+    return null;
+  }
+
+  private static void writeNodeDictionary(ByteArrayOutputWrapper out, NodeDictionary dictionary) {
+    var index = dictionary.getIndex();
+    out.writeU32(index.length);
+    int last = 0;
+    for (int offset : index) {
+      out.writeU32(offset - last);
+      last = offset;
+    }
+    var data = dictionary.getData();
+    out.writeU32(data.length);
+    out.writeByteArray(data, 0, data.length);
+  }
+
+  private static void writeSummary(ByteArrayOutputWrapper out, CellSummary summary) {
+    out.writeS64(summary.getMinTimestamp());
+    out.writeS64(summary.getMaxTimestamp());
+    var keyFilter = summary.keyFilter();
+    out.writeU32(keyFilter.length);
+    var bytes = ByteBuffer.allocate(8 * keyFilter.length);
+    bytes.asLongBuffer().put(keyFilter);
+    out.writeByteArray(bytes.array(), 0, bytes.capacity());
+  }
+
+  private static void writeSpatialIndex(ByteArrayOutputWrapper out, CellSpatialIndex index) {
+    var positions = index.positions();
+    var boxes = index.boxes();
+    out.writeU32(positions.length);
+    long lastLon = 0;
+    long lastLat = 0;
+    for (int i = 0; i < positions.length; i++) {
+      out.writeU32(positions[i]);
+      out.writeS64(boxes[4 * i] - lastLon);
+      out.writeS64(boxes[4 * i + 1] - lastLat);
+      out.writeU64((long) boxes[4 * i + 2] - boxes[4 * i]);
+      out.writeU64((long) boxes[4 * i + 3] - boxes[4 * i + 1]);
+      lastLon = boxes[4 * i];
+      lastLat = boxes[4 * i + 1];
+    }
+  }
+
+  /**
+   * Decodes a grid cell, either from the binary cell format or from a legacy java serialized
+   * object.
+   *
+   * @param bytes the encoded cell
+   * @return the decoded grid cell
+   * @throws IOException if the bytes are neither a valid binary cell nor a java serialized cell
+   */
+  public static GridOSHEntity decode(byte[] bytes) throws IOException {
+    if (isLegacy(bytes)) {
+      return decodeLegacy(bytes);
+    }
+    return decode(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Decodes a grid cell in the binary cell format from the remaining bytes of a buffer.
+   *
+   * <p>Only the entity data of the cell is copied out of the buffer, which makes this suitable
+   * for reading cells directly from (memory mapped) off-heap buffers.</p>
+   *
+   * @param buffer the buffer holding exactly one encoded cell between its position and limit
+   * @return the decoded grid cell
+   * @throws IOException if the buffer doesn't contain a valid binary cell
+   */
+  public static GridOSHEntity decode(ByteBuffer buffer) throws IOException {
+    try {
+      if (buffer.remaining() < 4 || buffer.get() != MAGIC_0 || buffer.get() != MAGIC_1) {
+        throw new IOException("unknown grid cell encoding");
+      }
+      final byte version = readVersion(buffer);
+      final byte type = buffer.get();
+      final long id = readU64(buffer);
+      final int level = (int) readU64(buffer);
+      final long baseId = readS64(buffer);
+      final long baseTimestamp = readS64(buffer);
+      final int baseLongitude = (int) readS64(buffer);
+      final int baseLatitude = (int) readS64(buffer);
+      final CellSummary summary =
+          version >= VERSION_WITHOUT_NODE_DICTIONARY ? readSummary(buffer) : null;
+      final int[] index = new int[(int) readU64(buffer)];
+      int last = 0;
+      for (int i = 0; i < index.length; i++) {
+        last += (int) readU64(buffer);
+        index[i] = last;
+      }
+      final CellSpatialIndex spatialIndex =
+          version == VERSION_WITHOUT_SPATIAL_INDEX ? null : readSpatialIndex(buffer);
+      final NodeDictionary nodeDictionary = version == VERSION
+          ? readNodeDictionary(buffer, baseLongitude, baseLatitude) : null;
+      final int dataLength = (int) readU64(buffer);
+      if (dataLength != buffer.remaining()) {
+        throw new IOException("truncated grid cell data");
+      }
+      final byte[] data = new byte[dataLength];
+      buffer.get(data);
+      switch (type) {
+        case TYPE_NODES:
+          if (nodeDictionary != null) {
+            throw new IOException("grid cell of nodes with node dictionary");
+          }
+          return new GridOSHNodes(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude,
+              index, data, spatialIndex, summary);
+        case TYPE_WAYS:
+          return new GridOSHWays(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude,
+              index, data, spatialIndex, summary, nodeDictionary);
+        case TYPE_RELATIONS:
+          return new GridOSHRelations(id, level, baseId, baseTimestamp, baseLongitude,
+              baseLatitude, index, data, spatialIndex, summary, nodeDictionary);
+        default:
+          throw new IOException("unknown grid cell type: " + type);
+      }
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      throw new IOException("truncated grid cell data", e);
+    }
+  }
+
+  /**
+   * Decodes only the {@link CellSummary summary} of an encoded grid cell, without reading its
+   * entity index and data.
+   *
+   * @param bytes the encoded cell
+   * @return the summary of the cell, or null if the cell was encoded without a summary (or with
+   *         plain java serialization)
+   * @throws IOException if the bytes are neither a valid binary cell nor a java serialized cell
+   */
+  public static CellSummary decodeSummary(byte[] bytes) throws IOException {
+    if (isLegacy(bytes)) {
+      return null;
+    }
+    var buffer = ByteBuffer.wrap(bytes);
+    try {
+      if (buffer.remaining() < 4 || buffer.get() != MAGIC_0 || buffer.get() != MAGIC_1) {
+        throw new IOException("unknown grid cell encoding");
+      }
+      if (readVersion(buffer) < VERSION_WITHOUT_NODE_DICTIONARY) {
+        return null;
+      }
+      buffer.get(); // type
+      readU64(buffer); // id
+      readU64(buffer); // level
+      for (int i = 0; i < 4; i++) {
+        readS64(buffer); // baseId, baseTimestamp, baseLongitude, baseLatitude
+      }
+      return readSummary(buffer);
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      throw new IOException("truncated grid cell data", e);
+    }
+  }
+
+  private static byte readVersion(ByteBuffer buffer) throws IOException {
+    final byte version = buffer.get();
+    if (version < VERSION_WITHOUT_SPATIAL_INDEX || version > VERSION) {
+      throw new IOException("unsupported grid cell format version: " + version);
+    }
+    return version;
+  }
+
+  private static CellSummary readSummary(ByteBuffer buffer) throws IOException {
+    final long minTimestamp = readS64(buffer);
+    final long maxTimestamp = readS64(buffer);
+    final long[] keyFilter = new long[(int) readU64(buffer)];
+    buffer.slice().asLongBuffer().get(keyFilter);
+    buffer.position(buffer.position() + 8 * keyFilter.length);
+    try {
+      return CellSummary.of(minTimestamp, maxTimestamp, keyFilter);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("invalid grid cell summary", e);
+    }
+  }
+
+  private static NodeDictionary readNodeDictionary(ByteBuffer buffer, int baseLongitude,
+      int baseLatitude) throws IOException {
+    final int[] index = new int[(int) readU64(buffer)];
+    int last = 0;
+    for (int i = 0; i < index.length; i++) {
+      last += (int) readU64(buffer);
+      index[i] = last;
+    }
+    final byte[] data = new byte[(int) readU64(buffer)];
+    buffer.get(data);
+    return NodeDictionary.of(index, data, baseLongitude, baseLatitude);
+  }
+
+  private static CellSpatialIndex readSpatialIndex(ByteBuffer buffer) throws IOException {
+    final int size = (int) readU64(buffer);
+    if (size == 0) {
+      return null;
+    }
+    final int[] positions = new int[size];
+    final int[] boxes = new int[4 * size];
+    long lastLon = 0;
+    long lastLat = 0;
+    for (int i = 0; i < size; i++) {
+      positions[i] = (int) readU64(buffer);
+      lastLon += readS64(buffer);
+      lastLat += readS64(buffer);
+      boxes[4 * i] = (int) lastLon;
+      boxes[4 * i + 1] = (int) lastLat;
+      boxes[4 * i + 2] = (int) (lastLon + readU64(buffer));
+      boxes[4 * i + 3] = (int) (lastLat + readU64(buffer));
+    }
+    return CellSpatialIndex.of(positions, boxes);
+  }
+
+  /**
+   * Checks whether the given bytes hold a cell stored with plain java serialization.
+   *
+   * @param bytes the encoded cell
+   * @return true if the bytes start with the java serialization stream header
+   */
+  public static boolean isLegacy(byte[] bytes) {
+    return bytes.length >= 2
+        && bytes[0] == JAVA_SERIALIZATION_MAGIC[0] && bytes[1] == JAVA_SERIALIZATION_MAGIC[1];
+  }
+
+  private static GridOSHEntity decodeLegacy(byte[] bytes) throws IOException {
+    try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (GridOSHEntity) in.readObject();
+    } catch (ClassNotFoundException | ClassCastException e) {
+      throw new IOException("invalid java serialized grid cell", e);
+    }
+  }
+}
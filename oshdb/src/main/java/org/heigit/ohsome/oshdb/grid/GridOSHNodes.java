@@ -15,7 +15,8 @@ public class GridOSHNodes extends GridOSHEntity implements Iterable<OSHNode> {
   private static final long serialVersionUID = 1L;
 
   /**
-   * Create a new {@code GridOSHNode} while rebasing the input nodes.
+   * Create a new {@code GridOSHNode} while rebasing the input nodes. The new cell gets a
+   * {@link CellSummary summary} of the nodes.
    *
    * @param id the grid id
    * @param level zoom level
@@ -43,19 +44,46 @@ public class GridOSHNodes extends GridOSHEntity implements Iterable<OSHNode> {
     }
     final byte[] data = out.toByteArray();
     return new GridOSHNodes(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, index,
-        data);
+        data, null, CellSummary.build(list));
   }
 
-  private GridOSHNodes(final long id, final int level, final long baseId, final long baseTimestamp,
+  GridOSHNodes(final long id, final int level, final long baseId, final long baseTimestamp,
       final int baseLongitude, final int baseLatitude, final int[] index, final byte[] data) {
     super(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, index, data);
   }
 
+  GridOSHNodes(final long id, final int level, final long baseId, final long baseTimestamp,
+      final int baseLongitude, final int baseLatitude, final int[] index, final byte[] data,
+      final CellSpatialIndex spatialIndex, final CellSummary summary) {
+    super(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, index, data,
+        spatialIndex, summary);
+  }
+
   @Override
   public Iterable<? extends OSHEntity> getEntities() {
     return this;
   }
 
+  @Override
+  protected OSHNode getEntity(int pos) {
+    int offset = index[pos];
+    int length = (pos < index.length - 1 ? index[pos + 1] : data.length) - offset;
+    return OSHNodeImpl.instance(data, offset, length, baseId, baseTimestamp, (int) baseLongitude,
+        (int) baseLatitude);
+  }
+
+  @Override
+  public GridOSHNodes withSpatialIndex() {
+    return new GridOSHNodes(id, level, baseId, baseTimestamp, (int) baseLongitude,
+        (int) baseLatitude, index, data, buildSpatialIndex(), summary);
+  }
+
+  @Override
+  public GridOSHNodes withSummary() {
+    return new GridOSHNodes(id, level, baseId, baseTimestamp, (int) baseLongitude,
+        (int) baseLatitude, index, data, spatialIndex, buildSummary());
+  }
+
   @Override
   public Iterator<OSHNode> iterator() {
     return new Iterator<>() {
@@ -66,11 +94,7 @@ public class GridOSHNodes extends GridOSHEntity implements Iterable<OSHNode> {
         if (!hasNext()) {
           throw new NoSuchElementException();
         }
-        int offset = index[pos];
-        int length = (pos < index.length - 1 ? index[pos + 1] : data.length) - offset;
-        pos++;
-        return OSHNodeImpl.instance(data, offset, length, baseId, baseTimestamp,
-            (int) baseLongitude, (int) baseLatitude);
+        return getEntity(pos++);
       }
 
       @Override
@@ -2,9 +2,11 @@ package org.heigit.ohsome.oshdb.grid;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import org.heigit.ohsome.oshdb.impl.osh.NodeDictionary;
 import org.heigit.ohsome.oshdb.impl.osh.OSHRelationImpl;
 import org.heigit.ohsome.oshdb.osh.OSHEntities;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
@@ -14,8 +16,12 @@ public class GridOSHRelations extends GridOSHEntity implements Iterable<OSHRelat
 
   private static final long serialVersionUID = 1L;
 
+  private final NodeDictionary nodeDictionary;
+
   /**
-   * Creates a new {@code GridOSHRelations} while rebase/compacting the input relations.
+   * Creates a new {@code GridOSHRelations} while rebase/compacting the input relations. The new
+   * cell gets a {@link CellSummary summary} of the relations, and a
+   * {@link CellSpatialIndex spatial index} if it contains enough relations.
    *
    * @param id the grid id
    * @param level zoom level
@@ -29,6 +35,31 @@ public class GridOSHRelations extends GridOSHEntity implements Iterable<OSHRelat
   public static GridOSHRelations compact(final long id, final int level, final long baseId,
           final long baseTimestamp, final int baseLongitude, final int baseLatitude,
           final List<OSHRelation> list) {
+    return compact(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, list,
+        false);
+  }
+
+  /**
+   * Creates a new {@code GridOSHRelations} while rebase/compacting the input entities, optionally
+   * storing the node histories referenced by them in a {@link NodeDictionary node dictionary} of
+   * the cell. With a node dictionary, nodes which are shared by several entities of the cell are
+   * stored and decoded only once.
+   *
+   * @param id the grid id
+   * @param level zoom level
+   * @param baseId base of id for compact entities
+   * @param baseTimestamp base of timemstamps for compact entities
+   * @param baseLongitude base of longitude for compact entities
+   * @param baseLatitude base of latitued for compact entities
+   * @param list list of entities
+   * @param nodeDictionary whether to store the referenced nodes in a node dictionary
+   * @return new instance of this grid
+   */
+  public static GridOSHRelations compact(final long id, final int level, final long baseId,
+          final long baseTimestamp, final int baseLongitude, final int baseLatitude,
+          final List<OSHRelation> list, final boolean nodeDictionary) {
+    final NodeDictionary.Builder dictionary =
+        nodeDictionary ? new NodeDictionary.Builder(baseLongitude, baseLatitude) : null;
 
     int offset = 0;
     final ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -37,20 +68,38 @@ public class GridOSHRelations extends GridOSHEntity implements Iterable<OSHRelat
       final OSHRelation osh = list.get(i);
       final ByteBuffer buffer =
           OSHRelationImpl.buildRecord(OSHEntities.toList(osh.getVersions()),
-              osh.getNodes(), osh.getWays(), baseId, baseTimestamp, baseLongitude, baseLatitude);
+              osh.getNodes(), osh.getWays(), baseId, baseTimestamp, baseLongitude, baseLatitude,
+              dictionary);
       index[i] = offset;
       out.write(buffer.array(), 0, buffer.remaining());
       offset += buffer.remaining();
     }
     final byte[] data = out.toByteArray();
     return new GridOSHRelations(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude,
-        index, data);
+        index, data, CellSpatialIndex.build(list), CellSummary.build(list),
+        dictionary == null ? null : dictionary.build());
   }
 
-  private GridOSHRelations(final long id, final int level, final long baseId,
+  GridOSHRelations(final long id, final int level, final long baseId,
       final long baseTimestamp, final int baseLongitude, final int baseLatitude,
       final int[] index, final byte[] data) {
-    super(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, index, data);
+    this(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, index, data, null, null);
+  }
+
+  GridOSHRelations(final long id, final int level, final long baseId, final long baseTimestamp,
+      final int baseLongitude, final int baseLatitude, final int[] index, final byte[] data,
+      final CellSpatialIndex spatialIndex, final CellSummary summary) {
+    this(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, index, data,
+        spatialIndex, summary, null);
+  }
+
+  GridOSHRelations(final long id, final int level, final long baseId, final long baseTimestamp,
+      final int baseLongitude, final int baseLatitude, final int[] index, final byte[] data,
+      final CellSpatialIndex spatialIndex, final CellSummary summary,
+      final NodeDictionary nodeDictionary) {
+    super(id, level, baseId, baseTimestamp, baseLongitude, baseLatitude, index, data,
+        spatialIndex, summary);
+    this.nodeDictionary = nodeDictionary;
   }
 
   @Override
@@ -58,6 +107,63 @@ public class GridOSHRelations extends GridOSHEntity implements Iterable<OSHRelat
     return this;
   }
 
+  @Override
+  protected OSHRelation getEntity(int pos) {
+    int offset = index[pos];
+    int length = (pos < index.length - 1 ? index[pos + 1] : data.length) - offset;
+    return OSHRelationImpl.instance(data, offset, length, baseId, baseTimestamp, (int) baseLongitude,
+        (int) baseLatitude, nodeDictionary);
+  }
+
+  @Override
+  public GridOSHRelations withSpatialIndex() {
+    return new GridOSHRelations(id, level, baseId, baseTimestamp, (int) baseLongitude,
+        (int) baseLatitude, index, data, buildSpatialIndex(), summary,
+        nodeDictionary);
+  }
+
+  @Override
+  public GridOSHRelations withSummary() {
+    return new GridOSHRelations(id, level, baseId, baseTimestamp, (int) baseLongitude,
+        (int) baseLatitude, index, data, spatialIndex, buildSummary(),
+        nodeDictionary);
+  }
+
+  /**
+   * Returns the {@link NodeDictionary node dictionary} of this cell, or null if the nodes are
+   * embedded in the records of the cell's entities.
+   */
+  public NodeDictionary getNodeDictionary() {
+    return nodeDictionary;
+  }
+
+  @Override
+  public long getDataFingerprint() {
+    long hash = super.getDataFingerprint();
+    if (nodeDictionary != null) {
+      hash = fingerprint(hash, nodeDictionary.getIndex());
+      hash = fingerprint(hash, nodeDictionary.getData());
+    }
+    return hash;
+  }
+
+  /**
+   * Returns a copy of this cell which stores the node histories referenced by its entities in a
+   * {@link NodeDictionary node dictionary}, along with a summary and spatial index of the
+   * entities.
+   *
+   * @return this cell if it already has a node dictionary, otherwise a re-encoded copy of it
+   */
+  public GridOSHRelations withNodeDictionary() {
+    if (nodeDictionary != null) {
+      return this;
+    }
+    final List<OSHRelation> entities = new ArrayList<>(index.length);
+    this.forEach(entities::add);
+    return compact(id, level, baseId, baseTimestamp, (int) baseLongitude, (int) baseLatitude,
+        entities, true);
+  }
+
   @Override
   public Iterator<OSHRelation> iterator() {
     return new Iterator<>() {
@@ -68,11 +174,7 @@ public class GridOSHRelations extends GridOSHEntity implements Iterable<OSHRelat
         if (!hasNext()) {
           throw new NoSuchElementException();
         }
-        int offset = index[pos];
-        int length = (pos < index.length - 1 ? index[pos + 1] : data.length) - offset;
-        pos++;
-        return OSHRelationImpl.instance(data, offset, length, baseId, baseTimestamp,
-            (int) baseLongitude, (int) baseLatitude);
+        return getEntity(pos++);
       }
 
       @Override
@@ -0,0 +1,150 @@
+package org.heigit.ohsome.oshdb.impl.osh;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import org.heigit.ohsome.oshdb.osh.OSHEntities;
+import org.heigit.ohsome.oshdb.osh.OSHNode;
+import org.heigit.ohsome.oshdb.util.bytearray.ByteArrayOutputWrapper;
+
+/**
+ * The node histories referenced by the ways and relations of a grid cell, each stored only once.
+ *
+ * <p>Way and relation records built with a dictionary don't embed the full history of their nodes,
+ * but only reference them by their position in the dictionary. Nodes which are shared by several
+ * ways (or relations) of a cell are thus stored and decoded only once per cell.</p>
+ *
+ * <p>The node records are encoded with a base id and base timestamp of 0, and the base coordinates
+ * of the cell.</p>
+ */
+public final class NodeDictionary implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final int[] index;
+  private final byte[] data;
+  private final int baseLongitude;
+  private final int baseLatitude;
+
+  private transient OSHNode[] nodes;
+
+  private NodeDictionary(int[] index, byte[] data, int baseLongitude, int baseLatitude) {
+    this.index = index;
+    this.data = data;
+    this.baseLongitude = baseLongitude;
+    this.baseLatitude = baseLatitude;
+  }
+
+  /**
+   * Creates a dictionary from its stored node records.
+   *
+   * @param index the offsets of the node records in {@code data}
+   * @param data the node records
+   * @param baseLongitude base of longitude the node records are encoded with
+   * @param baseLatitude base of latitude the node records are encoded with
+   * @return the dictionary
+   */
+  public static NodeDictionary of(int[] index, byte[] data, int baseLongitude, int baseLatitude) {
+    return new NodeDictionary(index, data, baseLongitude, baseLatitude);
+  }
+
+  /**
+   * Returns the offsets of the node records in {@link #getData() the data} of this dictionary.
+   */
+  public int[] getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the node records of this dictionary.
+   */
+  public byte[] getData() {
+    return data;
+  }
+
+  /**
+   * Returns the number of nodes in this dictionary.
+   */
+  public int size() {
+    return index.length;
+  }
+
+  /**
+   * Returns the node at the given position of this dictionary. Each node is only decoded once.
+   *
+   * @param pos the position of the node
+   * @return the node
+   */
+  public OSHNode get(int pos) {
+    var decoded = nodes;
+    if (decoded == null) {
+      decoded = new OSHNode[index.length];
+      nodes = decoded;
+    }
+    var node = decoded[pos];
+    if (node == null) {
+      int offset = index[pos];
+      int length = (pos < index.length - 1 ? index[pos + 1] : data.length) - offset;
+      node = OSHNodeImpl.instance(data, offset, length, 0, 0, baseLongitude, baseLatitude);
+      decoded[pos] = node;
+    }
+    return node;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("NodeDictionary(nodes: %d, bytes: %d)", index.length, data.length);
+  }
+
+  /**
+   * Collects the nodes of the ways and relations of a grid cell into a {@link NodeDictionary}.
+   */
+  public static class Builder {
+    private final int baseLongitude;
+    private final int baseLatitude;
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private final ByteArrayOutputWrapper data = new ByteArrayOutputWrapper();
+    private int[] index = new int[16];
+
+    public Builder(int baseLongitude, int baseLatitude) {
+      this.baseLongitude = baseLongitude;
+      this.baseLatitude = baseLatitude;
+    }
+
+    /**
+     * Adds a node to the dictionary, unless a node with the same id has already been added.
+     *
+     * @param node the node
+     * @return the position of the node in the dictionary
+     */
+    public int add(OSHNode node) {
+      var pos = positions.get(node.getId());
+      if (pos != null) {
+        return pos;
+      }
+      int next = positions.size();
+      if (next == index.length) {
+        var grown = new int[2 * index.length];
+        System.arraycopy(index, 0, grown, 0, index.length);
+        index = grown;
+      }
+      index[next] = data.length();
+      ByteBuffer record = OSHNodeImpl.buildRecord(OSHEntities.toList(node.getVersions()), 0, 0,
+          baseLongitude, baseLatitude);
+      data.writeByteArray(record.array(), 0, record.remaining());
+      positions.put(node.getId(), next);
+      return next;
+    }
+
+    /**
+     * Creates the dictionary of all added nodes.
+     */
+    public NodeDictionary build() {
+      var nodeIndex = new int[positions.size()];
+      System.arraycopy(index, 0, nodeIndex, 0, nodeIndex.length);
+      var nodeData = new byte[data.length()];
+      System.arraycopy(data.array(), 0, nodeData, 0, nodeData.length);
+      return new NodeDictionary(nodeIndex, nodeData, baseLongitude, baseLatitude);
+    }
+  }
+}
@@ -14,6 +14,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import javax.annotation.Nonnull;
 import org.heigit.ohsome.oshdb.OSHDBBoundable;
+import org.heigit.ohsome.oshdb.OSHDBTag;
 import org.heigit.ohsome.oshdb.OSHDBTags;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
 import org.heigit.ohsome.oshdb.osm.OSMCoordinates;
@@ -531,21 +532,36 @@ public abstract class OSHEntityImpl
     readBaseAndKeys(wrapper, p, baseId, baseTimestamp, baseLongitude, baseLatitude);
   }
 
+  /**
+   * Iterator over the versions of an OSH entity.
+   *
+   * <p>In cursor mode (see {@link OSHEntity#getVersionCursor()}), the iterator returns the same
+   * {@link EntityView} instance on every call to {@link #next()}, which is a view of the current
+   * state of the iterator. Tags are decoded into a reused buffer in this mode.</p>
+   */
   protected abstract static class EntityVersionIterator<T extends OSMEntity>
       implements Iterator<T> {
     protected final ByteArrayWrapper wrapper;
     protected final long id;
     protected final long baseTimestamp;
+    protected final boolean cursor;
     protected int version = 0;
     protected long timestamp = 0;
     protected long changeset = 0;
     protected int userId = 0;
     protected int[] keyValues = new int[0];
+    protected int keyValuesLength = 0;
 
-    protected  EntityVersionIterator(ByteArrayWrapper wrapper, long id, long baseTimestamp) {
+    protected EntityVersionIterator(ByteArrayWrapper wrapper, long id, long baseTimestamp) {
+      this(wrapper, id, baseTimestamp, false);
+    }
+
+    protected EntityVersionIterator(ByteArrayWrapper wrapper, long id, long baseTimestamp,
+        boolean cursor) {
       this.wrapper = wrapper;
       this.id = id;
       this.baseTimestamp = baseTimestamp;
+      this.cursor = cursor;
     }
 
     @Override
@@ -571,7 +587,13 @@ public abstract class OSHEntityImpl
 
       if ((changed & CHANGED_TAGS) != 0) {
         var size = wrapper.readU32();
-        keyValues = new int[size];
+        if (!cursor) {
+          // the array is handed over to the created entity
+          keyValues = new int[size];
+        } else if (keyValues.length < size) {
+          keyValues = new int[Math.max(size, keyValues.length * 2)];
+        }
+        keyValuesLength = size;
         for (var i = 0; i < size; i += 2) {
           keyValues[i] = wrapper.readU32();
           keyValues[i + 1] = wrapper.readU32();
@@ -582,6 +604,157 @@ public abstract class OSHEntityImpl
     }
 
     protected abstract T extension(byte changed);
+
+    /**
+     * A mutable view of the current version of the iterator.
+     */
+    protected abstract class EntityView implements OSMEntity {
+      private static final long serialVersionUID = 1L;
+      private final transient OSHDBTags tags = new TagsView();
+
+      @Override
+      public long getId() {
+        return id;
+      }
+
+      @Override
+      public int getVersion() {
+        return Math.abs(version);
+      }
+
+      @Override
+      public long getEpochSecond() {
+        return baseTimestamp + timestamp;
+      }
+
+      @Override
+      public long getChangesetId() {
+        return changeset;
+      }
+
+      @Override
+      public int getUserId() {
+        return userId;
+      }
+
+      @Override
+      public boolean isVisible() {
+        return version >= 0;
+      }
+
+      @Override
+      public OSHDBTags getTags() {
+        return tags;
+      }
+
+      @Override
+      public String toString() {
+        return String.format("ID:%d V:+%d+ TS:%d CS:%d VIS:%s UID:%d TAGS:%S", getId(),
+            getVersion(), getEpochSecond(), getChangesetId(), isVisible(), getUserId(),
+            getTags());
+      }
+    }
+
+    /**
+     * A view of the tags of the current version of the iterator.
+     */
+    private class TagsView extends OSHDBTags {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public int size() {
+        return keyValuesLength / 2;
+      }
+
+      @Override
+      public Iterator<OSHDBTag> iterator() {
+        return new Iterator<>() {
+          private final int[] kvs = keyValues;
+          private final int length = keyValuesLength;
+          private int pos = 0;
+
+          @Override
+          public boolean hasNext() {
+            return pos < length;
+          }
+
+          @Override
+          public OSHDBTag next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            var tag = new OSHDBTag(kvs[pos], kvs[pos + 1]);
+            pos += 2;
+            return tag;
+          }
+        };
+      }
+
+      @Override
+      public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < keyValuesLength; i++) {
+          result = 31 * result + keyValues[i];
+        }
+        return result;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+        return super.equals(obj);
+      }
+
+      @Override
+      public boolean hasTagKey(int key) {
+        for (int i = 0; i < keyValuesLength; i += 2) {
+          if (keyValues[i] == key) {
+            return true;
+          }
+          if (keyValues[i] > key) {
+            return false;
+          }
+        }
+        return false;
+      }
+
+      @Override
+      public boolean hasTagKeyExcluding(int key, int[] uninterestingValues) {
+        for (int i = 0; i < keyValuesLength; i += 2) {
+          if (keyValues[i] == key) {
+            for (int value : uninterestingValues) {
+              if (keyValues[i + 1] == value) {
+                return false;
+              }
+            }
+            return true;
+          }
+          if (keyValues[i] > key) {
+            return false;
+          }
+        }
+        return false;
+      }
+
+      @Override
+      public boolean hasTag(int key, int value) {
+        for (int i = 0; i < keyValuesLength; i += 2) {
+          if (keyValues[i] == key) {
+            return keyValues[i + 1] == value;
+          }
+        }
+        return false;
+      }
+
+      @Override
+      public boolean hasTag(OSHDBTag tag) {
+        return hasTag(tag.getKey(), tag.getValue());
+      }
+
+      @Override
+      public void lookupValues(int[] keys, int[] values, int absent) {
+        lookupValues(keyValues, keyValuesLength, keys, values, absent);
+      }
+    }
   }
 
   /**
@@ -5,8 +5,10 @@ import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import org.heigit.ohsome.oshdb.osh.OSHNode;
 import org.heigit.ohsome.oshdb.osm.OSM;
+import org.heigit.ohsome.oshdb.osm.OSMCoordinates;
 import org.heigit.ohsome.oshdb.osm.OSMEntity;
 import org.heigit.ohsome.oshdb.osm.OSMNode;
 import org.heigit.ohsome.oshdb.osm.OSMType;
@@ -88,7 +90,13 @@ public class OSHNodeImpl extends OSHEntityImpl implements OSHNode, Iterable<OSMN
   @Override
   public Iterator<OSMNode> iterator() {
     var wrapper = ByteArrayWrapper.newInstance(data, dataOffset, dataLength);
-    return new VersionIterator(wrapper, id, baseTimestamp, baseLongitude, baseLatitude);
+    return new VersionIterator(wrapper, id, baseTimestamp, baseLongitude, baseLatitude, false);
+  }
+
+  @Override
+  public Iterator<OSMNode> getVersionCursor() {
+    var wrapper = ByteArrayWrapper.newInstance(data, dataOffset, dataLength);
+    return new VersionIterator(wrapper, id, baseTimestamp, baseLongitude, baseLatitude, true);
   }
 
   public static OSHNodeImpl build(List<OSMNode> versions) {
@@ -175,14 +183,16 @@ public class OSHNodeImpl extends OSHEntityImpl implements OSHNode, Iterable<OSMN
   private static class VersionIterator extends EntityVersionIterator<OSMNode> {
     private final int baseLongitude;
     private final int baseLatitude;
+    private final NodeView view;
     private int longitude = 0;
     private int latitude = 0;
 
     private VersionIterator(ByteArrayWrapper wrapper, long id, long baseTimestamp,
-        int baseLongitude, int baseLatitude) {
-      super(wrapper, id, baseTimestamp);
+        int baseLongitude, int baseLatitude, boolean cursor) {
+      super(wrapper, id, baseTimestamp, cursor);
       this.baseLongitude = baseLongitude;
       this.baseLatitude = baseLatitude;
+      this.view = cursor ? new NodeView() : null;
     }
 
     @Override
@@ -192,9 +202,42 @@ public class OSHNodeImpl extends OSHEntityImpl implements OSHNode, Iterable<OSMN
         latitude = wrapper.readS32() + latitude;
       }
 
+      if (cursor) {
+        return view;
+      }
       return OSM.node(id, version, baseTimestamp + timestamp, changeset, userId, keyValues,
           version > 0 ? baseLongitude + longitude : 0, version > 0 ? baseLatitude + latitude : 0);
     }
+
+    private class NodeView extends EntityView implements OSMNode {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public double getLongitude() {
+        return OSMCoordinates.toWgs84(getLon());
+      }
+
+      @Override
+      public double getLatitude() {
+        return OSMCoordinates.toWgs84(getLat());
+      }
+
+      @Override
+      public int getLon() {
+        return version > 0 ? baseLongitude + longitude : 0;
+      }
+
+      @Override
+      public int getLat() {
+        return version > 0 ? baseLatitude + latitude : 0;
+      }
+
+      @Override
+      public String toString() {
+        return String.format(Locale.ENGLISH, "NODE: %s %.7f:%.7f", super.toString(),
+            getLongitude(), getLatitude());
+      }
+    }
   }
 
   private static class SerializationProxy extends OSHEntitySerializationProxy {
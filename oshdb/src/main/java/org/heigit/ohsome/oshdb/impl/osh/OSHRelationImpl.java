@@ -10,7 +10,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import org.heigit.ohsome.oshdb.OSHDBBoundable;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
 import org.heigit.ohsome.oshdb.osh.OSHEntities;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
 import org.heigit.ohsome.oshdb.osh.OSHNode;
@@ -37,6 +41,7 @@ public class OSHRelationImpl extends OSHEntityImpl
 
   private static final int HEADER_HAS_NODES = 1 << 3;
   private static final int HEADER_HAS_WAYS = 1 << 4;
+  private static final int HEADER_NODE_DICTIONARY = 1 << 5;
 
   private final int[] nodeIndex;
   private final int nodeDataOffset;
@@ -46,6 +51,10 @@ public class OSHRelationImpl extends OSHEntityImpl
   private final int wayDataOffset;
   private final int wayDataLength;
 
+  // positions of the nodes in the node dictionary, null if the nodes are embedded in the record
+  private final int[] nodeRefs;
+  private final NodeDictionary nodeDictionary;
+
   public static OSHRelationImpl instance(final byte[] data, final int offset, final int length) {
     return instance(data, offset, length, 0, 0, 0, 0);
   }
@@ -56,13 +65,42 @@ public class OSHRelationImpl extends OSHEntityImpl
   public static OSHRelationImpl instance(final byte[] data, final int offset, final int length,
       final long baseId, final long baseTimestamp, final int baseLongitude,
       final int baseLatitude) {
+    return instance(data, offset, length, baseId, baseTimestamp, baseLongitude, baseLatitude,
+        null);
+  }
+
+  /**
+   * Creates an instances of {@code OSHRelationImpl} from the given byte array, whose nodes (and
+   * the nodes of its ways) may be stored in the given {@link NodeDictionary node dictionary} of
+   * its grid cell.
+   */
+  public static OSHRelationImpl instance(final byte[] data, final int offset, final int length,
+      final long baseId, final long baseTimestamp, final int baseLongitude,
+      final int baseLatitude, final NodeDictionary nodeDictionary) {
 
     var wrapper = ByteArrayWrapper.newInstance(data, offset, length);
     var commonProps = new CommonEntityProps(data, offset, length);
     readCommon(wrapper, commonProps, baseId, baseTimestamp, baseLongitude, baseLatitude);
+    final boolean dictionary = (commonProps.getHeader() & HEADER_NODE_DICTIONARY) != 0;
+    if (dictionary && nodeDictionary == null) {
+      throw new IllegalArgumentException("relation record references a node dictionary");
+    }
     final int[] nodeIndex;
     final int nodeDataLength;
-    if ((commonProps.getHeader() & HEADER_HAS_NODES) != 0) {
+    int[] nodeRefs = null;
+    if (dictionary) {
+      nodeRefs = new int[0];
+      if ((commonProps.getHeader() & HEADER_HAS_NODES) != 0) {
+        nodeRefs = new int[wrapper.readU32()];
+        int pos = 0;
+        for (int i = 0; i < nodeRefs.length; i++) {
+          pos = wrapper.readS32() + pos;
+          nodeRefs[i] = pos;
+        }
+      }
+      nodeIndex = new int[0];
+      nodeDataLength = 0;
+    } else if ((commonProps.getHeader() & HEADER_HAS_NODES) != 0) {
       final int nodeIndexLength = wrapper.readU32();
       nodeIndex = new int[nodeIndexLength];
       int index = 0;
@@ -102,13 +140,16 @@ public class OSHRelationImpl extends OSHEntityImpl
     commonProps.setDataLength(
         commonProps.getLength() - (commonProps.getDataOffset() - commonProps.getOffset()));
     return new OSHRelationImpl(commonProps, nodeIndex, nodeDataOffset, nodeDataLength,
-        wayIndex, wayDataOffset, wayDataLength);
+        wayIndex, wayDataOffset, wayDataLength, nodeRefs, dictionary ? nodeDictionary : null);
   }
 
   private OSHRelationImpl(final CommonEntityProps p, final int[] nodeIndex,
       final int nodeDataOffset, final int nodeDataLength, final int[] wayIndex,
-      final int wayDataOffset, final int wayDataLength) {
+      final int wayDataOffset, final int wayDataLength, final int[] nodeRefs,
+      final NodeDictionary nodeDictionary) {
     super(p);
+    this.nodeRefs = nodeRefs;
+    this.nodeDictionary = nodeDictionary;
     this.nodeIndex = nodeIndex;
     this.nodeDataOffset = nodeDataOffset;
     this.nodeDataLength = nodeDataLength;
@@ -126,14 +167,25 @@ public class OSHRelationImpl extends OSHEntityImpl
   @Override
   public Iterator<OSMRelation> iterator() {
     var wrapper = ByteArrayWrapper.newInstance(data, dataOffset, dataLength);
-    return new VersionIterator(wrapper, id, baseTimestamp, getNodes(), getWays());
+    return new VersionIterator(wrapper, id, baseTimestamp, this, false);
+  }
+
+  @Override
+  public Iterator<OSMRelation> getVersionCursor() {
+    var wrapper = ByteArrayWrapper.newInstance(data, dataOffset, dataLength);
+    return new VersionIterator(wrapper, id, baseTimestamp, this, true);
   }
 
   private transient List<OSHNode> nodes = null;
 
   @Override
   public List<OSHNode> getNodes() {
-    if (nodes == null) {
+    if (nodes == null && nodeRefs != null) {
+      nodes = new ArrayList<>(nodeRefs.length);
+      for (int pos : nodeRefs) {
+        nodes.add(nodeDictionary.get(pos));
+      }
+    } else if (nodes == null) {
       nodes = new ArrayList<>(nodeIndex.length);
       for (int index = 0; index < nodeIndex.length; index++) {
         int offset = nodeIndex[index];
@@ -157,7 +209,7 @@ public class OSHRelationImpl extends OSHEntityImpl
         int offset = wayIndex[index];
         int length = (index < wayIndex.length - 1 ? wayIndex[index + 1] : wayDataLength) - offset;
         OSHWay w = OSHWayImpl.instance(data, wayDataOffset + offset, length, 0, 0, baseLongitude,
-            baseLatitude);
+            baseLatitude, nodeDictionary);
         ways.add(w);
       }
     }
@@ -191,6 +243,22 @@ public class OSHRelationImpl extends OSHEntityImpl
       final Collection<OSHNode> nodes,
       final Collection<OSHWay> ways, final long baseId, final long baseTimestamp,
       final int baseLongitude, final int baseLatitude) {
+    return buildRecord(versions, nodes, ways, baseId, baseTimestamp, baseLongitude, baseLatitude,
+        null);
+  }
+
+  /**
+   * Creates a {@code OSHRelation} bases on the given list of relation versions, whose nodes and the
+   * nodes of whose ways are added to the given {@link NodeDictionary node dictionary} instead of
+   * being embedded in the record. The record can only be read together with the built dictionary.
+   *
+   * @param nodeDictionary the builder of the node dictionary, or null to embed the nodes
+   */
+  public static ByteBuffer buildRecord(final List<OSMRelation> versions,
+      final Collection<OSHNode> nodes,
+      final Collection<OSHWay> ways, final long baseId, final long baseTimestamp,
+      final int baseLongitude, final int baseLatitude,
+      final NodeDictionary.Builder nodeDictionary) {
     Collections.sort(versions, VERSION_REVERSE_ORDER);
 
     var lastMembers = new OSMMember[0];
@@ -226,12 +294,16 @@ public class OSHRelationImpl extends OSHEntityImpl
         }
       }
 
-      ByteBuffer buffer = OSHNodeImpl.buildRecord(OSHEntities.toList(node.getVersions()), 0, 0,
-          baseLongitude, baseLatitude);
       nodeOffsets.put(node.getId(), idx);
-      nodeByteArrayIndex[idx++] = offset;
-      offset = buffer.remaining();
-      nodeData.writeByteArray(buffer.array(), 0, buffer.remaining());
+      if (nodeDictionary != null) {
+        nodeByteArrayIndex[idx++] = nodeDictionary.add(node);
+      } else {
+        ByteBuffer buffer = OSHNodeImpl.buildRecord(OSHEntities.toList(node.getVersions()), 0, 0,
+            baseLongitude, baseLatitude);
+        nodeByteArrayIndex[idx++] = offset;
+        offset = buffer.remaining();
+        nodeData.writeByteArray(buffer.array(), 0, buffer.remaining());
+      }
     }
 
     Map<Long, Integer> wayOffsets = new HashMap<>();
@@ -248,7 +320,7 @@ public class OSHRelationImpl extends OSHEntityImpl
       maxLat = Math.max(maxLat, bbox.getMaxLatitude());
 
       ByteBuffer buffer = OSHWayImpl.buildRecord(OSHEntities.toList(way.getVersions()),
-          way.getNodes(), 0, 0, baseLongitude, baseLatitude);
+          way.getNodes(), 0, 0, baseLongitude, baseLatitude, nodeDictionary);
       wayOffsets.put(way.getId(), idx);
       wayByteArrayIndex[idx++] = offset;
       offset = buffer.remaining();
@@ -317,6 +389,9 @@ public class OSHRelationImpl extends OSHEntityImpl
     if (!ways.isEmpty()) {
       header |= HEADER_HAS_WAYS;
     }
+    if (nodeDictionary != null && (!nodes.isEmpty() || !ways.isEmpty())) {
+      header |= HEADER_NODE_DICTIONARY;
+    }
 
     var buffer = builder.writeCommon(header, versions.get(0).getId() - baseId,
         true,
@@ -324,7 +399,14 @@ public class OSHRelationImpl extends OSHEntityImpl
         minLat  - baseLatitude,
         maxLon, maxLat);
 
-    if (!nodes.isEmpty()) {
+    if (!nodes.isEmpty() && (header & HEADER_NODE_DICTIONARY) != 0) {
+      buffer.writeU32(nodeByteArrayIndex.length);
+      int lastPos = 0;
+      for (int i = 0; i < nodeByteArrayIndex.length; i++) {
+        buffer.writeS32(nodeByteArrayIndex[i] - lastPos);
+        lastPos = nodeByteArrayIndex[i];
+      }
+    } else if (!nodes.isEmpty()) {
       buffer.writeU32(nodeByteArrayIndex.length);
       for (int i = 0; i < nodeByteArrayIndex.length; i++) {
         buffer.writeU32(nodeByteArrayIndex[i]);
@@ -347,6 +429,11 @@ public class OSHRelationImpl extends OSHEntityImpl
   }
 
   private Object writeReplace() {
+    if (nodeDictionary != null) {
+      // the serialized relation must not depend on the node dictionary of its grid cell
+      return new SerializationProxy(build(OSHEntities.toList(getVersions()), getNodes(),
+          getWays(), baseId, baseTimestamp, baseLongitude, baseLatitude));
+    }
     return new SerializationProxy(this);
   }
 
@@ -356,42 +443,68 @@ public class OSHRelationImpl extends OSHEntityImpl
   }
 
   private static class VersionIterator extends EntityVersionIterator<OSMRelation> {
-    private final List<OSHNode> nodes;
-    private final List<OSHWay> ways;
-
+    private final OSHRelationImpl osh;
+    private final RelationView view;
     private OSMMember[] members = new OSMMember[0];
+    // position of the not yet decoded members of the current version in cursor mode, or -1
+    private int membersPos = -1;
 
     private VersionIterator(ByteArrayWrapper wrapper, long id, long baseTimestamp,
-        List<OSHNode> nodes, List<OSHWay> ways) {
-      super(wrapper, id, baseTimestamp);
-      this.nodes = nodes;
-      this.ways = ways;
+        OSHRelationImpl osh, boolean cursor) {
+      super(wrapper, id, baseTimestamp, cursor);
+      this.osh = osh;
+      this.view = cursor ? new RelationView() : null;
     }
 
     @Override
     protected OSMRelation extension(byte changed) {
       if ((changed & CHANGED_MEMBERS) != 0) {
-        int size = wrapper.readU32();
-        members = new OSMMember[size];
-        var member = new OSMMember(0, null, 0, null);
-        for (int i = 0; i < size; i++) {
-          member = readMembers(member);
-          members[i] = member;
+        if (cursor) {
+          // members are only decoded if they are actually requested
+          membersPos = wrapper.getPos();
+          skipMembers();
+        } else {
+          members = readMembers();
         }
       }
+      if (cursor) {
+        return view;
+      }
       return OSM.relation(id, version, baseTimestamp + timestamp, changeset, userId,
           keyValues, members);
     }
 
+    private OSMMember[] readMembers() {
+      int size = wrapper.readU32();
+      var result = new OSMMember[size];
+      var member = new OSMMember(0, null, 0, null);
+      for (int i = 0; i < size; i++) {
+        member = readMembers(member);
+        result[i] = member;
+      }
+      return result;
+    }
+
+    private void skipMembers() {
+      int size = wrapper.readU32();
+      for (int i = 0; i < size; i++) {
+        var memberType = OSMType.fromInt(wrapper.readU32());
+        if (memberType == OSMType.RELATION || wrapper.readU32() == 0) {
+          wrapper.readS64();
+        }
+        wrapper.readU32();
+      }
+    }
+
     private OSMMember readMembers(OSMMember m) {
       var memberType = OSMType.fromInt(wrapper.readU32());
       switch (memberType) {
         case NODE: {
-          m = readMember(memberType, m, nodes);
+          m = readMember(memberType, m, osh.getNodes());
           break;
         }
         case WAY: {
-          m = readMember(memberType, m, ways);
+          m = readMember(memberType, m, osh.getWays());
           break;
         }
         case RELATION: {
@@ -422,6 +535,40 @@ public class OSHRelationImpl extends OSHEntityImpl
       var memberRole = wrapper.readU32();
       return new OSMMember(memberId, memberType, memberRole, member);
     }
+
+    private class RelationView extends EntityView implements OSMRelation {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public OSMMember[] getMembers() {
+        if (membersPos >= 0) {
+          var pos = wrapper.getPos();
+          wrapper.seek(membersPos);
+          members = readMembers();
+          wrapper.seek(pos);
+          membersPos = -1;
+        }
+        return members;
+      }
+
+      @Override
+      public Stream<OSMEntity> getMemberEntities(OSHDBTimestamp timestamp,
+          Predicate<OSMMember> memberFilter) {
+        return Arrays.stream(getMembers()).filter(memberFilter).map(OSMMember::getEntity)
+            .filter(Objects::nonNull).map(entity -> OSHEntities.getByTimestamp(entity, timestamp));
+      }
+
+      @Override
+      public Stream<OSMEntity> getMemberEntities(OSHDBTimestamp timestamp) {
+        return getMemberEntities(timestamp, osmMember -> true);
+      }
+
+      @Override
+      public String toString() {
+        return String.format("Relation-> %s Mem:%s", super.toString(),
+            Arrays.toString(getMembers()));
+      }
+    }
   }
 
   private static class SerializationProxy extends OSHEntitySerializationProxy {
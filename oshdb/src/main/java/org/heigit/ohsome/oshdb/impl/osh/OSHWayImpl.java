@@ -3,12 +3,16 @@ package org.heigit.ohsome.oshdb.impl.osh;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+import org.heigit.ohsome.oshdb.OSHDBTimestamp;
 import org.heigit.ohsome.oshdb.osh.OSHEntities;
 import org.heigit.ohsome.oshdb.osh.OSHEntity;
 import org.heigit.ohsome.oshdb.osh.OSHNode;
@@ -31,10 +35,14 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
 
   private static final int CHANGED_REFS = 1 << 2;
   private static final byte HEADER_HAS_NO_NODES = 1 << 3;
+  private static final byte HEADER_NODE_DICTIONARY = 1 << 4;
 
   private final int[] nodeIndex;
   private final int nodeDataOffset;
   private final int nodeDataLength;
+  // positions of the nodes in the node dictionary, null if the nodes are embedded in the record
+  private final int[] nodeRefs;
+  private final NodeDictionary nodeDictionary;
 
   public static OSHWayImpl instance(final byte[] data, final int offset, final int length) {
     return instance(data, offset, length, 0, 0, 0, 0);
@@ -46,6 +54,17 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
   public static OSHWayImpl instance(final byte[] data, final int offset, final int length,
       final long baseId, final long baseTimestamp, final int baseLongitude,
       final int baseLatitude) {
+    return instance(data, offset, length, baseId, baseTimestamp, baseLongitude, baseLatitude,
+        null);
+  }
+
+  /**
+   * Creates an instances of {@code OSHWayImpl} from the given byte array, whose nodes may be
+   * stored in the given {@link NodeDictionary node dictionary} of its grid cell.
+   */
+  public static OSHWayImpl instance(final byte[] data, final int offset, final int length,
+      final long baseId, final long baseTimestamp, final int baseLongitude,
+      final int baseLatitude, final NodeDictionary nodeDictionary) {
 
     var wrapper = ByteArrayWrapper.newInstance(data, offset, length);
     var commonProps = new CommonEntityProps(data, offset, length);
@@ -53,7 +72,20 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
 
     final int[] nodeIndex;
     final int nodeDataLength;
-    if ((commonProps.getHeader() & HEADER_HAS_NO_NODES) == 0) {
+    int[] nodeRefs = null;
+    if ((commonProps.getHeader() & HEADER_NODE_DICTIONARY) != 0) {
+      if (nodeDictionary == null) {
+        throw new IllegalArgumentException("way record references a node dictionary");
+      }
+      nodeRefs = new int[wrapper.readU32()];
+      var pos = 0;
+      for (var i = 0; i < nodeRefs.length; i++) {
+        pos = wrapper.readS32() + pos;
+        nodeRefs[i] = pos;
+      }
+      nodeIndex = new int[0];
+      nodeDataLength = 0;
+    } else if ((commonProps.getHeader() & HEADER_HAS_NO_NODES) == 0) {
       final int nodeIndexLength = wrapper.readU32();
       nodeIndex = new int[nodeIndexLength];
       var index = 0;
@@ -70,15 +102,18 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
     commonProps.setDataOffset(nodeDataOffset + nodeDataLength);
     commonProps.setDataLength(
         commonProps.getLength() - (commonProps.getDataOffset() - commonProps.getOffset()));
-    return new OSHWayImpl(commonProps, nodeIndex, nodeDataOffset, nodeDataLength);
+    return new OSHWayImpl(commonProps, nodeIndex, nodeDataOffset, nodeDataLength, nodeRefs,
+        nodeRefs == null ? null : nodeDictionary);
   }
 
   private OSHWayImpl(final CommonEntityProps p, final int[] nodeIndex, final int nodeDataOffset,
-      final int nodeDataLength) {
+      final int nodeDataLength, final int[] nodeRefs, final NodeDictionary nodeDictionary) {
     super(p);
     this.nodeIndex = nodeIndex;
     this.nodeDataOffset = nodeDataOffset;
     this.nodeDataLength = nodeDataLength;
+    this.nodeRefs = nodeRefs;
+    this.nodeDictionary = nodeDictionary;
   }
 
   @Override
@@ -89,14 +124,25 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
   @Override
   public Iterator<OSMWay> iterator() {
     var wrapper = ByteArrayWrapper.newInstance(data, dataOffset, dataLength);
-    return new VersionIterator(wrapper, id, baseTimestamp, getNodes());
+    return new VersionIterator(wrapper, id, baseTimestamp, this, false);
+  }
+
+  @Override
+  public Iterator<OSMWay> getVersionCursor() {
+    var wrapper = ByteArrayWrapper.newInstance(data, dataOffset, dataLength);
+    return new VersionIterator(wrapper, id, baseTimestamp, this, true);
   }
 
   private transient List<OSHNode> nodes = null;
 
   @Override
   public List<OSHNode> getNodes() {
-    if (nodes == null) {
+    if (nodes == null && nodeRefs != null) {
+      nodes = new ArrayList<>(nodeRefs.length);
+      for (int pos : nodeRefs) {
+        nodes.add(nodeDictionary.get(pos));
+      }
+    } else if (nodes == null) {
       nodes = new ArrayList<>(nodeIndex.length);
       long lastId = 0;
       for (var index = 0; index < nodeIndex.length; index++) {
@@ -134,6 +180,19 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
   public static ByteBuffer buildRecord(List<OSMWay> versions, Collection<OSHNode> nodes,
       final long baseId, final long baseTimestamp, final int baseLongitude,
       final int baseLatitude) {
+    return buildRecord(versions, nodes, baseId, baseTimestamp, baseLongitude, baseLatitude, null);
+  }
+
+  /**
+   * Creates a {@code OSHway} bases on the given list of way versions, whose nodes are added to the
+   * given {@link NodeDictionary node dictionary} instead of being embedded in the record. The
+   * record can only be read together with the built dictionary.
+   *
+   * @param nodeDictionary the builder of the node dictionary, or null to embed the nodes
+   */
+  public static ByteBuffer buildRecord(List<OSMWay> versions, Collection<OSHNode> nodes,
+      final long baseId, final long baseTimestamp, final int baseLongitude,
+      final int baseLatitude, final NodeDictionary.Builder nodeDictionary) {
     Collections.sort(versions, VERSION_REVERSE_ORDER);
     ByteArrayOutputWrapper output = new ByteArrayOutputWrapper();
 
@@ -154,11 +213,15 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
       final long nodeId = node.getId();
 
       nodeOffsets.put(node.getId(), idx);
-      nodeByteArrayIndex[idx++] = offset;
-      ByteBuffer buffer = OSHNodeImpl.buildRecord(OSHEntities.toList(node.getVersions()), lastId, 0,
-          baseLongitude, baseLatitude);
-      offset = buffer.remaining();
-      nodeData.writeByteArray(buffer.array(), 0, buffer.remaining());
+      if (nodeDictionary != null) {
+        nodeByteArrayIndex[idx++] = nodeDictionary.add(node);
+      } else {
+        nodeByteArrayIndex[idx++] = offset;
+        ByteBuffer buffer = OSHNodeImpl.buildRecord(OSHEntities.toList(node.getVersions()), lastId,
+            0, baseLongitude, baseLatitude);
+        offset = buffer.remaining();
+        nodeData.writeByteArray(buffer.array(), 0, buffer.remaining());
+      }
 
       Iterator<OSMNode> osmItr = node.getVersions().iterator();
       while (osmItr.hasNext()) {
@@ -206,6 +269,8 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
     byte header = builder.getHeader(versions.size() > 1);
     if (nodes.isEmpty()) {
       header |= HEADER_HAS_NO_NODES;
+    } else if (nodeDictionary != null) {
+      header |= HEADER_NODE_DICTIONARY;
     }
 
     var buffer = builder.writeCommon(header, versions.get(0).getId() - baseId,
@@ -214,7 +279,14 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
         minLat  - baseLatitude,
         maxLon, maxLat);
 
-    if ((header & HEADER_HAS_NO_NODES) == 0) {
+    if ((header & HEADER_NODE_DICTIONARY) != 0) {
+      buffer.writeU32(nodeByteArrayIndex.length);
+      int lastPos = 0;
+      for (int i = 0; i < nodeByteArrayIndex.length; i++) {
+        buffer.writeS32(nodeByteArrayIndex[i] - lastPos);
+        lastPos = nodeByteArrayIndex[i];
+      }
+    } else if ((header & HEADER_HAS_NO_NODES) == 0) {
       buffer.writeU32(nodeByteArrayIndex.length);
       for (int i = 0; i < nodeByteArrayIndex.length; i++) {
         buffer.writeU32(nodeByteArrayIndex[i]);
@@ -245,44 +317,104 @@ public class OSHWayImpl extends OSHEntityImpl implements OSHWay, Iterable<OSMWay
   }
 
   private Object writeReplace() {
+    if (nodeDictionary != null) {
+      // the serialized way must not depend on the node dictionary of its grid cell
+      return new SerializationProxy((OSHWayImpl) build(OSHEntities.toList(getVersions()),
+          getNodes(), baseId, baseTimestamp, baseLongitude, baseLatitude));
+    }
     return new SerializationProxy(this);
   }
 
   private static class VersionIterator extends EntityVersionIterator<OSMWay> {
-    private final List<OSHNode> nodes;
+    private final OSHWayImpl osh;
+    private final WayView view;
     private OSMMember[] members = new OSMMember[0];
+    // position of the not yet decoded members of the current version in cursor mode, or -1
+    private int membersPos = -1;
 
     private VersionIterator(ByteArrayWrapper wrapper, long id, long baseTimestamp,
-        List<OSHNode> nodes) {
-      super(wrapper, id, baseTimestamp);
-      this.nodes = nodes;
+        OSHWayImpl osh, boolean cursor) {
+      super(wrapper, id, baseTimestamp, cursor);
+      this.osh = osh;
+      this.view = cursor ? new WayView() : null;
     }
 
     @Override
     protected OSMWay extension(byte changed) {
       if ((changed & CHANGED_REFS) != 0) {
-        int size = wrapper.readU32();
-        members = new OSMMember[size];
-        var memberId = 0L;
-        var memberOffset = 0;
-        OSHEntity member = null;
-        for (int i = 0; i < size; i++) {
-          memberOffset = wrapper.readU32();
-          if (memberOffset > 0) {
-            member = nodes.get(memberOffset - 1);
-            memberId = member.getId();
-
-          } else {
-            member = null;
-            memberId = wrapper.readS64() + memberId;
-          }
-          members[i] = new OSMMember(memberId, OSMType.NODE, -1, member);
+        if (cursor) {
+          // members are only decoded if they are actually requested
+          membersPos = wrapper.getPos();
+          skipMembers();
+        } else {
+          members = readMembers();
         }
       }
 
+      if (cursor) {
+        return view;
+      }
       return OSM.way(id, version, baseTimestamp + timestamp, changeset, userId, keyValues,
           members);
     }
+
+    private OSMMember[] readMembers() {
+      var nodes = osh.getNodes();
+      int size = wrapper.readU32();
+      var result = new OSMMember[size];
+      var memberId = 0L;
+      var memberOffset = 0;
+      OSHEntity member = null;
+      for (int i = 0; i < size; i++) {
+        memberOffset = wrapper.readU32();
+        if (memberOffset > 0) {
+          member = nodes.get(memberOffset - 1);
+          memberId = member.getId();
+
+        } else {
+          member = null;
+          memberId = wrapper.readS64() + memberId;
+        }
+        result[i] = new OSMMember(memberId, OSMType.NODE, -1, member);
+      }
+      return result;
+    }
+
+    private void skipMembers() {
+      int size = wrapper.readU32();
+      for (int i = 0; i < size; i++) {
+        if (wrapper.readU32() == 0) {
+          wrapper.readS64();
+        }
+      }
+    }
+
+    private class WayView extends EntityView implements OSMWay {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public OSMMember[] getMembers() {
+        if (membersPos >= 0) {
+          var pos = wrapper.getPos();
+          wrapper.seek(membersPos);
+          members = readMembers();
+          wrapper.seek(pos);
+          membersPos = -1;
+        }
+        return members;
+      }
+
+      @Override
+      public Stream<OSMNode> getMemberEntities(OSHDBTimestamp timestamp) {
+        return Arrays.stream(getMembers()).map(OSMMember::getEntity).filter(Objects::nonNull)
+            .map(entity -> (OSMNode) OSHEntities.getByTimestamp(entity, timestamp));
+      }
+
+      @Override
+      public String toString() {
+        return String.format("WAY-> %s Refs:%s", super.toString(), Arrays.toString(getMembers()));
+      }
+    }
   }
 
   private static class SerializationProxy extends OSHEntitySerializationProxy {
@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import org.heigit.ohsome.oshdb.OSHDBTimestamp;
 import org.heigit.ohsome.oshdb.osm.OSMEntity;
 
@@ -54,6 +55,26 @@ public final class OSHEntities {
     return list;
   }
 
+  /**
+   * Tests whether any version of an OSH entity matches the given predicate.
+   *
+   * <p>The versions are visited using {@link OSHEntity#getVersionCursor()}, so the predicate must
+   * not retain the entities it is called with.</p>
+   *
+   * @param osh the OSH entity to process.
+   * @param predicate the predicate to test the versions with.
+   * @return true if the predicate matches at least one version of the OSH entity.
+   */
+  public static boolean anyVersionMatches(OSHEntity osh, Predicate<? super OSMEntity> predicate) {
+    var cursor = osh.getVersionCursor();
+    while (cursor.hasNext()) {
+      if (predicate.test(cursor.next())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Returns the OSM entity ("version") of the OSH entity which was current at the given timestamp.
    *
@@ -1,6 +1,7 @@
 package org.heigit.ohsome.oshdb.osh;
 
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import org.heigit.ohsome.oshdb.OSHDBBoundable;
 import org.heigit.ohsome.oshdb.osm.OSMEntity;
@@ -23,6 +24,21 @@ public interface OSHEntity {
 
   Iterable<? extends OSMEntity> getVersions();
 
+  /**
+   * Returns a cursor over the versions of this entity, in the same order as
+   * {@link #getVersions()}.
+   *
+   * <p>Contrary to the iterator of {@link #getVersions()}, the returned iterator may return the
+   * same mutable {@link OSMEntity} instance on every call to {@code next()}, which is updated in
+   * place. A returned entity is therefore only valid until the next call to {@code next()} and
+   * must not be retained, e.g. in a collection.</p>
+   *
+   * @return an iterator over reused views of the versions of this entity
+   */
+  default Iterator<? extends OSMEntity> getVersionCursor() {
+    return getVersions().iterator();
+  }
+
   default List<OSHNode> getNodes() {
     return Collections.emptyList();
   }
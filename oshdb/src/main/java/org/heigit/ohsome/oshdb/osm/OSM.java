@@ -60,6 +60,39 @@ public class OSM {
     return new Relation(id, version, timestamp, changeset, userId, toKV(tags), members);
   }
 
+  /**
+   * Creates an immutable copy of an OSM entity, e.g. of a reused view returned by
+   * {@link org.heigit.ohsome.oshdb.osh.OSHEntity#getVersionCursor()}.
+   *
+   * <p>Entities created by this factory are already immutable and are returned as they are.</p>
+   *
+   * @param entity the OSM entity to copy
+   * @return an immutable OSM entity with the same data as the given entity
+   */
+  public static OSMEntity copyOf(OSMEntity entity) {
+    if (entity instanceof Entity) {
+      return entity;
+    }
+    var version = entity.isVisible() ? entity.getVersion() : -entity.getVersion();
+    var tags = new int[entity.getTags().size() * 2];
+    var i = 0;
+    for (var tag : entity.getTags()) {
+      tags[i++] = tag.getKey();
+      tags[i++] = tag.getValue();
+    }
+    if (entity instanceof OSMNode node) {
+      return node(node.getId(), version, node.getEpochSecond(), node.getChangesetId(),
+          node.getUserId(), tags, node.getLon(), node.getLat());
+    } else if (entity instanceof OSMWay way) {
+      return way(way.getId(), version, way.getEpochSecond(), way.getChangesetId(),
+          way.getUserId(), tags, way.getMembers());
+    } else if (entity instanceof OSMRelation relation) {
+      return relation(relation.getId(), version, relation.getEpochSecond(),
+          relation.getChangesetId(), relation.getUserId(), tags, relation.getMembers());
+    }
+    throw new IllegalArgumentException("unknown osm entity " + entity.getClass());
+  }
+
   private static int[] toKV(List<OSHDBTag> tags) {
     var kv = new int[tags.size() * 2];
     var i = 0;
@@ -1,5 +1,6 @@
 package org.heigit.ohsome.oshdb.util.bytearray;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -115,6 +116,30 @@ public class ByteArrayWrapper {
     return readU64() + last;
   }
 
+  /**
+   * Read an {@code sint64} field value from the current position of a byte buffer.
+   */
+  public static long readS64(ByteBuffer buffer) {
+    return decodeZigZag64(readU64(buffer));
+  }
+
+  /**
+   * Read a {@code uint64} field value from the current position of a byte buffer.
+   */
+  public static long readU64(ByteBuffer buffer) {
+    long b = buffer.get();
+    if (b >= 0) {
+      return b;
+    }
+    long value = b & 0x7F;
+    var i = 7;
+    while (((b = buffer.get()) & 0x80) != 0) {
+      value |= (b & 0x7F) << i;
+      i += 7;
+    }
+    return value | b << i;
+  }
+
   /**
    * Read one byte from the input.
    *
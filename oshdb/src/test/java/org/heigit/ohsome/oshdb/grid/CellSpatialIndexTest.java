@@ -0,0 +1,77 @@
+package org.heigit.ohsome.oshdb.grid;
+
+import static org.heigit.ohsome.oshdb.OSHDBBoundingBox.bboxWgs84Coordinates;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.heigit.ohsome.oshdb.OSHDBBoundingBox;
+import org.heigit.ohsome.oshdb.impl.osh.OSHNodeImpl;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
+import org.heigit.ohsome.oshdb.osh.OSHNode;
+import org.heigit.ohsome.oshdb.osm.OSM;
+import org.junit.jupiter.api.Test;
+
+class CellSpatialIndexTest {
+
+  private static GridOSHNodes nodes(int count) {
+    var random = new Random(42);
+    List<OSHNode> oshNodes = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      oshNodes.add(OSHNodeImpl.build(Arrays.asList(OSM.node(i + 1L, 1, 1L, 0L, 1, new int[0],
+          80000000 + random.nextInt(10000000), 490000000 + random.nextInt(10000000)))));
+    }
+    return GridOSHNodes.rebase(1, 2, 0, 0, 0, 0, oshNodes);
+  }
+
+  private static List<Long> ids(Iterable<? extends OSHEntity> entities) {
+    var ids = new ArrayList<Long>();
+    entities.forEach(entity -> ids.add(entity.getId()));
+    return ids;
+  }
+
+  @Test
+  void testQuery() {
+    var grid = nodes(1000).withSpatialIndex();
+    assertNotNull(grid.getSpatialIndex());
+    assertEquals(1000, grid.getSpatialIndex().size());
+
+    var random = new Random(4711);
+    for (int i = 0; i < 100; i++) {
+      double minLon = 8.0 + random.nextDouble();
+      double minLat = 49.0 + random.nextDouble();
+      OSHDBBoundingBox bbox = bboxWgs84Coordinates(minLon, minLat,
+          minLon + random.nextDouble() * 0.3, minLat + random.nextDouble() * 0.3);
+      var expected = new ArrayList<Long>();
+      grid.getEntities().forEach(entity -> {
+        if (entity.getBoundable().intersects(bbox)) {
+          expected.add(entity.getId());
+        }
+      });
+      assertEquals(expected, ids(grid.getEntities(bbox)));
+    }
+  }
+
+  @Test
+  void testSmallCell() {
+    var grid = nodes(CellSpatialIndex.MIN_ENTITIES - 1).withSpatialIndex();
+    assertNull(grid.getSpatialIndex());
+    // without index, all entities are returned
+    assertEquals(ids(grid.getEntities()),
+        ids(grid.getEntities(bboxWgs84Coordinates(0.0, 0.0, 0.0, 0.0))));
+  }
+
+  @Test
+  void testEncodedRoundTrip() throws IOException {
+    var grid = nodes(500).withSpatialIndex();
+    var decoded = GridOSHEntityCodec.decode(GridOSHEntityCodec.encode(grid));
+    var bbox = bboxWgs84Coordinates(8.2, 49.2, 8.6, 49.5);
+    assertEquals(ids(grid.getEntities(bbox)), ids(decoded.getEntities(bbox)));
+    assertEquals(grid.getSpatialIndex().size(), decoded.getSpatialIndex().size());
+  }
+}
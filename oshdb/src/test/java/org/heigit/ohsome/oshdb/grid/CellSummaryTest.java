@@ -0,0 +1,86 @@
+package org.heigit.ohsome.oshdb.grid;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.heigit.ohsome.oshdb.impl.osh.OSHNodeImpl;
+import org.heigit.ohsome.oshdb.impl.osh.OSHWayImpl;
+import org.heigit.ohsome.oshdb.osh.OSHNode;
+import org.heigit.ohsome.oshdb.osh.OSHWay;
+import org.heigit.ohsome.oshdb.osm.OSM;
+import org.heigit.ohsome.oshdb.osm.OSMMember;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.junit.jupiter.api.Test;
+
+class CellSummaryTest {
+
+  private static GridOSHNodes nodes(int count) {
+    List<OSHNode> oshNodes = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      // tag keys 0, 2, 4, ... in the first version, no tags in the second one
+      oshNodes.add(OSHNodeImpl.build(asList(
+          OSM.node(i + 1L, 2, 2000L + i, 0L, 1, new int[0], 86000000, 490000000),
+          OSM.node(i + 1L, 1, 1000L + i, 0L, 1, new int[] {2 * i, 0}, 86000000, 490000000))));
+    }
+    return GridOSHNodes.rebase(1, 2, 0, 0, 0, 0, oshNodes);
+  }
+
+  @Test
+  void testKeys() {
+    var summary = nodes(100).getSummary();
+    for (int i = 0; i < 100; i++) {
+      assertTrue(summary.mayContainKey(2 * i));
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 100; i++) {
+      if (summary.mayContainKey(2 * i + 1)) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < 10, "too many false positives: " + falsePositives);
+    assertFalse(summary.mayContainKey(-1));
+  }
+
+  @Test
+  void testTimestamps() {
+    var summary = nodes(100).getSummary();
+    assertEquals(1000L, summary.getMinTimestamp());
+    assertEquals(2099L, summary.getMaxTimestamp());
+  }
+
+  @Test
+  void testMemberTimestamps() {
+    OSHNode node = OSHNodeImpl.build(asList(
+        OSM.node(100L, 2, 5000L, 0L, 1, new int[0], 86000000, 490000000),
+        OSM.node(100L, 1, 1000L, 0L, 1, new int[0], 86000000, 490000000)));
+    OSHWay way = OSHWayImpl.build(asList(
+        OSM.way(1, 1, 2000L, 1L, 1, new int[] {1, 1}, new OSMMember[] {
+            new OSMMember(100, OSMType.NODE, 0)})), asList(node));
+    var summary = GridOSHWays.compact(1, 2, 0, 0, 0, 0, asList(way)).getSummary();
+    // modifications of the way's nodes are included
+    assertEquals(1000L, summary.getMinTimestamp());
+    assertEquals(5000L, summary.getMaxTimestamp());
+    assertTrue(summary.mayContainKey(1));
+  }
+
+  @Test
+  void testEmptyCell() {
+    var summary = GridOSHRelations.compact(1, 2, 0, 0, 0, 0, asList()).getSummary();
+    assertFalse(summary.mayContainKey(0));
+    assertEquals(Long.MAX_VALUE, summary.getMinTimestamp());
+    assertEquals(Long.MIN_VALUE, summary.getMaxTimestamp());
+  }
+
+  @Test
+  void testWithSummary() {
+    var grid = nodes(10);
+    var plain = new GridOSHNodes(grid.id, grid.level, grid.baseId, grid.baseTimestamp,
+        (int) grid.baseLongitude, (int) grid.baseLatitude, grid.index, grid.data);
+    assertEquals(null, plain.getSummary());
+    assertEquals(grid.getSummary(), plain.withSummary().getSummary());
+  }
+}
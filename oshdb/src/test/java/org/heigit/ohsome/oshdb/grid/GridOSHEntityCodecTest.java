@@ -0,0 +1,141 @@
+package org.heigit.ohsome.oshdb.grid;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.heigit.ohsome.oshdb.impl.osh.NodeDictionary;
+import org.heigit.ohsome.oshdb.impl.osh.OSHNodeImpl;
+import org.heigit.ohsome.oshdb.impl.osh.OSHWayImpl;
+import org.heigit.ohsome.oshdb.osh.OSHNode;
+import org.heigit.ohsome.oshdb.osh.OSHWay;
+import org.heigit.ohsome.oshdb.osm.OSM;
+import org.heigit.ohsome.oshdb.osm.OSMMember;
+import org.heigit.ohsome.oshdb.osm.OSMNode;
+import org.heigit.ohsome.oshdb.osm.OSMType;
+import org.junit.jupiter.api.Test;
+
+class GridOSHEntityCodecTest {
+
+  private static GridOSHNodes nodes() throws IOException {
+    List<OSHNode> hosmNodes = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      List<OSMNode> versions = new ArrayList<>();
+      versions.add(OSM.node(123L + 10 * i, 1, 123001L + 10 * i, 0L, 123, new int[] {1, 2},
+          86809727 - 1000000 * i, 494094984 - 1000000 * i));
+      versions.add(OSM.node(123L + 10 * i, 2, 123002L + 10 * i, 0L, 123, new int[] {},
+          86809727 - 1000000 * i, 494094984 - 1000000 * i));
+      hosmNodes.add(OSHNodeImpl.build(versions));
+    }
+    return GridOSHNodes.rebase(2, 2, 100, 100000L, 86000000, 490000000, hosmNodes);
+  }
+
+  private static GridOSHWays ways() throws IOException {
+    OSHNode node100 = OSHNodeImpl.build(
+        asList(OSM.node(100L, 1, 1L, 0L, 123, new int[] {1, 2}, 494094984, 86809727)));
+    OSHNode node102 = OSHNodeImpl.build(
+        asList(OSM.node(102L, 1, 1L, 0L, 123, new int[] {2, 1}, 494094984, 86809727)));
+    OSHWay way = OSHWayImpl.build(asList(
+        OSM.way(123, 1, 3333L, 4444L, 23, new int[] {1, 1}, new OSMMember[] {
+            new OSMMember(100, OSMType.NODE, 0), new OSMMember(102, OSMType.NODE, 0)})),
+        asList(node100, node102));
+    return GridOSHWays.compact(-1, 0, 0, 0, -180, -90, asList(way));
+  }
+
+  private static void assertGridEquals(GridOSHEntity expected, GridOSHEntity actual) {
+    assertEquals(expected.getClass(), actual.getClass());
+    assertEquals(expected.id, actual.id);
+    assertEquals(expected.level, actual.level);
+    assertEquals(expected.baseId, actual.baseId);
+    assertEquals(expected.baseTimestamp, actual.baseTimestamp);
+    assertEquals(expected.baseLongitude, actual.baseLongitude);
+    assertEquals(expected.baseLatitude, actual.baseLatitude);
+    assertArrayEquals(expected.index, actual.index);
+    assertArrayEquals(expected.data, actual.data);
+    assertEquals(expected.summary, actual.summary);
+    NodeDictionary expectedDictionary = null;
+    NodeDictionary actualDictionary = null;
+    if (expected instanceof GridOSHWays) {
+      expectedDictionary = ((GridOSHWays) expected).getNodeDictionary();
+      actualDictionary = ((GridOSHWays) actual).getNodeDictionary();
+    }
+    assertEquals(expectedDictionary == null, actualDictionary == null);
+    if (expectedDictionary != null) {
+      assertArrayEquals(expectedDictionary.getIndex(), actualDictionary.getIndex());
+      assertArrayEquals(expectedDictionary.getData(), actualDictionary.getData());
+    }
+  }
+
+  @Test
+  void testRoundTrip() throws IOException {
+    for (GridOSHEntity grid : asList(nodes(), ways(),
+        GridOSHRelations.compact(7, 3, 0, 0, 0, 0, asList()))) {
+      byte[] encoded = GridOSHEntityCodec.encode(grid);
+      assertFalse(GridOSHEntityCodec.isLegacy(encoded));
+      assertGridEquals(grid, GridOSHEntityCodec.decode(encoded));
+    }
+  }
+
+  @Test
+  void testSummary() throws IOException {
+    GridOSHWays grid = ways();
+    assertEquals(grid.getSummary(), GridOSHEntityCodec.decodeSummary(
+        GridOSHEntityCodec.encode(grid)));
+    // cells without a summary are written in an older version of the format
+    var withoutSummary = new GridOSHWays(grid.id, grid.level, grid.baseId, grid.baseTimestamp,
+        (int) grid.baseLongitude, (int) grid.baseLatitude, grid.index, grid.data);
+    byte[] encoded = GridOSHEntityCodec.encode(withoutSummary);
+    assertEquals(1, encoded[2]);
+    assertEquals(null, GridOSHEntityCodec.decodeSummary(encoded));
+    assertGridEquals(withoutSummary, GridOSHEntityCodec.decode(encoded));
+    encoded = GridOSHEntityCodec.encode(withoutSummary.withSummary());
+    assertEquals(3, encoded[2]);
+    assertGridEquals(grid, GridOSHEntityCodec.decode(encoded));
+  }
+
+  @Test
+  void testNodeDictionary() throws IOException {
+    GridOSHWays grid = ways().withNodeDictionary();
+    byte[] encoded = GridOSHEntityCodec.encode(grid);
+    assertEquals(GridOSHEntityCodec.VERSION, encoded[2]);
+    assertEquals(grid.getSummary(), GridOSHEntityCodec.decodeSummary(encoded));
+    var decoded = (GridOSHWays) GridOSHEntityCodec.decode(encoded);
+    assertGridEquals(grid, decoded);
+    var way = decoded.iterator().next();
+    assertEquals(2, way.getNodes().size());
+    assertEquals(102L, way.getVersions().iterator().next().getMembers()[1].getEntity().getId());
+    // cells without a node dictionary are still written in the previous version of the format
+    assertEquals(3, GridOSHEntityCodec.encode(ways())[2]);
+  }
+
+  @Test
+  void testLegacyJavaSerialization() throws IOException {
+    GridOSHNodes grid = nodes();
+    var baos = new ByteArrayOutputStream();
+    try (var oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(grid);
+    }
+    byte[] serialized = baos.toByteArray();
+    assertTrue(GridOSHEntityCodec.isLegacy(serialized));
+    assertGridEquals(grid, GridOSHEntityCodec.decode(serialized));
+  }
+
+  @Test
+  void testInvalid() throws IOException {
+    assertThrows(IOException.class, () -> GridOSHEntityCodec.decode(new byte[] {1, 2, 3, 4}));
+    byte[] encoded = GridOSHEntityCodec.encode(nodes());
+    byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+    assertThrows(IOException.class, () -> GridOSHEntityCodec.decode(truncated));
+    encoded[2] = GridOSHEntityCodec.VERSION + 1;
+    assertThrows(IOException.class, () -> GridOSHEntityCodec.decode(encoded));
+  }
+}
@@ -2,6 +2,8 @@ package org.heigit.ohsome.oshdb.grid;
 
 import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.Iterables;
 import java.io.IOException;
@@ -9,6 +11,8 @@ import java.util.List;
 import org.heigit.ohsome.oshdb.impl.osh.OSHNodeImpl;
 import org.heigit.ohsome.oshdb.impl.osh.OSHRelationImpl;
 import org.heigit.ohsome.oshdb.impl.osh.OSHWayImpl;
+import org.heigit.ohsome.oshdb.osh.OSHEntities;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
 import org.heigit.ohsome.oshdb.osh.OSHNode;
 import org.heigit.ohsome.oshdb.osh.OSHRelation;
 import org.heigit.ohsome.oshdb.osh.OSHWay;
@@ -57,6 +61,71 @@ class GridOSHRelationsTest {
     assertEquals(false, itrActual.hasNext());
   }
 
+  @Test
+  void testNodeDictionary() throws IOException {
+    var node100 = buildOSHNode(node(100L, 1, 1L, 0L, 123, tags(1, 2), 494094984, 86809727));
+    var node102 = buildOSHNode(node(102L, 1, 1L, 0L, 123, tags(2, 1), 494094984, 86809727));
+    var node104 = buildOSHNode(node(104L, 1, 1L, 0L, 123, tags(2, 4), 494094984, 86809727));
+
+    var way200 = buildOSHWay(asList(node100, node104),
+            way(200, 1, 3333L, 4444L, 23, tags(1, 2), mn(100, 0), mn(104, 0)));
+    var way202 = buildOSHWay(asList(node100, node102),
+            way(202, 1, 3333L, 4444L, 23, tags(1, 2), mn(100, 0), mn(102, 0)));
+
+    var relation300 = buildOSHRelation(asList(node100, node102), asList(),
+        rel(300, 1, 3333L, 4444L, 23, tags(), mn(100, 0), mn(102, 0)),
+        rel(300, 2, 3333L, 4444L, 23, tags(1, 2), mn(100, 0), mn(102, 0)));
+    var relation301 = buildOSHRelation(asList(node104), asList(way200, way202),
+        rel(301, 1, 3333L, 4444L, 23, tags(), mw(200, 1), mw(202, 1), mn(104, 2)),
+        rel(301, 2, 3333L, 4444L, 23, tags(1, 2), mw(200, 1), mw(202, 1)));
+    var relation302 = buildOSHRelation(asList(), asList(),
+        rel(302, 1, 3333L, 4444L, 23, tags(), mn(106, 0)));
+
+    var relations = asList(relation300, relation301, relation302);
+    var plain = GridOSHRelations.compact(2, 2, 0, 0, 0, 0, relations);
+    var grid = GridOSHRelations.compact(2, 2, 0, 0, 0, 0, relations, true);
+    assertEquals(3, grid.getNodeDictionary().size());
+    assertTrue(grid.data.length + grid.getNodeDictionary().getData().length
+        < plain.data.length);
+
+    var itrExpected = relations.iterator();
+    for (OSHRelation relation : grid) {
+      var expected = itrExpected.next();
+      assertEntityEquals(expected, relation);
+      assertMembersEqual(expected.getNodes(), relation.getNodes());
+      assertMembersEqual(expected.getWays(), relation.getWays());
+      for (int i = 0; i < expected.getWays().size(); i++) {
+        assertMembersEqual(expected.getWays().get(i).getNodes(),
+            relation.getWays().get(i).getNodes());
+      }
+      var itrVersions = relation.getVersions().iterator();
+      for (OSMRelation version : expected.getVersions()) {
+        var members = itrVersions.next().getMembers();
+        for (int i = 0; i < members.length; i++) {
+          var expectedMember = version.getMembers()[i].getEntity();
+          assertEquals(expectedMember == null ? null : expectedMember.getId(),
+              members[i].getEntity() == null ? null : members[i].getEntity().getId());
+        }
+      }
+    }
+
+    // nodes shared by the relations and their ways are only decoded once
+    var relations300 = grid.iterator().next();
+    var relations301 = Iterables.get(grid, 1);
+    assertSame(relations300.getNodes().get(0), relations301.getWays().get(1).getNodes().get(0));
+    assertSame(relations301.getNodes().get(0), relations301.getWays().get(0).getNodes().get(1));
+  }
+
+  private static void assertMembersEqual(List<? extends OSHEntity> expected,
+      List<? extends OSHEntity> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getId(), actual.get(i).getId());
+      assertEquals(OSHEntities.toList(expected.get(i).getVersions()),
+          OSHEntities.toList(actual.get(i).getVersions()));
+    }
+  }
+
   private static OSMNode node(long id, int version, long timestamp, long changeset,
       int userId, int[] tags, int longitude, int latitude) {
     return OSM.node(id, version, timestamp, changeset, userId, tags, longitude, latitude);
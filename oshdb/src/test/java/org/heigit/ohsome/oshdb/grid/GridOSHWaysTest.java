@@ -1,14 +1,23 @@
 package org.heigit.ohsome.oshdb.grid;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.Iterables;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.heigit.ohsome.oshdb.impl.osh.OSHNodeImpl;
 import org.heigit.ohsome.oshdb.impl.osh.OSHWayImpl;
+import org.heigit.ohsome.oshdb.osh.OSHEntities;
+import org.heigit.ohsome.oshdb.osh.OSHEntity;
 import org.heigit.ohsome.oshdb.osh.OSHNode;
 import org.heigit.ohsome.oshdb.osh.OSHWay;
 import org.heigit.ohsome.oshdb.osm.OSM;
@@ -47,4 +56,109 @@ class GridOSHWaysTest {
     var entities = instance.getEntities();
     assertEquals(hosmWays.size(), Iterables.size(entities));
   }
-}
\ No newline at end of file
+
+  private List<OSHWay> waysSharingNodes() {
+    List<OSHWay> hosmWays = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      List<OSMWay> versions = new ArrayList<>();
+      versions.add(OSM.way(123 + i, 1, 3333L, 4444L, 23, new int[] {1, 1, 2, 1},
+          new OSMMember[] {
+              new OSMMember(102, OSMType.NODE, 0), new OSMMember(104, OSMType.NODE, 0)}));
+      versions.add(OSM.way(123 + i, 3, 3333L, 4444L, 23, new int[] {1, 1, 2, 2},
+          new OSMMember[] {
+              new OSMMember(100, OSMType.NODE, 0), new OSMMember(104, OSMType.NODE, 0)}));
+      hosmWays.add(OSHWayImpl.build(versions, Arrays.asList(node100, node102, node104)));
+    }
+    return hosmWays;
+  }
+
+  @Test
+  void testNodeDictionary() {
+    List<OSHWay> hosmWays = waysSharingNodes();
+    GridOSHWays plain = GridOSHWays.compact(2, 2, 100, 100000L, 86000000, 490000000, hosmWays);
+    GridOSHWays instance =
+        GridOSHWays.compact(2, 2, 100, 100000L, 86000000, 490000000, hosmWays, true);
+    assertEquals(null, plain.getNodeDictionary());
+    assertEquals(3, instance.getNodeDictionary().size());
+    assertTrue(instance.data.length + instance.getNodeDictionary().getData().length
+        < plain.data.length);
+
+    var expected = plain.iterator();
+    for (OSHWay way : instance) {
+      assertWayEquals(expected.next(), way);
+    }
+    assertEquals(false, expected.hasNext());
+
+    // nodes shared by several ways are only decoded once
+    OSHWay first = instance.iterator().next();
+    OSHWay last = Iterables.getLast(instance);
+    assertSame(first.getNodes().get(0), last.getNodes().get(0));
+    assertSame(first.getVersions().iterator().next().getMembers()[1].getEntity(),
+        last.getNodes().get(2));
+
+    assertSame(instance, instance.withNodeDictionary());
+    var converted = plain.withNodeDictionary();
+    assertEquals(3, converted.getNodeDictionary().size());
+    expected = plain.iterator();
+    for (OSHWay way : converted) {
+      assertWayEquals(expected.next(), way);
+    }
+  }
+
+  @Test
+  void testDataFingerprint() throws IOException {
+    List<OSHWay> hosmWays = waysSharingNodes();
+    GridOSHWays plain = GridOSHWays.compact(2, 2, 100, 100000L, 86000000, 490000000, hosmWays);
+    GridOSHWays withDictionary =
+        GridOSHWays.compact(2, 2, 100, 100000L, 86000000, 490000000, hosmWays, true);
+    GridOSHWays other = GridOSHWays.compact(2, 2, 100, 100000L, 86000000, 490000000,
+        hosmWays.subList(0, 2));
+    assertEquals(plain.getDataFingerprint(),
+        GridOSHWays.compact(2, 2, 100, 100000L, 86000000, 490000000, hosmWays)
+            .getDataFingerprint());
+    assertEquals(plain.getDataFingerprint(), plain.withSummary().getDataFingerprint());
+    assertEquals(withDictionary.getDataFingerprint(), GridOSHEntityCodec.decode(
+        GridOSHEntityCodec.encode(withDictionary)).getDataFingerprint());
+    assertNotEquals(plain.getDataFingerprint(), withDictionary.getDataFingerprint());
+    assertNotEquals(plain.getDataFingerprint(), other.getDataFingerprint());
+  }
+
+  @Test
+  void testSerializeWayWithNodeDictionary() throws Exception {
+    GridOSHWays instance =
+        GridOSHWays.compact(2, 2, 100, 100000L, 86000000, 490000000, waysSharingNodes(), true);
+    OSHWay way = instance.iterator().next();
+    var baos = new ByteArrayOutputStream();
+    try (var oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(way);
+    }
+    try (var ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+      assertWayEquals(way, (OSHWay) ois.readObject());
+    }
+  }
+
+  private static void assertWayEquals(OSHWay expected, OSHWay actual) {
+    assertEquals(expected.getId(), actual.getId());
+    assertEquals(OSHEntities.toList(expected.getVersions()),
+        OSHEntities.toList(actual.getVersions()));
+    assertEquals(expected.getNodes().size(), actual.getNodes().size());
+    for (int i = 0; i < expected.getNodes().size(); i++) {
+      assertNodeEquals(expected.getNodes().get(i), actual.getNodes().get(i));
+    }
+    var actualVersions = actual.getVersions().iterator();
+    for (var version : expected.getVersions()) {
+      var actualMembers = actualVersions.next().getMembers();
+      var expectedMembers = version.getMembers();
+      assertEquals(expectedMembers.length, actualMembers.length);
+      for (int i = 0; i < expectedMembers.length; i++) {
+        assertNodeEquals(expectedMembers[i].getEntity(), actualMembers[i].getEntity());
+      }
+    }
+  }
+
+  private static void assertNodeEquals(OSHEntity expected, OSHEntity actual) {
+    assertEquals(expected.getId(), actual.getId());
+    assertEquals(OSHEntities.toList(expected.getVersions()),
+        OSHEntities.toList(actual.getVersions()));
+  }
+}
@@ -2,14 +2,23 @@ package org.heigit.ohsome.oshdb.osh;
 
 import static org.heigit.ohsome.oshdb.osh.OSHNodeTest.buildOSHNode;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.Lists;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import org.heigit.ohsome.oshdb.impl.osh.OSHRelationImpl;
+import org.heigit.ohsome.oshdb.impl.osh.OSHWayImpl;
 import org.heigit.ohsome.oshdb.osm.OSM;
+import org.heigit.ohsome.oshdb.osm.OSMEntity;
 import org.heigit.ohsome.oshdb.osm.OSMMember;
+import org.heigit.ohsome.oshdb.osm.OSMType;
 import org.junit.jupiter.api.Test;
 
 class OSHEntityTest {
@@ -34,4 +43,73 @@ class OSHEntityTest {
     assertEquals(expected, a);
     assertNotEquals(expected, b);
   }
+
+  @Test
+  void testVersionCursor() throws IOException {
+    var node100 = buildOSHNode(
+        OSM.node(100L, 3, 3L, 3L, 2, new int[] {1, 2, 3, 4}, 20, 20),
+        OSM.node(100L, -2, 2L, 2L, 2, new int[0], 0, 0),
+        OSM.node(100L, 1, 1L, 1L, 1, new int[] {1, 1}, 10, 10));
+    var node102 = buildOSHNode(
+        OSM.node(102L, 1, 1L, 1L, 1, new int[] {2, 1, 4, 7}, 30, 30));
+    assertVersionCursor(node100);
+
+    var way200 = OSHWayImpl.build(Lists.newArrayList(
+        OSM.way(200L, 2, 2L, 2L, 1, new int[] {1, 2}, new OSMMember[] {
+            new OSMMember(100, OSMType.NODE, -1),
+            new OSMMember(101, OSMType.NODE, -1),
+            new OSMMember(102, OSMType.NODE, -1)}),
+        OSM.way(200L, 1, 1L, 1L, 1, new int[] {1, 1, 2, 2, 3, 3}, new OSMMember[] {
+            new OSMMember(100, OSMType.NODE, -1),
+            new OSMMember(102, OSMType.NODE, -1)})
+    ), List.of(node100, node102));
+    assertVersionCursor(way200);
+
+    var relation300 = OSHRelationImpl.build(Lists.newArrayList(
+        OSM.relation(300L, 2, 2L, 2L, 1, new int[] {1, 2}, new OSMMember[] {
+            new OSMMember(200, OSMType.WAY, 1),
+            new OSMMember(102, OSMType.NODE, 2),
+            new OSMMember(301, OSMType.RELATION, 3)}),
+        OSM.relation(300L, 1, 1L, 1L, 1, new int[] {1, 1}, new OSMMember[] {
+            new OSMMember(100, OSMType.NODE, 1)})
+    ), List.of(node100, node102), List.of(way200));
+    assertVersionCursor(relation300);
+  }
+
+  private static void assertVersionCursor(OSHEntity osh) {
+    var expected = OSHEntities.toList(osh.getVersions());
+    var cursor = osh.getVersionCursor();
+    OSMEntity previous = null;
+    List<OSMEntity> copies = new ArrayList<>();
+    for (OSMEntity expectedVersion : expected) {
+      assertTrue(cursor.hasNext());
+      var version = cursor.next();
+      if (previous != null) {
+        assertSame(previous, version);
+      }
+      previous = version;
+      assertEquals(expectedVersion, version);
+      assertEquals(expectedVersion.getEpochSecond(), version.getEpochSecond());
+      assertEquals(expectedVersion.getChangesetId(), version.getChangesetId());
+      assertEquals(expectedVersion.getUserId(), version.getUserId());
+      assertEquals(expectedVersion.isVisible(), version.isVisible());
+      assertEquals(expectedVersion.getTags(), version.getTags());
+      assertEquals(expectedVersion.getTags().hashCode(), version.getTags().hashCode());
+      for (var tag : expectedVersion.getTags()) {
+        assertTrue(version.getTags().hasTagKey(tag.getKey()));
+        assertTrue(version.getTags().hasTag(tag));
+      }
+      assertEquals(expectedVersion.toString(), version.toString());
+      copies.add(OSM.copyOf(version));
+    }
+    assertFalse(cursor.hasNext());
+    // copies stay valid after the cursor moved on
+    for (int i = 0; i < expected.size(); i++) {
+      assertNotSame(expected.get(i), copies.get(i));
+      assertEquals(expected.get(i), copies.get(i));
+      assertEquals(expected.get(i).isVisible(), copies.get(i).isVisible());
+      assertEquals(expected.get(i).toString(), copies.get(i).toString());
+    }
+    assertSame(expected.get(0), OSM.copyOf(expected.get(0)));
+  }
 }